@@ -0,0 +1,85 @@
+package bench;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+/**
+ * A synthetic project generated in a temporary folder, with its files and sources loaded in memory.
+ */
+public final class SyntheticProject {
+    private final Path root;
+    private final Path sourceRoot;
+    private final List<Path> files;
+    private final List<String> sources;
+
+    private SyntheticProject(Path root, Path sourceRoot, List<Path> files, List<String> sources) {
+        this.root = root;
+        this.sourceRoot = sourceRoot;
+        this.files = files;
+        this.sources = sources;
+    }
+
+    public static SyntheticProject create(int packages, int classesPerPackage, int referencesPerClass) throws IOException {
+        final Path root = Files.createTempDirectory("synthetic-project");
+        final Path sourceRoot = new SyntheticProjectGenerator(packages, classesPerPackage, referencesPerClass, 42).generate(root);
+        try (final Stream<Path> paths = Files.walk(sourceRoot)) {
+            final List<Path> files = paths.filter(p -> p.toString().endsWith(".java")).sorted().collect(Collectors.toList());
+            final List<String> sources = new ArrayList<>();
+            for (Path file : files)
+                sources.add(Files.readString(file));
+            return new SyntheticProject(root, sourceRoot, files, sources);
+        }
+    }
+
+    public Path getRoot() {
+        return this.root;
+    }
+
+    public Path getSourceRoot() {
+        return this.sourceRoot;
+    }
+
+    public List<Path> getFiles() {
+        return this.files;
+    }
+
+    public List<String> getSources() {
+        return this.sources;
+    }
+
+    /**
+     * Compile the sources of the project into its {@code classes} folder, with the compiler of the running JDK.
+     *
+     * @return the folder of the class files
+     */
+    public Path compile() throws IOException {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null)
+            throw new IllegalStateException("No Java compiler available, the benchmarks must run on a JDK");
+
+        final Path classes = Files.createDirectories(this.root.resolve("classes"));
+        final List<String> arguments = new ArrayList<>(List.of("-d", classes.toString(), "-nowarn"));
+        this.files.forEach(file -> arguments.add(file.toString()));
+        if (compiler.run(null, null, null, arguments.toArray(new String[0])) != 0)
+            throw new IllegalStateException("The synthetic project does not compile");
+        return classes;
+    }
+
+    public void delete() {
+        try (final Stream<Path> paths = Files.walk(this.root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
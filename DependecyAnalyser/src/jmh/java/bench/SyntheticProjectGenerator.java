@@ -0,0 +1,88 @@
+package bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Generates a synthetic Maven-like Java project (src/main/java/...) to be analysed by the benchmarks.
+ * Every class imports classes of other packages, uses JDK types that are filtered out, generic types,
+ * object creations, and sometimes extends or implements other generated types. The output only depends on
+ * the sizes and on the seed, so runs with the same parameters analyse the same project. Methods are named after
+ * their class, so that subclasses never override them, and the project compiles.
+ */
+public final class SyntheticProjectGenerator {
+    private static final String[] JDK_TYPES = {"List", "Map", "Set", "Optional", "String", "Object"};
+
+    private final int packages;
+    private final int classesPerPackage;
+    private final int referencesPerClass;
+    private final Random random;
+
+    public SyntheticProjectGenerator(int packages, int classesPerPackage, int referencesPerClass, long seed) {
+        this.packages = packages;
+        this.classesPerPackage = classesPerPackage;
+        this.referencesPerClass = referencesPerClass;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Write the project under the given folder.
+     *
+     * @param projectRoot the root folder of the generated project
+     * @return the source folder of the project
+     * @throws IOException if the files could not be written
+     */
+    public Path generate(Path projectRoot) throws IOException {
+        final Path sourceRoot = projectRoot.resolve("src").resolve("main").resolve("java");
+        for (int p = 0; p < this.packages; p++) {
+            final Path packageFolder = sourceRoot.resolve("gen").resolve("p" + p);
+            Files.createDirectories(packageFolder);
+            for (int c = 0; c < this.classesPerPackage; c++)
+                Files.writeString(packageFolder.resolve(className(p, c) + ".java"), this.classSource(p, c));
+        }
+        return sourceRoot;
+    }
+
+    private static String className(int p, int c) {
+        return (c % 5 == 0 ? "Service" : "Model") + p + "x" + c;
+    }
+
+    private String classSource(int p, int c) {
+        final StringBuilder imports = new StringBuilder("import java.util.*;\n");
+        final StringBuilder body = new StringBuilder();
+        for (int r = 0; r < this.referencesPerClass; r++) {
+            final int otherPackage = this.random.nextInt(this.packages);
+            final String other = className(otherPackage, this.random.nextInt(this.classesPerPackage));
+            if (otherPackage != p)
+                imports.append("import gen.p").append(otherPackage).append('.').append(other).append(";\n");
+
+            final String jdkType = JDK_TYPES[this.random.nextInt(JDK_TYPES.length)];
+            body.append("    private ").append(other).append(" field").append(r).append(" = new ").append(other).append("();\n")
+                    .append("    private List<").append(other).append("> list").append(r).append(";\n")
+                    .append("    public ").append(jdkType).append(" method").append(c).append('_').append(r).append("(").append(other).append(" arg) {\n")
+                    .append("        Map<String, ").append(other).append("> local = new HashMap<>();\n")
+                    .append("        return null;\n")
+                    .append("    }\n");
+        }
+
+        final String name = className(p, c);
+        final String extension = c > 0 && c % 7 == 0 ? " extends " + className(p, c - 1) : "";
+        return "package gen.p" + p + ";\n\n" + imports
+                + "\npublic class " + name + "<T>" + extension + " {\n"
+                + "    private T value;\n" + body + "}\n";
+    }
+
+    /**
+     * Generate a project from the command line: {@code <target folder> [packages] [classes per package] [references per class]}.
+     */
+    public static void main(String[] args) throws IOException {
+        final Path target = Path.of(args.length > 0 ? args[0] : "target/synthetic-project");
+        final int packages = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        final int classes = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+        final int references = args.length > 3 ? Integer.parseInt(args[3]) : 8;
+        final Path sourceRoot = new SyntheticProjectGenerator(packages, classes, references, 42).generate(target);
+        System.out.println("Generated " + packages * classes + " classes in " + sourceRoot);
+    }
+}
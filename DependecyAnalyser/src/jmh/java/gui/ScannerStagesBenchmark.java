@@ -0,0 +1,126 @@
+package gui;
+
+import bench.SyntheticProject;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.type.ClassOrInterfaceType;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the stages of {@link DependencyScanner}, every operation processing the whole synthetic project.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScannerStagesBenchmark {
+    @Param("10")
+    private int packages;
+    @Param("50")
+    private int classesPerPackage;
+    @Param("8")
+    private int referencesPerClass;
+
+    private SyntheticProject project;
+    private DependencyScanner scanner;
+    private List<String> typeNames;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        this.project = SyntheticProject.create(this.packages, this.classesPerPackage, this.referencesPerClass);
+        this.scanner = new DependencyScanner(this.project.getSourceRoot().toString(), false);
+
+        this.typeNames = new ArrayList<>();
+        for (CompilationUnit cu : this.parseAll(this.scanner))
+            cu.findAll(ClassOrInterfaceDeclaration.class).forEach(classDec ->
+                    classDec.findAll(ClassOrInterfaceType.class)
+                            .forEach(type -> this.typeNames.add(type.getNameWithScope())));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.project.delete();
+    }
+
+    /**
+     * State of the resolution benchmark: a new scanner, with cold symbol solvers and resolution cache, for every call.
+     */
+    @State(Scope.Thread)
+    public static class ColdScanner {
+        private DependencyScanner scanner;
+        private List<CompilationUnit> compilationUnits;
+
+        @Setup(Level.Invocation)
+        public void setUp(ScannerStagesBenchmark benchmark) {
+            this.scanner = new DependencyScanner(benchmark.project.getSourceRoot().toString(), false);
+            this.compilationUnits = benchmark.parseAll(this.scanner);
+        }
+    }
+
+    @Benchmark
+    public void resolve(ColdScanner cold, Blackhole blackhole) {
+        for (CompilationUnit cu : cold.compilationUnits) {
+            final TypeResolutionCache.Context context = cold.scanner.getResolutionCache().contextOf(cu);
+            cu.findAll(ClassOrInterfaceDeclaration.class).forEach(classDec ->
+                    blackhole.consume(cold.scanner.extractResolvedDependencies(classDec, context)));
+        }
+    }
+
+    @Benchmark
+    public int filter() {
+        int included = 0;
+        for (String typeName : this.typeNames) {
+            if (this.scanner.toInclude(typeName))
+                included++;
+        }
+        return included;
+    }
+
+    @Benchmark
+    public Object analyzeEndToEnd() {
+        return new DependencyScanner(this.project.getSourceRoot().toString(), false)
+                .analyze(this.project.getSourceRoot().toString())
+                .toList()
+                .blockingGet();
+    }
+
+    // Files in flight on the computation scheduler, in any order or in the order of the files
+    @Benchmark
+    public Object analyzeParallelEndToEnd() {
+        return new DependencyScanner(this.project.getSourceRoot().toString(), false)
+                .analyze(this.project.getSourceRoot().toString(), Runtime.getRuntime().availableProcessors(), false)
+                .toList()
+                .blockingGet();
+    }
+
+    @Benchmark
+    public Object analyzeParallelOrderedEndToEnd() {
+        return new DependencyScanner(this.project.getSourceRoot().toString(), false)
+                .analyze(this.project.getSourceRoot().toString(), Runtime.getRuntime().availableProcessors(), true)
+                .toList()
+                .blockingGet();
+    }
+
+    @Benchmark
+    public Object analyzeShallowEndToEnd() {
+        return new DependencyScanner(this.project.getSourceRoot().toString(), false)
+                .analyzeShallow(this.project.getSourceRoot().toString())
+                .toList()
+                .blockingGet();
+    }
+
+    private List<CompilationUnit> parseAll(DependencyScanner scanner) {
+        final List<CompilationUnit> compilationUnits = new ArrayList<>();
+        for (String source : this.project.getSources())
+            compilationUnits.add(scanner.parse(source));
+        return compilationUnits;
+    }
+}
@@ -0,0 +1,52 @@
+package lib;
+
+import bench.SyntheticProject;
+import io.vertx.core.Vertx;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the analysis of a large synthetic project by {@link DependencyAnalyserLib}, with the stages of every
+ * file run as separate tasks on the worker pool of Vert.x, or fused in one task on a virtual thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 5)
+@Measurement(iterations = 10, time = 5)
+@Fork(3)
+public class ExecutionModeBenchmark {
+    @Param({"workerPool", "virtualThreads"})
+    private String mode;
+    @Param("40")
+    private int packages;
+    @Param("100")
+    private int classesPerPackage;
+    @Param("8")
+    private int referencesPerClass;
+
+    private SyntheticProject project;
+    private Vertx vertx;
+    private DependencyAnalyserLib lib;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        this.project = SyntheticProject.create(this.packages, this.classesPerPackage, this.referencesPerClass);
+        this.vertx = Vertx.vertx();
+        this.lib = new DependencyAnalyserLib(this.vertx, new AnalyserOptions()
+                .setVirtualThreads(this.mode.equals("virtualThreads")));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.vertx.close().toCompletionStage().toCompletableFuture().join();
+        this.project.delete();
+    }
+
+    @Benchmark
+    public Object projectEndToEnd() {
+        return this.lib.getProjectDependencies(this.project.getRoot()).toCompletionStage().toCompletableFuture().join();
+    }
+}
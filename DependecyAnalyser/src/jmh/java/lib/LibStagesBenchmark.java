@@ -0,0 +1,134 @@
+package lib;
+
+import bench.SyntheticProject;
+import com.github.javaparser.ast.CompilationUnit;
+import io.vertx.core.Vertx;
+import lib.bytecode.BytecodeReader;
+import lib.parser.ParserPool;
+import lib.parser.TypeTokenLexer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the stages of {@link DependencyAnalyserLib}, every operation processing the whole synthetic project.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LibStagesBenchmark {
+    @Param("10")
+    private int packages;
+    @Param("50")
+    private int classesPerPackage;
+    @Param("8")
+    private int referencesPerClass;
+
+    private SyntheticProject project;
+    private Vertx vertx;
+    private DependencyAnalyserLib lib;
+    private DependencyAnalyserLib shallowLib;
+    private ParserPool parsers;
+    private List<CompilationUnit> compilationUnits;
+    private List<String> typeNames;
+    private Path classesFolder;
+    private List<Path> classFiles;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        this.project = SyntheticProject.create(this.packages, this.classesPerPackage, this.referencesPerClass);
+        this.vertx = Vertx.vertx();
+        this.lib = new DependencyAnalyserLib(this.vertx);
+        this.shallowLib = new DependencyAnalyserLib(this.vertx, new AnalyserOptions().setShallow(true));
+        this.parsers = ParserPool.withDefaultConfiguration();
+        this.classesFolder = this.project.compile();
+        this.classFiles = BytecodeReader.classFiles(this.classesFolder);
+
+        this.compilationUnits = new ArrayList<>();
+        this.typeNames = new ArrayList<>();
+        for (String source : this.project.getSources()) {
+            final CompilationUnit cu = this.parsers.parse(source);
+            final Set<String> types = new HashSet<>();
+            new ClassOrInterfaceVisitor().visit(cu, types);
+            this.compilationUnits.add(cu);
+            this.typeNames.addAll(types);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.vertx.close().toCompletionStage().toCompletableFuture().join();
+        this.project.delete();
+    }
+
+    @Benchmark
+    public void readFiles(Blackhole blackhole) throws IOException {
+        for (Path file : this.project.getFiles())
+            blackhole.consume(Files.readAllBytes(file));
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) {
+        for (String source : this.project.getSources())
+            blackhole.consume(this.parsers.parse(source));
+    }
+
+    // Shallow mode: replaces both parse and visit
+    @Benchmark
+    public void lex(Blackhole blackhole) {
+        for (String source : this.project.getSources())
+            blackhole.consume(TypeTokenLexer.scan(source));
+    }
+
+    // Bytecode mode: replaces read, parse and visit, and needs no type solver
+    @Benchmark
+    public void readClassFiles(Blackhole blackhole) throws IOException {
+        for (Path classFile : this.classFiles)
+            blackhole.consume(BytecodeReader.readClassFile(classFile));
+    }
+
+    @Benchmark
+    public void visit(Blackhole blackhole) {
+        for (CompilationUnit cu : this.compilationUnits) {
+            final Set<String> types = new HashSet<>();
+            new ClassOrInterfaceVisitor().visit(cu, types);
+            blackhole.consume(types);
+        }
+    }
+
+    @Benchmark
+    public int filter() {
+        int included = 0;
+        for (String typeName : this.typeNames) {
+            if (this.lib.isDependencyToInclude(typeName))
+                included++;
+        }
+        return included;
+    }
+
+    @Benchmark
+    public Object projectEndToEnd() {
+        return this.lib.getProjectDependencies(this.project.getRoot()).toCompletionStage().toCompletableFuture().join();
+    }
+
+    @Benchmark
+    public Object projectEndToEndShallow() {
+        return this.shallowLib.getProjectDependencies(this.project.getRoot()).toCompletionStage().toCompletableFuture().join();
+    }
+
+    @Benchmark
+    public Object projectEndToEndCompiled() {
+        return this.lib.getCompiledProjectDependencies(this.classesFolder).toCompletionStage().toCompletableFuture().join();
+    }
+}
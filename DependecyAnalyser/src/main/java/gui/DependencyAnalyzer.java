@@ -1,30 +1,81 @@
 package gui;
 
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.disposables.Disposable;
+import io.reactivex.rxjava3.exceptions.UndeliverableException;
+import io.reactivex.rxjava3.plugins.RxJavaPlugins;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import lib.metrics.AnalysisMetrics;
+import lib.metrics.MetricsVerticle;
+import lib.metrics.QueueDepth;
+import lib.metrics.Stage;
+import lib.project.ProjectLayout;
+import lib.snapshot.DependencySnapshot;
+
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
+import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.*;
 import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public class DependencyAnalyzer extends JFrame {
+    // Maximum refresh rate of the graph and of the counters, can be set with -Danalyzer.fps=<n>
+    private static final int FRAMES_PER_SECOND = Integer.getInteger("analyzer.fps", 30);
+    private static final int MAX_BATCH_SIZE = 2000;
+    // Maximum number of files analysed at the same time, can be set with -Danalyzer.parallelism=<n>
+    private static final int PARALLELISM = Integer.getInteger("analyzer.parallelism", Runtime.getRuntime().availableProcessors());
+
+    // With -Danalyzer.graphThread=true, the graph is built in a thread of its own instead of the GUI thread
+    private static final boolean GRAPH_THREAD = Boolean.getBoolean("analyzer.graphThread");
+
+    // Port of the local HTTP metrics endpoint, only served when set with -Danalyzer.metrics.port=<port>
+    private static final Integer METRICS_PORT = Integer.getInteger("analyzer.metrics.port");
+    private static final String SNAPSHOT_EXTENSION = "deps";
+
     private JButton startBtn;
     private JButton selectFolderBtn;
+    private JButton openSnapshotBtn;
+    private JButton saveSnapshotBtn;
     private JPanel topPanel;
     private JPanel bottomPanel;
     private JPanel centralPanel;
     private JTextField pathField;
     private JLabel classesAnalyzedLabel;
     private JLabel dependenciesFoundLabel;
+    private JLabel cacheLabel;
+    private JLabel cyclesLabel;
+    private JCheckBox groupByPackageBox;
+    private JComboBox<GraphLayout> layoutBox;
+    private JCheckBox watchBox;
+    private JCheckBox shallowBox;
     private int classesCounter = 0;
     private int dependenciesCounter = 0;
+    private boolean countersChanged = false;
+    private Timer countersTimer;
     private DependencyGraph dependencyGraph;
     private DependencyScanner dependencyScanner;
+    private Disposable analysisSubscription;
+    private Disposable watchSubscription;
+    private String analyzedPath;
+    // Number of analyses and snapshots started: the batches of a run are dropped once another one started
+    private int runsStarted = 0;
+    private boolean graphErrorShown = false;
+    private final AnalysisMetrics metrics = AnalysisMetrics.shared();
+    private final QueueDepth pendingResults = metrics.queue(AnalysisMetrics.GUI_PENDING_QUEUE);
 
     public DependencyAnalyzer() {
-        this.dependencyGraph = new DependencyGraph();
+        this.dependencyGraph = new DependencyGraph(GraphLayout.SPRING_BOX, GRAPH_THREAD);
+        this.dependencyGraph.setErrorHandler(this::showGraphError);
         this.dependencyScanner = null;
 
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        setSize(800, 600);
+        setSize(1100, 600);
         setLayout(new BorderLayout());
 
         this.topPanel = new JPanel(new BorderLayout(10,10));
@@ -35,9 +86,17 @@ public class DependencyAnalyzer extends JFrame {
         this.selectFolderBtn.addActionListener(e -> chooseFolder());
         this.startBtn = new JButton("Start");
         this.startBtn.addActionListener(e -> startAnalysis());
+        this.openSnapshotBtn = new JButton("Open snapshot");
+        this.openSnapshotBtn.addActionListener(e -> openSnapshot());
+        this.saveSnapshotBtn = new JButton("Save snapshot");
+        this.saveSnapshotBtn.addActionListener(e -> saveSnapshot());
+        JPanel actionsPanel = new JPanel(new GridLayout(1, 3, 5, 0));
+        actionsPanel.add(startBtn);
+        actionsPanel.add(openSnapshotBtn);
+        actionsPanel.add(saveSnapshotBtn);
         this.topPanel.add(selectFolderBtn, BorderLayout.WEST);
         this.topPanel.add(pathField, BorderLayout.CENTER);
-        this.topPanel.add(startBtn, BorderLayout.EAST);
+        this.topPanel.add(actionsPanel, BorderLayout.EAST);
 
         this.centralPanel = new JPanel(new BorderLayout());
         this.centralPanel.setBorder(BorderFactory.createEmptyBorder());
@@ -47,17 +106,42 @@ public class DependencyAnalyzer extends JFrame {
         JComponent graphComponent = dependencyGraph.getGraphComponent();
         this.centralPanel.add(graphComponent, BorderLayout.CENTER);
 
-        this.bottomPanel = new JPanel(new GridLayout(1,2));
+        this.bottomPanel = new JPanel(new GridLayout(1,8));
         this.bottomPanel.setPreferredSize(new Dimension(800, 35));
         this.bottomPanel.setBorder(new EmptyBorder(10, 10, 10, 10));
         this.classesAnalyzedLabel = new JLabel("Classes/Interfaces analyzed: ");
         this.dependenciesFoundLabel = new JLabel("Dependencies found: ");
         this.bottomPanel.add(classesAnalyzedLabel);
+        this.cacheLabel = new JLabel("Cache hits/misses: ");
         this.bottomPanel.add(dependenciesFoundLabel);
+        this.bottomPanel.add(cacheLabel);
+        this.cyclesLabel = new JLabel("Cycles: ");
+        this.bottomPanel.add(cyclesLabel);
+        this.groupByPackageBox = new JCheckBox("Group by package", dependencyGraph.isGroupByPackage());
+        this.groupByPackageBox.addActionListener(e -> dependencyGraph.setGroupByPackage(groupByPackageBox.isSelected()));
+        this.bottomPanel.add(groupByPackageBox);
+        this.layoutBox = new JComboBox<>(GraphLayout.values());
+        this.layoutBox.setToolTipText("Layout of the graph: LinLog groups the classes that depend on each other");
+        this.layoutBox.addActionListener(e -> dependencyGraph.setLayout((GraphLayout) layoutBox.getSelectedItem()));
+        this.bottomPanel.add(layoutBox);
+        this.watchBox = new JCheckBox("Watch for changes");
+        this.watchBox.addActionListener(e -> {
+            if (watchBox.isSelected()) startWatching(dependencyScanner, analyzedPath);
+            else stopWatching();
+        });
+        this.bottomPanel.add(watchBox);
+        this.shallowBox = new JCheckBox("Quick overview");
+        this.shallowBox.setToolTipText("Approximate analysis without symbol resolution, several times faster");
+        this.bottomPanel.add(shallowBox);
 
         add(topPanel, BorderLayout.NORTH);
         add(centralPanel, BorderLayout.CENTER);
         add(bottomPanel, BorderLayout.SOUTH);
+        add(new StatsPanel(metrics), BorderLayout.EAST);
+
+        // Counters are refreshed at most once per frame, no matter how many batches arrive in between
+        this.countersTimer = new Timer(1000 / FRAMES_PER_SECOND, e -> refreshCounters());
+        this.countersTimer.start();
 
         setVisible(true);
     }
@@ -69,39 +153,190 @@ public class DependencyAnalyzer extends JFrame {
             return;
         }
 
+        // A new run supersedes the previous one, which stops after its current stage and never reaches the graph
+        stopAnalysis();
+        stopWatching();
+        clearResults();
+
+        this.dependencyScanner = null;
+        this.analyzedPath = null;
+        final int run = ++runsStarted;
+        final boolean shallow = shallowBox.isSelected();
+
+        // The whole project, up to the outermost module, gives the source roots the types are resolved from. Finding
+        // them and loading the cache read the disk, so the scanner is built in the background, then given to the GUI
+        // thread before its first batch
+        analysisSubscription = Single.fromCallable(() -> new DependencyScanner(
+                        ProjectLayout.findProjectRoot(new File(folderPath).toPath()).toFile().getAbsolutePath()))
+                .subscribeOn(Schedulers.io())
+                .flatMapObservable(scanner -> {
+                    SwingUtilities.invokeLater(() -> {
+                        if (isCurrentRun(run)) dependencyScanner = scanner;
+                    });
+                    return shallow ? scanner.analyzeShallow(folderPath) : scanner.analyze(folderPath, PARALLELISM, false);
+                })
+                .doOnNext(result -> pendingResults.enqueued(1))
+                .buffer(1000 / FRAMES_PER_SECOND, TimeUnit.MILLISECONDS, MAX_BATCH_SIZE)
+                .filter(batch -> !batch.isEmpty())
+                .subscribe(batch -> SwingUtilities.invokeLater(() -> {
+                            if (isCurrentRun(run)) updateGUIWithResults(batch);
+                        }),
+                        error -> SwingUtilities.invokeLater(() -> {
+                            if (isCurrentRun(run))
+                                JOptionPane.showMessageDialog(this, "Error analyzing dependencies: " + error.getMessage());
+                        }),
+                        () -> SwingUtilities.invokeLater(() -> {
+                            if (!isCurrentRun(run)) return;
+                            updateCacheStats(dependencyScanner);
+                            analyzedPath = folderPath;
+                            if (watchBox.isSelected()) startWatching(dependencyScanner, folderPath);
+                        }));
+    }
+
+    // A snapshot supersedes the running analysis like a new run, but it has no sources to watch
+    private void openSnapshot() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileFilter(new FileNameExtensionFilter("Dependency snapshots", SNAPSHOT_EXTENSION));
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File snapshotFile = chooser.getSelectedFile();
+
+        stopAnalysis();
+        stopWatching();
+        clearResults();
+        this.dependencyScanner = null;
+        this.analyzedPath = null;
+        final int run = ++runsStarted;
+
+        analysisSubscription = DependencyScanner.readSnapshot(snapshotFile.toPath())
+                .doOnNext(result -> pendingResults.enqueued(1))
+                .buffer(1000 / FRAMES_PER_SECOND, TimeUnit.MILLISECONDS, MAX_BATCH_SIZE)
+                .filter(batch -> !batch.isEmpty())
+                .subscribe(batch -> SwingUtilities.invokeLater(() -> {
+                            if (isCurrentRun(run)) updateGUIWithResults(batch);
+                        }),
+                        error -> SwingUtilities.invokeLater(() -> {
+                            if (isCurrentRun(run))
+                                JOptionPane.showMessageDialog(this, "Error opening snapshot: " + error.getMessage());
+                        }));
+    }
+
+    private boolean isCurrentRun(int run) {
+        return run == runsStarted;
+    }
+
+    private void saveSnapshot() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileFilter(new FileNameExtensionFilter("Dependency snapshots", SNAPSHOT_EXTENSION));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File selectedFile = chooser.getSelectedFile();
+        File snapshotFile = selectedFile.getName().contains(".")
+                ? selectedFile
+                : new File(selectedFile.getParentFile(), selectedFile.getName() + "." + SNAPSHOT_EXTENSION);
+
+        // The graph is read on its own thread, the file is written in the background
+        String projectName = pathField.getText().isEmpty() ? snapshotFile.getName() : new File(pathField.getText()).getName();
+        dependencyGraph.toSnapshot(projectName, snapshot -> Completable.fromAction(() -> snapshot.write(snapshotFile.toPath()))
+                .subscribeOn(Schedulers.io())
+                .subscribe(() -> {
+                        },
+                        error -> SwingUtilities.invokeLater(() ->
+                                JOptionPane.showMessageDialog(this, "Error saving snapshot: " + error.getMessage()))));
+    }
+
+    // A failing layout fails at every step: a single dialog is shown at a time
+    private void showGraphError(Throwable error) {
+        if (graphErrorShown) return;
+        graphErrorShown = true;
+        JOptionPane.showMessageDialog(this, "Error updating the dependency graph: " + error.getMessage());
+        graphErrorShown = false;
+    }
+
+    private void clearResults() {
         dependencyGraph.reset();
         classesCounter = 0;
         dependenciesCounter = 0;
+        countersChanged = false;
         classesAnalyzedLabel.setText("Classes/Interfaces analyzed: 0");
         dependenciesFoundLabel.setText("Dependencies found: 0");
+        cacheLabel.setText("Cache hits/misses: ");
+        cyclesLabel.setText("Cycles: ");
+        metrics.reset();
+    }
+
+    // Once a path is analysed, its changes are applied to the graph as they are saved
+    private void startWatching(DependencyScanner scanner, String path) {
+        stopWatching();
+        if (scanner == null || path == null) return;
 
-        File projectRoot = new File(folderPath).getAbsoluteFile();
-        while (projectRoot.getParentFile() != null && !new File(projectRoot, "src").exists()) {
-            projectRoot = projectRoot.getParentFile();
+        watchSubscription = scanner.watch(path)
+                .subscribe(deltas -> SwingUtilities.invokeLater(() -> {
+                            final long start = metrics.start();
+                            dependenciesCounter += dependencyGraph.applyDeltas(deltas);
+                            metrics.record(Stage.GRAPH_APPLY, start, false);
+                            countersChanged = true;
+                            updateCacheStats(scanner);
+                        }),
+                        error -> SwingUtilities.invokeLater(() ->
+                                JOptionPane.showMessageDialog(this, "Error watching for changes: " + error.getMessage())));
+    }
+
+    private void stopAnalysis() {
+        if (analysisSubscription != null) {
+            analysisSubscription.dispose();
+            analysisSubscription = null;
         }
+        // Results of the disposed run still buffered are dropped
+        pendingResults.dequeued(pendingResults.getQueued());
+    }
 
-        this.dependencyScanner = new DependencyScanner(projectRoot.getAbsolutePath());
+    private void stopWatching() {
+        if (watchSubscription != null) {
+            watchSubscription.dispose();
+            watchSubscription = null;
+        }
+    }
 
-        dependencyScanner.analyze(folderPath)
-                .subscribe(result -> SwingUtilities.invokeLater(() -> updateGUIWithResult(result)),
-                        error -> SwingUtilities.invokeLater(() ->
-                                JOptionPane.showMessageDialog(this, "Error analyzing dependencies: " + error.getMessage())));
+    private void updateCacheStats(DependencyScanner scanner) {
+        cacheLabel.setText(String.format("Cache hits/misses: %d/%d, resolutions cached: %.0f%%",
+                scanner.getCache().getHits(), scanner.getCache().getMisses(), 100 * scanner.getResolutionCache().getHitRate()));
+        dependenciesFoundLabel.setToolTipText("<html>Dependency filter matches:<br>"
+                + scanner.getFilter().getStatistics().replace("\n", "<br>") + "</html>");
+    }
+
+    private void updateGUIWithResults(List<DependencyResult> results) {
+        for (DependencyResult result : results) {
+            classesCounter++;
+            dependenciesCounter += result.dependencies.size();
+        }
+        countersChanged = true;
+
+        final long start = metrics.start();
+        dependencyGraph.addDependencies(results);
+        metrics.record(Stage.GRAPH_APPLY, start, false);
+        pendingResults.dequeued(results.size());
     }
 
-    private void updateGUIWithResult(DependencyResult result) {
-        classesCounter++;
-        dependenciesCounter += result.dependencies.size();
+    private void refreshCounters() {
+        if (!countersChanged) return;
+        countersChanged = false;
+
         classesAnalyzedLabel.setText("Classes/Interfaces analyzed: " + classesCounter);
         dependenciesFoundLabel.setText("Dependencies found: " + dependenciesCounter);
-
-        for (String dep : result.dependencies) {
-            System.out.println("Found: " + result.className + " -> " + dep);
-            dependencyGraph.addDependency(result.className, dep);
-        }
+        dependencyGraph.highlightCycles();
+        cyclesLabel.setText(dependencyGraph.getCycleSummary());
     }
 
     public static void main(String[] args) {
         System.setProperty("org.graphstream.ui", "swing");
+        // Failures of a file analysed while its run is superseded have no subscriber left to report to
+        RxJavaPlugins.setErrorHandler(error -> {
+            if (!(error instanceof UndeliverableException))
+                Thread.currentThread().getUncaughtExceptionHandler().uncaughtException(Thread.currentThread(), error);
+        });
+        if (METRICS_PORT != null) {
+            Vertx.vertx().deployVerticle(new MetricsVerticle(), new DeploymentOptions().setConfig(new JsonObject().put("port", METRICS_PORT)))
+                    .onFailure(e -> System.err.println("Could not serve the analysis metrics: " + e.getMessage()));
+        }
         SwingUtilities.invokeLater(DependencyAnalyzer::new);
     }
 
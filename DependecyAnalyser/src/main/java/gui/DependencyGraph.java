@@ -1,23 +1,102 @@
 package gui;
 
+import lib.analytics.IncrementalAnalytics;
+import lib.snapshot.DependencySnapshot;
+import lib.watch.EdgeDelta;
+import org.graphstream.graph.Edge;
+import org.graphstream.graph.Element;
 import org.graphstream.graph.Graph;
+import org.graphstream.graph.Node;
 import org.graphstream.graph.implementations.SingleGraph;
-import org.graphstream.ui.layout.springbox.implementations.LinLog;
-import org.graphstream.ui.layout.springbox.implementations.SpringBox;
+import org.graphstream.ui.layout.springbox.BarnesHutLayout;
 import org.graphstream.ui.swing_viewer.SwingViewer;
 import org.graphstream.ui.swing_viewer.ViewPanel;
 import org.graphstream.ui.view.Viewer;
+import org.graphstream.ui.view.ViewerListener;
+import org.graphstream.ui.view.ViewerPipe;
 
 import javax.swing.*;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
+/**
+ * Dependency graph view. The full class graph is kept in a backing model, and only its visible level of detail
+ * is pushed to the renderer: when grouping by package, the classes of a package are collapsed into a single
+ * package node, and the dependencies between collapsed packages are aggregated into weighted edges.
+ * Clicking a package node expands it into its classes, clicking a class collapses its package back.
+ * Classes and packages that are part of a dependency cycle, and the edges of their cycles, are highlighted. The
+ * dependencies between a class and the classes nested in it are not cycles.
+ * <p>
+ * The layout runs in a thread of its own. Once it converges, every node is frozen, and new nodes only restart the
+ * layout around them: the new nodes and their neighbours move, the rest of the graph stays in place.
+ * By default the graph and its model live in the GUI thread; with the graph in another thread, they live in a
+ * thread of their own, fed through a proxy pipe to the viewer, so that building the graph never delays painting.
+ * The public methods can then be called from the GUI thread, they are run on the graph thread, their results and
+ * their errors are handed back to the GUI thread.
+ */
 public class DependencyGraph {
+    private static final String PACKAGE_PREFIX = "package:";
+    private static final String DEFAULT_PACKAGE = "(default)";
+    private static final String FROZEN = "layout.frozen";
+    private static final int PUMP_PERIOD_MS = 50;
+    // Stabilization limits of the layout runner: it computes as long as the stabilization is not above the limit
+    private static final double RUNNING = 1;
+    private static final double STOPPED = 1e-9;
+
     private Graph graph;
     private Viewer viewer;
     private ViewPanel viewPanel;
+    private ViewerPipe viewerPipe;
+    private Timer pumpTimer;
+    // Null when the graph lives in the GUI thread
+    private final ScheduledExecutorService graphThread;
+    private volatile BarnesHutLayout layout;
+    // Nodes the layout still moves, frozen once it converges, and its step when they last changed
+    private final Set<String> movingNodes = new HashSet<>();
+    private int movingSinceStep = 0;
+
+    // Backing model: every class dependency, even if it is not rendered
+    private final Map<String, Set<String>> classDependencies = new LinkedHashMap<>();
+    // The classes that were analysed, with or without dependencies, unlike those only known as dependencies
+    private final Set<String> analysedClasses = new HashSet<>();
+    private final Map<String, String> packages = new HashMap<>();
+    private final Set<String> expandedPackages = new HashSet<>();
+    // Number of class dependencies aggregated by every rendered edge
+    private final Map<String, Integer> edgeWeights = new HashMap<>();
+    private volatile boolean groupByPackage = true;
+    // Cycles are tracked at both levels of detail as dependencies arrive, and highlighted at most once per refresh
+    private final IncrementalAnalytics classCycles = new IncrementalAnalytics();
+    private final IncrementalAnalytics packageCycles = new IncrementalAnalytics();
+    private final Set<String> highlighted = new HashSet<>();
+    // Rendered nodes whose highlighting, or that of their edges, may have changed since the last refresh
+    private final Set<String> restyled = new HashSet<>();
+    private boolean cyclesChanged = false;
+    private boolean restyleAll = false;
+    private volatile String cycleSummary = cycleSummary(0, 0);
+    // Called on the GUI thread with the errors of the graph thread
+    private volatile Consumer<Throwable> errorHandler = error -> {
+        throw new IllegalStateException("Error updating the dependency graph", error);
+    };
 
     public DependencyGraph() {
+        this(GraphLayout.SPRING_BOX, false);
+    }
+
+    /**
+     * @param graphLayout the layout engine, that can be changed later
+     * @param graphInAnotherThread true to keep the graph and its model in a thread of their own, instead of the GUI thread
+     */
+    public DependencyGraph(GraphLayout graphLayout, boolean graphInAnotherThread) {
         graph = new SingleGraph("Dependencies");
         graph.setStrict(false);
         graph.setAutoCreate(true);
@@ -26,12 +105,74 @@ public class DependencyGraph {
         graph.setAttribute("ui.quality");
         graph.setAttribute("ui.antialias");
 
-        var layout = new SpringBox(false);
-        layout.setQuality(1);
-        layout.setForce(1.0);
+        viewer = new SwingViewer(graph, graphInAnotherThread
+                ? Viewer.ThreadingModel.GRAPH_IN_ANOTHER_THREAD
+                : Viewer.ThreadingModel.GRAPH_IN_GUI_THREAD);
+        layout = newLayout(graphLayout);
+        viewer.enableAutoLayout(layout);
+
+        viewerPipe = viewer.newViewerPipe();
+        viewerPipe.addViewerListener(new ViewerListener() {
+            @Override
+            public void viewClosed(String viewName) {
+            }
+
+            @Override
+            public void buttonPushed(String id) {
+                toggle(id);
+            }
 
-        viewer = new SwingViewer(graph, Viewer.ThreadingModel.GRAPH_IN_GUI_THREAD);
+            @Override
+            public void buttonReleased(String id) {
+            }
+
+            @Override
+            public void mouseOver(String id) {
+            }
+
+            @Override
+            public void mouseLeft(String id) {
+            }
+        });
+
+        // The clicks of the viewer, and the convergence of the layout, are checked on the thread of the graph
+        if (graphInAnotherThread) {
+            graphThread = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "dependency-graph");
+                thread.setDaemon(true);
+                return thread;
+            });
+            // A failed run would cancel the next ones
+            graphThread.scheduleWithFixedDelay(() -> reportingErrors(this::pump), PUMP_PERIOD_MS, PUMP_PERIOD_MS, TimeUnit.MILLISECONDS);
+        } else {
+            graphThread = null;
+            pumpTimer = new Timer(PUMP_PERIOD_MS, e -> pump());
+            pumpTimer.start();
+        }
+    }
+
+    /**
+     * Set the handler of the errors raised while the graph is updated in its own thread, called on the GUI thread.
+     * By default, the errors are thrown on the GUI thread.
+     */
+    public void setErrorHandler(Consumer<Throwable> errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * Change the layout engine: the graph is laid out again from scratch. To be called from the GUI thread.
+     */
+    public void setLayout(GraphLayout graphLayout) {
+        viewer.disableAutoLayout();
+        layout = newLayout(graphLayout);
         viewer.enableAutoLayout(layout);
+        onGraphThread(() -> graph.nodes().forEach(this::unfreeze));
+    }
+
+    private static BarnesHutLayout newLayout(GraphLayout graphLayout) {
+        BarnesHutLayout layout = graphLayout.create();
+        layout.setStabilizationLimit(RUNNING);
+        return layout;
     }
 
     public JComponent getGraphComponent() {
@@ -39,7 +180,7 @@ public class DependencyGraph {
             viewPanel = (ViewPanel) viewer.addDefaultView(false);
             viewPanel.setPreferredSize(new java.awt.Dimension(2000, 2000));
 
-            graph.setAttribute("ui.stylesheet", styleSheet());
+            onGraphThread(() -> graph.setAttribute("ui.stylesheet", styleSheet()));
             viewPanel.revalidate();
             viewPanel.repaint();
         }
@@ -51,33 +192,374 @@ public class DependencyGraph {
 
 
     public void addDependency(String from, String to) {
-        addNodeIfAbsent(from);
-        addNodeIfAbsent(to);
+        onGraphThread(() -> addClassDependency(from, to));
+    }
+
+    private void addClassDependency(String from, String to) {
+        analysedClasses.add(from);
+        if (!classDependencies.computeIfAbsent(from, k -> new LinkedHashSet<>()).add(to)) return;
+        classDependencies.computeIfAbsent(to, k -> new LinkedHashSet<>());
+        if (!isNesting(from, to)) classCycles.addEdge(from, to);
+        if (!packageOf(from).equals(packageOf(to))) packageCycles.addEdge(packageOf(from), packageOf(to));
+        cyclesChanged = true;
+
+        renderDependency(from, to);
+        restyled.add(visibleNode(from));
+        restyled.add(visibleNode(to));
+    }
+
+    public void addDependencies(List<DependencyResult> results) {
+        onGraphThread(() -> {
+            for (DependencyResult result : results) {
+                analysedClasses.add(result.className);
+                classDependencies.computeIfAbsent(result.className, k -> new LinkedHashSet<>());
+                for (String dep : result.dependencies) {
+                    addClassDependency(result.className, dep);
+                }
+            }
+        });
+    }
+
+    /**
+     * Remove a class dependency, and the rendered edge once no dependency it aggregates is left.
+     * The classes stay in the graph.
+     */
+    public void removeDependency(String from, String to) {
+        onGraphThread(() -> removeClassDependency(from, to));
+    }
+
+    private void removeClassDependency(String from, String to) {
+        Set<String> deps = classDependencies.get(from);
+        if (deps == null || !deps.remove(to)) return;
+        if (!isNesting(from, to)) classCycles.removeEdge(from, to);
+        packageCycles.removeEdge(packageOf(from), packageOf(to));
+        cyclesChanged = true;
+
+        String visibleFrom = visibleNode(from);
+        String visibleTo = visibleNode(to);
+        restyled.add(visibleFrom);
+        restyled.add(visibleTo);
+        if (visibleFrom.equals(visibleTo)) return;
 
-        String edgeId = from + "->" + to;
-        if (graph.getEdge(edgeId) == null) {
-            graph.addEdge(edgeId, from, to, true);
+        String edgeId = visibleFrom + "->" + visibleTo;
+        Integer weight = edgeWeights.computeIfPresent(edgeId, (id, w) -> w > 1 ? w - 1 : null);
+        Edge edge = graph.getEdge(edgeId);
+        if (edge == null) return;
+        if (weight == null) {
+            graph.removeEdge(edge);
+        } else if (weight > 1) {
+            edge.setAttribute("ui.label", weight);
+            edge.setAttribute("ui.size", 1 + Math.log(weight));
+        } else {
+            edge.removeAttribute("ui.label");
+            edge.removeAttribute("ui.size");
         }
     }
 
-    private void addNodeIfAbsent(String fullName) {
-        if (graph.getNode(fullName) != null) return;
-        String simpleName = simpleName(fullName);
+    /**
+     * Apply the changes found by a watch of the analysed sources.
+     *
+     * @return the net number of dependencies added
+     */
+    public int applyDeltas(List<EdgeDelta> deltas) {
+        int added = 0;
+        for (EdgeDelta delta : deltas) {
+            added += delta.isAdded() ? 1 : -1;
+        }
+        onGraphThread(() -> {
+            for (EdgeDelta delta : deltas) {
+                lib.watch.Edge edge = delta.getEdge();
+                if (delta.isAdded()) addClassDependency(edge.getFrom(), edge.getTo());
+                else removeClassDependency(edge.getFrom(), edge.getTo());
+            }
+        });
+        return added;
+    }
 
-        var node = graph.addNode(fullName);
-        node.setAttribute("ui.label", simpleName);
+    /**
+     * Take a snapshot of the class dependencies of the graph, with the packages the classes are grouped by.
+     * Every analysed class is saved, even without dependencies. Classes that are only known as dependencies are not
+     * saved as classes, their dependents bring them back.
+     * To be called from the GUI thread, the snapshot is handed back to it without waiting for the graph thread.
+     */
+    public void toSnapshot(String projectName, Consumer<DependencySnapshot> snapshotHandler) {
+        callOnGraphThread(() -> {
+            DependencySnapshot.Builder builder = new DependencySnapshot.Builder(projectName);
+            classDependencies.forEach((className, deps) -> {
+                if (!analysedClasses.contains(className)) return;
+                String packageName = packageOf(className);
+                builder.addClass(className, packageName.equals(DEFAULT_PACKAGE) ? "" : packageName, deps, false);
+            });
+            return builder.build();
+        }, snapshotHandler);
     }
 
-    private String simpleName(String full) {
-        int lastDot = full.lastIndexOf('.');
-        return (lastDot >= 0) ? full.substring(lastDot + 1) : full;
+    /**
+     * Choose whether classes are collapsed into their packages, or all rendered.
+     */
+    public void setGroupByPackage(boolean groupByPackage) {
+        if (this.groupByPackage == groupByPackage) return;
+        this.groupByPackage = groupByPackage;
+        onGraphThread(() -> {
+            expandedPackages.clear();
+            render();
+        });
+    }
+
+    public boolean isGroupByPackage() {
+        return groupByPackage;
     }
 
     public void reset() {
+        onGraphThread(() -> {
+            classDependencies.clear();
+            analysedClasses.clear();
+            packages.clear();
+            expandedPackages.clear();
+            classCycles.clear();
+            packageCycles.clear();
+            clearRendering();
+        });
+    }
+
+    /**
+     * Highlight the rendered nodes and edges that are part of a dependency cycle, if dependencies changed since
+     * the last call. Only the nodes of the changed dependencies and of the components merged or split since then
+     * are checked, with their edges, and only the elements whose highlighting changes are updated.
+     */
+    public void highlightCycles() {
+        onGraphThread(this::highlightChangedCycles);
+    }
+
+    private void highlightChangedCycles() {
+        if (!cyclesChanged) return;
+        cyclesChanged = false;
+
+        List<String> changedClasses = classCycles.drainChangedNodes();
+        List<String> changedPackages = packageCycles.drainChangedNodes();
+        if (restyleAll || !changedClasses.isEmpty() || !changedPackages.isEmpty())
+            cycleSummary = cycleSummary(classCycles.getCyclicNodeCount(), packageCycles.getCyclicNodeCount());
+
+        if (restyleAll) {
+            restyleAll = false;
+            restyled.clear();
+            graph.nodes().forEach(this::restyleNode);
+            graph.edges().forEach(this::restyleEdge);
+            return;
+        }
+
+        // A class in a collapsed package is not rendered, and the package of an expanded one is not either
+        restyled.addAll(changedClasses);
+        changedPackages.forEach(packageName -> restyled.add(PACKAGE_PREFIX + packageName));
+        for (String id : restyled) {
+            Node node = graph.getNode(id);
+            if (node == null) continue;
+            restyleNode(node);
+            node.edges().forEach(this::restyleEdge);
+        }
+        restyled.clear();
+    }
+
+    private void restyleNode(Node node) {
+        String id = node.getId();
+        boolean inCycle = id.startsWith(PACKAGE_PREFIX)
+                ? packageCycles.isInCycle(id.substring(PACKAGE_PREFIX.length()))
+                : classCycles.isInCycle(id);
+        if (inCycle == highlighted.contains(id)) return;
+        String uiClass = id.startsWith(PACKAGE_PREFIX) ? "package" : null;
+        setHighlighted(node, uiClass, inCycle);
+    }
+
+    private void restyleEdge(Edge edge) {
+        String from = edge.getSourceNode().getId();
+        String to = edge.getTargetNode().getId();
+        boolean inCycle = !from.startsWith(PACKAGE_PREFIX) && !to.startsWith(PACKAGE_PREFIX)
+                ? classCycles.isInCycle(from, to)
+                : packageCycles.isInCycle(visiblePackage(from), visiblePackage(to));
+        if (inCycle != highlighted.contains(edge.getId())) setHighlighted(edge, null, inCycle);
+    }
+
+    /**
+     * Get the number of classes and packages in dependency cycles, as of the last highlighting.
+     */
+    public String getCycleSummary() {
+        return cycleSummary;
+    }
+
+    private static String cycleSummary(int classes, int packages) {
+        return String.format("Cycles: %d classes, %d packages", classes, packages);
+    }
+
+    private void pump() {
+        viewerPipe.pump();
+        freezeIfConverged();
+    }
+
+    // The convergence is decided here rather than by the layout runner, which would stop as soon as new nodes are
+    // added to a converged layout: the energies only describe the moving nodes once a full buffer of steps moved them
+    private void freezeIfConverged() {
+        BarnesHutLayout current = layout;
+        if (!movingNodes.isEmpty()) {
+            if (current.getSteps() < movingSinceStep + current.getEnergies().getBufferSize()) return;
+            if (current.getEnergies().getStabilization() < GraphLayout.STABILIZATION_LIMIT) return;
+
+            for (String id : movingNodes) {
+                Node node = graph.getNode(id);
+                if (node != null) node.setAttribute(FROZEN);
+            }
+            movingNodes.clear();
+        }
+        current.setStabilizationLimit(STOPPED);
+    }
+
+    // New nodes, and the nodes they are linked to, move until the layout converges again
+    private void unfreeze(Node node) {
+        layout.setStabilizationLimit(RUNNING);
+        movingSinceStep = layout.getSteps();
+        if (movingNodes.add(node.getId())) node.removeAttribute(FROZEN);
+    }
+
+    // Runs on the graph thread, or right away when the graph lives in the GUI thread
+    private void onGraphThread(Runnable task) {
+        if (graphThread == null) {
+            task.run();
+            return;
+        }
+        graphThread.execute(() -> reportingErrors(task));
+    }
+
+    // The result is handed to the GUI thread, which never waits for the graph thread
+    private <T> void callOnGraphThread(Supplier<T> task, Consumer<T> resultHandler) {
+        if (graphThread == null) {
+            resultHandler.accept(task.get());
+            return;
+        }
+        graphThread.execute(() -> reportingErrors(() -> {
+            T result = task.get();
+            SwingUtilities.invokeLater(() -> resultHandler.accept(result));
+        }));
+    }
+
+    private void reportingErrors(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            SwingUtilities.invokeLater(() -> errorHandler.accept(e));
+        }
+    }
+
+    private void toggle(String nodeId) {
+        if (!groupByPackage) return;
+
+        if (nodeId.startsWith(PACKAGE_PREFIX))
+            expandedPackages.add(nodeId.substring(PACKAGE_PREFIX.length()));
+        else
+            expandedPackages.remove(packageOf(nodeId));
+        render();
+    }
+
+    private void render() {
+        clearRendering();
+        classDependencies.forEach((from, deps) -> deps.forEach(to -> renderDependency(from, to)));
+        highlightChangedCycles();
+    }
+
+    private void clearRendering() {
         graph.clear();
+        edgeWeights.clear();
+        highlighted.clear();
+        movingNodes.clear();
+        restyled.clear();
+        cyclesChanged = true;
+        restyleAll = true;
         graph.setAttribute("ui.stylesheet", styleSheet());
     }
 
+    private void renderDependency(String from, String to) {
+        String visibleFrom = visibleNode(from);
+        String visibleTo = visibleNode(to);
+        boolean newFrom = addNodeIfAbsent(visibleFrom);
+        boolean newTo = addNodeIfAbsent(visibleTo);
+        if (visibleFrom.equals(visibleTo)) return;
+
+        String edgeId = visibleFrom + "->" + visibleTo;
+        int weight = edgeWeights.merge(edgeId, 1, Integer::sum);
+        Edge edge = graph.getEdge(edgeId);
+        if (edge == null) {
+            edge = graph.addEdge(edgeId, visibleFrom, visibleTo, true);
+            if (newFrom || newTo) {
+                unfreeze(edge.getSourceNode());
+                unfreeze(edge.getTargetNode());
+            }
+        }
+        if (weight > 1) {
+            edge.setAttribute("ui.label", weight);
+            edge.setAttribute("ui.size", 1 + Math.log(weight));
+        }
+    }
+
+    private void setHighlighted(Element element, String uiClass, boolean inCycle) {
+        if (inCycle) {
+            highlighted.add(element.getId());
+            element.setAttribute("ui.class", uiClass == null ? "cycle" : uiClass + ", cycle");
+        } else {
+            highlighted.remove(element.getId());
+            if (uiClass == null) element.removeAttribute("ui.class");
+            else element.setAttribute("ui.class", uiClass);
+        }
+    }
+
+    private String visiblePackage(String nodeId) {
+        return nodeId.startsWith(PACKAGE_PREFIX) ? nodeId.substring(PACKAGE_PREFIX.length()) : packageOf(nodeId);
+    }
+
+    private String visibleNode(String className) {
+        String packageName = packageOf(className);
+        return groupByPackage && !expandedPackages.contains(packageName) ? PACKAGE_PREFIX + packageName : className;
+    }
+
+    // A class and the classes nested in it share their source: their dependencies on each other are not cycles
+    private static boolean isNesting(String from, String to) {
+        return isNestedIn(from, to) || isNestedIn(to, from);
+    }
+
+    private static boolean isNestedIn(String className, String outerName) {
+        return className.length() > outerName.length() && className.startsWith(outerName)
+                && className.charAt(outerName.length()) == '.';
+    }
+
+    // The package is the prefix of the name before its first capitalized segment, so nested types stay in their package
+    private String packageOf(String className) {
+        return packages.computeIfAbsent(className, name -> {
+            int start = 0;
+            while (start < name.length() && !Character.isUpperCase(name.charAt(start))) {
+                int end = name.indexOf('.', start);
+                if (end < 0) break;
+                start = end + 1;
+            }
+            return start > 0 ? name.substring(0, start - 1) : DEFAULT_PACKAGE;
+        });
+    }
+
+    private boolean addNodeIfAbsent(String fullName) {
+        if (graph.getNode(fullName) != null) return false;
+
+        Node node = graph.addNode(fullName);
+        unfreeze(node);
+        if (fullName.startsWith(PACKAGE_PREFIX)) {
+            node.setAttribute("ui.label", fullName.substring(PACKAGE_PREFIX.length()));
+            node.setAttribute("ui.class", "package");
+        } else {
+            node.setAttribute("ui.label", simpleName(fullName));
+        }
+        return true;
+    }
+
+    private String simpleName(String full) {
+        int lastDot = full.lastIndexOf('.');
+        return (lastDot >= 0) ? full.substring(lastDot + 1) : full;
+    }
+
     private String styleSheet() {
         return " node {" +
                 "   shape: box;" +
@@ -91,10 +573,23 @@ public class DependencyGraph {
                 "   stroke-color: black;" +
                 "   fill-color: #d0e8ff;" +
                 "}" +
+                "node.package {" +
+                "   shape: rounded-box;" +
+                "   fill-color: #ffe2b0;" +
+                "}" +
+                "node.cycle {" +
+                "   stroke-color: #d00000;" +
+                "   stroke-width: 3px;" +
+                "}" +
                 "edge {" +
                 "   arrow-shape: arrow;" +
                 "   arrow-size: 6px, 4px;" +
                 "   fill-color: #666;" +
+                "   size-mode: dyn-size;" +
+                "   text-size: 12;" +
+                "}" +
+                "edge.cycle {" +
+                "   fill-color: #d00000;" +
                 "}";
     }
 }
@@ -1,13 +1,33 @@
 package gui;
 
+import lib.graph.SymbolSet;
+
 import java.util.List;
 
 public class DependencyResult {
     public final String className;
+    // Unmodifiable view over the interned names of the dependencies
     public final List<String> dependencies;
+    private final SymbolSet dependencySymbols;
+    private final boolean approximate;
+
+    public DependencyResult(String className, SymbolSet dependencies) {
+        this(className, dependencies, false);
+    }
+
+    public DependencyResult(String className, SymbolSet dependencies, boolean approximate) {
+        this.approximate = approximate;
+        this.className = dependencies.getSymbols().nameOf(dependencies.getSymbols().intern(className));
+        this.dependencySymbols = dependencies;
+        this.dependencies = dependencies.asList();
+    }
+
+    public SymbolSet getDependencySymbols() {
+        return dependencySymbols;
+    }
 
-    public DependencyResult(String className, List<String> dependencies) {
-        this.className = className;
-        this.dependencies = dependencies;
+    // True if the result comes from the shallow analysis, and may be refined by a full one
+    public boolean isApproximate() {
+        return approximate;
     }
 }
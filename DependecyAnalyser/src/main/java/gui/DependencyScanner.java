@@ -1,13 +1,13 @@
 package gui;
 
 import com.github.javaparser.ParserConfiguration;
-import com.github.javaparser.StaticJavaParser;
 import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.TypeDeclaration;
 import com.github.javaparser.ast.type.ClassOrInterfaceType;
 import com.github.javaparser.ast.type.Type;
 import com.github.javaparser.resolution.Resolvable;
-import com.github.javaparser.resolution.TypeSolver;
 import com.github.javaparser.resolution.declarations.ResolvedReferenceTypeDeclaration;
 import com.github.javaparser.resolution.types.ResolvedType;
 import com.github.javaparser.symbolsolver.JavaSymbolSolver;
@@ -17,21 +17,69 @@ import com.github.javaparser.symbolsolver.resolution.typesolvers.JavaParserTypeS
 import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
 
 import io.reactivex.rxjava3.core.Observable;
-import io.reactivex.rxjava3.core.ObservableSource;
-import io.reactivex.rxjava3.functions.Function;
 import io.reactivex.rxjava3.schedulers.Schedulers;
+import lib.bytecode.BytecodeReader;
+import lib.bytecode.CompiledClass;
+import lib.cache.AnalysisCache;
+import lib.filter.DependencyFilter;
+import lib.graph.SymbolSet;
+import lib.graph.SymbolTable;
+import lib.metrics.AnalysisMetrics;
+import lib.metrics.QueueDepth;
+import lib.metrics.Stage;
+import lib.parser.ParserPool;
+import lib.parser.ShallowSource;
+import lib.parser.TypeTokenLexer;
+import lib.project.ProjectLayout;
+import lib.reports.ClassDepsReport;
+import lib.snapshot.DependencySnapshot;
+import lib.watch.Edge;
+import lib.watch.EdgeDelta;
+import lib.watch.EdgeIndex;
+import lib.watch.SourceTreeWatcher;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.*;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 public class DependencyScanner {
-
-    private final TypeSolver typeSolver;
+    private static final Duration WATCH_DEBOUNCE = Duration.ofMillis(200);
+    private static final Duration WATCH_MAX_DELAY = Duration.ofSeconds(2);
+
+    private final List<Path> sourceRoots;
+    private volatile ParserPool parsers;
+    private final AnalysisCache cache;
+    // The types declared by every source file, read with the lexer, and their fingerprint: the resolved names of a
+    // file also depend on the types the other files declare, so the fingerprint is part of the cache keys
+    private final Map<Path, DeclaredTypes> declaredTypes = new ConcurrentHashMap<>();
+    private volatile String declaredTypesHash = "";
+    private final DependencyFilter filter;
+    private final TypeResolutionCache resolutionCache = new TypeResolutionCache();
+    // The names of the results, interned once for the scanner and released with it
+    private final SymbolTable symbols = new SymbolTable(1024);
+    // Dependencies found in every analysed file, to turn the re-analysis of a file into graph changes
+    private final EdgeIndex edgeIndex = new EdgeIndex();
+    private final AnalysisMetrics metrics = AnalysisMetrics.shared();
+    // Whether every analysed path holds compiled classes only, found once per path since it walks the whole tree
+    private final Map<Path, Boolean> compiledPaths = new ConcurrentHashMap<>();
 
     public DependencyScanner(String projectRootPath) {
+        this(projectRootPath, true);
+    }
+
+    public DependencyScanner(String projectRootPath, boolean useCache) {
+        this(projectRootPath, useCache, DependencyFilter.fromConfiguration());
+    }
+
+    public DependencyScanner(String projectRootPath, boolean useCache, DependencyFilter filter) {
+        this.filter = filter;
         final File projectRootFile = new File(projectRootPath);
 
         final File sourceRoot;
@@ -42,17 +90,171 @@ public class DependencyScanner {
         else
             throw new IllegalArgumentException("Not valid path " + projectRootPath);
 
-        this.typeSolver = new CombinedTypeSolver(
-                new ReflectionTypeSolver(),
-                new JavaParserTypeSolver(sourceRoot)
-        );
+        // The type solvers span all the source roots of all the modules of the project, so that the types of the
+        // other modules and of the test roots are resolved too
+        try {
+            sourceRoots = ProjectLayout.discover(sourceRoot.toPath()).getSourceRoots();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not discover the source roots of " + projectRootPath, e);
+        }
+
+        this.parsers = newParsers(sourceRoots);
+
+        // The resolved names depend on the source roots, so every project has its own cache
+        final String rootPath = sourceRoot.getAbsolutePath();
+        this.cache = !useCache ? AnalysisCache.disabled() : AnalysisCache.load(AnalysisCache.defaultLocation("gui-" + AnalysisCache.hash(rootPath).substring(0, 16)),
+                cacheFingerprint(sourceRoots, filter));
+    }
+
+    public AnalysisCache getCache() {
+        return cache;
+    }
+
+    public DependencyFilter getFilter() {
+        return filter;
+    }
+
+    public TypeResolutionCache getResolutionCache() {
+        return resolutionCache;
+    }
+
+    public AnalysisMetrics getMetrics() {
+        return metrics;
+    }
+
+    // Every thread gets its own symbol solver: the type solvers cache and annotate the parsed sources,
+    // so they can't be shared between threads nor between scanners
+    private static ParserPool newParsers(List<Path> sourceRoots) {
+        return new ParserPool(() -> {
+            final CombinedTypeSolver typeSolver = new CombinedTypeSolver(new ReflectionTypeSolver());
+            for (Path root : sourceRoots)
+                typeSolver.add(new JavaParserTypeSolver(root));
 
-        JavaSymbolSolver solver = new JavaSymbolSolver(typeSolver);
-        StaticJavaParser.getConfiguration()
-                .setSymbolResolver(solver);
+            return ParserPool.defaultConfiguration()
+                    .setSymbolResolver(new JavaSymbolSolver(typeSolver));
+        });
     }
 
     public Observable<DependencyResult> analyze(String path) {
+        return compiledOr(path, () -> javaFiles(path)
+                .flatMap(this::analyzeFileReactive)
+                .doOnComplete(this::saveCache)
+                .observeOn(Schedulers.single()));
+    }
+
+    /**
+     * Analyse a project, package or class with several files in flight on the computation scheduler. A file is read,
+     * parsed and resolved on a single thread, with the parser and the symbol solver of that thread, so no solver is
+     * ever shared; the bounded threads of the scheduler also bound the number of solvers.
+     *
+     * @param parallelism the maximum number of files analysed at the same time, at least 1
+     * @param fileOrdered true to emit the results in the order of the files, false to emit them as soon as ready
+     */
+    public Observable<DependencyResult> analyze(String path, int parallelism, boolean fileOrdered) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("The parallelism must be at least 1, got " + parallelism);
+
+        return compiledOr(path, () -> {
+            final Observable<File> files = javaFiles(path);
+            final Observable<DependencyResult> results = fileOrdered
+                    ? files.concatMapEager(file -> analyzeFileReactive(file).subscribeOn(Schedulers.computation()),
+                            parallelism, Observable.bufferSize())
+                    : files.flatMap(file -> analyzeFileReactive(file).subscribeOn(Schedulers.computation()), parallelism);
+            return results
+                    .doOnComplete(this::saveCache)
+                    .observeOn(Schedulers.single());
+        });
+    }
+
+    /**
+     * Analyse a project, package or class with a lexer instead of the parser and the symbol solver: much faster,
+     * but the results are approximate, with one result per file. Watching the path afterwards refines the files
+     * that change with the full analysis.
+     */
+    public Observable<DependencyResult> analyzeShallow(String path) {
+        return compiledOr(path, () -> javaFiles(path)
+                .flatMap(file -> Observable.fromCallable(() -> analyzeFileShallow(file))
+                        .doOnNext(results -> edgeIndex.update(normalized(file), edgesOf(results)))
+                        .flatMap(Observable::fromIterable)
+                        .onErrorResumeNext(throwable -> {
+                            System.err.println("Error reading the file " + file.getAbsolutePath() + ": " + throwable.getMessage());
+                            return Observable.empty();
+                        }))
+                .observeOn(Schedulers.single()));
+    }
+
+    // The analysis of the compiled classes if the path holds class files only, else the given one. Which one is
+    // decided on the io scheduler when subscribed, never on the calling thread, e.g. the EDT: it may walk the tree
+    private Observable<DependencyResult> compiledOr(String path, Supplier<Observable<DependencyResult>> sources) {
+        return Observable.defer(() -> isCompiled(path) ? analyzeCompiled(path) : sources.get())
+                .subscribeOn(Schedulers.io());
+    }
+
+    /**
+     * Analyse compiled classes: a jar, a class file or a folder of class files. Class files are read without the
+     * parser nor the symbol solver, and their names are exact. Anonymous and local classes are merged into the
+     * class that declares them, nested classes have their own result and are not dependencies of their enclosing
+     * class, as in the sources.
+     */
+    public Observable<DependencyResult> analyzeCompiled(String path) {
+        final Path compiled = Paths.get(path);
+        if (!Files.exists(compiled))
+            return Observable.error(new IllegalArgumentException("File not found at path " + path));
+
+        edgeIndex.clear();
+        return Observable.fromCallable(() -> readCompiled(compiled))
+                .subscribeOn(Schedulers.io())
+                .flatMapIterable(classes -> {
+                    final Map<String, Set<String>> classesDependencies = new TreeMap<>();
+                    for (CompiledClass compiledClass : classes)
+                        classesDependencies.computeIfAbsent(compiledClass.getName(), name -> new HashSet<>())
+                                .addAll(compiledClass.getReferencedTypes());
+
+                    final List<DependencyResult> results = new ArrayList<>();
+                    classesDependencies.forEach((className, types) -> results.add(new DependencyResult(className,
+                            SymbolSet.of(symbols, types.stream().filter(this::toInclude).collect(Collectors.toList())))));
+                    return results;
+                })
+                .observeOn(Schedulers.single());
+    }
+
+    private boolean isCompiled(String path) {
+        return compiledPaths.computeIfAbsent(Paths.get(path).toAbsolutePath().normalize(), DependencyScanner::hasClassesOnly);
+    }
+
+    // A jar, a class file, or a folder with class files and no sources
+    private static boolean hasClassesOnly(Path candidate) {
+        if (BytecodeReader.isJar(candidate) || BytecodeReader.isClassFile(candidate))
+            return true;
+        if (!Files.isDirectory(candidate))
+            return false;
+
+        try (final java.util.stream.Stream<Path> paths = Files.walk(candidate)) {
+            boolean hasClassFiles = false;
+            for (Path file : (Iterable<Path>) paths::iterator) {
+                if (file.toString().endsWith(".java"))
+                    return false;
+                hasClassFiles |= BytecodeReader.isClassFile(file);
+            }
+            return hasClassFiles;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static List<CompiledClass> readCompiled(Path compiled) throws IOException {
+        if (BytecodeReader.isJar(compiled))
+            return BytecodeReader.readJar(compiled);
+        if (Files.isDirectory(compiled)) {
+            final List<CompiledClass> classes = new ArrayList<>();
+            for (Path classFile : BytecodeReader.classFiles(compiled))
+                classes.add(BytecodeReader.readClassFile(classFile));
+            return classes;
+        }
+        return List.of(BytecodeReader.readClassFile(compiled));
+    }
+
+    private Observable<File> javaFiles(String path) {
         final File file = new File(path);
         if (!file.exists())
             return Observable.error(new IllegalArgumentException("File not found at path " + path));
@@ -65,18 +267,227 @@ public class DependencyScanner {
         else
             return Observable.error(new IllegalArgumentException("No Java project/package/class found in " + path));
 
+        // Files listed and not analysed yet are the queue of the io scheduler, those left when disposed are dropped
+        final QueueDepth queue = metrics.queue(AnalysisMetrics.RX_IO_QUEUE);
+        final AtomicInteger notStarted = new AtomicInteger();
+        edgeIndex.clear();
         return Observable.fromIterable(files)
+                .doOnSubscribe(disposable -> {
+                    refreshDeclaredTypes();
+                    notStarted.set(files.size());
+                    queue.enqueued(files.size());
+                })
+                .doOnNext(next -> {
+                    notStarted.decrementAndGet();
+                    queue.dequeued(1);
+                })
+                .doFinally(() -> queue.dequeued(notStarted.getAndSet(0)))
+                .subscribeOn(Schedulers.io());
+    }
+
+    /**
+     * Read the types declared by the source files that changed since the last call, with the lexer. When the
+     * declared types of the project change, the resolved names cached in memory are dropped, and so are the symbol
+     * solvers and the sources they parsed; the cache entries on disk are keyed by the new fingerprint.
+     */
+    void refreshDeclaredTypes() throws IOException {
+        final Set<Path> files = new HashSet<>();
+        for (Path root : sourceRoots) {
+            if (!Files.isDirectory(root))
+                continue;
+            try (final java.util.stream.Stream<Path> paths = Files.walk(root)) {
+                paths.filter(file -> file.toString().endsWith(".java")).forEach(files::add);
+            }
+        }
+        declaredTypes.keySet().retainAll(files);
+        for (Path file : files) {
+            final DeclaredTypes previous = declaredTypes.get(file);
+            final long lastModified = Files.getLastModifiedTime(file).toMillis();
+            final long size = Files.size(file);
+            if (previous != null && previous.lastModified == lastModified && previous.size == size)
+                continue;
+
+            final ShallowSource source = TypeTokenLexer.scan(Files.readString(file));
+            final List<String> names = new ArrayList<>();
+            for (String declared : source.getDeclaredTypes())
+                names.add(source.qualify(declared));
+            declaredTypes.put(file, new DeclaredTypes(lastModified, size, names));
+        }
+
+        final SortedSet<String> names = new TreeSet<>();
+        for (DeclaredTypes types : declaredTypes.values())
+            names.addAll(types.names);
+        final String hash = AnalysisCache.hash(String.join("\n", names));
+        if (!hash.equals(declaredTypesHash)) {
+            if (!declaredTypesHash.isEmpty()) {
+                resolutionCache.clear();
+                parsers = newParsers(sourceRoots);
+            }
+            declaredTypesHash = hash;
+        }
+    }
+
+    // The content hash of a file, bound to the types declared by the project
+    private String cacheKey(String source) {
+        return AnalysisCache.hash(source) + ":" + declaredTypesHash;
+    }
+
+    private static String cacheFingerprint(List<Path> sourceRoots, DependencyFilter filter) {
+        return "gui-v4|" + sourceRoots + "|" + ParserPool.defaultConfiguration().getLanguageLevel() + "|" + filter.getFingerprint();
+    }
+
+    /**
+     * Read the results saved in a snapshot file, without parsing any source: the names are interned once, and
+     * every class of the snapshot becomes a result.
+     */
+    public static Observable<DependencyResult> readSnapshot(Path snapshotFile) {
+        return Observable.fromCallable(() -> DependencySnapshot.read(snapshotFile))
+                .concatMapIterable(snapshot -> {
+                    final SymbolTable symbols = new SymbolTable(snapshot.classCount());
+                    final int[] ids = snapshot.intern(symbols);
+                    final List<DependencyResult> results = new ArrayList<>(snapshot.classCount());
+                    for (int c = 0; c < snapshot.classCount(); c++)
+                        results.add(new DependencyResult(snapshot.getQualifiedName(c),
+                                snapshot.getQualifiedDependencies(c, symbols, ids), snapshot.isApproximate(c)));
+                    return results;
+                })
+                .subscribeOn(Schedulers.io());
+    }
+
+    /**
+     * Watch a project, package or class for changes, after it was analysed: whenever Java files change, only those
+     * files are analysed again, and the dependencies they added or removed are emitted. Files that can't be parsed
+     * keep their previous dependencies. Disposing the subscription stops the watch.
+     */
+    public Observable<List<EdgeDelta>> watch(String path) {
+        final File file = new File(path);
+        if (!file.exists())
+            return Observable.error(new IllegalArgumentException("File not found at path " + path));
+
+        final Path watched = normalized(file);
+        final Path root = file.isDirectory() ? watched : watched.getParent();
+
+        return Observable.<Set<Path>>create(emitter -> {
+                    final SourceTreeWatcher watcher = new SourceTreeWatcher(root, WATCH_DEBOUNCE, WATCH_MAX_DELAY, emitter::onNext);
+                    emitter.setCancellable(watcher::close);
+                    watcher.start();
+                })
                 .subscribeOn(Schedulers.io())
-                .flatMap(this::parseFileReactive)
-                .flatMap(cu -> Observable.fromIterable(cu.findAll(ClassOrInterfaceDeclaration.class)))
-                .map(this::extractResolvedDependencies)
+                .doOnNext(changes -> refreshDeclaredTypes())
+                .concatMapSingle(changes -> Observable.fromIterable(changes)
+                        .filter(changed -> file.isDirectory() || changed.equals(watched))
+                        .flatMap(changed -> reanalyzeFile(changed).subscribeOn(Schedulers.io()))
+                        .<List<EdgeDelta>>collect(ArrayList::new, List::addAll)
+                        .doOnSuccess(deltas -> saveCache()))
+                .filter(deltas -> !deltas.isEmpty())
                 .observeOn(Schedulers.single());
     }
 
-    private List<File> getJavaFiles(String folderPath) {
+    private Observable<List<EdgeDelta>> reanalyzeFile(Path file) {
+        if (!Files.exists(file))
+            return Observable.just(edgeIndex.remove(file));
+
+        return analyzeFile(file.toFile())
+                .map(results -> edgeIndex.update(file, edgesOf(results)))
+                .onErrorResumeNext(throwable -> {
+                    System.err.println("Error analyzing the file " + file + ": " + throwable.getMessage());
+                    return Observable.empty();
+                });
+    }
+
+    private Observable<DependencyResult> analyzeFileReactive(File file) {
+        return analyzeFile(file)
+                .doOnNext(results -> edgeIndex.update(normalized(file), edgesOf(results)))
+                .flatMap(Observable::fromIterable)
+                .onErrorResumeNext(throwable -> {
+                    System.err.println("Error analyzing the file " + file.getAbsolutePath() + ": " + throwable.getMessage());
+                    return Observable.empty();
+                });
+    }
+
+    // The results of all the classes of a file, failing if the file can't be read or parsed. Disposing the
+    // subscription stops the analysis between its stages, so a superseded scan releases its thread after one stage
+    private Observable<List<DependencyResult>> analyzeFile(File file) {
+        return Observable.create(emitter -> {
+            final String source = metrics.timed(Stage.READ_FILE, () -> Files.readString(file.toPath())).call();
+            final String contentHash = cacheKey(source);
+            final Optional<List<ClassDepsReport>> cached = cache.get(file.toPath(), contentHash);
+            if (cached.isPresent()) {
+                emitter.onNext(cached.get().stream().map(DependencyScanner::toResult).collect(Collectors.toList()));
+                emitter.onComplete();
+                return;
+            }
+
+            if (emitter.isDisposed()) return;
+            final CompilationUnit cu = metrics.timed(Stage.PARSE, () -> parse(source)).call();
+
+            if (emitter.isDisposed()) return;
+            final List<DependencyResult> results = metrics.timed(Stage.VISIT, () -> {
+                final TypeResolutionCache.Context context = resolutionCache.contextOf(cu);
+                return cu.findAll(ClassOrInterfaceDeclaration.class)
+                        .stream()
+                        .filter(classDec -> !classDec.isLocalClassDeclaration())
+                        .map(classDec -> extractResolvedDependencies(classDec, context))
+                        .collect(Collectors.toList());
+            }).call();
+            cache.put(file.toPath(), contentHash,
+                    results.stream().map(this::toReport).collect(Collectors.toList()));
+            emitter.onNext(results);
+            emitter.onComplete();
+        });
+    }
+
+    // Cached full results are still preferred, approximate ones are never cached
+    private List<DependencyResult> analyzeFileShallow(File file) throws Exception {
+        final String source = metrics.timed(Stage.READ_FILE, () -> Files.readString(file.toPath())).call();
+        final Optional<List<ClassDepsReport>> cached = cache.get(file.toPath(), cacheKey(source));
+        if (cached.isPresent())
+            return cached.get().stream().map(DependencyScanner::toResult).collect(Collectors.toList());
+
+        // A result per declared type, nested ones included, as the full analysis
+        final ShallowSource shallowSource = TypeTokenLexer.scan(source);
+        final List<DependencyResult> results = new ArrayList<>();
+        for (String declaredType : shallowSource.getDeclaredTypes()) {
+            final String className = shallowSource.qualify(declaredType);
+            final List<String> dependencies = shallowSource.getReferencedTypes(declaredType).stream()
+                    .filter(type -> toInclude(type) && !type.equals(className))
+                    .collect(Collectors.toList());
+            results.add(new DependencyResult(className, SymbolSet.of(symbols, dependencies), true));
+        }
+        return results;
+    }
+
+    private static Set<Edge> edgesOf(List<DependencyResult> results) {
+        final Set<Edge> edges = new HashSet<>();
+        for (DependencyResult result : results)
+            for (String dependency : result.dependencies)
+                edges.add(new Edge(result.className, dependency));
+        return edges;
+    }
+
+    private static Path normalized(File file) {
+        return file.toPath().toAbsolutePath().normalize();
+    }
+
+    private void saveCache() {
         try {
-            return Files.walk(Paths.get(folderPath))
-                    .filter(path -> path.toString().endsWith(".java"))
+            cache.save();
+        } catch (IOException e) {
+            System.err.println("Error saving the analysis cache: " + e.getMessage());
+        }
+    }
+
+    private ClassDepsReport toReport(DependencyResult result) {
+        return new ClassDepsReport(symbols, result.className, "", result.getDependencySymbols());
+    }
+
+    private static DependencyResult toResult(ClassDepsReport report) {
+        return new DependencyResult(report.getClassOrInterfaceName(), report.getQualifiedDependencies());
+    }
+
+    private List<File> getJavaFiles(String folderPath) {
+        try (final java.util.stream.Stream<Path> paths = Files.walk(Paths.get(folderPath))) {
+            return paths.filter(path -> path.toString().endsWith(".java"))
                     .map(Path::toFile)
                     .collect(Collectors.toList());
         } catch (IOException e) {
@@ -85,26 +496,43 @@ public class DependencyScanner {
         }
     }
 
-    private Observable<CompilationUnit> parseFileReactive(File file) {
-        return Observable.fromCallable(() -> StaticJavaParser.parse(file))
-                .onErrorResumeNext(throwable -> {
-                    System.err.println("Error parsing the file " + file.getAbsolutePath() + ": " + throwable.getMessage());
-                    return Observable.empty();
-                });
-    }
+    private static class DeclaredTypes {
+        private final long lastModified;
+        private final long size;
+        private final List<String> names;
 
-    private String resolveTypeName(ClassOrInterfaceType type, String fallbackName) {
-        try {
-            return type.resolve().asReferenceType().getQualifiedName();
-        } catch (Exception ignored) {
-            return type.getScope()
-                    .map(scope -> scope.asString() + "." + fallbackName)
-                    .orElse(fallbackName);
+        private DeclaredTypes(long lastModified, long size, List<String> names) {
+            this.lastModified = lastModified;
+            this.size = size;
+            this.names = names;
         }
     }
 
+    // Package-private stages, also measured by the benchmarks
+    CompilationUnit parse(String source) {
+        return parsers.parse(source);
+    }
+
+    // Types the symbol solver can't resolve count as failures, and fall back on the name as written
+    private String resolveTypeName(TypeResolutionCache.Context context, ClassOrInterfaceType type, String fallbackName) {
+        final long start = metrics.start();
+        final String qualifiedName = resolutionCache.resolve(context, type.getNameWithScope(), () -> {
+            try {
+                return type.resolve().asReferenceType().getQualifiedName();
+            } catch (Exception ignored) {
+                metrics.recordFailure(Stage.RESOLVE);
+                return null;
+            }
+        }, () -> type.getScope()
+                .map(scope -> scope.asString() + "." + fallbackName)
+                .orElse(fallbackName));
+        metrics.record(Stage.RESOLVE, start, false);
+        return qualifiedName;
+    }
 
-    private DependencyResult extractResolvedDependencies(ClassOrInterfaceDeclaration classDec) {
+    // The dependencies of a class are those of its own body, as in its class file: its nested classes have their own
+    // result and are not dependencies, its anonymous and local classes are part of it
+    DependencyResult extractResolvedDependencies(ClassOrInterfaceDeclaration classDec, TypeResolutionCache.Context context) {
         String classFQN;
         try {
             classFQN = classDec.resolve().getQualifiedName();
@@ -112,8 +540,7 @@ public class DependencyScanner {
             classFQN = classDec.getNameAsString();
         }
 
-        final String classFQNFinal = classFQN;
-
+        final String nestedPrefix = classFQN + ".";
         Set<String> dependencies = new HashSet<>();
 
         Set<String> typeParams = classDec.getTypeParameters()
@@ -121,63 +548,35 @@ public class DependencyScanner {
                 .map(tp -> tp.getNameAsString())
                 .collect(Collectors.toSet());
 
-
-        //Dipendencies from the class body
-        classDec.findAll(ClassOrInterfaceType.class).forEach(type -> {
+        // Dependencies from the class declaration and body, extends and implements included
+        for (ClassOrInterfaceType type : classDec.findAll(ClassOrInterfaceType.class)) {
             String typeName = type.getNameAsString();
 
-            // Excluding type parameters (T,U...)
-            if (typeParams.contains(typeName)) return;
+            // Excluding type parameters (T,U...) and the types of the nested classes
+            if (typeParams.contains(typeName) || enclosingMemberType(type) != classDec) continue;
 
-            String qualifiedName = resolveTypeName(type, typeName);
-            if (toInclude(qualifiedName) && !qualifiedName.equals(classFQNFinal)) {
+            String qualifiedName = resolveTypeName(context, type, typeName);
+            if (toInclude(qualifiedName) && !qualifiedName.equals(classFQN) && !qualifiedName.startsWith(nestedPrefix)) {
                 dependencies.add(qualifiedName);
             }
-        });
-
-
-        //Dependencies from extend (superclass)
-        classDec.getExtendedTypes().forEach(extendedType -> {
-            String qualifiedName = resolveTypeName(extendedType, extendedType.getNameAsString());
-            if (toInclude(qualifiedName) && !qualifiedName.equals(classFQNFinal)) {
-                dependencies.add(qualifiedName);
-            }
-        });
-
-        //Dependencies from implements (interface)
-        classDec.getImplementedTypes().forEach(implementedType -> {
-            String qualifiedName = resolveTypeName(implementedType, implementedType.getNameAsString());
-            if (toInclude(qualifiedName) && !qualifiedName.equals(classFQNFinal)) {
-                dependencies.add(qualifiedName);
-            }
-        });
+        }
 
-        return new DependencyResult(classFQN, new ArrayList<>(dependencies));
+        return new DependencyResult(classFQN, SymbolSet.of(symbols, dependencies));
     }
 
-
-
-    //Method to exclude types and packages from the dependencies analysis
-    private boolean toInclude(String qualifiedName) {
-        List<String> excludedPackages = Arrays.asList(
-                "java.lang", "java.util", "java.io", "java.math",
-                "java.time", "java.text", "java.nio", "java.net",
-                "javafx", "org.graphstream"
-        );
-
-        Set<String> excludedTypes = new HashSet<>(Arrays.asList(
-                "String", "Object", "Throwable", "Exception", "RuntimeException", "Error"
-        ));
-
-        for (String prefix : excludedPackages) {
-            if (qualifiedName.startsWith(prefix)) {
-                return false;
+    // The innermost top-level or member type containing a node, skipping the local classes
+    private static Node enclosingMemberType(Node node) {
+        for (Optional<Node> parent = node.getParentNode(); parent.isPresent(); parent = parent.get().getParentNode()) {
+            if (parent.get() instanceof TypeDeclaration) {
+                final TypeDeclaration<?> type = (TypeDeclaration<?>) parent.get();
+                if (type.isTopLevelType() || type.isNestedType()) return type;
             }
         }
+        return null;
+    }
 
-        if (excludedTypes.contains(qualifiedName)) {
-            return false;
-        }
-        return true;
+    //Method to exclude types and packages from the dependencies analysis
+    boolean toInclude(String qualifiedName) {
+        return filter.test(qualifiedName);
     }
 }
@@ -0,0 +1,45 @@
+package gui;
+
+import org.graphstream.ui.layout.springbox.BarnesHutLayout;
+import org.graphstream.ui.layout.springbox.implementations.LinLog;
+import org.graphstream.ui.layout.springbox.implementations.SpringBox;
+
+/**
+ * Layout engines of the {@link DependencyGraph}. Both are force-directed: SpringBox spreads the nodes evenly,
+ * LinLog groups the densely connected ones, so packages and modules of a dependency graph show as clusters.
+ */
+public enum GraphLayout {
+    SPRING_BOX("Spring box") {
+        @Override
+        BarnesHutLayout create() {
+            SpringBox layout = new SpringBox(false);
+            layout.setQuality(1);
+            layout.setForce(1.0);
+            return layout;
+        }
+    },
+    LIN_LOG("LinLog") {
+        @Override
+        BarnesHutLayout create() {
+            LinLog layout = new LinLog(false);
+            layout.setQuality(1);
+            return layout;
+        }
+    };
+
+    // Stabilization of the energies, in [0..1], above which a layout is converged and stops until the graph changes
+    static final double STABILIZATION_LIMIT = 0.9;
+
+    private final String displayName;
+
+    GraphLayout(String displayName) {
+        this.displayName = displayName;
+    }
+
+    abstract BarnesHutLayout create();
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
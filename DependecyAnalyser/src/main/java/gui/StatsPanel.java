@@ -0,0 +1,58 @@
+package gui;
+
+import lib.metrics.AnalysisMetrics;
+import lib.metrics.LatencyHistogram;
+import lib.metrics.QueueDepth;
+import lib.metrics.Stage;
+
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * Live statistics of the analysis: latency percentiles, throughput and failures of every stage, and the depth of
+ * the queues. Refreshed twice per second while visible.
+ */
+public class StatsPanel extends JPanel {
+    private static final int REFRESH_MILLIS = 500;
+    private static final String[] QUEUES = {
+            AnalysisMetrics.RX_IO_QUEUE, AnalysisMetrics.GUI_PENDING_QUEUE, AnalysisMetrics.VERTX_WORKER_QUEUE
+    };
+
+    private final AnalysisMetrics metrics;
+    private final JTextArea statsArea;
+    private final Timer refreshTimer;
+
+    public StatsPanel(AnalysisMetrics metrics) {
+        super(new BorderLayout());
+        this.metrics = metrics;
+
+        statsArea = new JTextArea();
+        statsArea.setEditable(false);
+        statsArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 11));
+        statsArea.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+        setBorder(BorderFactory.createTitledBorder("Stats"));
+        add(statsArea, BorderLayout.CENTER);
+
+        refreshTimer = new Timer(REFRESH_MILLIS, e -> {
+            if (isShowing()) refresh();
+        });
+        refreshTimer.start();
+        refresh();
+    }
+
+    private void refresh() {
+        final StringBuilder text = new StringBuilder(String.format("%-10s %6s %7s %7s %5s%n", "stage", "ops/s", "p50 ms", "p99 ms", "fail"));
+        for (Stage stage : Stage.values()) {
+            final LatencyHistogram latencies = metrics.getLatencies(stage);
+            text.append(String.format("%-10s %6.0f %7.2f %7.2f %5d%n", stage.getMetricName(), metrics.getThroughput(stage),
+                    latencies.getPercentileNanos(50) / 1e6, latencies.getPercentileNanos(99) / 1e6, metrics.getFailures(stage)));
+        }
+
+        text.append(String.format("%n%-12s %6s %6s%n", "queue", "queued", "active"));
+        for (String name : QUEUES) {
+            final QueueDepth queue = metrics.queue(name);
+            text.append(String.format("%-12s %6d %6d%n", name, queue.getQueued(), queue.getActive()));
+        }
+        statsArea.setText(text.toString());
+    }
+}
@@ -0,0 +1,191 @@
+package gui;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.ImportDeclaration;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.expr.ObjectCreationExpr;
+import com.github.javaparser.ast.nodeTypes.NodeWithExtends;
+import com.github.javaparser.ast.nodeTypes.NodeWithImplements;
+import com.github.javaparser.ast.nodeTypes.NodeWithName;
+import com.github.javaparser.ast.type.ClassOrInterfaceType;
+import com.github.javaparser.ast.type.TypeParameter;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Memoizes the qualified names resolved by the symbol solver, failed resolutions included.
+ * A name is keyed by the part of its compilation unit context that can change its meaning: the single-type
+ * import of its first identifier, the compilation unit itself when it declares that identifier as a type or a type
+ * parameter, or otherwise the package, the on-demand imports and the supertypes of the compilation unit, whose
+ * member types are inherited.
+ */
+public class TypeResolutionCache {
+    private final Map<Key, String> resolutions = new ConcurrentHashMap<>();
+    private final AtomicLong compilationUnits = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * Create the resolution context of a compilation unit, to be used for all the names it contains.
+     *
+     * @param cu the compilation unit
+     * @return the resolution context
+     */
+    public Context contextOf(CompilationUnit cu) {
+        final String packageName = cu.getPackageDeclaration().map(NodeWithName::getNameAsString).orElse("");
+        final Map<String, String> singleImports = new HashMap<>();
+        final SortedSet<String> onDemandImports = new TreeSet<>();
+        for (ImportDeclaration importDec : cu.getImports()) {
+            if (importDec.isStatic())
+                continue;
+            if (importDec.isAsterisk())
+                onDemandImports.add(importDec.getNameAsString());
+            else
+                singleImports.put(importDec.getName().getIdentifier(), "import " + importDec.getNameAsString());
+        }
+
+        // The types and the type parameters of the unit only mean something in the unit
+        final Set<String> unitNames = new HashSet<>();
+        cu.findAll(TypeDeclaration.class).forEach(t -> unitNames.add(t.getNameAsString()));
+        cu.findAll(TypeParameter.class).forEach(p -> unitNames.add(p.getNameAsString()));
+
+        // The other names may be member types inherited from the supertypes, so the supertypes are part of their scope
+        final String unitScope = "unit " + compilationUnits.incrementAndGet();
+        final SortedSet<String> supertypes = new TreeSet<>();
+        boolean unitSupertype = false;
+        for (ClassOrInterfaceType supertype : supertypesOf(cu)) {
+            final String name = supertype.getNameWithScope();
+            final int dot = name.indexOf('.');
+            final String firstIdentifier = dot >= 0 ? name.substring(0, dot) : name;
+            unitSupertype |= unitNames.contains(firstIdentifier);
+            supertypes.add(singleImports.containsKey(firstIdentifier)
+                    ? singleImports.get(firstIdentifier) + name.substring(firstIdentifier.length())
+                    : name);
+        }
+        final String packageScope = unitSupertype
+                ? unitScope
+                : ("package " + packageName + " " + onDemandImports + " extends " + supertypes).intern();
+
+        return new Context(unitScope, packageScope, singleImports, unitNames);
+    }
+
+    // The extended and implemented types of the declared types, and the types of the anonymous classes
+    private static List<ClassOrInterfaceType> supertypesOf(CompilationUnit cu) {
+        final List<ClassOrInterfaceType> supertypes = new ArrayList<>();
+        for (TypeDeclaration<?> type : cu.findAll(TypeDeclaration.class)) {
+            if (type instanceof NodeWithExtends)
+                supertypes.addAll(((NodeWithExtends<?>) type).getExtendedTypes());
+            if (type instanceof NodeWithImplements)
+                supertypes.addAll(((NodeWithImplements<?>) type).getImplementedTypes());
+        }
+        for (ObjectCreationExpr creation : cu.findAll(ObjectCreationExpr.class)) {
+            if (creation.getAnonymousClassBody().isPresent())
+                supertypes.add(creation.getType());
+        }
+        return supertypes;
+    }
+
+    /**
+     * Get the qualified name of a type name, resolving it only if it was never resolved in an equivalent context.
+     *
+     * @param context the resolution context of the compilation unit containing the name
+     * @param name the simple or scoped name of the type
+     * @param resolver the resolution of the name, returning null if the name can't be resolved
+     * @param fallback the name to use if the name can't be resolved
+     * @return the resolved qualified name, or the fallback name
+     */
+    public String resolve(Context context, String name, Supplier<String> resolver, Supplier<String> fallback) {
+        final Key key = new Key(context.scopeOf(name), name);
+        final String cached = resolutions.get(key);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+
+        misses.increment();
+        String qualifiedName = resolver.get();
+        if (qualifiedName == null) {
+            failures.increment();
+            qualifiedName = fallback.get();
+        }
+        final String previous = resolutions.putIfAbsent(key, qualifiedName);
+        return previous != null ? previous : qualifiedName;
+    }
+
+    /**
+     * Drop all the resolved names, e.g. when the types declared by the project changed.
+     */
+    public void clear() {
+        resolutions.clear();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Get the number of resolutions that failed, and whose failure is now cached.
+     */
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    public double getHitRate() {
+        final long lookups = getHits() + getMisses();
+        return lookups == 0 ? 0 : (double) getHits() / lookups;
+    }
+
+    public static class Context {
+        private final String unitScope;
+        private final String packageScope;
+        private final Map<String, String> singleImports;
+        private final Set<String> unitNames;
+
+        private Context(String unitScope, String packageScope, Map<String, String> singleImports, Set<String> unitNames) {
+            this.unitScope = unitScope;
+            this.packageScope = packageScope;
+            this.singleImports = singleImports;
+            this.unitNames = unitNames;
+        }
+
+        private String scopeOf(String name) {
+            final int dot = name.indexOf('.');
+            final String firstIdentifier = dot >= 0 ? name.substring(0, dot) : name;
+            if (unitNames.contains(firstIdentifier))
+                return unitScope;
+            return singleImports.getOrDefault(firstIdentifier, packageScope);
+        }
+    }
+
+    private static class Key {
+        private final String scope;
+        private final String name;
+
+        private Key(String scope, String name) {
+            this.scope = scope;
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            final Key key = (Key) o;
+            return scope.equals(key.scope) && name.equals(key.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * scope.hashCode() + name.hashCode();
+        }
+    }
+}
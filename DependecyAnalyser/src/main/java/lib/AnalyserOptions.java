@@ -0,0 +1,158 @@
+package lib;
+
+import lib.cache.AnalysisCache;
+import lib.filter.DependencyFilter;
+import lib.metrics.AnalysisMetrics;
+
+/**
+ * Options of a {@link DependencyAnalyserLib}.
+ */
+public class AnalyserOptions {
+    public static final int DEFAULT_MAX_CONCURRENCY = 2 * Runtime.getRuntime().availableProcessors();
+    public static final int DEFAULT_VIRTUAL_THREADS_CONCURRENCY = Runtime.getRuntime().availableProcessors();
+
+    private AnalysisCache cache = AnalysisCache.disabled();
+    private int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+    private boolean shallow = false;
+    private boolean testSources = false;
+    private boolean virtualThreads = false;
+    private int virtualThreadsConcurrency = DEFAULT_VIRTUAL_THREADS_CONCURRENCY;
+    private DependencyFilter filter;
+    private AnalysisMetrics metrics = AnalysisMetrics.shared();
+
+    public AnalysisCache getCache() {
+        return this.cache;
+    }
+
+    /**
+     * Set the cache used to skip the analysis of unchanged files.
+     *
+     * @param cache the analysis cache
+     * @return a reference to this, so the API can be used fluently
+     */
+    public AnalyserOptions setCache(AnalysisCache cache) {
+        this.cache = cache;
+        return this;
+    }
+
+    public int getMaxConcurrency() {
+        return this.maxConcurrency;
+    }
+
+    /**
+     * Set the maximum number of files analysed at the same time when analysing a project.
+     *
+     * @param maxConcurrency the maximum number of files in flight, at least 1
+     * @return a reference to this, so the API can be used fluently
+     */
+    public AnalyserOptions setMaxConcurrency(int maxConcurrency) {
+        if (maxConcurrency < 1)
+            throw new IllegalArgumentException("The maximum concurrency must be at least 1, got " + maxConcurrency);
+        this.maxConcurrency = maxConcurrency;
+        return this;
+    }
+
+    public boolean isShallow() {
+        return this.shallow;
+    }
+
+    /**
+     * Set whether files are analysed by a lexer instead of the full parser. The shallow analysis is several times
+     * faster, but its reports are approximate.
+     *
+     * @param shallow true to analyse files with the lexer
+     * @return a reference to this, so the API can be used fluently
+     */
+    public AnalyserOptions setShallow(boolean shallow) {
+        this.shallow = shallow;
+        return this;
+    }
+
+    public boolean isTestSources() {
+        return this.testSources;
+    }
+
+    /**
+     * Set whether the tests of a project are analysed, e.g. {@code src/test/java}. They are reported as modules of
+     * their own, named {@code <module>:test}, so that test classes never land in the packages of the main classes.
+     *
+     * @param testSources true to analyse the tests as well, false by default
+     * @return a reference to this, so the API can be used fluently
+     */
+    public AnalyserOptions setTestSources(boolean testSources) {
+        this.testSources = testSources;
+        return this;
+    }
+
+    public boolean isVirtualThreads() {
+        return this.virtualThreads;
+    }
+
+    /**
+     * Set whether files are analysed on virtual threads instead of the worker pool of Vert.x: reading, parsing and
+     * visiting a file then run as one task, instead of a task per stage.
+     *
+     * @param virtualThreads true to analyse files on virtual threads
+     * @return a reference to this, so the API can be used fluently
+     */
+    public AnalyserOptions setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+        return this;
+    }
+
+    public int getVirtualThreadsConcurrency() {
+        return this.virtualThreadsConcurrency;
+    }
+
+    /**
+     * Set the maximum number of files analysed at the same time on virtual threads, over all the analyses of the
+     * analyser. Parsing is bound by the CPU, so more files than cores only adds contention.
+     *
+     * @param virtualThreadsConcurrency the maximum number of files analysed at the same time, at least 1
+     * @return a reference to this, so the API can be used fluently
+     */
+    public AnalyserOptions setVirtualThreadsConcurrency(int virtualThreadsConcurrency) {
+        if (virtualThreadsConcurrency < 1)
+            throw new IllegalArgumentException("The virtual threads concurrency must be at least 1, got " + virtualThreadsConcurrency);
+        this.virtualThreadsConcurrency = virtualThreadsConcurrency;
+        return this;
+    }
+
+    /**
+     * Get the filter of the reported dependencies, by default the one of {@link DependencyFilter#fromConfiguration()}.
+     *
+     * @return the dependency filter
+     */
+    public DependencyFilter getFilter() {
+        if (this.filter == null)
+            this.filter = DependencyFilter.fromConfiguration();
+        return this.filter;
+    }
+
+    /**
+     * Set the filter of the reported dependencies. The filter should also be part of the fingerprint of the cache,
+     * see {@link DependencyAnalyserLib#cacheFingerprint(DependencyFilter)}.
+     *
+     * @param filter the dependency filter
+     * @return a reference to this, so the API can be used fluently
+     */
+    public AnalyserOptions setFilter(DependencyFilter filter) {
+        this.filter = filter;
+        return this;
+    }
+
+    public AnalysisMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Set the metrics recording the stages of the analyses, by default {@link AnalysisMetrics#shared()}.
+     *
+     * @param metrics the analysis metrics
+     * @return a reference to this, so the API can be used fluently
+     */
+    public AnalyserOptions setMetrics(AnalysisMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+}
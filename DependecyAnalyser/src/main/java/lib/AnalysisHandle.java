@@ -0,0 +1,63 @@
+package lib;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+
+import java.util.concurrent.CancellationException;
+import java.util.function.Function;
+
+/**
+ * Handle of a running analysis, that can be cancelled. Cancelling fails the result immediately with a
+ * {@link CancellationException}, while the stages still running finish in the background and the following ones
+ * are skipped, see {@link CancellationToken}.
+ */
+public final class AnalysisHandle<T> {
+    private final CancellationToken token = new CancellationToken();
+    private final Promise<T> promise = Promise.promise();
+
+    private AnalysisHandle() {
+    }
+
+    /**
+     * Start an analysis with a new cancellation token.
+     *
+     * @param analysis the analysis, given the token to check between its stages
+     * @return the handle of the analysis
+     */
+    public static <T> AnalysisHandle<T> start(Function<CancellationToken, Future<T>> analysis) {
+        final AnalysisHandle<T> handle = new AnalysisHandle<>();
+        handle.token.onCancel(() -> handle.promise.tryFail(new CancellationException("Analysis cancelled")));
+        analysis.apply(handle.token).onComplete(res -> {
+            if (res.succeeded())
+                handle.promise.tryComplete(res.result());
+            else
+                handle.promise.tryFail(res.cause());
+        });
+        return handle;
+    }
+
+    /**
+     * Get the result of the analysis.
+     *
+     * @return a Future result that contains the result, or fails with a {@link CancellationException} once cancelled
+     */
+    public Future<T> future() {
+        return this.promise.future();
+    }
+
+    /**
+     * Cancel the analysis, if it is not complete yet.
+     *
+     * @return true if the analysis was cancelled by this call
+     */
+    public boolean cancel() {
+        if (this.promise.future().isComplete())
+            return false;
+        this.token.cancel();
+        return true;
+    }
+
+    public boolean isCancelled() {
+        return this.token.isCancelled();
+    }
+}
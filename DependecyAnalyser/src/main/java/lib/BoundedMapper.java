@@ -0,0 +1,90 @@
+package lib;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Maps a list of items to asynchronous results, keeping at most a given number of tasks in flight.
+ * A new task is started only when a previous one completes, so the pending work never exceeds the limit.
+ */
+public final class BoundedMapper<T, R> {
+    private final List<T> items;
+    private final Function<T, Future<R>> task;
+    private final Object[] results;
+    private final AtomicInteger nextIndex = new AtomicInteger();
+    private final AtomicInteger completed = new AtomicInteger();
+    // The tasks asked to be started and not started yet, non zero while a loop is starting them
+    private final AtomicInteger toStart = new AtomicInteger();
+    private final Promise<List<R>> promise = Promise.promise();
+
+    private BoundedMapper(List<T> items, Function<T, Future<R>> task) {
+        this.items = items;
+        this.task = task;
+        this.results = new Object[items.size()];
+    }
+
+    /**
+     * Apply the task to every item, with at most maxConcurrency tasks running at the same time.
+     *
+     * @param items the items to map
+     * @param task the asynchronous task to apply to each item
+     * @param maxConcurrency the maximum number of tasks in flight
+     * @return a Future result that contains the results in the order of the items, or the first failure, be it a
+     * failed task or an exception thrown by the task function
+     */
+    public static <T, R> Future<List<R>> map(List<T> items, Function<T, Future<R>> task, int maxConcurrency) {
+        final BoundedMapper<T, R> mapper = new BoundedMapper<>(items, task);
+        if (items.isEmpty())
+            return Future.succeededFuture(List.of());
+
+        for (int i = 0; i < Math.min(maxConcurrency, items.size()); i++)
+            mapper.startNext();
+
+        return mapper.promise.future();
+    }
+
+    // Start a task, in a loop rather than from the completion handlers: the handler of a task already completed,
+    // e.g. of a report already known, runs at once, and would recurse once per item. A call made while another
+    // thread or an outer call is in the loop is counted, and the loop starts the task for it
+    private void startNext() {
+        if (this.toStart.getAndIncrement() != 0)
+            return;
+        do {
+            this.start();
+        } while (this.toStart.decrementAndGet() != 0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void start() {
+        final int index = this.nextIndex.getAndIncrement();
+        if (index >= this.items.size() || this.promise.future().isComplete())
+            return;
+
+        final Future<R> result;
+        try {
+            result = this.task.apply(this.items.get(index));
+        } catch (RuntimeException e) {
+            this.promise.tryFail(e);
+            return;
+        }
+
+        result.onComplete(res -> {
+            if (res.failed()) {
+                this.promise.tryFail(res.cause());
+                return;
+            }
+
+            this.results[index] = res.result();
+            if (this.completed.incrementAndGet() == this.items.size())
+                this.promise.tryComplete(new ArrayList<>((List<R>) Arrays.asList(this.results)));
+            else
+                this.startNext();
+        });
+    }
+}
@@ -0,0 +1,60 @@
+package lib;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Cooperative cancellation of an analysis. The analysis checks the token between its stages, so a cancelled
+ * analysis stops at most one stage later: a file being parsed is still parsed, but it is not visited, and the
+ * files that were not started are never read.
+ */
+public final class CancellationToken {
+    private volatile boolean cancelled = false;
+    private final List<Runnable> callbacks = new ArrayList<>();
+
+    /**
+     * Cancel the analysis, and run the callbacks registered with {@link #onCancel(Runnable)}. Cancelling twice
+     * has no effect.
+     */
+    public void cancel() {
+        final List<Runnable> toRun;
+        synchronized (this.callbacks) {
+            if (this.cancelled)
+                return;
+            this.cancelled = true;
+            toRun = new ArrayList<>(this.callbacks);
+            this.callbacks.clear();
+        }
+        toRun.forEach(Runnable::run);
+    }
+
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    /**
+     * Register a callback run once when the token is cancelled, immediately if it already is.
+     *
+     * @param callback the callback to run on cancellation
+     */
+    public void onCancel(Runnable callback) {
+        synchronized (this.callbacks) {
+            if (!this.cancelled) {
+                this.callbacks.add(callback);
+                return;
+            }
+        }
+        callback.run();
+    }
+
+    /**
+     * Stop the calling stage if the analysis was cancelled.
+     *
+     * @throws CancellationException if the token is cancelled
+     */
+    public void throwIfCancelled() {
+        if (this.cancelled)
+            throw new CancellationException("Analysis cancelled");
+    }
+}
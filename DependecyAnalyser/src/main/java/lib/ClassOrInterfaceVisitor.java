@@ -4,19 +4,25 @@ import com.github.javaparser.ast.expr.ObjectCreationExpr;
 import com.github.javaparser.ast.type.ClassOrInterfaceType;
 import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
 
+import java.util.Optional;
 import java.util.Set;
 
+/**
+ * Collects the names of the class and interface types used in a compilation unit, as written: simple, or with their
+ * package or enclosing types, e.g. {@code Map.Entry}. The scope of a name is part of the name, not a type of its own.
+ */
 public class ClassOrInterfaceVisitor extends VoidVisitorAdapter<Set<String>> {
 
     @Override
     public void visit(ClassOrInterfaceType n, Set<String> arg) {
-        super.visit(n, arg);
-        arg.add(n.getNameAsString());
+        for (Optional<ClassOrInterfaceType> type = Optional.of(n); type.isPresent(); type = type.get().getScope())
+            type.get().getTypeArguments().ifPresent(arguments -> arguments.forEach(argument -> argument.accept(this, arg)));
+        arg.add(n.getNameWithScope());
     }
 
     @Override
     public void visit(ObjectCreationExpr n, Set<String> arg) {
         super.visit(n, arg);
-        n.getType().ifClassOrInterfaceType(c -> arg.add(c.getNameAsString()));
+        n.getType().ifClassOrInterfaceType(c -> arg.add(c.getNameWithScope()));
     }
 }
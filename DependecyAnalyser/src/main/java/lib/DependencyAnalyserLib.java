@@ -1,28 +1,117 @@
 package lib;
 
-import com.github.javaparser.StaticJavaParser;
 import com.github.javaparser.ast.CompilationUnit;
-import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
-import com.github.javaparser.ast.nodeTypes.NodeWithName;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.type.TypeParameter;
+import io.vertx.core.Context;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
+import lib.analytics.DependencyDiff;
+import lib.bytecode.BytecodeReader;
+import lib.bytecode.CompiledClass;
+import lib.cache.AnalysisCache;
+import lib.filter.DependencyFilter;
+import lib.git.GitRevision;
+import lib.graph.SymbolTable;
+import lib.metrics.AnalysisMetrics;
+import lib.metrics.QueueDepth;
+import lib.metrics.Stage;
+import lib.parser.ImportScope;
+import lib.parser.ParserPool;
+import lib.parser.ShallowSource;
+import lib.parser.TypeTokenLexer;
+import lib.project.ProjectLayout;
+import lib.project.ProjectModule;
 import lib.reports.ClassDepsReport;
+import lib.reports.ModuleDepsReport;
 import lib.reports.PackageDepsReport;
 import lib.reports.ProjectDepsReport;
+import lib.snapshot.DependencySnapshot;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class DependencyAnalyserLib {
+    private static final Duration WATCH_DEBOUNCE = Duration.ofMillis(150);
+    private static final Duration WATCH_MAX_DELAY = Duration.ofSeconds(2);
+    private static final ThreadFactory VIRTUAL_THREADS = Thread.ofVirtual().name("analyser-virtual-", 0).factory();
+    // Reports of the files of git revisions kept by blob id, enough for the revisions of a large project
+    private static final int MAX_BLOB_REPORTS = 100_000;
+
     private final Vertx vertx;
+    private final AnalysisCache cache;
+    private final int maxConcurrency;
+    private final boolean shallow;
+    private final boolean testSources;
+    private final DependencyFilter filter;
+    private final AnalysisMetrics metrics;
+    private final ParserPool parsers = ParserPool.withDefaultConfiguration();
+    // The names of all the reports of the analyses, interned once for the lib and released with it
+    private final SymbolTable symbols = new SymbolTable(1024);
+    // Null when the files are analysed on the worker pool
+    private final Semaphore virtualThreadsPermits;
+    private final Map<String, ClassDepsReport> blobReports = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, ClassDepsReport> eldest) {
+                    return this.size() > MAX_BLOB_REPORTS;
+                }
+            });
 
     public DependencyAnalyserLib(Vertx vertx) {
+        this(vertx, new AnalyserOptions());
+    }
+
+    public DependencyAnalyserLib(Vertx vertx, AnalyserOptions options) {
         this.vertx = vertx;
+        this.cache = options.getCache();
+        this.maxConcurrency = options.getMaxConcurrency();
+        this.shallow = options.isShallow();
+        this.testSources = options.isTestSources();
+        this.filter = options.getFilter();
+        this.metrics = options.getMetrics();
+        this.virtualThreadsPermits = options.isVirtualThreads()
+                ? new Semaphore(options.getVirtualThreadsConcurrency())
+                : null;
+    }
+
+    /**
+     * Get the fingerprint of the analysis settings, used to invalidate the caches written with other settings.
+     *
+     * @param filter the dependency filter of the analysis
+     * @return the fingerprint of the dependency filter and of the parser configuration
+     */
+    public static String cacheFingerprint(DependencyFilter filter) {
+        return "lib-v3|" + ParserPool.defaultConfiguration().getLanguageLevel() + "|" + filter.getFingerprint();
+    }
+
+    /**
+     * Get the metrics of the stages of the analyses.
+     *
+     * @return the analysis metrics
+     */
+    public AnalysisMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Get the filter of the reported dependencies, with its counters.
+     *
+     * @return the dependency filter
+     */
+    public DependencyFilter getFilter() {
+        return this.filter;
     }
 
     /**
@@ -32,21 +121,134 @@ public class DependencyAnalyserLib {
      * @return a Future result that contains the name, the package name and the dependencies
      */
     public Future<ClassDepsReport> getClassDependencies(Path classSrcFile) {
+        return this.getClassDependencies(classSrcFile, new CancellationToken());
+    }
+
+    /**
+     * Get the name, the package name and the dependencies of a class or an interface in Java, unless cancelled:
+     * the token is checked before reading, parsing and visiting the file.
+     * With {@link AnalyserOptions#setVirtualThreads(boolean)}, the file is read, parsed and visited by a single task
+     * on a virtual thread, instead of a task per stage on the worker pool.
+     *
+     * @param classSrcFile the absolute path of the class/interface
+     * @param token the cancellation token of the analysis
+     * @return a Future result that contains the name, the package name and the dependencies,
+     * or fails with a {@link java.util.concurrent.CancellationException} if cancelled
+     */
+    public Future<ClassDepsReport> getClassDependencies(Path classSrcFile, CancellationToken token) {
+        if (this.shallow)
+            return this.getApproximateClassDependencies(classSrcFile, token);
+        if (token.isCancelled())
+            return cancelled();
+        if (this.virtualThreadsPermits != null)
+            return this.executeOnVirtualThread(() -> this.analyseFile(classSrcFile, token));
+
         final Promise<ClassDepsReport> classReportPromise = Promise.promise();
 
         this.readFile(classSrcFile)
-                .compose(this::parseSourceCode)
-                .compose(this::visitAST)
-                .onSuccess(res -> {
-                    final String className = res.keySet().stream().findFirst().orElse("");
-                    final String packageName = res.get(className).keySet().stream().findFirst().orElse("java");
-                    classReportPromise.complete(new ClassDepsReport(className, packageName, res.get(className).get(packageName)));
+                .compose(sourceCode -> {
+                    if (token.isCancelled())
+                        return cancelled();
+
+                    final String contentHash = AnalysisCache.hash(sourceCode);
+                    final Optional<List<ClassDepsReport>> cached = this.cache.get(classSrcFile, contentHash);
+                    if (cached.isPresent())
+                        return Future.succeededFuture(cached.get().getFirst().in(this.symbols));
+
+                    return this.analyseSourceCode(sourceCode, token)
+                            .onSuccess(report -> this.cache.put(classSrcFile, contentHash, List.of(report)));
                 })
+                .onSuccess(classReportPromise::complete)
                 .onFailure(classReportPromise::fail);
 
         return classReportPromise.future();
     }
 
+    /**
+     * Get an approximate report of a class or an interface, found by a lexer without building the AST: the
+     * dependencies are the capitalized names used in the source, and their qualified names are found through the imports.
+     * Approximate reports are never cached, but a cached full report is returned if the file did not change.
+     *
+     * @param classSrcFile the absolute path of the class/interface
+     * @return a Future result that contains the name, the package name and the approximate dependencies
+     */
+    public Future<ClassDepsReport> getApproximateClassDependencies(Path classSrcFile) {
+        return this.getApproximateClassDependencies(classSrcFile, new CancellationToken());
+    }
+
+    /**
+     * Get an approximate report of a class or an interface, unless cancelled: the token is checked before reading
+     * and lexing the file.
+     *
+     * @param classSrcFile the absolute path of the class/interface
+     * @param token the cancellation token of the analysis
+     * @return a Future result that contains the name, the package name and the approximate dependencies,
+     * or fails with a {@link java.util.concurrent.CancellationException} if cancelled
+     */
+    public Future<ClassDepsReport> getApproximateClassDependencies(Path classSrcFile, CancellationToken token) {
+        if (token.isCancelled())
+            return cancelled();
+
+        return this.readFile(classSrcFile)
+                .compose(sourceCode -> {
+                    final Optional<List<ClassDepsReport>> cached = this.cache.get(classSrcFile, AnalysisCache.hash(sourceCode));
+                    if (cached.isPresent())
+                        return Future.succeededFuture(cached.get().getFirst().in(this.symbols));
+
+                    return this.vertx.executeBlocking(() -> {
+                        token.throwIfCancelled();
+                        return this.toApproximateReport(TypeTokenLexer.scan(sourceCode));
+                    }, false);
+                });
+    }
+
+    /**
+     * Get the name, the package name and the dependencies of a compiled class, read from its class file. Names are
+     * exact, without a type solver: a class file only has qualified names, so the dependencies are qualified
+     * names as well. A nested, anonymous or local class is reported as its top-level class.
+     *
+     * @param classFile the absolute path of the class file
+     * @return a Future result that contains the name, the package name and the dependencies
+     */
+    public Future<ClassDepsReport> getClassFileDependencies(Path classFile) {
+        return this.vertx.executeBlocking(() -> this.toCompiledReport(List.of(BytecodeReader.readClassFile(classFile))), false);
+    }
+
+    /**
+     * Get the name and all the reports of the packages of a compiled project: a folder of class files, such as
+     * {@code target/classes}, or a jar. Every top-level class gets one report, with the dependencies of its nested,
+     * anonymous and local classes, as a source file would.
+     *
+     * @param classesFolderOrJar the absolute path of the folder of the class files, or of the jar
+     * @return a Future result that contains the project name and all the reports of the packages of the classes
+     */
+    public Future<ProjectDepsReport> getCompiledProjectDependencies(Path classesFolderOrJar) {
+        final Future<List<CompiledClass>> classes;
+        if (BytecodeReader.isJar(classesFolderOrJar)) {
+            classes = this.vertx.executeBlocking(() -> BytecodeReader.readJar(classesFolderOrJar), false);
+        } else {
+            classes = this.vertx.executeBlocking(() -> BytecodeReader.classFiles(classesFolderOrJar), false)
+                    .compose(files -> BoundedMapper.map(files,
+                            file -> this.vertx.executeBlocking(() -> BytecodeReader.readClassFile(file), false),
+                            this.maxConcurrency));
+        }
+
+        return classes.map(compiledClasses -> {
+            final Map<String, List<CompiledClass>> topLevelClasses = compiledClasses.stream()
+                    .collect(Collectors.groupingBy(CompiledClass::getTopLevelName, TreeMap::new, Collectors.toList()));
+
+            final Map<String, Set<ClassDepsReport>> packagesClasses = new TreeMap<>();
+            for (List<CompiledClass> topLevelClass : topLevelClasses.values()) {
+                final ClassDepsReport report = this.toCompiledReport(topLevelClass);
+                packagesClasses.computeIfAbsent(report.getPackageName(), name -> new HashSet<>()).add(report);
+            }
+
+            final Set<PackageDepsReport> packagesReports = new HashSet<>();
+            packagesClasses.forEach((packageName, reports) -> packagesReports.add(new PackageDepsReport(packageName, reports)));
+            return new ProjectDepsReport(classesFolderOrJar.getFileName().toString(), packagesReports);
+        });
+    }
+
     /**
      * Get the package name and all the reports of the classes contained in the package.
      *
@@ -54,69 +256,358 @@ public class DependencyAnalyserLib {
      * @return a Future result that contains the package name and all the reports of the classes contained in the package.
      */
     public Future<PackageDepsReport> getPackageDependencies(Path packageSrcFolder) {
+        return this.getPackageDependencies(packageSrcFolder, new CancellationToken());
+    }
+
+    /**
+     * Get the package name and all the reports of the classes contained in the package, unless cancelled:
+     * once the token is cancelled, no more file is started.
+     *
+     * @param packageSrcFolder the absolute path of the package
+     * @param token the cancellation token of the analysis
+     * @return a Future result that contains the package name and all the reports of the classes contained in the package,
+     * or fails with a {@link java.util.concurrent.CancellationException} if cancelled
+     */
+    public Future<PackageDepsReport> getPackageDependencies(Path packageSrcFolder, CancellationToken token) {
         final Promise<PackageDepsReport> packageReportPromise = Promise.promise();
 
         this.getFilesPaths(packageSrcFolder)
-                .compose(paths -> {
-                    final List<Future<ClassDepsReport>> classesFutures = new ArrayList<>();
+                .compose(paths -> BoundedMapper.map(new ArrayList<>(paths),
+                        path -> this.getClassDependencies(path, token), this.maxConcurrency))
+                .onSuccess(reports -> packageReportPromise.complete(toPackageReport(reports)))
+                .onFailure(packageReportPromise::fail);
 
-                    paths.forEach(p -> classesFutures.add(this.getClassDependencies(p)));
+        return packageReportPromise.future();
+    }
 
-                    return Future.all(classesFutures);
-                }).onSuccess(cF -> {
-                    final Set<ClassDepsReport> classesReports = new HashSet<>();
+    /**
+     * Get the project name and all the reports of the packages contained in the Java project, module by module.
+     * All the source roots of all the modules are found first, see {@link #getProjectLayout(Path)}, then every file is
+     * analysed exactly once, as part of the package it declares in its module, with at most
+     * {@link AnalyserOptions#getMaxConcurrency()} files analysed at the same time across the modules.
+     *
+     * @param projectSrcFolder the absolute path of the Java project.
+     * @return a Future result that contains the project name and all the reports of the packages contained in the Java project
+     */
+    public Future<ProjectDepsReport> getProjectDependencies(Path projectSrcFolder) {
+        return this.getProjectDependencies(projectSrcFolder, new CancellationToken());
+    }
 
-                    for (int i = 0; i < cF.size(); i++) {
-                        classesReports.add(cF.resultAt(i));
-                    }
+    /**
+     * Get the project name and all the reports of the packages contained in the Java project, unless cancelled:
+     * once the token is cancelled, no more file is started, and the files in flight stop after their current stage.
+     *
+     * @param projectSrcFolder the absolute path of the Java project
+     * @param token the cancellation token of the analysis
+     * @return a Future result that contains the project name and all the reports of the packages contained in the Java project,
+     * or fails with a {@link java.util.concurrent.CancellationException} if cancelled
+     */
+    public Future<ProjectDepsReport> getProjectDependencies(Path projectSrcFolder, CancellationToken token) {
+        return this.getProjectLayout(projectSrcFolder)
+                .compose(layout -> this.getModulesFiles(layout).compose(modulesFiles -> {
+                    // The files of all the modules are analysed together, so the modules are analysed in parallel
+                    final List<Path> files = modulesFiles.stream()
+                            .flatMap(List::stream)
+                            .collect(Collectors.toList());
+
+                    return BoundedMapper.map(files, file -> this.getClassDependencies(file, token), this.maxConcurrency)
+                            .map(reports -> toProjectReport(projectSrcFolder.getFileName().toString(), layout, modulesFiles, reports));
+                }));
+    }
 
-                    final String packageName = classesReports.stream()
-                            .findFirst()
-                            .map(ClassDepsReport::getPackageName)
-                            .orElse("java");
+    /**
+     * Get the modules of a Java project and their source roots: the modules of a multi-module Maven build, or the
+     * folders with a {@code src/<set>/java} layout, see {@link ProjectLayout}. The tests are left out, or are modules
+     * of their own with {@link AnalyserOptions#setTestSources(boolean)}.
+     *
+     * @param projectSrcFolder the absolute path of the Java project
+     * @return a Future result that contains the layout of the project
+     */
+    public Future<ProjectLayout> getProjectLayout(Path projectSrcFolder) {
+        return this.vertx.executeBlocking(() -> {
+            final ProjectLayout layout = ProjectLayout.discover(projectSrcFolder);
+            return this.testSources ? layout.withSeparateTests() : layout.withoutTests();
+        }, false);
+    }
 
-                    packageReportPromise.complete(new PackageDepsReport(packageName, classesReports));
-                }).onFailure(packageReportPromise::fail);
+    /**
+     * Get the Java files of every module of a layout, sorted in every source root.
+     *
+     * @param layout the layout of the project, see {@link #getProjectLayout(Path)}
+     * @return a Future result that contains the files of every module, in the order of the modules of the layout
+     */
+    public Future<List<List<Path>>> getModulesFiles(ProjectLayout layout) {
+        return this.vertx.executeBlocking(() -> {
+            final List<List<Path>> modulesFiles = new ArrayList<>();
+            for (ProjectModule module : layout.getModules())
+                modulesFiles.add(listJavaFiles(module.getSourceRoots()));
+            return modulesFiles;
+        }, false);
+    }
 
-        return packageReportPromise.future();
+    /**
+     * Start the analysis of a Java project, that can be cancelled, e.g. when superseded by a new analysis.
+     * A cancelled analysis releases the worker threads within one stage of the files in flight.
+     *
+     * @param projectSrcFolder the absolute path of the Java project
+     * @return the handle of the analysis, with the project report as result
+     */
+    public AnalysisHandle<ProjectDepsReport> startProjectAnalysis(Path projectSrcFolder) {
+        return AnalysisHandle.start(token -> this.getProjectDependencies(projectSrcFolder, token));
     }
 
     /**
-     * Get the project name and all the reports of the packages contained in the Java project.
+     * Get the project name and all the reports of the packages of a folder of a local git repository, at a revision.
+     * The files are read from the object store of the repository, so the working tree may be at any revision, or
+     * dirty. The report of every file is kept by the id of its blob: a file unchanged since another analysed
+     * revision is not read nor parsed again. The files are grouped in modules by the source roots of the layout of
+     * the folder, see {@link #getProjectLayout(Path)}, then by their declared package: the tests are left out unless
+     * {@link AnalyserOptions#setTestSources(boolean)} is set, and the files under no source root are left out. The
+     * layout is the one of the working tree, so a module added or moved since the revision is not found.
      *
-     * @param projectSrcFolder the absolute path of the Java project.
-     * @return a Future result that contains the project name and all the reports of the packages contained in the Java project
+     * @param projectFolder the absolute path of the folder, the root of the repository or any folder inside it
+     * @param revision the revision, e.g. a commit id, a branch or {@code HEAD~1}
+     * @return a Future result that contains the name of the folder and all the reports of its packages at the revision,
+     * or fails with an {@link IOException} if the folder is not in a git repository or the revision does not exist
      */
-    public Future<ProjectDepsReport> getProjectDependencies(Path projectSrcFolder) {
-        final Promise<ProjectDepsReport> projectReportPromise = Promise.promise();
+    public Future<ProjectDepsReport> getRevisionDependencies(Path projectFolder, String revision) {
+        return this.getProjectLayout(projectFolder)
+                .compose(layout -> this.vertx.executeBlocking(() -> GitRevision.open(projectFolder, revision), false)
+                        .compose(gitRevision -> this.vertx.executeBlocking(() -> revisionModulesFiles(layout, gitRevision), false)
+                                .compose(modulesFiles -> {
+                                    final List<GitRevision.GitFile> files = modulesFiles.stream()
+                                            .flatMap(List::stream)
+                                            .collect(Collectors.toList());
+
+                                    return BoundedMapper.map(files,
+                                                    file -> this.getBlobDependencies(gitRevision, file.getBlobId()), this.maxConcurrency)
+                                            .map(reports -> toProjectReport(projectFolder.getFileName().toString(), layout, modulesFiles, reports));
+                                })
+                                .onComplete(done -> gitRevision.close())));
+    }
 
-        this.getProjectEntryPoint(projectSrcFolder)
-                .compose(this::getPackagesPaths)
-                .compose(paths -> {
-                    final List<Future<PackageDepsReport>> packagesFutures = new ArrayList<>();
+    /**
+     * Get the dependencies added and removed between two revisions of a folder of a local git repository. The
+     * revisions are analysed one after the other, so the files unchanged between them are parsed only once: the
+     * cost of the second revision is close to the size of the change.
+     *
+     * @param projectFolder the absolute path of the folder, the root of the repository or any folder inside it
+     * @param fromRevision the revision before the change, e.g. the base of a branch
+     * @param toRevision the revision after the change, e.g. the head of a branch
+     * @return a Future result that contains the class and package dependencies added and removed
+     */
+    public Future<DependencyDiff> diffRevisions(Path projectFolder, String fromRevision, String toRevision) {
+        return this.getRevisionDependencies(projectFolder, fromRevision)
+                .compose(before -> this.getRevisionDependencies(projectFolder, toRevision)
+                        .map(after -> DependencyDiff.between(before, after)));
+    }
 
-                    paths.forEach(p -> packagesFutures.add(this.getPackageDependencies(p)));
+    /**
+     * Save the report of a project to a snapshot file, to be loaded later without analysing the project again.
+     *
+     * @param report the report of the project
+     * @param snapshotFile the path of the snapshot file, replaced if it exists
+     * @return a Future result completed once the snapshot is written
+     */
+    public Future<Void> saveSnapshot(ProjectDepsReport report, Path snapshotFile) {
+        return this.vertx.executeBlocking(() -> {
+            DependencySnapshot.of(report).write(snapshotFile);
+            return null;
+        }, false);
+    }
 
-                    return Future.all(packagesFutures);
-                }).onSuccess(cF -> {
-                    final Set<PackageDepsReport> packagesReports = new HashSet<>();
+    /**
+     * Load the report of a project from a snapshot file, without parsing any source.
+     *
+     * @param snapshotFile the path of the snapshot file
+     * @return a Future result that contains the report of the project, or fails with an {@link IOException} if the
+     * file is not a valid snapshot
+     */
+    public Future<ProjectDepsReport> loadSnapshot(Path snapshotFile) {
+        return this.vertx.executeBlocking(() -> DependencySnapshot.read(snapshotFile).toProjectReport(new SymbolTable()), false);
+    }
 
-                    for (int i = 0; i < cF.size(); i++) {
-                        packagesReports.add(cF.resultAt(i));
+    /**
+     * Get the Java files of the project, grouped by the folder of their package.
+     *
+     * @param projectSrcFolder the absolute path of the Java project
+     * @return a Future result that contains the files directly contained in every package folder, sorted by folder
+     */
+    public Future<Map<Path, List<Path>>> getProjectFiles(Path projectSrcFolder) {
+        return this.getSourceRoots(projectSrcFolder).compose(this::getPackagesFiles);
+    }
+
+    /**
+     * Get a stream of the reports of the classes contained in the Java project, emitted as soon as they are ready.
+     * The analysis starts when a handler is set on the stream, and follows its demand: when the stream is paused,
+     * no more than {@link AnalyserOptions#getMaxConcurrency()} reports are computed ahead.
+     *
+     * @param projectSrcFolder the absolute path of the Java project
+     * @return a stream of the class reports, module by module, that also signals the end of every package, of every
+     * module and of the project
+     */
+    public ProjectDepsStream streamProjectDependencies(Path projectSrcFolder) {
+        return new ProjectDepsStream(this.vertx, this.getProjectLayout(projectSrcFolder),
+                this::getClassDependencies, this.maxConcurrency);
+    }
+
+    /**
+     * Watch the Java project and get a stream of the changes of its dependency graph. The stream first emits every
+     * dependency of the project as added, then, whenever source files change, re-analyses only the changed files
+     * and emits the dependencies they added or removed.
+     *
+     * @param projectSrcFolder the absolute path of the Java project
+     * @return a stream of the changes of the dependency graph, to be closed to stop watching
+     */
+    public DependencyWatchStream watchProjectDependencies(Path projectSrcFolder) {
+        return new DependencyWatchStream(this.vertx, this.getSourceRoots(projectSrcFolder),
+                sourceRoots -> this.getPackagesFiles(sourceRoots).map(packagesFiles -> packagesFiles.values().stream()
+                        .flatMap(List::stream)
+                        .collect(Collectors.toList())),
+                this::getClassDependencies, this.maxConcurrency, WATCH_DEBOUNCE, WATCH_MAX_DELAY);
+    }
+
+    // The reports of the files of all the modules, analysed together, split back module by module
+    private static ProjectDepsReport toProjectReport(String projectName, ProjectLayout layout,
+                                                     List<? extends List<?>> modulesFiles, List<ClassDepsReport> reports) {
+        final List<ModuleDepsReport> modulesReports = new ArrayList<>();
+        int from = 0;
+        for (int module = 0; module < modulesFiles.size(); module++) {
+            final int to = from + modulesFiles.get(module).size();
+            modulesReports.add(ModuleDepsReport.ofClasses(layout.getModules().get(module).getName(), reports.subList(from, to)));
+            from = to;
+        }
+        return new ProjectDepsReport(projectName, modulesReports);
+    }
+
+    // The files of the revision in the source roots of every module, by their path relative to the repository. A
+    // file goes to the module of its innermost source root, e.g. src/main/java rather than a module in the project folder
+    private static List<List<GitRevision.GitFile>> revisionModulesFiles(ProjectLayout layout, GitRevision gitRevision) throws IOException {
+        final Path repository = gitRevision.getRepository().toRealPath();
+        final List<List<String>> modulesPrefixes = new ArrayList<>();
+        final List<List<GitRevision.GitFile>> modulesFiles = new ArrayList<>();
+        for (ProjectModule module : layout.getModules()) {
+            final List<String> prefixes = new ArrayList<>();
+            for (Path sourceRoot : module.getSourceRoots()) {
+                final Path realSourceRoot = sourceRoot.toRealPath();
+                if (realSourceRoot.startsWith(repository)) {
+                    final String prefix = repository.relativize(realSourceRoot).toString().replace('\\', '/');
+                    prefixes.add(prefix.isEmpty() ? prefix : prefix + "/");
+                }
+            }
+            modulesPrefixes.add(prefixes);
+            modulesFiles.add(new ArrayList<>());
+        }
+
+        for (GitRevision.GitFile file : gitRevision.getFiles()) {
+            int fileModule = -1;
+            int longestPrefix = -1;
+            for (int module = 0; module < modulesPrefixes.size(); module++) {
+                for (String prefix : modulesPrefixes.get(module)) {
+                    if (prefix.length() > longestPrefix && file.getPath().startsWith(prefix)) {
+                        fileModule = module;
+                        longestPrefix = prefix.length();
                     }
+                }
+            }
+            if (fileModule >= 0)
+                modulesFiles.get(fileModule).add(file);
+        }
+        return modulesFiles;
+    }
 
-                    final String projectName = projectSrcFolder.getFileName().toString();
+    private static PackageDepsReport toPackageReport(List<ClassDepsReport> reports) {
+        final String packageName = reports.stream()
+                .findFirst()
+                .map(ClassDepsReport::getPackageName)
+                .orElse("java");
 
-                    projectReportPromise.complete(new ProjectDepsReport(projectName, packagesReports));
-                }).onFailure(projectReportPromise::fail);
+        return new PackageDepsReport(packageName, new HashSet<>(reports));
+    }
 
-        return projectReportPromise.future();
+    private Future<ClassDepsReport> getBlobDependencies(GitRevision gitRevision, String blobId) {
+        final ClassDepsReport shared = this.blobReports.get(blobId);
+        if (shared != null)
+            return Future.succeededFuture(shared);
+
+        final long start = this.metrics.start();
+        return this.vertx.executeBlocking(() -> gitRevision.readBlob(blobId), false)
+                .onComplete(read -> this.metrics.record(Stage.READ_FILE, start, read.failed()))
+                .compose(sourceCode -> this.shallow
+                        ? this.vertx.executeBlocking(() -> this.toApproximateReport(TypeTokenLexer.scan(sourceCode)), false)
+                        : this.analyseSourceCode(sourceCode, new CancellationToken()))
+                .onSuccess(report -> this.blobReports.put(blobId, report));
+    }
+
+    private Future<ClassDepsReport> analyseSourceCode(String sourceCode, CancellationToken token) {
+        return this.parseSourceCode(sourceCode, token)
+                .compose(compilationUnit -> this.visitAST(compilationUnit, token));
+    }
+
+    // The stages of getClassDependencies fused in one blocking task, timed one by one
+    private ClassDepsReport analyseFile(Path classSrcFile, CancellationToken token) throws Exception {
+        token.throwIfCancelled();
+        final String sourceCode = this.metrics.timed(Stage.READ_FILE,
+                () -> new String(Files.readAllBytes(classSrcFile), StandardCharsets.UTF_8)).call();
+        final String contentHash = AnalysisCache.hash(sourceCode);
+        final Optional<List<ClassDepsReport>> cached = this.cache.get(classSrcFile, contentHash);
+        if (cached.isPresent())
+            return cached.get().getFirst().in(this.symbols);
+
+        token.throwIfCancelled();
+        final CompilationUnit compilationUnit = this.metrics.timed(Stage.PARSE, () -> this.parsers.parse(sourceCode)).call();
+        token.throwIfCancelled();
+        final ClassDepsReport report = this.metrics.timed(Stage.VISIT, () -> this.collectDependencies(compilationUnit)).call();
+        this.cache.put(classSrcFile, contentHash, List.of(report));
+        return report;
+    }
+
+    private ClassDepsReport toApproximateReport(ShallowSource source) {
+        final String className = source.getDeclaredTypes().stream().findFirst().orElse("");
+        final String packageName = source.getPackageName().isEmpty()
+                ? ClassDepsReport.DEFAULT_PACKAGE_NAME
+                : source.getPackageName();
+
+        // Named as the full analysis names them: the class itself and the types it declares are not qualified dependencies
+        final Set<String> dependencies = new HashSet<>();
+        for (String name : source.getReferencedNames())
+            this.addWrittenNames(name, dependencies);
+        final Set<String> declaredTypes = new HashSet<>();
+        for (String declaredType : source.getDeclaredTypes())
+            declaredTypes.add(source.qualify(declaredType));
+        final Set<String> qualifiedDependencies = new HashSet<>();
+        for (String type : source.getReferencedTypes()) {
+            if (!declaredTypes.contains(type) && this.isDependencyToInclude(type))
+                qualifiedDependencies.add(type);
+        }
+        return new ClassDepsReport(this.symbols, className, packageName, dependencies, qualifiedDependencies, true);
+    }
+
+    // The classes share the same top-level class, reported with the dependencies of all of them
+    private ClassDepsReport toCompiledReport(List<CompiledClass> classes) {
+        final CompiledClass first = classes.getFirst();
+        final String topLevelName = first.getTopLevelName();
+        final String packageName = first.getPackageName().isEmpty() ? "java" : first.getPackageName();
+        final String className = first.getPackageName().isEmpty()
+                ? topLevelName
+                : topLevelName.substring(first.getPackageName().length() + 1);
+
+        final Set<String> dependencies = new HashSet<>();
+        for (CompiledClass compiledClass : classes) {
+            for (String type : compiledClass.getReferencedTypes()) {
+                if (!type.equals(topLevelName) && !type.startsWith(topLevelName + ".") && this.isDependencyToInclude(type))
+                    dependencies.add(type);
+            }
+        }
+        return new ClassDepsReport(this.symbols, className, packageName, dependencies);
     }
 
     private Future<String> readFile(Path path) {
         final Promise<String> filePromise = Promise.promise();
 
+        final long start = this.metrics.start();
         this.vertx.fileSystem().readFile(path.toString(), read -> {
+            this.metrics.record(Stage.READ_FILE, start, read.failed());
             if (read.succeeded())
                 filePromise.complete(read.result().toString("UTF-8"));
             else
@@ -126,55 +617,110 @@ public class DependencyAnalyserLib {
         return filePromise.future();
     }
 
-    private Future<CompilationUnit> parseSourceCode(String sourceCode) {
-        return this.vertx.executeBlocking(() -> StaticJavaParser.parse(sourceCode), false);
+    private Future<CompilationUnit> parseSourceCode(String sourceCode, CancellationToken token) {
+        return this.executeStage(Stage.PARSE, () -> this.parsers.parse(sourceCode), false, token);
     }
 
-    private Future<Map<String, Map<String, Set<String>>>> visitAST(CompilationUnit compilationUnit) {
-        final Promise<Map<String, Map<String, Set<String>>>> visitPromise = Promise.promise();
-        // [Class Name -> [Package -> Dependencies]]
-
-        this.vertx.executeBlocking(() -> {
-            final Map<String, Set<String>> packageWithDependencies = new HashMap<>();
-            Set<String> types = new HashSet<>();
+    // Runs a stage on a worker thread, counted in the queue of the worker pool until it starts,
+    // and skipped if the analysis was cancelled while it was queued
+    private <T> Future<T> executeStage(Stage stage, Callable<T> task, boolean ordered, CancellationToken token) {
+        final Callable<T> timedTask = this.metrics.timed(stage, task);
+        return this.vertx.executeBlocking(this.metrics.queue(AnalysisMetrics.VERTX_WORKER_QUEUE).submit(() -> {
+            token.throwIfCancelled();
+            return timedTask.call();
+        }), ordered);
+    }
 
-            new ClassOrInterfaceVisitor().visit(compilationUnit, types);
+    // Runs a task on a new virtual thread once one of the permits is free, counted in the queue until then, and
+    // completes on the context of the caller, as executeBlocking does
+    private <T> Future<T> executeOnVirtualThread(Callable<T> task) {
+        final Context context = this.vertx.getOrCreateContext();
+        final Promise<T> promise = Promise.promise();
+        final QueueDepth queue = this.metrics.queue(AnalysisMetrics.VIRTUAL_THREADS_QUEUE);
+
+        queue.enqueued(1);
+        VIRTUAL_THREADS.newThread(() -> {
+            boolean started = false;
+            try {
+                this.virtualThreadsPermits.acquire();
+                started = true;
+                queue.started();
+                try {
+                    final T result = task.call();
+                    context.runOnContext(v -> promise.complete(result));
+                } finally {
+                    queue.finished();
+                    this.virtualThreadsPermits.release();
+                }
+            } catch (Throwable e) {
+                context.runOnContext(v -> promise.fail(e));
+            } finally {
+                // A task interrupted while waiting for a permit leaves the queue without running
+                if (!started)
+                    queue.dequeued(1);
+            }
+        }).start();
 
-            types = types.stream().filter(this::isDependencyToInclude).collect(Collectors.toSet());
+        return promise.future();
+    }
 
-            final String className = Objects.requireNonNull(compilationUnit.findAll(ClassOrInterfaceDeclaration.class)
-                    .stream().findFirst().orElse(null)).getNameAsString();
+    private static <T> Future<T> cancelled() {
+        return Future.failedFuture(new CancellationException("Analysis cancelled"));
+    }
 
-            final String packageName = compilationUnit.getPackageDeclaration()
-                    .map(NodeWithName::getNameAsString)
-                    .orElse("java");
+    private Future<ClassDepsReport> visitAST(CompilationUnit compilationUnit, CancellationToken token) {
+        final Promise<ClassDepsReport> visitPromise = Promise.promise();
 
-            packageWithDependencies.put(packageName, types);
-            return Map.of(className, packageWithDependencies);
-        }).onSuccess(visitPromise::complete)
-        .onFailure(visitPromise::fail);
+        this.executeStage(Stage.VISIT, () -> this.collectDependencies(compilationUnit), true, token)
+                .onSuccess(visitPromise::complete)
+                .onFailure(visitPromise::fail);
 
         return visitPromise.future();
     }
 
-    private boolean isDependencyToInclude(String qualifiedName) {
-        final List<String> excludedPackages = Arrays.asList(
-                "java.lang", "java.util", "java.io", "java.math",
-                "java.time", "java.text", "java.nio", "java.net",
-                "javafx", "org.graphstream"
-        );
+    private ClassDepsReport collectDependencies(CompilationUnit compilationUnit) {
+        final Set<String> names = new HashSet<>();
+
+        new ClassOrInterfaceVisitor().visit(compilationUnit, names);
+
+        final Set<String> dependencies = new HashSet<>();
+        for (String name : names)
+            this.addWrittenNames(name, dependencies);
+
+        // The type parameters are not types, the types declared by the file are the class itself
+        for (TypeParameter typeParameter : compilationUnit.findAll(TypeParameter.class))
+            names.remove(typeParameter.getNameAsString());
+        final ImportScope scope = ImportScope.of(compilationUnit);
+        final Set<String> declaredTypes = new HashSet<>(scope.getDeclaredTypes());
+        final Set<String> qualifiedDependencies = new HashSet<>();
+        for (String name : names) {
+            final String qualifiedName = scope.qualify(name);
+            if (!declaredTypes.contains(qualifiedName) && this.isDependencyToInclude(qualifiedName))
+                qualifiedDependencies.add(qualifiedName);
+        }
 
-        final Set<String> excludedTypes = new HashSet<>(Arrays.asList(
-                "String", "Object", "Throwable", "Exception", "RuntimeException", "Error"
-        ));
+        // The first type declared by the file, an enum or a record as well as a class or an interface
+        final String className = Objects.requireNonNull(compilationUnit.findAll(TypeDeclaration.class)
+                .stream().findFirst().orElse(null)).getNameAsString();
 
-        for (String prefix : excludedPackages) {
-            if (qualifiedName.startsWith(prefix)) {
-                return false;
-            }
+        final String packageName = scope.getPackageName().isEmpty()
+                ? ClassDepsReport.DEFAULT_PACKAGE_NAME
+                : scope.getPackageName();
+
+        return new ClassDepsReport(this.symbols, className, packageName, dependencies, qualifiedDependencies, false);
+    }
+
+    // Every simple name of a scoped name as written, e.g. Map and Entry for Map.Entry, unless filtered out
+    private void addWrittenNames(String name, Set<String> names) {
+        for (String simpleName : name.split("\\.")) {
+            if (this.isDependencyToInclude(simpleName))
+                names.add(simpleName);
         }
+    }
 
-        return !excludedTypes.contains(qualifiedName);
+    // Package-private to be measured by the benchmarks
+    boolean isDependencyToInclude(String qualifiedName) {
+        return this.filter.test(qualifiedName);
     }
 
     private Future<Set<Path>> getFilesPaths(Path packagePath) {
@@ -195,43 +741,27 @@ public class DependencyAnalyserLib {
         return pathsPromise.future();
     }
 
-    private Future<Path> getProjectEntryPoint(Path projectSrcFolder) {
-        final Promise<Path> projectEntryPointPromise = Promise.promise();
-
-        this.vertx.executeBlocking(() -> {
-            try (final Stream<Path> paths = Files.walk(projectSrcFolder)) {
-                Optional<Path> srcFolderPath = paths
-                        .filter(Files::isDirectory)
-                        .filter(p -> p.getFileName().toString().equals("java"))
-                        .findFirst();
-                if (srcFolderPath.isPresent())
-                    return srcFolderPath.get();
-                else
-                    throw new RuntimeException("Could not find Java source folder");
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
-        }).onSuccess(projectEntryPointPromise::complete)
-        .onFailure(projectEntryPointPromise::fail);
-
-        return projectEntryPointPromise.future();
+    private Future<List<Path>> getSourceRoots(Path projectSrcFolder) {
+        return this.getProjectLayout(projectSrcFolder).map(ProjectLayout::getSourceRoots);
     }
 
-    private Future<Set<Path>> getPackagesPaths(Path projectEntryPoint) {
-        final Promise<Set<Path>> pathsPromise = Promise.promise();
+    // [Package folder -> Java files directly contained in the folder], each file belongs to exactly one package
+    private Future<Map<Path, List<Path>>> getPackagesFiles(List<Path> sourceRoots) {
+        return this.vertx.executeBlocking(() -> listJavaFiles(sourceRoots).stream()
+                .collect(Collectors.groupingBy(Path::getParent, TreeMap::new, Collectors.toList())), false);
+    }
 
-        this.vertx.executeBlocking(() -> {
-            try (final Stream<Path> paths = Files.walk(projectEntryPoint)) {
-                return paths
-                        .filter(Files::isDirectory)
-                        .filter(p -> !p.equals(projectEntryPoint))
-                        .collect(Collectors.toSet());
-            } catch (IOException e) {
-                throw new RuntimeException(e);
+    // The Java files of the source roots, root after root
+    private static List<Path> listJavaFiles(List<Path> sourceRoots) throws IOException {
+        final List<Path> files = new ArrayList<>();
+        for (Path sourceRoot : sourceRoots) {
+            try (final Stream<Path> paths = Files.walk(sourceRoot)) {
+                paths.filter(p -> p.toString().endsWith(".java"))
+                        .filter(Files::isRegularFile)
+                        .sorted()
+                        .forEach(files::add);
             }
-        }).onSuccess(pathsPromise::complete)
-        .onFailure(pathsPromise::fail);
-
-        return pathsPromise.future();
+        }
+        return files;
     }
-}
\ No newline at end of file
+}
@@ -3,6 +3,11 @@ package lib;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
+import lib.analytics.Digraph;
+import lib.analytics.GraphAnalytics;
+import lib.cache.AnalysisCache;
+import lib.filter.DependencyFilter;
+import lib.metrics.AnalysisMetrics;
 import lib.reports.ClassDepsReport;
 import lib.reports.PackageDepsReport;
 import lib.reports.ProjectDepsReport;
@@ -11,13 +16,17 @@ import java.nio.file.Path;
 
 public class DependencyAnalyserVerticle extends AbstractVerticle {
     private static final String CURRENT_PATH = System.getProperty("user.dir");
-    private static final Path CLASS_PATH = Path.of(CURRENT_PATH + "\\src\\main\\java\\lib\\reports\\ClassDepsReport.java");
-    private static final Path PACKAGE_PATH = Path.of(CURRENT_PATH + "\\src\\main\\java\\lib\\reports");
+    private static final Path PACKAGE_PATH = Path.of(CURRENT_PATH, "src", "main", "java", "lib", "reports");
+    private static final Path CLASS_PATH = PACKAGE_PATH.resolve("ClassDepsReport.java");
     private static final Path PROJECT_PATH = Path.of(CURRENT_PATH);
+    private static final Path CACHE_PATH = AnalysisCache.defaultLocation("lib");
 
     @Override
     public void start(Promise<Void> startPromise) {
-        final DependencyAnalyserLib dependencyAnalyser = new DependencyAnalyserLib(this.vertx);
+        final DependencyFilter filter = DependencyFilter.fromConfiguration();
+        final AnalysisCache cache = AnalysisCache.load(CACHE_PATH, DependencyAnalyserLib.cacheFingerprint(filter));
+        final DependencyAnalyserLib dependencyAnalyser = new DependencyAnalyserLib(this.vertx,
+                new AnalyserOptions().setCache(cache).setFilter(filter));
 
         final Future<ClassDepsReport> classReport = dependencyAnalyser.getClassDependencies(CLASS_PATH);
         final Future<PackageDepsReport> packageReport = dependencyAnalyser.getPackageDependencies(PACKAGE_PATH);
@@ -30,9 +39,33 @@ public class DependencyAnalyserVerticle extends AbstractVerticle {
                     logPackageReport(packageReport.result());
                     System.out.println();
                     logProjectReport(projectReport.result());
-                    startPromise.complete();
+                    logPackageAnalytics(projectReport.result());
+                    logCacheStats(cache);
+                    logFilterStats(filter);
+                    logMetrics(dependencyAnalyser.getMetrics());
                 })
-                .onFailure(System.err::println);
+                .compose(res -> this.vertx.executeBlocking(() -> {
+                    cache.save();
+                    return null;
+                }))
+                .onSuccess(res -> startPromise.complete())
+                .onFailure(startPromise::fail);
+    }
+
+    private void logPackageAnalytics(ProjectDepsReport projectReport) {
+        System.out.print("Package graph: " + GraphAnalytics.of(Digraph.ofPackages(projectReport.getDependencyGraph())).getSummary());
+    }
+
+    private void logCacheStats(AnalysisCache cache) {
+        System.out.println("Analysis cache: " + cache.getHits() + " hits, " + cache.getMisses() + " misses");
+    }
+
+    private void logMetrics(AnalysisMetrics metrics) {
+        System.out.print("Analysis stages:\n" + metrics.getSummary());
+    }
+
+    private void logFilterStats(DependencyFilter filter) {
+        System.out.println("Dependency filter matches:\n" + filter.getStatistics());
     }
 
     private void logClassReport(ClassDepsReport classReport) {
@@ -0,0 +1,246 @@
+package lib;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.streams.ReadStream;
+import lib.reports.ClassDepsReport;
+import lib.watch.Edge;
+import lib.watch.EdgeDelta;
+import lib.watch.EdgeIndex;
+import lib.watch.SourceTreeWatcher;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Stream of the changes of the dependency graph of a Java project. The stream first emits the edges of the whole
+ * project as added, then watches the source tree and, when files change, re-analyses only those files and emits
+ * the edges they added or removed. Failing analyses (e.g. a file saved while not compiling) are reported to the
+ * exception handler and leave the previous edges of the file untouched.
+ * Both ends of an edge are qualified class names. The changes not emitted yet are coalesced by edge: an edge that
+ * appears and disappears again while the stream is paused is not emitted at all, so the changes waiting for demand
+ * never outnumber the edges of the project, however long the stream stays paused.
+ * The watch stops when the stream is closed.
+ */
+public class DependencyWatchStream implements ReadStream<EdgeDelta> {
+    private final Context context;
+    private final Future<List<Path>> sourceRoots;
+    private final Function<List<Path>, Future<List<Path>>> lister;
+    private final Function<Path, Future<ClassDepsReport>> analyser;
+    private final int maxConcurrency;
+    private final Duration debounce;
+    private final Duration maxDelay;
+
+    private final EdgeIndex edgeIndex = new EdgeIndex();
+    // The changes waiting for demand, in order, at most one per edge
+    private final Map<Edge, EdgeDelta> pending = new LinkedHashMap<>();
+    private Future<Void> processing = Future.succeededFuture();
+    // A watcher per source root
+    private List<SourceTreeWatcher> watchers = List.of();
+    private long demand = Long.MAX_VALUE;
+    private boolean started = false;
+    private boolean closed = false;
+
+    private Handler<EdgeDelta> handler;
+    private Handler<Void> endHandler;
+    private Handler<Throwable> exceptionHandler;
+
+    DependencyWatchStream(Vertx vertx, Future<List<Path>> sourceRoots, Function<List<Path>, Future<List<Path>>> lister,
+                          Function<Path, Future<ClassDepsReport>> analyser, int maxConcurrency, Duration debounce,
+                          Duration maxDelay) {
+        this.context = vertx.getOrCreateContext();
+        this.sourceRoots = sourceRoots;
+        this.lister = lister;
+        this.analyser = analyser;
+        this.maxConcurrency = maxConcurrency;
+        this.debounce = debounce;
+        this.maxDelay = maxDelay;
+    }
+
+    @Override
+    public DependencyWatchStream exceptionHandler(Handler<Throwable> handler) {
+        this.exceptionHandler = handler;
+        return this;
+    }
+
+    /**
+     * Set the handler of the changes. Setting the first handler starts the initial analysis and the watch.
+     */
+    @Override
+    public DependencyWatchStream handler(Handler<EdgeDelta> handler) {
+        this.handler = handler;
+        if (handler != null)
+            this.onContext(this::start);
+        return this;
+    }
+
+    /**
+     * Set the handler called when the stream is closed.
+     */
+    @Override
+    public DependencyWatchStream endHandler(Handler<Void> endHandler) {
+        this.endHandler = endHandler;
+        return this;
+    }
+
+    @Override
+    public DependencyWatchStream pause() {
+        this.onContext(() -> this.demand = 0);
+        return this;
+    }
+
+    @Override
+    public DependencyWatchStream resume() {
+        return this.fetch(Long.MAX_VALUE);
+    }
+
+    @Override
+    public DependencyWatchStream fetch(long amount) {
+        this.onContext(() -> {
+            this.demand = Long.MAX_VALUE - this.demand > amount ? this.demand + amount : Long.MAX_VALUE;
+            this.drain();
+        });
+        return this;
+    }
+
+    /**
+     * Stop watching the project and end the stream.
+     */
+    public void close() {
+        this.onContext(() -> {
+            if (this.closed)
+                return;
+            this.closed = true;
+            this.closeWatcher();
+            if (this.endHandler != null)
+                this.endHandler.handle(null);
+        });
+    }
+
+    private void onContext(Runnable action) {
+        if (Vertx.currentContext() == this.context)
+            action.run();
+        else
+            this.context.runOnContext(v -> action.run());
+    }
+
+    private void start() {
+        if (this.started)
+            return;
+        this.started = true;
+
+        this.sourceRoots
+                .compose(roots -> this.context.executeBlocking(() -> this.createWatchers(roots)))
+                .compose(watchers -> {
+                    this.watchers = watchers;
+                    if (this.closed)
+                        this.closeWatcher();
+                    else
+                        watchers.forEach(SourceTreeWatcher::start);
+                    return this.sourceRoots.compose(this.lister);
+                })
+                .onSuccess(files -> this.onContext(() -> this.enqueue(files)))
+                .onFailure(cause -> this.onContext(() -> this.reportFailure(cause)));
+    }
+
+    // Batches are processed one after the other, so the edges of a file are always updated in order
+    private void enqueue(List<Path> files) {
+        this.processing = this.processing.compose(v -> this.process(files));
+    }
+
+    private Future<Void> process(List<Path> files) {
+        if (this.closed)
+            return Future.succeededFuture();
+
+        return BoundedMapper.map(files, this::analyse, this.maxConcurrency)
+                .map(reports -> {
+                    for (int i = 0; i < files.size(); i++) {
+                        final Optional<ClassDepsReport> report = reports.get(i);
+                        if (report == null)
+                            continue;
+                        this.addPending(report.isPresent()
+                                ? this.edgeIndex.update(files.get(i), edgesOf(report.get()))
+                                : this.edgeIndex.remove(files.get(i)));
+                    }
+                    this.drain();
+                    return null;
+                });
+    }
+
+    // Empty for a deleted file, null if the analysis failed
+    private Future<Optional<ClassDepsReport>> analyse(Path file) {
+        if (!Files.exists(file))
+            return Future.succeededFuture(Optional.empty());
+
+        return this.analyser.apply(file)
+                .map(Optional::of)
+                .otherwise(cause -> {
+                    this.onContext(() -> this.reportFailure(cause));
+                    return null;
+                });
+    }
+
+    private static Set<Edge> edgesOf(ClassDepsReport report) {
+        final String from = report.getQualifiedName();
+        final Set<Edge> edges = new HashSet<>();
+        for (String dependency : report.getQualifiedDependencies())
+            edges.add(new Edge(from, dependency));
+        return edges;
+    }
+
+    // A change of an edge that is still waiting cancels it: the edge is back to its last emitted state
+    private void addPending(List<EdgeDelta> deltas) {
+        for (EdgeDelta delta : deltas) {
+            if (this.pending.remove(delta.getEdge()) == null)
+                this.pending.put(delta.getEdge(), delta);
+        }
+    }
+
+    // The handler may fetch, so the next change is taken again from the map every time
+    private void drain() {
+        while (!this.closed && this.demand > 0 && !this.pending.isEmpty() && this.handler != null) {
+            if (this.demand != Long.MAX_VALUE)
+                this.demand--;
+            final Iterator<EdgeDelta> deltas = this.pending.values().iterator();
+            final EdgeDelta delta = deltas.next();
+            deltas.remove();
+            this.handler.handle(delta);
+        }
+    }
+
+    private void reportFailure(Throwable cause) {
+        if (this.exceptionHandler != null)
+            this.exceptionHandler.handle(cause);
+    }
+
+    // The watchers already registered are closed if a source root can't be registered
+    private List<SourceTreeWatcher> createWatchers(List<Path> roots) throws IOException {
+        final List<SourceTreeWatcher> watchers = new ArrayList<>(roots.size());
+        try {
+            for (Path root : roots)
+                watchers.add(new SourceTreeWatcher(root, this.debounce, this.maxDelay,
+                        changes -> this.onContext(() -> this.enqueue(new ArrayList<>(changes)))));
+        } catch (IOException e) {
+            for (SourceTreeWatcher watcher : watchers)
+                watcher.close();
+            throw e;
+        }
+        return watchers;
+    }
+
+    private void closeWatcher() {
+        for (SourceTreeWatcher watcher : this.watchers) {
+            try {
+                watcher.close();
+            } catch (IOException e) {
+                this.reportFailure(e);
+            }
+        }
+    }
+}
@@ -1,12 +1,67 @@
 package lib;
 
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
 import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import lib.filter.DependencyFilter;
+import lib.metrics.MetricsVerticle;
+import lib.service.AnalysisServiceVerticle;
 
+import java.nio.file.Path;
+
+/**
+ * Command line entry point: prints the analysis of this project, or with {@code serve [port]}, serves analyses over
+ * HTTP on localhost until the JVM is stopped, see {@link AnalysisServiceVerticle}. With
+ * {@code diff <from> <to> [folder]}, prints the dependencies added and removed between two revisions of the git
+ * repository of the folder, by default the current one.
+ */
 public class PrintDependenciesAnalysis {
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("diff")) {
+            if (args.length < 3) {
+                System.err.println("Usage: diff <from> <to> [folder]");
+                System.exit(2);
+            }
+            printDiff(Vertx.vertx(), args);
+            return;
+        }
+
         final Vertx vertx = Vertx.vertx();
 
-        vertx.deployVerticle(new DependencyAnalyserVerticle())
+        final boolean serve = args.length > 0 && args[0].equals("serve");
+        // With -Danalyzer.metrics.port=<port>, the metrics stay served after the analysis until the JVM is stopped
+        final Integer metricsPort = Integer.getInteger("analyzer.metrics.port");
+
+        final Future<String> metricsDeployment = metricsPort == null
+                ? Future.succeededFuture()
+                : vertx.deployVerticle(new MetricsVerticle(),
+                        new DeploymentOptions().setConfig(new JsonObject().put("port", metricsPort)));
+
+        metricsDeployment
+                .compose(id -> serve
+                        ? vertx.deployVerticle(new AnalysisServiceVerticle(), new DeploymentOptions().setConfig(new JsonObject()
+                                .put("port", args.length > 1 ? Integer.parseInt(args[1]) : AnalysisServiceVerticle.DEFAULT_PORT)))
+                        : vertx.deployVerticle(new DependencyAnalyserVerticle()))
+                .onFailure(cause -> System.err.println("Analysis failed: " + cause.getMessage()))
+                .onComplete(r -> {
+                    if (r.failed() || (metricsPort == null && !serve))
+                        vertx.close();
+                });
+    }
+
+    private static void printDiff(Vertx vertx, String[] args) {
+        final Path folder = Path.of(args.length > 3 ? args[3] : System.getProperty("user.dir")).toAbsolutePath();
+        final DependencyAnalyserLib dependencyAnalyser = new DependencyAnalyserLib(vertx,
+                new AnalyserOptions().setFilter(DependencyFilter.fromConfiguration()));
+
+        dependencyAnalyser.diffRevisions(folder, args[1], args[2])
+                .onSuccess(diff -> {
+                    System.out.printf("%s..%s%n", args[1], args[2]);
+                    System.out.print(diff.getSummary());
+                    diff.getClassDeltas().forEach(System.out::println);
+                })
+                .onFailure(cause -> System.err.println("Diff failed: " + cause.getMessage()))
                 .onComplete(r -> vertx.close());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,282 @@
+package lib;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.streams.ReadStream;
+import lib.project.ProjectLayout;
+import lib.project.ProjectModule;
+import lib.reports.ClassDepsReport;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Stream of the reports of the classes of a Java project, emitted as soon as each class is analysed.
+ * The source tree is listed one folder at a time, without following the links to folders, and at most
+ * maxConcurrency reports are being computed or waiting for demand, so the memory used does not depend on the size
+ * of the project.
+ * The modules of the project are streamed one after the other: the classes of a module are all emitted before the
+ * first class of the next one is analysed.
+ * Besides the class reports, the stream signals the completion of every package to the
+ * {@link #packageEndHandler(Handler)}, of every module to the {@link #moduleEndHandler(Handler)} and of the
+ * project to the {@link #endHandler(Handler)}.
+ */
+public class ProjectDepsStream implements ReadStream<ClassDepsReport> {
+    private final Context context;
+    private final Future<ProjectLayout> layout;
+    private final Function<Path, Future<ClassDepsReport>> analyser;
+    private final int maxConcurrency;
+
+    private final Deque<ProjectModule> modules = new ArrayDeque<>();
+    private final Deque<Path> folders = new ArrayDeque<>();
+    private final Deque<ReadyReport> ready = new ArrayDeque<>();
+    private ProjectModule currentModule;
+    private PackageProgress currentPackage;
+    private Iterator<Path> currentFiles = Collections.emptyIterator();
+    private int inFlight = 0;
+    private long demand = Long.MAX_VALUE;
+    private boolean started = false;
+    private boolean listing = false;
+    private boolean terminated = false;
+
+    private Handler<ClassDepsReport> handler;
+    private Handler<String> packageEndHandler;
+    private Handler<String> moduleEndHandler;
+    private Handler<Void> endHandler;
+    private Handler<Throwable> exceptionHandler;
+
+    ProjectDepsStream(Vertx vertx, Future<ProjectLayout> layout, Function<Path, Future<ClassDepsReport>> analyser, int maxConcurrency) {
+        this.context = vertx.getOrCreateContext();
+        this.layout = layout;
+        this.analyser = analyser;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    @Override
+    public ProjectDepsStream exceptionHandler(Handler<Throwable> handler) {
+        this.exceptionHandler = handler;
+        return this;
+    }
+
+    /**
+     * Set the handler of the class reports. Setting the first handler starts the analysis, setting a null handler
+     * pauses the stream until it is resumed.
+     */
+    @Override
+    public ProjectDepsStream handler(Handler<ClassDepsReport> handler) {
+        this.handler = handler;
+        if (handler != null)
+            this.onContext(this::start);
+        else
+            this.pause();
+        return this;
+    }
+
+    /**
+     * Set the handler called with the name of every package, once all its classes have been emitted.
+     *
+     * @param packageEndHandler the handler of the completed packages
+     * @return a reference to this, so the API can be used fluently
+     */
+    public ProjectDepsStream packageEndHandler(Handler<String> packageEndHandler) {
+        this.packageEndHandler = packageEndHandler;
+        return this;
+    }
+
+    /**
+     * Set the handler called with the name of every module, once all its classes have been emitted, even if it has none.
+     *
+     * @param moduleEndHandler the handler of the completed modules
+     * @return a reference to this, so the API can be used fluently
+     */
+    public ProjectDepsStream moduleEndHandler(Handler<String> moduleEndHandler) {
+        this.moduleEndHandler = moduleEndHandler;
+        return this;
+    }
+
+    /**
+     * Set the handler called once all the classes of the project have been emitted.
+     */
+    @Override
+    public ProjectDepsStream endHandler(Handler<Void> endHandler) {
+        this.endHandler = endHandler;
+        return this;
+    }
+
+    @Override
+    public ProjectDepsStream pause() {
+        this.onContext(() -> this.demand = 0);
+        return this;
+    }
+
+    @Override
+    public ProjectDepsStream resume() {
+        return this.fetch(Long.MAX_VALUE);
+    }
+
+    @Override
+    public ProjectDepsStream fetch(long amount) {
+        this.onContext(() -> {
+            this.demand = Long.MAX_VALUE - this.demand > amount ? this.demand + amount : Long.MAX_VALUE;
+            this.drain();
+        });
+        return this;
+    }
+
+    private void onContext(Runnable action) {
+        if (Vertx.currentContext() == this.context)
+            action.run();
+        else
+            this.context.runOnContext(v -> action.run());
+    }
+
+    private void start() {
+        if (this.started)
+            return;
+        this.started = true;
+
+        this.layout
+                .onSuccess(layout -> this.onContext(() -> {
+                    this.modules.addAll(layout.getModules());
+                    this.drain();
+                }))
+                .onFailure(cause -> this.onContext(() -> this.fail(cause)));
+    }
+
+    private void drain() {
+        if (this.terminated || !this.started)
+            return;
+
+        while (this.demand > 0 && !this.ready.isEmpty() && this.handler != null && !this.terminated)
+            this.emit(this.ready.poll());
+
+        while (this.hasCapacity() && this.currentFiles.hasNext())
+            this.analyse(this.currentPackage, this.currentFiles.next());
+
+        if (!this.currentFiles.hasNext() && !this.listing && !this.folders.isEmpty() && this.hasCapacity())
+            this.listNextFolder();
+
+        // The next module starts once every class of the current one is emitted
+        while (!this.currentFiles.hasNext() && !this.listing && this.folders.isEmpty()
+                && this.inFlight == 0 && this.ready.isEmpty() && !this.terminated) {
+            if (this.currentModule != null && this.moduleEndHandler != null)
+                this.moduleEndHandler.handle(this.currentModule.getName());
+
+            this.currentModule = this.modules.poll();
+            if (this.currentModule == null) {
+                this.terminated = true;
+                if (this.endHandler != null)
+                    this.endHandler.handle(null);
+                return;
+            }
+            this.folders.addAll(this.currentModule.getSourceRoots());
+            if (!this.folders.isEmpty())
+                this.listNextFolder();
+        }
+    }
+
+    private boolean hasCapacity() {
+        return this.inFlight + this.ready.size() < this.maxConcurrency;
+    }
+
+    private void emit(ReadyReport readyReport) {
+        if (this.demand != Long.MAX_VALUE)
+            this.demand--;
+        this.handler.handle(readyReport.report);
+
+        final PackageProgress packageProgress = readyReport.packageProgress;
+        if (--packageProgress.remaining == 0 && this.packageEndHandler != null)
+            this.packageEndHandler.handle(packageProgress.name);
+    }
+
+    private void analyse(PackageProgress packageProgress, Path file) {
+        this.inFlight++;
+        this.analyser.apply(file).onComplete(res -> this.onContext(() -> {
+            this.inFlight--;
+            if (res.failed()) {
+                this.fail(res.cause());
+                return;
+            }
+
+            if (packageProgress.name == null)
+                packageProgress.name = res.result().getPackageName();
+            this.ready.add(new ReadyReport(packageProgress, res.result()));
+            this.drain();
+        }));
+    }
+
+    private void listNextFolder() {
+        this.listing = true;
+        final Path folder = this.folders.poll();
+
+        this.context.executeBlocking(() -> {
+            final List<Path> files = new ArrayList<>();
+            final List<Path> subFolders = new ArrayList<>();
+            try (final DirectoryStream<Path> entries = Files.newDirectoryStream(folder)) {
+                for (Path entry : entries) {
+                    // Links to folders are not followed, a link to an ancestor would list the tree forever
+                    if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS))
+                        subFolders.add(entry);
+                    else if (Files.isRegularFile(entry) && entry.toString().endsWith(".java"))
+                        files.add(entry);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            Collections.sort(files);
+            Collections.sort(subFolders);
+            return List.of(files, subFolders);
+        }, false).onComplete(res -> this.onContext(() -> {
+            this.listing = false;
+            if (res.failed()) {
+                this.fail(res.cause());
+                return;
+            }
+
+            final List<Path> subFolders = res.result().get(1);
+            for (int i = subFolders.size() - 1; i >= 0; i--)
+                this.folders.addFirst(subFolders.get(i));
+
+            final List<Path> files = res.result().get(0);
+            if (!files.isEmpty()) {
+                this.currentPackage = new PackageProgress(files.size());
+                this.currentFiles = files.iterator();
+            }
+            this.drain();
+        }));
+    }
+
+    private void fail(Throwable cause) {
+        if (this.terminated)
+            return;
+        this.terminated = true;
+        if (this.exceptionHandler != null)
+            this.exceptionHandler.handle(cause);
+    }
+
+    private static class PackageProgress {
+        private String name;
+        private int remaining;
+
+        private PackageProgress(int files) {
+            this.remaining = files;
+        }
+    }
+
+    private static class ReadyReport {
+        private final PackageProgress packageProgress;
+        private final ClassDepsReport report;
+
+        private ReadyReport(PackageProgress packageProgress, ClassDepsReport report) {
+            this.packageProgress = packageProgress;
+            this.report = report;
+        }
+    }
+}
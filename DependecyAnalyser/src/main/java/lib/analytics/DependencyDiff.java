@@ -0,0 +1,114 @@
+package lib.analytics;
+
+import lib.reports.ProjectDepsReport;
+import lib.watch.Edge;
+import lib.watch.EdgeDelta;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Difference between the dependency graphs of two reports of a project, e.g. of two revisions: the class
+ * dependencies and the package dependencies added and removed, sorted by name. Package dependencies are those of
+ * {@link Digraph#ofPackages}, between packages of the analysed classes.
+ */
+public final class DependencyDiff {
+    private static final Comparator<Edge> BY_NAME = Comparator.comparing(Edge::getFrom).thenComparing(Edge::getTo);
+
+    private final List<Edge> addedClassEdges;
+    private final List<Edge> removedClassEdges;
+    private final List<Edge> addedPackageEdges;
+    private final List<Edge> removedPackageEdges;
+
+    private DependencyDiff(List<Edge> addedClassEdges, List<Edge> removedClassEdges,
+                           List<Edge> addedPackageEdges, List<Edge> removedPackageEdges) {
+        this.addedClassEdges = addedClassEdges;
+        this.removedClassEdges = removedClassEdges;
+        this.addedPackageEdges = addedPackageEdges;
+        this.removedPackageEdges = removedPackageEdges;
+    }
+
+    /**
+     * Get the difference between two reports of a project.
+     *
+     * @param before the report of the project before the change
+     * @param after the report of the project after the change
+     * @return the dependencies added and removed by the change
+     */
+    public static DependencyDiff between(ProjectDepsReport before, ProjectDepsReport after) {
+        final Set<Edge> classesBefore = edgesOf(Digraph.ofClasses(before.getDependencyGraph()));
+        final Set<Edge> classesAfter = edgesOf(Digraph.ofClasses(after.getDependencyGraph()));
+        final Set<Edge> packagesBefore = edgesOf(Digraph.ofPackages(before.getDependencyGraph()));
+        final Set<Edge> packagesAfter = edgesOf(Digraph.ofPackages(after.getDependencyGraph()));
+        return new DependencyDiff(minus(classesAfter, classesBefore), minus(classesBefore, classesAfter),
+                minus(packagesAfter, packagesBefore), minus(packagesBefore, packagesAfter));
+    }
+
+    public List<Edge> getAddedClassEdges() {
+        return this.addedClassEdges;
+    }
+
+    public List<Edge> getRemovedClassEdges() {
+        return this.removedClassEdges;
+    }
+
+    public List<Edge> getAddedPackageEdges() {
+        return this.addedPackageEdges;
+    }
+
+    public List<Edge> getRemovedPackageEdges() {
+        return this.removedPackageEdges;
+    }
+
+    public boolean isEmpty() {
+        return this.addedClassEdges.isEmpty() && this.removedClassEdges.isEmpty();
+    }
+
+    /**
+     * Get the changes of the class dependencies, as a watch of the sources would report them.
+     *
+     * @return the removed dependencies, then the added ones
+     */
+    public List<EdgeDelta> getClassDeltas() {
+        final List<EdgeDelta> deltas = new ArrayList<>(this.removedClassEdges.size() + this.addedClassEdges.size());
+        this.removedClassEdges.forEach(edge -> deltas.add(new EdgeDelta(edge, false)));
+        this.addedClassEdges.forEach(edge -> deltas.add(new EdgeDelta(edge, true)));
+        return deltas;
+    }
+
+    /**
+     * Get a summary of the difference: the counts of dependencies, then every package dependency added or removed.
+     *
+     * @return the summary of the difference
+     */
+    public String getSummary() {
+        final StringBuilder summary = new StringBuilder(String.format("+%d -%d class dependencies, +%d -%d package dependencies%n",
+                this.addedClassEdges.size(), this.removedClassEdges.size(),
+                this.addedPackageEdges.size(), this.removedPackageEdges.size()));
+        this.addedPackageEdges.forEach(edge -> summary.append("+ ").append(edge).append(System.lineSeparator()));
+        this.removedPackageEdges.forEach(edge -> summary.append("- ").append(edge).append(System.lineSeparator()));
+        return summary.toString();
+    }
+
+    private static Set<Edge> edgesOf(Digraph graph) {
+        final Set<Edge> edges = new HashSet<>(graph.edgeCount() * 2);
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            for (int edge = graph.edgeStart(node); edge < graph.edgeEnd(node); edge++)
+                edges.add(new Edge(graph.nameOf(node), graph.nameOf(graph.target(edge))));
+        }
+        return edges;
+    }
+
+    private static List<Edge> minus(Set<Edge> edges, Set<Edge> removed) {
+        final List<Edge> difference = new ArrayList<>();
+        for (Edge edge : edges) {
+            if (!removed.contains(edge))
+                difference.add(edge);
+        }
+        difference.sort(BY_NAME);
+        return List.copyOf(difference);
+    }
+}
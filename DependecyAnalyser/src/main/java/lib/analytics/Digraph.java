@@ -0,0 +1,130 @@
+package lib.analytics;
+
+import lib.graph.DependencyGraphModel;
+import lib.graph.SymbolTable;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable directed graph in compressed sparse row form, the input of the graph analytics: the successors of
+ * node n are {@code target(edgeStart(n))} ... {@code target(edgeEnd(n) - 1)}. Built from a
+ * {@link DependencyGraphModel} at the granularity of the classes or of the packages.
+ */
+public final class Digraph {
+    private final String[] names;
+    private final int[] offsets;
+    private final int[] targets;
+
+    Digraph(String[] names, int[] offsets, int[] targets) {
+        this.names = names;
+        this.offsets = offsets;
+        this.targets = targets;
+    }
+
+    /**
+     * Get the graph of the classes: a node per class or dependency, an edge per dependency, once even if the class
+     * was reported several times. A class that uses itself, or its nested classes, does not depend on itself: these
+     * edges are left out.
+     *
+     * @param model the dependency graph of a project
+     * @return the class graph
+     */
+    public static Digraph ofClasses(DependencyGraphModel model) {
+        final String[] names = new String[model.nodeCount()];
+        final int[] offsets = new int[model.nodeCount() + 1];
+        final int[] targets = new int[model.edgeCount()];
+        int count = 0;
+        for (int node = 0; node < model.nodeCount(); node++) {
+            names[node] = model.nameOf(node);
+            for (int edge = model.edgeStart(node); edge < model.edgeEnd(node); edge++) {
+                if (model.target(edge) != node)
+                    targets[count++] = model.target(edge);
+            }
+            offsets[node + 1] = count;
+        }
+        return new Digraph(names, offsets, count == targets.length ? targets : Arrays.copyOf(targets, count));
+    }
+
+    /**
+     * Get the graph of the packages: a node per package of the analysed classes, an edge from a package to every
+     * other package one of its classes depends on. Dependencies on classes that were not analysed, e.g. of
+     * libraries, are left out: they have no dependencies, so they are never part of a cycle.
+     *
+     * @param model the dependency graph of a project
+     * @return the package graph
+     */
+    public static Digraph ofPackages(DependencyGraphModel model) {
+        final Map<Integer, Integer> packageNodes = new HashMap<>();
+        final int[] nodePackages = new int[model.nodeCount()];
+        for (int node = 0; node < model.nodeCount(); node++) {
+            final int packageSymbol = model.packageOf(node);
+            nodePackages[node] = packageSymbol == SymbolTable.NO_SYMBOL
+                    ? -1
+                    : packageNodes.computeIfAbsent(packageSymbol, symbol -> packageNodes.size());
+        }
+
+        final int packageCount = packageNodes.size();
+        final String[] names = new String[packageCount];
+        packageNodes.forEach((symbol, node) -> names[node] = model.getSymbols().nameOf(symbol));
+
+        // Edges are gathered per package, then sorted to drop the duplicates
+        final long[] edges = new long[model.edgeCount()];
+        int edgeCount = 0;
+        for (int node = 0; node < model.nodeCount(); node++) {
+            final int from = nodePackages[node];
+            for (int edge = model.edgeStart(node); edge < model.edgeEnd(node); edge++) {
+                final int to = nodePackages[model.target(edge)];
+                if (from >= 0 && to >= 0 && from != to)
+                    edges[edgeCount++] = (long) from << 32 | to;
+            }
+        }
+        Arrays.parallelSort(edges, 0, edgeCount);
+        return fromSortedEdges(names, edges, edgeCount);
+    }
+
+    // Edges encoded as (from << 32 | to), sorted, possibly with duplicates
+    static Digraph fromSortedEdges(String[] names, long[] edges, int edgeCount) {
+        final int[] offsets = new int[names.length + 1];
+        final int[] targets = new int[edgeCount];
+        int distinct = 0;
+        for (int i = 0; i < edgeCount; i++) {
+            if (i > 0 && edges[i] == edges[i - 1])
+                continue;
+            offsets[(int) (edges[i] >>> 32) + 1]++;
+            targets[distinct++] = (int) edges[i];
+        }
+        for (int node = 0; node < names.length; node++)
+            offsets[node + 1] += offsets[node];
+        return new Digraph(names, offsets, Arrays.copyOf(targets, distinct));
+    }
+
+    public int nodeCount() {
+        return this.names.length;
+    }
+
+    public int edgeCount() {
+        return this.targets.length;
+    }
+
+    public String nameOf(int node) {
+        return this.names[node];
+    }
+
+    public int edgeStart(int node) {
+        return this.offsets[node];
+    }
+
+    public int edgeEnd(int node) {
+        return this.offsets[node + 1];
+    }
+
+    public int outDegree(int node) {
+        return this.offsets[node + 1] - this.offsets[node];
+    }
+
+    public int target(int edge) {
+        return this.targets[edge];
+    }
+}
@@ -0,0 +1,357 @@
+package lib.analytics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Analytics of a dependency graph, at the granularity of the classes or of the packages (see {@link Digraph}):
+ * strongly connected components and the cycles they contain, topological layers, fan-in and fan-out, and the
+ * number of transitive dependencies of every node. The components are found when the analytics are created,
+ * the other results are computed at their first use, in parallel when the algorithm allows it.
+ */
+public final class GraphAnalytics {
+    // Memory of the reachability bit sets of one chunk of the transitive counts, per thread
+    private static final long REACHABILITY_CHUNK_BYTES = 32L * 1024 * 1024;
+    private static final int MAX_WORDS_PER_COMPONENT = 64;
+
+    private final Digraph graph;
+    private final StronglyConnectedComponents components;
+    private Digraph condensation;
+    private int[] layers;
+    private int[] fanIn;
+    private int[] transitiveCounts;
+
+    private GraphAnalytics(Digraph graph) {
+        this.graph = graph;
+        this.components = StronglyConnectedComponents.of(graph);
+    }
+
+    /**
+     * Analyse a graph.
+     *
+     * @param graph the class or package graph
+     * @return the analytics of the graph
+     */
+    public static GraphAnalytics of(Digraph graph) {
+        return new GraphAnalytics(graph);
+    }
+
+    public Digraph getGraph() {
+        return this.graph;
+    }
+
+    public StronglyConnectedComponents getComponents() {
+        return this.components;
+    }
+
+    /**
+     * Get the nodes of every component that contains a cycle, largest components first.
+     *
+     * @return the names of the nodes of the cyclic components
+     */
+    public List<List<String>> getCyclicComponents() {
+        final List<List<String>> cyclicComponents = new ArrayList<>();
+        for (int component = 0; component < this.components.componentCount(); component++) {
+            if (this.components.isCyclic(component))
+                cyclicComponents.add(this.names(this.components.members(component)));
+        }
+        cyclicComponents.sort(Comparator.comparingInt((List<String> c) -> c.size()).reversed());
+        return cyclicComponents;
+    }
+
+    /**
+     * List dependency cycles: in every cyclic component, the shortest cycle through each of its first nodes.
+     * Listing every elementary cycle is exponential in the worst case, so the number of cycles per component
+     * is bounded, but every cyclic component has at least one cycle listed.
+     *
+     * @param maxCyclesPerComponent the maximum number of cycles listed per component, at least 1
+     * @return the cycles, shortest first, each as the names of its nodes in dependency order
+     */
+    public List<List<String>> getCycles(int maxCyclesPerComponent) {
+        final int[] distance = new int[this.graph.nodeCount()];
+        final int[] previous = new int[this.graph.nodeCount()];
+        final int[] queue = new int[this.graph.nodeCount()];
+        Arrays.fill(distance, -1);
+
+        final Set<List<Integer>> cycles = new HashSet<>();
+        for (int component = 0; component < this.components.componentCount(); component++) {
+            if (!this.components.isCyclic(component))
+                continue;
+            final int[] members = this.components.members(component);
+            for (int i = 0; i < Math.min(maxCyclesPerComponent, members.length); i++) {
+                final List<Integer> cycle = this.shortestCycle(members[i], component, distance, previous, queue);
+                if (!cycle.isEmpty())
+                    cycles.add(cycle);
+            }
+        }
+
+        return cycles.stream()
+                .sorted(Comparator.comparingInt((List<Integer> c) -> c.size()).thenComparing(c -> c.getFirst()))
+                .map(cycle -> cycle.stream().map(this.graph::nameOf).collect(Collectors.toList()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Get the topological layer of every node: 0 for the nodes without dependencies, otherwise one more than the
+     * highest layer of their dependencies. The nodes of a cycle share the same layer.
+     *
+     * @return the layer of every node
+     */
+    public synchronized int[] getLayers() {
+        if (this.layers == null) {
+            final Digraph dag = this.getCondensation();
+            final int[] componentLayers = new int[dag.nodeCount()];
+            // Components are in reverse topological order: dependencies are always computed first
+            for (int component = 0; component < dag.nodeCount(); component++) {
+                int layer = 0;
+                for (int edge = dag.edgeStart(component); edge < dag.edgeEnd(component); edge++)
+                    layer = Math.max(layer, componentLayers[dag.target(edge)] + 1);
+                componentLayers[component] = layer;
+            }
+
+            this.layers = new int[this.graph.nodeCount()];
+            for (int node = 0; node < this.graph.nodeCount(); node++)
+                this.layers[node] = componentLayers[this.components.componentOf(node)];
+        }
+        return this.layers;
+    }
+
+    /**
+     * Get the number of layers of the graph.
+     *
+     * @return one more than the highest layer, 0 for an empty graph
+     */
+    public int getLayerCount() {
+        return Arrays.stream(this.getLayers()).max().orElse(-1) + 1;
+    }
+
+    public int getFanOut(int node) {
+        return this.graph.outDegree(node);
+    }
+
+    /**
+     * Get the number of dependents of every node, counted in parallel.
+     *
+     * @return the fan-in of every node
+     */
+    public synchronized int[] getFanIn() {
+        if (this.fanIn == null) {
+            final AtomicIntegerArray counts = new AtomicIntegerArray(this.graph.nodeCount());
+            IntStream.range(0, this.graph.nodeCount()).parallel().forEach(node -> {
+                for (int edge = this.graph.edgeStart(node); edge < this.graph.edgeEnd(node); edge++)
+                    counts.incrementAndGet(this.graph.target(edge));
+            });
+            this.fanIn = new int[this.graph.nodeCount()];
+            for (int node = 0; node < this.fanIn.length; node++)
+                this.fanIn[node] = counts.get(node);
+        }
+        return this.fanIn;
+    }
+
+    /**
+     * Get the nodes with the most dependents.
+     *
+     * @param limit the maximum number of nodes
+     * @return the names of the nodes, by decreasing fan-in
+     */
+    public List<String> getHotspots(int limit) {
+        final int[] fanIn = this.getFanIn();
+        return IntStream.range(0, this.graph.nodeCount())
+                .boxed()
+                .sorted(Comparator.comparingInt((Integer node) -> fanIn[node]).reversed())
+                .limit(limit)
+                .map(this.graph::nameOf)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Get the number of nodes every node depends on, directly or not. The reachable nodes are computed on the
+     * graph of the components, with bit sets of components propagated from the dependencies to their dependents in
+     * reverse topological order: a chunk of target components at a time, every chunk in parallel on its own bit
+     * sets. Since a component only reaches the components before it, a chunk skips the components and the edges
+     * before its first target, and its chunks widen as fewer components remain.
+     *
+     * @return the number of transitive dependencies of every node, itself excluded
+     */
+    public synchronized int[] getTransitiveDependencyCounts() {
+        if (this.transitiveCounts == null) {
+            final Digraph dag = this.getCondensation();
+            final int componentCount = dag.nodeCount();
+            final List<int[]> chunks = new ArrayList<>();
+            for (int from = 0; from < componentCount; ) {
+                final int words = (int) Math.max(1, Math.min(MAX_WORDS_PER_COMPONENT,
+                        REACHABILITY_CHUNK_BYTES / Long.BYTES / (componentCount - from)));
+                final int to = Math.min(componentCount, from + words * Long.SIZE);
+                chunks.add(new int[]{from, to});
+                from = to;
+            }
+
+            final int[] componentCounts = chunks.parallelStream()
+                    .map(chunk -> this.countReachable(dag, chunk[0], chunk[1]))
+                    .reduce(new int[componentCount], GraphAnalytics::sum);
+
+            this.transitiveCounts = new int[this.graph.nodeCount()];
+            for (int node = 0; node < this.transitiveCounts.length; node++)
+                this.transitiveCounts[node] = componentCounts[this.components.componentOf(node)] - 1;
+        }
+        return this.transitiveCounts;
+    }
+
+    /**
+     * Get a summary of the analytics: the cycles, the layers and the hotspots.
+     *
+     * @return the summary
+     */
+    public String getSummary() {
+        final List<List<String>> cyclicComponents = this.getCyclicComponents();
+        final StringBuilder summary = new StringBuilder(String.format("%d nodes, %d edges, %d layers, %d cyclic components%n",
+                this.graph.nodeCount(), this.graph.edgeCount(), this.getLayerCount(), cyclicComponents.size()));
+        for (List<String> cycle : this.getCycles(1))
+            summary.append("  cycle: ").append(String.join(" -> ", cycle)).append(" -> ").append(cycle.getFirst()).append('\n');
+        final int[] fanIn = this.getFanIn();
+        for (String hotspot : this.getHotspots(5)) {
+            final int node = this.nodeOf(hotspot);
+            summary.append(String.format("  hotspot: %s (fan-in %d, fan-out %d)%n", hotspot, fanIn[node], this.getFanOut(node)));
+        }
+        return summary.toString();
+    }
+
+    private int nodeOf(String name) {
+        for (int node = 0; node < this.graph.nodeCount(); node++) {
+            if (this.graph.nameOf(node).equals(name))
+                return node;
+        }
+        return -1;
+    }
+
+    // Bit sets of the components of [from, to) reachable from every component from the first one on, its own
+    // component included, counted with the size of the components. A bit set only spans the words up to its highest
+    // reachable component, so the unreachable ends of the sets are never read
+    private int[] countReachable(Digraph dag, int from, int to) {
+        final int words = (to - from + Long.SIZE - 1) / Long.SIZE;
+        final long[] reachable = new long[(dag.nodeCount() - from) * words];
+        final int[] usedWords = new int[dag.nodeCount() - from];
+        // The bits of the components of several nodes, whose other nodes are counted apart
+        final long[] cyclic = new long[words];
+        for (int component = from; component < to; component++) {
+            if (this.components.size(component) > 1)
+                cyclic[(component - from) >>> 6] |= 1L << (component - from);
+        }
+
+        final int[] counts = new int[dag.nodeCount()];
+        for (int component = from; component < dag.nodeCount(); component++) {
+            final int row = component - from;
+            final int base = row * words;
+            int used = 0;
+            if (component < to) {
+                reachable[base + (row >>> 6)] |= 1L << row;
+                used = (row >>> 6) + 1;
+            }
+            for (int edge = dag.edgeStart(component); edge < dag.edgeEnd(component); edge++) {
+                final int target = dag.target(edge) - from;
+                if (target < 0)
+                    continue;
+                final int targetBase = target * words;
+                final int targetWords = usedWords[target];
+                for (int word = 0; word < targetWords; word++)
+                    reachable[base + word] |= reachable[targetBase + word];
+                used = Math.max(used, targetWords);
+            }
+            usedWords[row] = used;
+
+            int count = 0;
+            for (int word = 0; word < used; word++) {
+                final long bits = reachable[base + word];
+                count += Long.bitCount(bits);
+                for (long multiple = bits & cyclic[word]; multiple != 0; multiple &= multiple - 1)
+                    count += this.components.size(from + word * Long.SIZE + Long.numberOfTrailingZeros(multiple)) - 1;
+            }
+            counts[component] = count;
+        }
+        return counts;
+    }
+
+    private static int[] sum(int[] left, int[] right) {
+        final int[] sum = new int[left.length];
+        for (int i = 0; i < sum.length; i++)
+            sum[i] = left[i] + right[i];
+        return sum;
+    }
+
+    // Graph of the components, without the edges inside a component
+    private synchronized Digraph getCondensation() {
+        if (this.condensation == null) {
+            final String[] names = new String[this.components.componentCount()];
+            for (int component = 0; component < names.length; component++)
+                names[component] = this.graph.nameOf(this.components.members(component)[0]);
+
+            final long[] edges = new long[this.graph.edgeCount()];
+            int edgeCount = 0;
+            for (int node = 0; node < this.graph.nodeCount(); node++) {
+                final int from = this.components.componentOf(node);
+                for (int edge = this.graph.edgeStart(node); edge < this.graph.edgeEnd(node); edge++) {
+                    final int to = this.components.componentOf(this.graph.target(edge));
+                    if (from != to)
+                        edges[edgeCount++] = (long) from << 32 | to;
+                }
+            }
+            Arrays.parallelSort(edges, 0, edgeCount);
+            this.condensation = Digraph.fromSortedEdges(names, edges, edgeCount);
+        }
+        return this.condensation;
+    }
+
+    // Breadth-first search inside the component, from the start node back to itself
+    private List<Integer> shortestCycle(int start, int component, int[] distance, int[] previous, int[] queue) {
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = start;
+        distance[start] = 0;
+        int last = -1;
+        while (head < tail && last < 0) {
+            final int node = queue[head++];
+            for (int edge = this.graph.edgeStart(node); edge < this.graph.edgeEnd(node); edge++) {
+                final int target = this.graph.target(edge);
+                if (target == start) {
+                    last = node;
+                    break;
+                }
+                if (distance[target] < 0 && this.components.componentOf(target) == component) {
+                    distance[target] = distance[node] + 1;
+                    previous[target] = node;
+                    queue[tail++] = target;
+                }
+            }
+        }
+        for (int i = 0; i < tail; i++)
+            distance[queue[i]] = -1;
+        if (last < 0)
+            return List.of();
+
+        final List<Integer> cycle = new ArrayList<>();
+        for (int node = last; node != start; node = previous[node])
+            cycle.add(node);
+        cycle.add(start);
+        Collections.reverse(cycle);
+
+        // Rotated to start at its smallest node, so the same cycle found from several nodes is listed once
+        final int smallest = cycle.indexOf(Collections.min(cycle));
+        Collections.rotate(cycle, -smallest);
+        return cycle;
+    }
+
+    private List<String> names(int[] nodes) {
+        final List<String> names = new ArrayList<>(nodes.length);
+        for (int node : nodes)
+            names.add(this.graph.nameOf(node));
+        return names;
+    }
+}
@@ -0,0 +1,507 @@
+package lib.analytics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Analytics of a graph that grows as dependencies stream in: strongly connected components, fan-in and fan-out
+ * are kept up to date on every edge. The components are maintained with the algorithm of Pearce and Kelly: the
+ * components are kept in a topological order, and an edge that goes against the order only reorders, or merges
+ * into a cycle, the components between its ends. Most edges of a dependency graph follow the order and cost O(1).
+ * Removing an edge inside a component may split it, and the searches are bounded by the size of the graph: past
+ * them, the components are computed again, once, at the next use.
+ * <p>
+ * Edges are counted, so the same dependency can be added by several sources and is removed with the last one.
+ * The nodes whose component changed are recorded until {@link #drainChangedNodes()}, so that a view of the graph
+ * only updates those. The heavier analytics ({@link GraphAnalytics}) work on a {@link #snapshot()}. Not thread-safe.
+ */
+public final class IncrementalAnalytics {
+    private final Map<String, Integer> nodes = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private final Map<Long, Integer> edgeCounts = new HashMap<>();
+    private int[][] successors = new int[16][];
+    private int[] successorCounts = new int[16];
+    private int[][] predecessors = new int[16][];
+    private int[] predecessorCounts = new int[16];
+    private boolean[] selfLoops = new boolean[16];
+
+    // Union-find of the components, with the topological order and the members of every representative
+    private int[] parents = new int[16];
+    private int[] orders = new int[16];
+    private int[][] members = new int[16][];
+    private int[] memberCounts = new int[16];
+    private int nextOrder = 0;
+    private boolean componentsValid = true;
+
+    // Components visited by the searches of the last edge: the marks hold the number of the edge that visited them
+    private int[] forwardMarks = new int[16];
+    private int[] backwardMarks = new int[16];
+    private int searchMark = 0;
+    private int[] forward = new int[16];
+    private int forwardCount;
+    private int[] backward = new int[16];
+    private int backwardCount;
+    private int[] stack = new int[16];
+    // Edges the searches may still scan before the components are computed again from scratch
+    private long searchCredit = 1024;
+    // Nodes whose component was merged or split, or that gained or lost a self-loop, since the last drain
+    private boolean[] changed = new boolean[16];
+    private int[] changedNodes = new int[16];
+    private int changedCount = 0;
+
+    /**
+     * Add a dependency.
+     *
+     * @param from the name of the dependent node
+     * @param to the name of the dependency
+     * @return true if the dependency is new, false if it was only counted again
+     */
+    public boolean addEdge(String from, String to) {
+        final int source = this.nodeOf(from);
+        final int target = this.nodeOf(to);
+        if (this.edgeCounts.merge(edgeKey(source, target), 1, Integer::sum) > 1)
+            return false;
+
+        this.add(source, target);
+        if (source == target) {
+            this.selfLoops[source] = true;
+            this.markChanged(source);
+            return true;
+        }
+        if (this.componentsValid)
+            this.restoreOrder(this.find(source), this.find(target));
+        return true;
+    }
+
+    /**
+     * Remove a dependency, once it was removed as many times as it was added.
+     *
+     * @param from the name of the dependent node
+     * @param to the name of the dependency
+     * @return true if the dependency is no longer in the graph
+     */
+    public boolean removeEdge(String from, String to) {
+        final Integer source = this.nodes.get(from);
+        final Integer target = this.nodes.get(to);
+        if (source == null || target == null)
+            return false;
+        final long key = edgeKey(source, target);
+        final Integer count = this.edgeCounts.get(key);
+        if (count == null)
+            return false;
+        if (count > 1) {
+            this.edgeCounts.put(key, count - 1);
+            return false;
+        }
+
+        this.edgeCounts.remove(key);
+        this.remove(source, target);
+        if (source.equals(target)) {
+            this.selfLoops[source] = false;
+            this.markChanged(source);
+        } else if (this.componentsValid && this.find(source) == this.find(target))
+            this.componentsValid = false;
+        return true;
+    }
+
+    /**
+     * Forget every node and edge.
+     */
+    public void clear() {
+        this.nodes.clear();
+        this.names.clear();
+        this.edgeCounts.clear();
+        this.nextOrder = 0;
+        this.searchCredit = 1024;
+        this.componentsValid = true;
+        for (int i = 0; i < this.changedCount; i++)
+            this.changed[this.changedNodes[i]] = false;
+        this.changedCount = 0;
+    }
+
+    public int nodeCount() {
+        return this.names.size();
+    }
+
+    public int edgeCount() {
+        return this.edgeCounts.size();
+    }
+
+    public int getFanIn(String name) {
+        final Integer node = this.nodes.get(name);
+        return node == null ? 0 : this.predecessorCounts[node];
+    }
+
+    public int getFanOut(String name) {
+        final Integer node = this.nodes.get(name);
+        return node == null ? 0 : this.successorCounts[node];
+    }
+
+    /**
+     * Check if a node is part of a dependency cycle.
+     *
+     * @param name the name of the node
+     * @return true if the node is in a component of several nodes, or depends on itself
+     */
+    public boolean isInCycle(String name) {
+        final Integer node = this.nodes.get(name);
+        if (node == null)
+            return false;
+        this.validateComponents();
+        return this.selfLoops[node] || this.memberCounts[this.find(node)] > 1;
+    }
+
+    /**
+     * Check if a dependency is part of a cycle.
+     *
+     * @param from the name of the dependent node
+     * @param to the name of the dependency
+     * @return true if both nodes are in the same cyclic component
+     */
+    public boolean isInCycle(String from, String to) {
+        final Integer source = this.nodes.get(from);
+        final Integer target = this.nodes.get(to);
+        if (source == null || target == null)
+            return false;
+        this.validateComponents();
+        return source.equals(target) ? this.selfLoops[source] : this.find(source) == this.find(target);
+    }
+
+    /**
+     * Get the nodes of every component that contains a cycle, largest components first.
+     *
+     * @return the names of the nodes of the cyclic components
+     */
+    public List<List<String>> getCyclicComponents() {
+        this.validateComponents();
+        final List<List<String>> cyclicComponents = new ArrayList<>();
+        for (int node = 0; node < this.names.size(); node++) {
+            if (this.find(node) != node || (this.memberCounts[node] == 1 && !this.selfLoops[node]))
+                continue;
+            final List<String> component = new ArrayList<>(this.memberCounts[node]);
+            for (int i = 0; i < this.memberCounts[node]; i++)
+                component.add(this.names.get(this.members[node][i]));
+            cyclicComponents.add(component);
+        }
+        cyclicComponents.sort(Comparator.comparingInt((List<String> c) -> c.size()).reversed());
+        return cyclicComponents;
+    }
+
+    /**
+     * Get the number of nodes that are part of a dependency cycle.
+     *
+     * @return the number of nodes in a component of several nodes, or that depend on themselves
+     */
+    public int getCyclicNodeCount() {
+        this.validateComponents();
+        int count = 0;
+        for (int node = 0; node < this.names.size(); node++) {
+            if (this.selfLoops[node] || this.memberCounts[this.find(node)] > 1)
+                count++;
+        }
+        return count;
+    }
+
+    /**
+     * Get the nodes whose component changed since the last call, or since the graph was created or cleared: merged
+     * into a cycle by an added edge, split by a removed edge, or that gained or lost a self-loop. The cycles of the
+     * other nodes, and of the edges between them, did not change, so a view of the graph only has to update these.
+     *
+     * @return the names of the nodes, once each
+     */
+    public List<String> drainChangedNodes() {
+        this.validateComponents();
+        final List<String> changedNames = new ArrayList<>(this.changedCount);
+        for (int i = 0; i < this.changedCount; i++) {
+            changedNames.add(this.names.get(this.changedNodes[i]));
+            this.changed[this.changedNodes[i]] = false;
+        }
+        this.changedCount = 0;
+        return changedNames;
+    }
+
+    /**
+     * Get an immutable copy of the graph, to compute the heavier analytics with {@link GraphAnalytics#of(Digraph)}.
+     *
+     * @return the current graph
+     */
+    public Digraph snapshot() {
+        final String[] nodeNames = this.names.toArray(new String[0]);
+        final int[] offsets = new int[nodeNames.length + 1];
+        for (int node = 0; node < nodeNames.length; node++)
+            offsets[node + 1] = offsets[node] + this.successorCounts[node];
+        final int[] targets = new int[offsets[nodeNames.length]];
+        for (int node = 0; node < nodeNames.length; node++) {
+            System.arraycopy(this.successors[node], 0, targets, offsets[node], this.successorCounts[node]);
+            Arrays.sort(targets, offsets[node], offsets[node + 1]);
+        }
+        return new Digraph(nodeNames, offsets, targets);
+    }
+
+    private int nodeOf(String name) {
+        final Integer present = this.nodes.get(name);
+        if (present != null)
+            return present;
+
+        final int node = this.names.size();
+        this.ensureCapacity(node + 1);
+        this.nodes.put(name, node);
+        this.names.add(name);
+        this.successors[node] = new int[2];
+        this.successorCounts[node] = 0;
+        this.predecessors[node] = new int[2];
+        this.predecessorCounts[node] = 0;
+        this.selfLoops[node] = false;
+        this.parents[node] = node;
+        this.members[node] = new int[]{node};
+        this.memberCounts[node] = 1;
+        // A node without edges can take any place in the order: the end is always free
+        this.orders[node] = this.nextOrder++;
+        return node;
+    }
+
+    // Pearce-Kelly: only the components ordered between the ends of the new edge can be affected
+    private void restoreOrder(int source, int target) {
+        if (source == target || this.orders[source] < this.orders[target])
+            return;
+
+        this.searchMark++;
+        final boolean cycle = this.search(target, this.orders[source], true, source);
+        if (this.searchCredit >= 0)
+            this.search(source, this.orders[target], false, -1);
+        if (this.searchCredit < 0) {
+            // While the nodes arrive shuffled, most edges go against the order and the searches cover the whole
+            // graph: once they scanned as many edges as the graph has, a single Tarjan pass at the next use is cheaper
+            this.componentsValid = false;
+            return;
+        }
+
+        // The order slots of the affected components are given back: first to the components that reach the
+        // source, then to the merged cycle (the components found by both searches), then to the components
+        // reachable from the target
+        final int[] slots = new int[this.forwardCount + this.backwardCount];
+        int slotCount = 0;
+        final int[] before = new int[this.backwardCount];
+        int beforeCount = 0;
+        final int[] merged = new int[this.backwardCount];
+        int mergedCount = 0;
+        for (int i = 0; i < this.backwardCount; i++) {
+            final int component = this.backward[i];
+            if (this.forwardMarks[component] == this.searchMark) {
+                merged[mergedCount++] = component;
+            } else {
+                before[beforeCount++] = component;
+                slots[slotCount++] = this.orders[component];
+            }
+        }
+        final int[] after = new int[this.forwardCount];
+        int afterCount = 0;
+        for (int i = 0; i < this.forwardCount; i++) {
+            final int component = this.forward[i];
+            slots[slotCount++] = this.orders[component];
+            if (this.backwardMarks[component] != this.searchMark)
+                after[afterCount++] = component;
+        }
+        Arrays.sort(slots, 0, slotCount);
+        this.sortByOrder(before, beforeCount);
+        this.sortByOrder(after, afterCount);
+
+        for (int i = 0; i < beforeCount; i++)
+            this.orders[before[i]] = slots[i];
+        // The merged components free slots: the following components keep the last ones, below the next unaffected one
+        for (int i = 0; i < afterCount; i++)
+            this.orders[after[i]] = slots[slotCount - afterCount + i];
+        if (cycle)
+            this.orders[this.merge(merged, mergedCount)] = slots[beforeCount];
+    }
+
+    // Depth-first search of the components bounded by the order, forward along the dependencies or backward
+    private boolean search(int start, int bound, boolean forwardSearch, int goal) {
+        final int[] marks = forwardSearch ? this.forwardMarks : this.backwardMarks;
+        int[] found = forwardSearch ? this.forward : this.backward;
+        int foundCount = 0;
+        boolean reachedGoal = false;
+        int stackSize = 0;
+        this.stack[stackSize++] = start;
+        marks[start] = this.searchMark;
+        while (stackSize > 0 && this.searchCredit >= 0) {
+            final int component = this.stack[--stackSize];
+            if (foundCount == found.length)
+                found = Arrays.copyOf(found, 2 * found.length);
+            found[foundCount++] = component;
+            for (int m = 0; m < this.memberCounts[component]; m++) {
+                final int member = this.members[component][m];
+                final int[] neighbours = forwardSearch ? this.successors[member] : this.predecessors[member];
+                final int count = forwardSearch ? this.successorCounts[member] : this.predecessorCounts[member];
+                this.searchCredit -= count;
+                for (int i = 0; i < count; i++) {
+                    final int next = this.find(neighbours[i]);
+                    if (next == goal)
+                        reachedGoal = true;
+                    final boolean inBounds = forwardSearch ? this.orders[next] <= bound : this.orders[next] >= bound;
+                    if (!inBounds || marks[next] == this.searchMark)
+                        continue;
+                    marks[next] = this.searchMark;
+                    if (stackSize == this.stack.length)
+                        this.stack = Arrays.copyOf(this.stack, 2 * this.stack.length);
+                    this.stack[stackSize++] = next;
+                }
+            }
+        }
+
+        if (forwardSearch) {
+            this.forward = found;
+            this.forwardCount = foundCount;
+        } else {
+            this.backward = found;
+            this.backwardCount = foundCount;
+        }
+        return reachedGoal;
+    }
+
+    // Sort components by their order: the keys are unique, so they are sorted packed with the components
+    private void sortByOrder(int[] components, int count) {
+        final long[] keys = new long[count];
+        for (int i = 0; i < count; i++)
+            keys[i] = (long) this.orders[components[i]] << 32 | components[i];
+        Arrays.sort(keys);
+        for (int i = 0; i < count; i++)
+            components[i] = (int) keys[i];
+    }
+
+    private int merge(int[] components, int count) {
+        int root = components[0];
+        for (int i = 1; i < count; i++) {
+            if (this.memberCounts[components[i]] > this.memberCounts[root])
+                root = components[i];
+        }
+        for (int i = 0; i < count; i++) {
+            final int component = components[i];
+            if (component == root)
+                continue;
+            this.parents[component] = root;
+            final int total = this.memberCounts[root] + this.memberCounts[component];
+            if (total > this.members[root].length)
+                this.members[root] = Arrays.copyOf(this.members[root], Math.max(total, 2 * this.members[root].length));
+            System.arraycopy(this.members[component], 0, this.members[root], this.memberCounts[root], this.memberCounts[component]);
+            this.memberCounts[root] = total;
+            this.members[component] = null;
+            this.memberCounts[component] = 0;
+        }
+        for (int m = 0; m < this.memberCounts[root]; m++)
+            this.markChanged(this.members[root][m]);
+        return root;
+    }
+
+    private int find(int node) {
+        int root = node;
+        while (this.parents[root] != root)
+            root = this.parents[root];
+        while (this.parents[node] != root) {
+            final int next = this.parents[node];
+            this.parents[node] = root;
+            node = next;
+        }
+        return root;
+    }
+
+    // After a component may have split, the components and their order are computed again from scratch
+    private void validateComponents() {
+        if (this.componentsValid)
+            return;
+
+        final StronglyConnectedComponents components = StronglyConnectedComponents.of(this.snapshot());
+        // The members of the components that are not exactly a previous one changed
+        final int[] previousRoots = new int[this.names.size()];
+        for (int node = 0; node < previousRoots.length; node++)
+            previousRoots[node] = this.find(node);
+        for (int component = 0; component < components.componentCount(); component++) {
+            final int[] componentMembers = components.members(component);
+            boolean same = this.memberCounts[previousRoots[componentMembers[0]]] == componentMembers.length;
+            for (int i = 1; same && i < componentMembers.length; i++)
+                same = previousRoots[componentMembers[i]] == previousRoots[componentMembers[0]];
+            if (!same) {
+                for (int member : componentMembers)
+                    this.markChanged(member);
+            }
+        }
+
+        for (int component = 0; component < components.componentCount(); component++) {
+            final int[] componentMembers = components.members(component);
+            final int root = componentMembers[0];
+            for (int member : componentMembers) {
+                this.parents[member] = root;
+                this.members[member] = null;
+                this.memberCounts[member] = 0;
+            }
+            this.members[root] = componentMembers;
+            this.memberCounts[root] = componentMembers.length;
+            // Tarjan's order is reverse topological, the dependencies must come after their dependents
+            this.orders[root] = components.componentCount() - 1 - component;
+        }
+        this.nextOrder = components.componentCount();
+        this.searchCredit = Math.max(1024, this.edgeCounts.size());
+        this.componentsValid = true;
+    }
+
+    private void markChanged(int node) {
+        if (this.changed[node])
+            return;
+        this.changed[node] = true;
+        if (this.changedCount == this.changedNodes.length)
+            this.changedNodes = Arrays.copyOf(this.changedNodes, 2 * this.changedNodes.length);
+        this.changedNodes[this.changedCount++] = node;
+    }
+
+    private void add(int source, int target) {
+        this.successors[source] = append(this.successors[source], this.successorCounts[source]++, target);
+        this.predecessors[target] = append(this.predecessors[target], this.predecessorCounts[target]++, source);
+    }
+
+    private void remove(int source, int target) {
+        this.successorCounts[source] = removeValue(this.successors[source], this.successorCounts[source], target);
+        this.predecessorCounts[target] = removeValue(this.predecessors[target], this.predecessorCounts[target], source);
+    }
+
+    private static int[] append(int[] values, int size, int value) {
+        final int[] grown = size == values.length ? Arrays.copyOf(values, 2 * values.length) : values;
+        grown[size] = value;
+        return grown;
+    }
+
+    private static int removeValue(int[] values, int size, int value) {
+        for (int i = 0; i < size; i++) {
+            if (values[i] == value) {
+                values[i] = values[size - 1];
+                return size - 1;
+            }
+        }
+        return size;
+    }
+
+    private static long edgeKey(int source, int target) {
+        return (long) source << 32 | target;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= this.parents.length)
+            return;
+        final int grown = Math.max(capacity, 2 * this.parents.length);
+        this.successors = Arrays.copyOf(this.successors, grown);
+        this.successorCounts = Arrays.copyOf(this.successorCounts, grown);
+        this.predecessors = Arrays.copyOf(this.predecessors, grown);
+        this.predecessorCounts = Arrays.copyOf(this.predecessorCounts, grown);
+        this.selfLoops = Arrays.copyOf(this.selfLoops, grown);
+        this.parents = Arrays.copyOf(this.parents, grown);
+        this.orders = Arrays.copyOf(this.orders, grown);
+        this.members = Arrays.copyOf(this.members, grown);
+        this.memberCounts = Arrays.copyOf(this.memberCounts, grown);
+        this.forwardMarks = Arrays.copyOf(this.forwardMarks, grown);
+        this.backwardMarks = Arrays.copyOf(this.backwardMarks, grown);
+        this.changed = Arrays.copyOf(this.changed, grown);
+    }
+}
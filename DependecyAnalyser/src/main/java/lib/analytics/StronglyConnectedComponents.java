@@ -0,0 +1,161 @@
+package lib.analytics;
+
+import java.util.Arrays;
+
+/**
+ * Strongly connected components of a {@link Digraph}, found by an iterative version of Tarjan's algorithm: the
+ * recursion is replaced by an explicit stack of (node, next edge) frames, so deep dependency chains never
+ * overflow the thread stack. Linear in the size of the graph.
+ * <p>
+ * Components are numbered in the order Tarjan's algorithm completes them, which is a reverse topological order:
+ * if a node of component c depends on a node of another component d, then d &lt; c.
+ */
+public final class StronglyConnectedComponents {
+    private final int[] componentOf;
+    private final int[] memberOffsets;
+    private final int[] members;
+    private final boolean[] cyclic;
+
+    private StronglyConnectedComponents(int[] componentOf, int[] memberOffsets, int[] members, boolean[] cyclic) {
+        this.componentOf = componentOf;
+        this.memberOffsets = memberOffsets;
+        this.members = members;
+        this.cyclic = cyclic;
+    }
+
+    /**
+     * Find the strongly connected components of a graph.
+     *
+     * @param graph the graph
+     * @return the components of the graph
+     */
+    public static StronglyConnectedComponents of(Digraph graph) {
+        final int nodeCount = graph.nodeCount();
+        final int[] index = new int[nodeCount];
+        final int[] lowLink = new int[nodeCount];
+        final boolean[] onStack = new boolean[nodeCount];
+        final int[] stack = new int[nodeCount];
+        final int[] frameNodes = new int[nodeCount];
+        final int[] frameEdges = new int[nodeCount];
+        final int[] componentOf = new int[nodeCount];
+        Arrays.fill(index, -1);
+
+        int counter = 0;
+        int stackSize = 0;
+        int componentCount = 0;
+        for (int root = 0; root < nodeCount; root++) {
+            if (index[root] >= 0)
+                continue;
+
+            int frames = 0;
+            frameNodes[frames] = root;
+            frameEdges[frames++] = graph.edgeStart(root);
+            index[root] = lowLink[root] = counter++;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+
+            while (frames > 0) {
+                final int node = frameNodes[frames - 1];
+                final int edge = frameEdges[frames - 1];
+                if (edge < graph.edgeEnd(node)) {
+                    frameEdges[frames - 1]++;
+                    final int target = graph.target(edge);
+                    if (index[target] < 0) {
+                        index[target] = lowLink[target] = counter++;
+                        stack[stackSize++] = target;
+                        onStack[target] = true;
+                        frameNodes[frames] = target;
+                        frameEdges[frames++] = graph.edgeStart(target);
+                    } else if (onStack[target]) {
+                        lowLink[node] = Math.min(lowLink[node], index[target]);
+                    }
+                    continue;
+                }
+
+                frames--;
+                if (lowLink[node] == index[node]) {
+                    int member;
+                    do {
+                        member = stack[--stackSize];
+                        onStack[member] = false;
+                        componentOf[member] = componentCount;
+                    } while (member != node);
+                    componentCount++;
+                }
+                if (frames > 0) {
+                    final int parent = frameNodes[frames - 1];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[node]);
+                }
+            }
+        }
+
+        // Members grouped by component with a counting sort
+        final int[] memberOffsets = new int[componentCount + 1];
+        for (int node = 0; node < nodeCount; node++)
+            memberOffsets[componentOf[node] + 1]++;
+        for (int component = 0; component < componentCount; component++)
+            memberOffsets[component + 1] += memberOffsets[component];
+        final int[] members = new int[nodeCount];
+        final int[] next = Arrays.copyOf(memberOffsets, componentCount);
+        for (int node = 0; node < nodeCount; node++)
+            members[next[componentOf[node]]++] = node;
+
+        final boolean[] cyclic = new boolean[componentCount];
+        for (int component = 0; component < componentCount; component++)
+            cyclic[component] = memberOffsets[component + 1] - memberOffsets[component] > 1;
+        for (int node = 0; node < nodeCount; node++) {
+            for (int edge = graph.edgeStart(node); edge < graph.edgeEnd(node); edge++) {
+                if (graph.target(edge) == node)
+                    cyclic[componentOf[node]] = true;
+            }
+        }
+
+        return new StronglyConnectedComponents(componentOf, memberOffsets, members, cyclic);
+    }
+
+    public int componentCount() {
+        return this.cyclic.length;
+    }
+
+    public int componentOf(int node) {
+        return this.componentOf[node];
+    }
+
+    public int size(int component) {
+        return this.memberOffsets[component + 1] - this.memberOffsets[component];
+    }
+
+    /**
+     * Get the nodes of a component.
+     *
+     * @param component the component
+     * @return the nodes of the component, in increasing order
+     */
+    public int[] members(int component) {
+        return Arrays.copyOfRange(this.members, this.memberOffsets[component], this.memberOffsets[component + 1]);
+    }
+
+    /**
+     * Check if a component contains a cycle: it has several nodes, or a node that depends on itself.
+     *
+     * @param component the component
+     * @return true if the nodes of the component are part of a dependency cycle
+     */
+    public boolean isCyclic(int component) {
+        return this.cyclic[component];
+    }
+
+    /**
+     * Get the number of components that contain a cycle.
+     *
+     * @return the number of cyclic components
+     */
+    public int cyclicComponentCount() {
+        int count = 0;
+        for (boolean isCyclic : this.cyclic) {
+            if (isCyclic)
+                count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,122 @@
+package lib.bytecode;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Reads compiled classes from class files and jars. Files are read through channels into a direct buffer owned by
+ * the reading thread, that grows to the largest class file read and is reused for every following one: no byte
+ * array is allocated per class, and the parser reads the buffer in place.
+ */
+public final class BytecodeReader {
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+    private static final ThreadLocal<ByteBuffer> BUFFERS =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(INITIAL_BUFFER_SIZE));
+
+    private BytecodeReader() {
+    }
+
+    /**
+     * Check if a path is a class file of a class, and not of a module or a package descriptor.
+     *
+     * @param path the path of the file
+     * @return true if the file contains the bytecode of a class
+     */
+    public static boolean isClassFile(Path path) {
+        final String fileName = path.getFileName() == null ? "" : path.getFileName().toString();
+        return fileName.endsWith(".class") && !fileName.equals("module-info.class") && !fileName.equals("package-info.class");
+    }
+
+    /**
+     * Check if a path is a jar.
+     *
+     * @param path the path of the file
+     * @return true if the file is a jar
+     */
+    public static boolean isJar(Path path) {
+        return path.getFileName() != null && path.getFileName().toString().endsWith(".jar");
+    }
+
+    /**
+     * Read a class file. Blocking.
+     *
+     * @param classFile the path of the class file, in the default file system or in a jar
+     * @return the class and the types it references
+     * @throws IOException if the file could not be read
+     * @throws IllegalArgumentException if the file is not a valid class file
+     */
+    public static CompiledClass readClassFile(Path classFile) throws IOException {
+        try (final SeekableByteChannel channel = Files.newByteChannel(classFile)) {
+            return ClassFileParser.parse(read(channel));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(classFile + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Read all the classes of a jar, opened as a zip file system. Blocking. Multi-release versions of the classes,
+     * under {@code META-INF/versions}, are skipped: only the base version of every class is read.
+     *
+     * @param jar the path of the jar
+     * @return the classes of the jar and the types they reference
+     * @throws IOException if the jar could not be read
+     */
+    public static List<CompiledClass> readJar(Path jar) throws IOException {
+        try (final FileSystem jarFileSystem = FileSystems.newFileSystem(jar)) {
+            final List<CompiledClass> classes = new ArrayList<>();
+            for (Path root : jarFileSystem.getRootDirectories()) {
+                for (Path classFile : classFiles(root)) {
+                    if (!classFile.startsWith(root.resolve("META-INF")))
+                        classes.add(readClassFile(classFile));
+                }
+            }
+            return classes;
+        }
+    }
+
+    /**
+     * Get the class files contained in a folder and its sub-folders. Blocking.
+     *
+     * @param folder the path of the folder
+     * @return the class files, sorted by path
+     * @throws IOException if the folder could not be walked
+     */
+    public static List<Path> classFiles(Path folder) throws IOException {
+        try (final Stream<Path> paths = Files.walk(folder)) {
+            return paths
+                    .filter(BytecodeReader::isClassFile)
+                    .filter(Files::isRegularFile)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    // Reads the whole channel into the buffer of the thread, flipped for reading
+    private static ByteBuffer read(SeekableByteChannel channel) throws IOException {
+        final long size = channel.size();
+        if (size > Integer.MAX_VALUE)
+            throw new IOException("Class file too large: " + size + " bytes");
+
+        ByteBuffer buffer = BUFFERS.get();
+        if (buffer.capacity() < size) {
+            buffer = ByteBuffer.allocateDirect(Integer.highestOneBit((int) size) << 1);
+            BUFFERS.set(buffer);
+        }
+        buffer.clear();
+        // Channels of zip entries return the inflated bytes in several reads
+        while (buffer.position() < size) {
+            if (channel.read(buffer) < 0)
+                break;
+        }
+        return buffer.flip();
+    }
+}
@@ -0,0 +1,269 @@
+package lib.bytecode;
+
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Light parser of the class file format, reading only what names types: the class entries of the constant pool,
+ * the descriptors of the fields, methods and member references, and the generic signatures. The code of the
+ * methods is never decoded: every type it uses is already a class entry or a descriptor of the constant pool.
+ * Names are exact, so no type solver is needed.
+ */
+public final class ClassFileParser {
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private static final int UTF8 = 1;
+    private static final int INTEGER = 3;
+    private static final int FLOAT = 4;
+    private static final int LONG = 5;
+    private static final int DOUBLE = 6;
+    private static final int CLASS = 7;
+    private static final int STRING = 8;
+    private static final int FIELD_REF = 9;
+    private static final int METHOD_REF = 10;
+    private static final int INTERFACE_METHOD_REF = 11;
+    private static final int NAME_AND_TYPE = 12;
+    private static final int METHOD_HANDLE = 15;
+    private static final int METHOD_TYPE = 16;
+    private static final int DYNAMIC = 17;
+    private static final int INVOKE_DYNAMIC = 18;
+    private static final int MODULE = 19;
+    private static final int PACKAGE = 20;
+
+    private static final Set<String> BOOTSTRAP_CLASSES = Set.of(
+            "java/lang/invoke/LambdaMetafactory",
+            "java/lang/invoke/StringConcatFactory",
+            "java/lang/runtime/ObjectMethods",
+            "java/lang/runtime/SwitchBootstraps");
+
+    private final ByteBuffer buffer;
+    private final int base;
+    // Offset in the buffer of the content of every constant pool entry, after its tag
+    private int[] offsets;
+    private byte[] tags;
+    private final Set<String> internalNames = new HashSet<>();
+
+    private ClassFileParser(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.base = buffer.position();
+    }
+
+    /**
+     * Parse a class file. The buffer is read with absolute gets, its position is left unchanged.
+     *
+     * @param classFile the bytes of the class file, from the position of the buffer to its limit
+     * @return the name of the class and the types it references
+     * @throws IllegalArgumentException if the bytes are not a valid class file
+     */
+    public static CompiledClass parse(ByteBuffer classFile) {
+        try {
+            return new ClassFileParser(classFile).parse();
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated class file", e);
+        }
+    }
+
+    private CompiledClass parse() {
+        if (this.buffer.getInt(this.base) != MAGIC)
+            throw new IllegalArgumentException("Not a class file");
+
+        int position = this.readConstantPool(this.base + 8);
+        final int thisClass = this.u2(position + 2);
+        final String className = this.utf8(this.u2(this.offsets[thisClass]));
+
+        // Super class and interfaces are class entries, already collected
+        position += 6;
+        position += 2 + 2 * this.u2(position);
+        position = this.readMembers(position);
+        position = this.readMembers(position);
+        this.readAttributes(position);
+
+        this.internalNames.remove(className);
+        return new CompiledClass(className, this.internalNames);
+    }
+
+    private int readConstantPool(int position) {
+        final int count = this.u2(position);
+        this.offsets = new int[count];
+        this.tags = new byte[count];
+        position += 2;
+
+        for (int i = 1; i < count; i++) {
+            final int tag = this.buffer.get(position);
+            this.tags[i] = (byte) tag;
+            this.offsets[i] = position + 1;
+            switch (tag) {
+                case UTF8:
+                    position += 3 + this.u2(position + 1);
+                    break;
+                case CLASS:
+                case STRING:
+                case METHOD_TYPE:
+                case MODULE:
+                case PACKAGE:
+                    position += 3;
+                    break;
+                case METHOD_HANDLE:
+                    position += 4;
+                    break;
+                case INTEGER:
+                case FLOAT:
+                case FIELD_REF:
+                case METHOD_REF:
+                case INTERFACE_METHOD_REF:
+                case NAME_AND_TYPE:
+                case DYNAMIC:
+                case INVOKE_DYNAMIC:
+                    position += 5;
+                    break;
+                case LONG:
+                case DOUBLE:
+                    // 8 bytes entries take two slots
+                    position += 9;
+                    i++;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown constant pool tag " + tag + " at entry " + i);
+            }
+        }
+
+        final boolean[] synthetic = this.bootstrapEntries(count);
+        for (int i = 1; i < count; i++) {
+            if (synthetic[i])
+                continue;
+            if (this.tags[i] == CLASS) {
+                final String name = this.utf8(this.u2(this.offsets[i]));
+                if (name.startsWith("["))
+                    this.addDescriptorTypes(name);
+                else
+                    this.internalNames.add(name);
+            } else if (this.tags[i] == NAME_AND_TYPE) {
+                this.addDescriptorTypes(this.utf8(this.u2(this.offsets[i] + 2)));
+            } else if (this.tags[i] == METHOD_TYPE) {
+                this.addDescriptorTypes(this.utf8(this.u2(this.offsets[i])));
+            }
+        }
+        return position;
+    }
+
+    // The class and the name and type entries of the bootstrap methods generated by the compiler for lambdas, string
+    // concatenations, records and pattern switches: they are not written in the sources. The compiler also declares
+    // MethodHandles.Lookup as an inner class for them, it is skipped too unless one of its members is used.
+    private boolean[] bootstrapEntries(int count) {
+        final boolean[] bootstrap = new boolean[count];
+        final boolean[] usedClasses = new boolean[count];
+        boolean hasBootstrapMethods = false;
+        for (int i = 1; i < count; i++) {
+            if (this.tags[i] == FIELD_REF || this.tags[i] == METHOD_REF || this.tags[i] == INTERFACE_METHOD_REF)
+                usedClasses[this.u2(this.offsets[i])] = true;
+            if (this.tags[i] != METHOD_HANDLE)
+                continue;
+            final int methodRef = this.offsets[this.u2(this.offsets[i] + 1)];
+            final int classIndex = this.u2(methodRef);
+            if (BOOTSTRAP_CLASSES.contains(this.utf8(this.u2(this.offsets[classIndex])))) {
+                bootstrap[classIndex] = true;
+                bootstrap[this.u2(methodRef + 2)] = true;
+                hasBootstrapMethods = true;
+            }
+        }
+
+        for (int i = 1; hasBootstrapMethods && i < count; i++) {
+            if (this.tags[i] == CLASS && !usedClasses[i] && !bootstrap[i]) {
+                final String name = this.utf8(this.u2(this.offsets[i]));
+                bootstrap[i] = name.equals("java/lang/invoke/MethodHandles$Lookup") || name.equals("java/lang/invoke/MethodHandles");
+            }
+        }
+        return bootstrap;
+    }
+
+    // Fields or methods: access flags, name, descriptor and attributes of every member
+    private int readMembers(int position) {
+        final int count = this.u2(position);
+        position += 2;
+        for (int i = 0; i < count; i++) {
+            this.addDescriptorTypes(this.utf8(this.u2(position + 4)));
+            position = this.readAttributes(position + 6);
+        }
+        return position;
+    }
+
+    private int readAttributes(int position) {
+        final int count = this.u2(position);
+        position += 2;
+        for (int i = 0; i < count; i++) {
+            final int length = this.buffer.getInt(position + 2);
+            if (this.isUtf8(this.u2(position), "Signature"))
+                this.addDescriptorTypes(this.utf8(this.u2(position + 6)));
+            position += 6 + length;
+        }
+        return position;
+    }
+
+    // Collect the "L<internal name>;" types of a descriptor or of a generic signature, skipping the type variables
+    // ("T<name>;"), the names of the formal type parameters ("<name>:<bound>") and the inner types of parameterized types
+    private void addDescriptorTypes(String descriptor) {
+        int i = 0;
+        while (i < descriptor.length()) {
+            final char c = descriptor.charAt(i);
+            if (c == '.') {
+                // Inner class of a parameterized type, as in "Lp/Outer<TT;>.Inner;": the outer type is enough
+                while (i < descriptor.length() && descriptor.charAt(i) != ';' && descriptor.charAt(i) != '<')
+                    i++;
+                continue;
+            }
+            if (c != 'L' && c != 'T') {
+                i++;
+                continue;
+            }
+
+            int end = i + 1;
+            while (end < descriptor.length() && ";<:".indexOf(descriptor.charAt(end)) < 0)
+                end++;
+            if (end < descriptor.length() && descriptor.charAt(end) == ':') {
+                i = end + 1;
+                continue;
+            }
+            if (c == 'L')
+                this.internalNames.add(descriptor.substring(i + 1, end));
+            i = end + 1;
+        }
+    }
+
+    private int u2(int position) {
+        return this.buffer.getShort(position) & 0xFFFF;
+    }
+
+    private boolean isUtf8(int index, String expected) {
+        final int offset = this.offsets[index];
+        if (this.tags[index] != UTF8 || this.u2(offset) != expected.length())
+            return false;
+        for (int i = 0; i < expected.length(); i++) {
+            if (this.buffer.get(offset + 2 + i) != expected.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    // Modified UTF-8: names are ASCII most of the time, other characters take 2 or 3 bytes
+    private String utf8(int index) {
+        if (this.tags[index] != UTF8)
+            throw new IllegalArgumentException("Constant pool entry " + index + " is not a string");
+
+        final int offset = this.offsets[index];
+        final int length = this.u2(offset);
+        final char[] chars = new char[length];
+        int count = 0;
+        for (int i = offset + 2; i < offset + 2 + length; i++) {
+            final int b = this.buffer.get(i) & 0xFF;
+            if (b < 0x80) {
+                chars[count++] = (char) b;
+            } else if ((b & 0xE0) == 0xC0) {
+                chars[count++] = (char) (((b & 0x1F) << 6) | (this.buffer.get(++i) & 0x3F));
+            } else {
+                chars[count++] = (char) (((b & 0x0F) << 12) | ((this.buffer.get(++i) & 0x3F) << 6) | (this.buffer.get(++i) & 0x3F));
+            }
+        }
+        return new String(chars, 0, count);
+    }
+}
@@ -0,0 +1,87 @@
+package lib.bytecode;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Class read from its bytecode, with the types it references. Names are converted from the internal form of the
+ * class files to the form used in the sources: {@code java/util/Map$Entry} becomes {@code java.util.Map.Entry}.
+ * Anonymous and local classes ({@code Outer$1}, {@code Outer$1Local}) are named after their enclosing class,
+ * so their dependencies are reported as dependencies of the class whose source contains them.
+ */
+public final class CompiledClass {
+    private final String name;
+    private final String packageName;
+    private final Set<String> referencedTypes;
+
+    CompiledClass(String internalName, Set<String> referencedInternalNames) {
+        this.name = sourceName(internalName);
+        final int lastSlash = internalName.lastIndexOf('/');
+        this.packageName = lastSlash < 0 ? "" : internalName.substring(0, lastSlash).replace('/', '.');
+
+        final String nestedPrefix = this.name + ".";
+        this.referencedTypes = new HashSet<>();
+        for (String internalReference : referencedInternalNames) {
+            final String reference = sourceName(internalReference);
+            if (!reference.equals(this.name) && !reference.startsWith(nestedPrefix))
+                this.referencedTypes.add(reference);
+        }
+    }
+
+    /**
+     * Get the qualified name of the class, as in the sources.
+     *
+     * @return the qualified name of the class, or of its enclosing class if anonymous or local
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Get the package of the class.
+     *
+     * @return the package name, or an empty string for the default package
+     */
+    public String getPackageName() {
+        return this.packageName;
+    }
+
+    /**
+     * Get the name of the class without its package.
+     *
+     * @return the simple name of the class, prefixed by its enclosing classes if nested
+     */
+    public String getSimpleName() {
+        return this.packageName.isEmpty() ? this.name : this.name.substring(this.packageName.length() + 1);
+    }
+
+    /**
+     * Get the qualified name of the top-level class containing the class.
+     *
+     * @return the qualified name of the top-level class, the class itself if not nested
+     */
+    public String getTopLevelName() {
+        final int nested = this.name.indexOf('.', this.packageName.isEmpty() ? 0 : this.packageName.length() + 1);
+        return nested < 0 ? this.name : this.name.substring(0, nested);
+    }
+
+    /**
+     * Get the types referenced by the class, without the class itself nor its nested classes.
+     *
+     * @return the qualified names of the referenced types
+     */
+    public Set<String> getReferencedTypes() {
+        return this.referencedTypes;
+    }
+
+    private static String sourceName(String internalName) {
+        int end = internalName.length();
+        for (int i = internalName.lastIndexOf('/') + 1; i < internalName.length() - 1; i++) {
+            if (internalName.charAt(i) == '$' && Character.isDigit(internalName.charAt(i + 1))) {
+                end = i;
+                break;
+            }
+        }
+        return internalName.substring(0, end).replace('/', '.').replace('$', '.');
+    }
+}
@@ -0,0 +1,224 @@
+package lib.cache;
+
+import lib.graph.SymbolTable;
+import lib.reports.ClassDepsReport;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * On-disk cache of the per-file analysis results, keyed by file path and content hash.
+ * The cache is bound to a fingerprint of the analysis settings (dependency filter, parser configuration...):
+ * a cache file written with a different fingerprint is discarded when loaded.
+ */
+public class AnalysisCache {
+    private static final int FORMAT_VERSION = 2;
+
+    private final Path cacheFile;
+    private final String fingerprint;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private AnalysisCache(Path cacheFile, String fingerprint) {
+        this.cacheFile = cacheFile;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Load the cache stored in the given file. If the file does not exist, is corrupted or was written
+     * with a different fingerprint, an empty cache bound to that file is returned.
+     *
+     * @param cacheFile the file where the cache is stored
+     * @param fingerprint the fingerprint of the current analysis settings
+     * @return the loaded cache
+     */
+    public static AnalysisCache load(Path cacheFile, String fingerprint) {
+        final AnalysisCache cache = new AnalysisCache(cacheFile, fingerprint);
+        if (Files.isRegularFile(cacheFile)) {
+            try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)))) {
+                cache.readEntries(in);
+            } catch (IOException e) {
+                System.err.println("Discarding unreadable analysis cache " + cacheFile + ": " + e.getMessage());
+                cache.entries.clear();
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Create a cache that never stores anything, to be used when caching is disabled. Its lookups are not counted.
+     *
+     * @return a cache that always misses
+     */
+    public static AnalysisCache disabled() {
+        return new AnalysisCache(null, "");
+    }
+
+    /**
+     * Get the default location of a cache file, under the user cache directory.
+     *
+     * @param name the name of the cache
+     * @return the path of the cache file
+     */
+    public static Path defaultLocation(String name) {
+        return Path.of(System.getProperty("user.home"), ".cache", "dependency-analyser", name + ".bin");
+    }
+
+    /**
+     * Compute the content hash used as cache key.
+     *
+     * @param content the content of the file
+     * @return the hexadecimal SHA-256 hash of the content
+     */
+    public static String hash(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static String hash(String content) {
+        return hash(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Get the reports cached for a file, if its content did not change.
+     *
+     * @param file the path of the file
+     * @param contentHash the hash of the current content of the file
+     * @return the cached reports, or empty if the file is not cached or changed
+     */
+    public Optional<List<ClassDepsReport>> get(Path file, String contentHash) {
+        if (!this.isEnabled())
+            return Optional.empty();
+
+        final Entry entry = this.entries.get(key(file));
+        if (entry != null && entry.contentHash.equals(contentHash)) {
+            this.hits.incrementAndGet();
+            return Optional.of(entry.reports);
+        }
+        this.misses.incrementAndGet();
+        return Optional.empty();
+    }
+
+    public void put(Path file, String contentHash, List<ClassDepsReport> reports) {
+        if (this.isEnabled())
+            this.entries.put(key(file), new Entry(contentHash, List.copyOf(reports)));
+    }
+
+    /**
+     * Write the cache to its file, replacing the previous content atomically. The entries of the files that no
+     * longer exist are dropped first.
+     *
+     * @throws IOException if the cache could not be written
+     */
+    public void save() throws IOException {
+        if (!this.isEnabled())
+            return;
+
+        this.entries.keySet().removeIf(path -> !Files.exists(Path.of(path)));
+        Files.createDirectories(this.cacheFile.toAbsolutePath().getParent());
+        final Path tmpFile = this.cacheFile.resolveSibling(this.cacheFile.getFileName() + ".tmp");
+        try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile)))) {
+            this.writeEntries(out);
+        }
+        Files.move(tmpFile, this.cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    public String getFingerprint() {
+        return this.fingerprint;
+    }
+
+    private boolean isEnabled() {
+        return this.cacheFile != null;
+    }
+
+    private static String key(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+
+    private void readEntries(DataInputStream in) throws IOException {
+        if (in.readInt() != FORMAT_VERSION || !in.readUTF().equals(this.fingerprint))
+            return;
+
+        final int entriesCount = in.readInt();
+        // A single table for the names of the loaded reports, shared by the reports and released with them
+        final SymbolTable symbols = new SymbolTable(entriesCount * 8 + 16);
+        for (int i = 0; i < entriesCount; i++) {
+            final String path = in.readUTF();
+            final String contentHash = in.readUTF();
+            final int reportsCount = in.readInt();
+            final List<ClassDepsReport> reports = new ArrayList<>(reportsCount);
+            for (int r = 0; r < reportsCount; r++) {
+                final String className = in.readUTF();
+                final String packageName = in.readUTF();
+                final Set<String> dependencies = readNames(in);
+                final Set<String> qualifiedDependencies = readNames(in);
+                reports.add(new ClassDepsReport(symbols, className, packageName, dependencies, qualifiedDependencies,
+                        false));
+            }
+            this.entries.put(path, new Entry(contentHash, reports));
+        }
+    }
+
+    private void writeEntries(DataOutputStream out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeUTF(this.fingerprint);
+
+        final Map<String, Entry> snapshot = new HashMap<>(this.entries);
+        out.writeInt(snapshot.size());
+        for (Map.Entry<String, Entry> e : snapshot.entrySet()) {
+            out.writeUTF(e.getKey());
+            out.writeUTF(e.getValue().contentHash);
+            out.writeInt(e.getValue().reports.size());
+            for (ClassDepsReport report : e.getValue().reports) {
+                out.writeUTF(report.getClassOrInterfaceName());
+                out.writeUTF(report.getPackageName());
+                writeNames(out, report.getDependencies());
+                writeNames(out, report.getQualifiedDependencies());
+            }
+        }
+    }
+
+    private static Set<String> readNames(DataInputStream in) throws IOException {
+        final int namesCount = in.readInt();
+        final Set<String> names = new HashSet<>();
+        for (int n = 0; n < namesCount; n++)
+            names.add(in.readUTF());
+        return names;
+    }
+
+    private static void writeNames(DataOutputStream out, Set<String> names) throws IOException {
+        out.writeInt(names.size());
+        for (String name : names)
+            out.writeUTF(name);
+    }
+
+    private static class Entry {
+        private final String contentHash;
+        private final List<ClassDepsReport> reports;
+
+        private Entry(String contentHash, List<ClassDepsReport> reports) {
+            this.contentHash = contentHash;
+            this.reports = reports;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package lib.distributed;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import lib.DependencyAnalyserLib;
+import lib.graph.SymbolTable;
+import lib.reports.ClassDepsReport;
+import lib.reports.ModuleDepsReport;
+import lib.reports.ProjectDepsReport;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Coordinator of a distributed analysis: splits the files of a project into batches and lets the
+ * {@link AnalysisWorkerVerticle}s registered on the event bus, locally or in other JVMs of the cluster, pull them
+ * and send back their reports, then assembles the reports. The analysis is announced to every worker, and every
+ * worker asks for its next batch only once the previous one is done, so faster workers analyse more batches and at
+ * most one batch per worker is being analysed at any time.
+ * <p>
+ * A batch not analysed in time, e.g. by a worker that left the cluster, is handed out again, up to
+ * {@value #MAX_ATTEMPTS} times; the late reply of the worker it was taken from is ignored. Once every batch is handed
+ * out, the workers asking for another one wait in case one is handed out again.
+ */
+public class AnalysisCoordinator {
+    public static final int DEFAULT_BATCH_SIZE = 16;
+    public static final long DEFAULT_BATCH_TIMEOUT_MILLIS = 5 * 60 * 1000;
+    static final int MAX_ATTEMPTS = 3;
+    // Time for the first worker to ask for a batch after the announcement
+    private static final long NO_WORKER_TIMEOUT_MILLIS = 30 * 1000;
+    // Time a worker waits for a batch handed out again before asking again, below the timeout of its request
+    private static final long WAIT_MILLIS = 10 * 1000;
+
+    private final Vertx vertx;
+    private final DependencyAnalyserLib filesLister;
+    private final int batchSize;
+    private final long batchTimeoutMillis;
+
+    /**
+     * Create a coordinator.
+     *
+     * @param vertx the Vert.x instance, clustered to reach the workers of other JVMs
+     * @param batchSize the number of files sent in every batch
+     */
+    public AnalysisCoordinator(Vertx vertx, int batchSize) {
+        this(vertx, batchSize, DEFAULT_BATCH_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Create a coordinator.
+     *
+     * @param vertx the Vert.x instance, clustered to reach the workers of other JVMs
+     * @param batchSize the number of files sent in every batch
+     * @param batchTimeoutMillis the time a worker has to analyse a batch before it is handed out again
+     */
+    public AnalysisCoordinator(Vertx vertx, int batchSize, long batchTimeoutMillis) {
+        if (batchSize < 1)
+            throw new IllegalArgumentException("The batch size must be at least 1");
+        if (batchTimeoutMillis < 1)
+            throw new IllegalArgumentException("The batch timeout must be at least 1 ms");
+        this.vertx = vertx;
+        this.filesLister = new DependencyAnalyserLib(vertx);
+        this.batchSize = batchSize;
+        this.batchTimeoutMillis = batchTimeoutMillis;
+    }
+
+    /**
+     * Get the project name and all the reports of the packages contained in the Java project, module by module,
+     * analysed by the workers. The modules are those of {@link DependencyAnalyserLib#getProjectLayout(Path)}, and the
+     * batches are cut across the modules.
+     *
+     * @param projectSrcFolder the absolute path of the Java project, readable by every worker
+     * @return a Future result that contains the project name and all the reports of the packages contained in the Java project
+     */
+    public Future<ProjectDepsReport> getProjectDependencies(Path projectSrcFolder) {
+        return this.filesLister.getProjectLayout(projectSrcFolder)
+                .compose(layout -> this.filesLister.getModulesFiles(layout).compose(modulesFiles -> {
+                    final List<Path> files = modulesFiles.stream()
+                            .flatMap(List::stream)
+                            .collect(Collectors.toList());
+
+                    final List<List<Path>> batches = new ArrayList<>();
+                    for (int from = 0; from < files.size(); from += this.batchSize)
+                        batches.add(files.subList(from, Math.min(from + this.batchSize, files.size())));
+
+                    return new BatchSource(batches).run()
+                            .map(batchesReports -> {
+                                final List<ClassDepsReport> reports = batchesReports.stream()
+                                        .flatMap(List::stream)
+                                        .collect(Collectors.toList());
+
+                                final List<ModuleDepsReport> modulesReports = new ArrayList<>();
+                                int from = 0;
+                                for (int module = 0; module < modulesFiles.size(); module++) {
+                                    final int to = from + modulesFiles.get(module).size();
+                                    modulesReports.add(ModuleDepsReport.ofClasses(layout.getModules().get(module).getName(),
+                                            reports.subList(from, to)));
+                                    from = to;
+                                }
+                                return new ProjectDepsReport(projectSrcFolder.getFileName().toString(), modulesReports);
+                            });
+                }));
+    }
+
+    /**
+     * The batches of an analysis, handed out on an address of their own to the workers asking for one. A worker asks
+     * with the reports of its previous batch, if any, and is answered with its next batch, or without files once
+     * all the batches are done. A batch is handed out with a ticket of its own, that the worker answers with, so the
+     * reply for a batch that was handed out again is recognised and ignored. Everything runs on the context of the
+     * analysis.
+     * <p>
+     * Request: {@code {}} or {@code {"batch": ticket, "reports": [reports]}} or {@code {"batch": ticket, "failure": message}},
+     * reply: {@code {"batch": ticket, "files": [paths]}} or {@code {"wait": true}} to ask again or {@code {}}.
+     */
+    private final class BatchSource {
+        private final Context context = AnalysisCoordinator.this.vertx.getOrCreateContext();
+        private final String address = AnalysisWorkerVerticle.ADDRESS + ".batches." + UUID.randomUUID();
+        private final List<List<Path>> batches;
+        private final List<List<ClassDepsReport>> reports;
+        // The names of the reports of the analysis, interned once
+        private final SymbolTable symbols = new SymbolTable(1024);
+        // The batches to hand out: first in order, then those handed out again
+        private final Deque<Integer> pending = new ArrayDeque<>();
+        private final int[] attempts;
+        // The batch and the timeout timer of every ticket handed out and not answered yet
+        private final Map<Integer, HandOut> handOuts = new HashMap<>();
+        // The requests of the workers waiting for a batch handed out again, with their timers
+        private final Map<Message<JsonObject>, Long> waiting = new LinkedHashMap<>();
+        private final Promise<List<List<ClassDepsReport>>> result = Promise.promise();
+        private MessageConsumer<JsonObject> consumer;
+        private int nextTicket = 0;
+        private int remaining;
+        private boolean pulled = false;
+        private boolean terminated = false;
+
+        private BatchSource(List<List<Path>> batches) {
+            this.batches = batches;
+            this.reports = new ArrayList<>(Collections.nCopies(batches.size(), null));
+            this.attempts = new int[batches.size()];
+            this.remaining = batches.size();
+            for (int batch = 0; batch < batches.size(); batch++)
+                this.pending.add(batch);
+        }
+
+        private Future<List<List<ClassDepsReport>>> run() {
+            if (this.batches.isEmpty())
+                return Future.succeededFuture(List.of());
+
+            this.context.runOnContext(v -> {
+                final EventBus eventBus = AnalysisCoordinator.this.vertx.eventBus();
+                this.consumer = eventBus.consumer(this.address, this::handle);
+                this.consumer.completionHandler(registered -> {
+                    if (registered.failed()) {
+                        this.fail(registered.cause());
+                        return;
+                    }
+                    eventBus.publish(AnalysisWorkerVerticle.ADDRESS, new JsonObject().put("batches", this.address));
+                    AnalysisCoordinator.this.vertx.setTimer(NO_WORKER_TIMEOUT_MILLIS, id -> {
+                        if (!this.pulled)
+                            this.fail(new IllegalStateException("No analysis worker is registered on the event bus"));
+                    });
+                });
+            });
+            return this.result.future();
+        }
+
+        private void handle(Message<JsonObject> message) {
+            this.pulled = true;
+            final JsonObject body = message.body();
+            final Integer ticket = body.getInteger("batch");
+            // The ticket of a batch handed out again is gone: its late reply is ignored
+            final HandOut handOut = ticket == null ? null : this.handOuts.remove(ticket);
+            if (handOut != null && !this.terminated) {
+                AnalysisCoordinator.this.vertx.cancelTimer(handOut.timer);
+                if (body.containsKey("failure"))
+                    this.fail(new IllegalStateException("Batch " + handOut.batch + " failed: " + body.getString("failure")));
+                else
+                    this.done(handOut.batch, body.getJsonArray("reports"));
+            }
+            this.handOut(message);
+        }
+
+        private void handOut(Message<JsonObject> message) {
+            if (this.terminated) {
+                message.reply(new JsonObject());
+                return;
+            }
+            final Integer batch = this.pending.poll();
+            if (batch == null) {
+                // Every batch is handed out, the worker waits in case one of them is not analysed in time
+                this.waiting.put(message, AnalysisCoordinator.this.vertx.setTimer(WAIT_MILLIS, id -> {
+                    if (this.waiting.remove(message) != null)
+                        message.reply(new JsonObject().put("wait", true));
+                }));
+                return;
+            }
+
+            final int ticket = this.nextTicket++;
+            this.attempts[batch]++;
+            final JsonArray files = new JsonArray();
+            this.batches.get(batch).forEach(file -> files.add(file.toAbsolutePath().toString()));
+            this.handOuts.put(ticket, new HandOut(batch, AnalysisCoordinator.this.vertx.setTimer(
+                    AnalysisCoordinator.this.batchTimeoutMillis, id -> this.timedOut(ticket))));
+            message.reply(new JsonObject().put("batch", ticket).put("files", files));
+        }
+
+        private void timedOut(int ticket) {
+            final HandOut handOut = this.handOuts.remove(ticket);
+            if (handOut == null || this.terminated)
+                return;
+            if (this.attempts[handOut.batch] == MAX_ATTEMPTS) {
+                this.fail(new IllegalStateException("Batch " + handOut.batch + " was not analysed in time, "
+                        + MAX_ATTEMPTS + " times"));
+                return;
+            }
+
+            this.pending.add(handOut.batch);
+            final Iterator<Map.Entry<Message<JsonObject>, Long>> waitingWorkers = this.waiting.entrySet().iterator();
+            if (waitingWorkers.hasNext()) {
+                final Map.Entry<Message<JsonObject>, Long> waitingWorker = waitingWorkers.next();
+                waitingWorkers.remove();
+                AnalysisCoordinator.this.vertx.cancelTimer(waitingWorker.getValue());
+                this.handOut(waitingWorker.getKey());
+            }
+        }
+
+        private void done(int batch, JsonArray reportsJson) {
+            final int filesCount = this.batches.get(batch).size();
+            final int reportsCount = reportsJson == null ? 0 : reportsJson.size();
+            if (reportsCount != filesCount) {
+                this.fail(new IllegalStateException("Batch " + batch + " of " + filesCount + " files was answered with "
+                        + reportsCount + " reports"));
+                return;
+            }
+
+            final List<ClassDepsReport> batchReports = new ArrayList<>(reportsCount);
+            for (int i = 0; i < reportsCount; i++)
+                batchReports.add(ReportCodec.fromJson(reportsJson.getJsonObject(i), this.symbols));
+            this.reports.set(batch, batchReports);
+            if (--this.remaining == 0) {
+                this.terminate();
+                this.result.complete(this.reports);
+            }
+        }
+
+        private void fail(Throwable cause) {
+            if (this.terminated)
+                return;
+            this.terminate();
+            this.result.fail(cause);
+        }
+
+        private void terminate() {
+            this.terminated = true;
+            this.handOuts.values().forEach(handOut -> AnalysisCoordinator.this.vertx.cancelTimer(handOut.timer));
+            this.handOuts.clear();
+            this.waiting.forEach((message, timer) -> {
+                AnalysisCoordinator.this.vertx.cancelTimer(timer);
+                message.reply(new JsonObject());
+            });
+            this.waiting.clear();
+            if (this.consumer != null)
+                this.consumer.unregister();
+        }
+    }
+
+    private static final class HandOut {
+        private final int batch;
+        private final long timer;
+
+        private HandOut(int batch, long timer) {
+            this.batch = batch;
+            this.timer = timer;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package lib.distributed;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Promise;
+import lib.reports.ProjectDepsReport;
+
+import java.nio.file.Path;
+
+/**
+ * Verticle analysing a project with the {@link AnalysisWorkerVerticle}s of the event bus, and logging its throughput.
+ * <p>
+ * Configuration: {@code project} (path, required), {@code batchSize} (int), {@code batchTimeoutMillis} (long).
+ */
+public class AnalysisCoordinatorVerticle extends AbstractVerticle {
+
+    @Override
+    public void start(Promise<Void> startPromise) {
+        final Path project = Path.of(this.config().getString("project", System.getProperty("user.dir")));
+        final AnalysisCoordinator coordinator = new AnalysisCoordinator(this.vertx,
+                this.config().getInteger("batchSize", AnalysisCoordinator.DEFAULT_BATCH_SIZE),
+                this.config().getLong("batchTimeoutMillis", AnalysisCoordinator.DEFAULT_BATCH_TIMEOUT_MILLIS));
+
+        final long start = System.nanoTime();
+        coordinator.getProjectDependencies(project)
+                .onSuccess(report -> {
+                    logThroughput(report, System.nanoTime() - start);
+                    startPromise.complete();
+                })
+                .onFailure(startPromise::fail);
+    }
+
+    static int classesCount(ProjectDepsReport report) {
+        return report.getPackages().stream().mapToInt(p -> p.getClassesAndInterfaces().size()).sum();
+    }
+
+    private static void logThroughput(ProjectDepsReport report, long elapsedNanos) {
+        final int classes = classesCount(report);
+        System.out.printf("Analysed %d files in %d packages of %s in %d ms: %.1f files/s%n", classes,
+                report.getPackages().size(), report.getProjectName(), elapsedNanos / 1_000_000,
+                classes * 1e9 / elapsedNanos);
+    }
+}
@@ -0,0 +1,79 @@
+package lib.distributed;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import lib.AnalyserOptions;
+import lib.BoundedMapper;
+import lib.DependencyAnalyserLib;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Worker of a distributed analysis: when an {@link AnalysisCoordinator} announces an analysis on {@link #ADDRESS},
+ * asks it for a batch of files, analyses it, and asks for the next one with the serialized reports, until no batch
+ * is left. Every instance analyses one batch at a time, at most {@code maxConcurrency} files of it at the same time
+ * (1 by default), so the parallelism of a scan is set by the number of deployed instances, in this JVM or in other
+ * JVMs of the cluster.
+ * <p>
+ * Configuration: {@code maxConcurrency} (int), {@code shallow} (boolean).
+ */
+public class AnalysisWorkerVerticle extends AbstractVerticle {
+    public static final String ADDRESS = "dependency-analyser.files";
+
+    private DependencyAnalyserLib dependencyAnalyser;
+    private int maxConcurrency;
+
+    @Override
+    public void start(Promise<Void> startPromise) {
+        this.maxConcurrency = this.config().getInteger("maxConcurrency", 1);
+        this.dependencyAnalyser = new DependencyAnalyserLib(this.vertx, new AnalyserOptions()
+                .setMaxConcurrency(this.maxConcurrency)
+                .setShallow(this.config().getBoolean("shallow", false)));
+
+        this.vertx.eventBus().<JsonObject>consumer(ADDRESS, message -> this.pull(message.body().getString("batches"), new JsonObject()))
+                .completionHandler(startPromise);
+    }
+
+    // Announcement: {"batches": address}, the protocol of the address is the one of the coordinator. A failed request
+    // means that the analysis is over or that its coordinator is gone: the worker stops asking
+    private void pull(String batchesAddress, JsonObject previousBatch) {
+        this.vertx.eventBus().<JsonObject>request(batchesAddress, previousBatch)
+                .onSuccess(reply -> {
+                    // No batch yet: one may be handed out again, once its worker is late
+                    if (reply.body().getBoolean("wait", false)) {
+                        this.pull(batchesAddress, new JsonObject());
+                        return;
+                    }
+                    final JsonArray files = reply.body().getJsonArray("files");
+                    if (files == null)
+                        return;
+                    final int batch = reply.body().getInteger("batch");
+                    this.analyseBatch(files)
+                            .onSuccess(reports -> this.pull(batchesAddress, new JsonObject()
+                                    .put("batch", batch)
+                                    .put("reports", reports)))
+                            .onFailure(cause -> this.pull(batchesAddress, new JsonObject()
+                                    .put("batch", batch)
+                                    .put("failure", String.valueOf(cause.getMessage()))));
+                });
+    }
+
+    // The reports in the order of the files
+    private Future<JsonArray> analyseBatch(JsonArray files) {
+        final List<Path> paths = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++)
+            paths.add(Path.of(files.getString(i)));
+
+        return BoundedMapper.map(paths, this.dependencyAnalyser::getClassDependencies, this.maxConcurrency)
+                .map(reports -> {
+                    final JsonArray reportsJson = new JsonArray();
+                    reports.forEach(report -> reportsJson.add(ReportCodec.toJson(report)));
+                    return reportsJson;
+                });
+    }
+}
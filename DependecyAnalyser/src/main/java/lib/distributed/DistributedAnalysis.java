@@ -0,0 +1,133 @@
+package lib.distributed;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.eventbus.EventBusOptions;
+import io.vertx.core.json.JsonObject;
+
+import java.nio.file.Path;
+
+/**
+ * Command line entry point of the distributed analysis.
+ * <ul>
+ *     <li>{@code local <project> [workers]}: analyse a project with workers deployed in this JVM</li>
+ *     <li>{@code scaling <project> [max workers]}: analyse a project in this JVM with 1, 2, 4... workers,
+ *     and report the throughput and the speedup of every run</li>
+ *     <li>{@code worker [workers]}: join the cluster on localhost and serve analyses</li>
+ *     <li>{@code coordinator <project>}: join the cluster on localhost and analyse a project with its workers</li>
+ * </ul>
+ * Clustered modes need a cluster manager on the classpath, e.g. with {@code mvn -Pcluster}: start the workers first,
+ * then the coordinator. The files of the project must be readable by every JVM.
+ */
+public final class DistributedAnalysis {
+    private static final String WORKER_POOL = "dependency-analyser-workers";
+
+    private DistributedAnalysis() {
+    }
+
+    public static void main(String[] args) {
+        final String mode = args.length > 0 ? args[0] : "local";
+        final boolean hasProject = !mode.equals("worker");
+        final Path project = Path.of(hasProject && args.length > 1 ? args[1] : System.getProperty("user.dir"));
+        final int workersArg = hasProject ? 2 : 1;
+        final int workers = args.length > workersArg ? Integer.parseInt(args[workersArg]) : Runtime.getRuntime().availableProcessors();
+
+        switch (mode) {
+            case "local":
+                runLocal(project, workers);
+                break;
+            case "scaling":
+                runScaling(project, workers);
+                break;
+            case "worker":
+                clusteredVertx().compose(vertx -> deployWorkers(vertx, workers))
+                        .onSuccess(id -> System.out.println(workers + " analysis workers joined the cluster"))
+                        .onFailure(DistributedAnalysis::exit);
+                break;
+            case "coordinator":
+                clusteredVertx().compose(vertx -> vertx
+                                .deployVerticle(new AnalysisCoordinatorVerticle(),
+                                        new DeploymentOptions().setConfig(new JsonObject().put("project", project.toString())))
+                                .eventually(() -> vertx.close()))
+                        .onFailure(DistributedAnalysis::exit);
+                break;
+            default:
+                System.err.println("Unknown mode " + mode + ", expected local, scaling, worker or coordinator");
+        }
+    }
+
+    /**
+     * Deploy analysis workers, every one with its own thread of a dedicated worker pool.
+     *
+     * @param vertx the Vert.x instance
+     * @param instances the number of workers
+     * @return a Future result that contains the deployment id
+     */
+    public static Future<String> deployWorkers(Vertx vertx, int instances) {
+        return vertx.deployVerticle(AnalysisWorkerVerticle.class, new DeploymentOptions()
+                .setInstances(instances)
+                .setWorkerPoolName(WORKER_POOL)
+                .setWorkerPoolSize(instances));
+    }
+
+    private static void runLocal(Path project, int workers) {
+        final Vertx vertx = Vertx.vertx();
+        deployWorkers(vertx, workers)
+                .compose(id -> vertx.deployVerticle(new AnalysisCoordinatorVerticle(),
+                        new DeploymentOptions().setConfig(new JsonObject().put("project", project.toString()))))
+                .onFailure(System.err::println)
+                .eventually(() -> vertx.close());
+    }
+
+    // Every run deploys its own workers, with their own worker pool, after a warm-up run with all the workers
+    private static void runScaling(Path project, int maxWorkers) {
+        final Vertx vertx = Vertx.vertx();
+        try {
+            measure(vertx, project, maxWorkers);
+            double baseline = 0;
+            for (int workers = 1; ; workers = Math.min(2 * workers, maxWorkers)) {
+                final double throughput = measure(vertx, project, workers);
+                if (workers == 1)
+                    baseline = throughput;
+                System.out.printf("workers=%d throughput=%.1f files/s speedup=%.2fx%n", workers, throughput, throughput / baseline);
+                if (workers >= maxWorkers)
+                    break;
+            }
+        } catch (Exception e) {
+            System.err.println("Scaling measure failed: " + e.getMessage());
+        } finally {
+            vertx.close();
+        }
+    }
+
+    private static double measure(Vertx vertx, Path project, int workers) throws Exception {
+        final String deploymentId = join(deployWorkers(vertx, workers));
+        try {
+            final AnalysisCoordinator coordinator = new AnalysisCoordinator(vertx, AnalysisCoordinator.DEFAULT_BATCH_SIZE);
+            final long start = System.nanoTime();
+            final int classes = AnalysisCoordinatorVerticle.classesCount(join(coordinator.getProjectDependencies(project)));
+            return classes * 1e9 / (System.nanoTime() - start);
+        } finally {
+            join(vertx.undeploy(deploymentId));
+        }
+    }
+
+    private static <T> T join(Future<T> future) throws Exception {
+        return future.toCompletionStage().toCompletableFuture().get();
+    }
+
+    private static Future<Vertx> clusteredVertx() {
+        return Vertx.clusteredVertx(new VertxOptions().setEventBusOptions(new EventBusOptions()
+                        .setHost("localhost")
+                        .setClusterPublicHost("localhost")))
+                .recover(cause -> Future.failedFuture(new IllegalStateException(
+                        "Could not join the cluster (is a cluster manager on the classpath? try mvn -Pcluster): " + cause.getMessage(), cause)));
+    }
+
+    private static void exit(Throwable cause) {
+        System.err.println("Distributed analysis failed: " + cause.getMessage());
+        System.exit(1);
+    }
+}
@@ -0,0 +1,54 @@
+package lib.distributed;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import lib.graph.SymbolTable;
+import lib.reports.ClassDepsReport;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * JSON form of the reports exchanged over the event bus, so they can cross JVMs.
+ */
+public final class ReportCodec {
+    private ReportCodec() {
+    }
+
+    /**
+     * Serialize a class report.
+     *
+     * @param report the class report
+     * @return the JSON object of the report
+     */
+    public static JsonObject toJson(ClassDepsReport report) {
+        return new JsonObject()
+                .put("className", report.getClassOrInterfaceName())
+                .put("packageName", report.getPackageName())
+                .put("dependencies", new JsonArray(report.getDependencies().asList()))
+                .put("qualifiedDependencies", new JsonArray(report.getQualifiedDependencies().asList()))
+                .put("approximate", report.isApproximate());
+    }
+
+    /**
+     * Deserialize a class report, interning its names in a symbol table, e.g. the table of the analysis receiving it.
+     *
+     * @param json the JSON object of the report
+     * @param symbols the symbol table of the names
+     * @return the class report
+     */
+    public static ClassDepsReport fromJson(JsonObject json, SymbolTable symbols) {
+        final Set<String> dependencies = namesOf(json.getJsonArray("dependencies"));
+        final Set<String> qualifiedDependencies = namesOf(json.getJsonArray("qualifiedDependencies"));
+
+        return new ClassDepsReport(symbols, json.getString("className"), json.getString("packageName"), dependencies,
+                qualifiedDependencies, json.getBoolean("approximate", false));
+    }
+
+    private static Set<String> namesOf(JsonArray namesJson) {
+        final Set<String> names = new HashSet<>(namesJson.size());
+        for (int i = 0; i < namesJson.size(); i++)
+            names.add(namesJson.getString(i));
+        return names;
+    }
+}
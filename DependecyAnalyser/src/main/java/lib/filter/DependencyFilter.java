@@ -0,0 +1,257 @@
+package lib.filter;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Filter of the dependencies to report, compiled once from a list of include/exclude rules and then safe to use
+ * from any thread without allocating: exact types are looked up in a hash map, package prefixes in a character
+ * trie, and globs are matched in place.
+ * <p>
+ * A type rule wins over package rules, the longest matching package rule wins over globs, and the first matching
+ * glob decides otherwise. Names matched by no rule are included. Every rule counts the names it decided.
+ */
+public final class DependencyFilter {
+    /** System property with the path of the filter configuration file. */
+    public static final String CONFIGURATION_PROPERTY = "analyzer.filter";
+    private static final String DEFAULT_CONFIGURATION = "/dependency-filter.conf";
+
+    private final List<FilterRule> rules;
+    private final Map<String, FilterRule> types = new HashMap<>();
+    private final TrieNode packages;
+    private final FilterRule[] globs;
+    private final LongAdder unmatched = new LongAdder();
+
+    /**
+     * Compile a filter.
+     *
+     * @param rules the rules of the filter, in order of priority for the globs
+     */
+    public DependencyFilter(List<FilterRule> rules) {
+        this.rules = List.copyOf(rules);
+
+        final TrieBuilder packagesBuilder = new TrieBuilder();
+        final List<FilterRule> globRules = new ArrayList<>();
+        for (FilterRule rule : this.rules) {
+            if (rule.getKind() == FilterRule.Kind.TYPE)
+                this.types.putIfAbsent(rule.getPattern(), rule);
+            else if (rule.getKind() == FilterRule.Kind.PACKAGE)
+                packagesBuilder.add(rule);
+            else
+                globRules.add(rule);
+        }
+        this.packages = packagesBuilder.build();
+        this.globs = globRules.toArray(new FilterRule[0]);
+    }
+
+    /**
+     * Get the filter configured by the {@value #CONFIGURATION_PROPERTY} system property, or the default one.
+     *
+     * @return a new filter, with its own counters
+     */
+    public static DependencyFilter fromConfiguration() {
+        final String configuration = System.getProperty(CONFIGURATION_PROPERTY);
+        try {
+            return configuration != null ? load(Path.of(configuration)) : defaults();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the dependency filter " + configuration, e);
+        }
+    }
+
+    /**
+     * Get the default filter, excluding the JDK and UI packages and the most common types.
+     *
+     * @return a new filter, with its own counters
+     */
+    public static DependencyFilter defaults() {
+        try (final InputStream in = DependencyFilter.class.getResourceAsStream(DEFAULT_CONFIGURATION)) {
+            if (in == null)
+                throw new IllegalStateException("Missing default dependency filter " + DEFAULT_CONFIGURATION);
+            return parse(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Load a filter from a configuration file.
+     *
+     * @param configurationFile the configuration file
+     * @return the filter
+     * @throws IOException if the file could not be read
+     * @see #parse(String)
+     */
+    public static DependencyFilter load(Path configurationFile) throws IOException {
+        return parse(Files.readString(configurationFile));
+    }
+
+    /**
+     * Compile a filter from its configuration: one rule per line, as {@code <include|exclude> <package|type|glob>
+     * <pattern>}. Empty lines and everything after a "#" are ignored.
+     *
+     * @param configuration the text of the configuration
+     * @return the filter
+     * @throws IllegalArgumentException if a line is not a valid rule
+     */
+    public static DependencyFilter parse(String configuration) {
+        final List<FilterRule> rules = new ArrayList<>();
+        final String[] lines = configuration.split("\r?\n");
+        for (int i = 0; i < lines.length; i++) {
+            final int comment = lines[i].indexOf('#');
+            final String line = (comment >= 0 ? lines[i].substring(0, comment) : lines[i]).trim();
+            if (line.isEmpty())
+                continue;
+
+            final String[] parts = line.split("\\s+");
+            if (parts.length != 3 || !(parts[0].equals("include") || parts[0].equals("exclude")))
+                throw new IllegalArgumentException("Invalid filter rule at line " + (i + 1) + ": " + lines[i]);
+            try {
+                rules.add(new FilterRule(parts[0].equals("include"), FilterRule.Kind.valueOf(parts[1].toUpperCase()), parts[2]));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid filter rule kind at line " + (i + 1) + ": " + parts[1]);
+            }
+        }
+        return new DependencyFilter(rules);
+    }
+
+    /**
+     * Decide whether a dependency is to be reported, and count the decision.
+     *
+     * @param name the qualified or simple name of the dependency
+     * @return true if the dependency is included
+     */
+    public boolean test(String name) {
+        final FilterRule type = this.types.get(name);
+        if (type != null)
+            return type.match();
+
+        final FilterRule packageRule = this.packages.longestPrefix(name);
+        if (packageRule != null)
+            return packageRule.match();
+
+        for (FilterRule glob : this.globs) {
+            if (matchesGlob(glob.getPattern(), name))
+                return glob.match();
+        }
+
+        this.unmatched.increment();
+        return true;
+    }
+
+    public List<FilterRule> getRules() {
+        return this.rules;
+    }
+
+    /**
+     * Get the number of names matched by no rule, and so included.
+     *
+     * @return the number of unmatched names
+     */
+    public long getUnmatched() {
+        return this.unmatched.sum();
+    }
+
+    /**
+     * Get the fingerprint of the rules, to invalidate the results computed with other rules.
+     *
+     * @return the rules, in order
+     */
+    public String getFingerprint() {
+        return this.rules.stream().map(FilterRule::toString).collect(Collectors.joining(";"));
+    }
+
+    /**
+     * Get a description of the rules and of their counters.
+     *
+     * @return one line per rule that matched at least a name, then the number of unmatched names
+     */
+    public String getStatistics() {
+        final StringBuilder statistics = new StringBuilder();
+        for (FilterRule rule : this.rules) {
+            if (rule.getMatches() > 0)
+                statistics.append(rule).append(": ").append(rule.getMatches()).append('\n');
+        }
+        return statistics.append("no rule: ").append(this.getUnmatched()).toString();
+    }
+
+    // Iterative glob matching: on a mismatch, the last "*" absorbs one more character
+    private static boolean matchesGlob(String pattern, String name) {
+        int p = 0;
+        int n = 0;
+        int star = -1;
+        int starMatch = 0;
+        while (n < name.length()) {
+            if (p < pattern.length() && (pattern.charAt(p) == '?' || pattern.charAt(p) == name.charAt(n))) {
+                p++;
+                n++;
+            } else if (p < pattern.length() && pattern.charAt(p) == '*') {
+                star = p++;
+                starMatch = n;
+            } else if (star >= 0) {
+                p = star + 1;
+                n = ++starMatch;
+            } else {
+                return false;
+            }
+        }
+        while (p < pattern.length() && pattern.charAt(p) == '*')
+            p++;
+        return p == pattern.length();
+    }
+
+    // Immutable trie node, with its transitions sorted by character
+    private static final class TrieNode {
+        private final char[] labels;
+        private final TrieNode[] children;
+        private final FilterRule rule;
+
+        private TrieNode(char[] labels, TrieNode[] children, FilterRule rule) {
+            this.labels = labels;
+            this.children = children;
+            this.rule = rule;
+        }
+
+        private FilterRule longestPrefix(String name) {
+            FilterRule longest = this.rule;
+            TrieNode node = this;
+            for (int i = 0; i < name.length(); i++) {
+                final int child = Arrays.binarySearch(node.labels, name.charAt(i));
+                if (child < 0)
+                    break;
+                node = node.children[child];
+                if (node.rule != null)
+                    longest = node.rule;
+            }
+            return longest;
+        }
+    }
+
+    private static final class TrieBuilder {
+        private final TreeMap<Character, TrieBuilder> children = new TreeMap<>();
+        private FilterRule rule;
+
+        private void add(FilterRule packageRule) {
+            TrieBuilder node = this;
+            for (int i = 0; i < packageRule.getPattern().length(); i++)
+                node = node.children.computeIfAbsent(packageRule.getPattern().charAt(i), c -> new TrieBuilder());
+            if (node.rule == null)
+                node.rule = packageRule;
+        }
+
+        private TrieNode build() {
+            final char[] labels = new char[this.children.size()];
+            final TrieNode[] nodes = new TrieNode[this.children.size()];
+            int i = 0;
+            for (Map.Entry<Character, TrieBuilder> child : this.children.entrySet()) {
+                labels[i] = child.getKey();
+                nodes[i++] = child.getValue().build();
+            }
+            return new TrieNode(labels, nodes, this.rule);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package lib.filter;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rule of a {@link DependencyFilter}, with the number of names it decided.
+ */
+public final class FilterRule {
+    public enum Kind {
+        /** The name starts with the pattern. */
+        PACKAGE,
+        /** The name is exactly the pattern. */
+        TYPE,
+        /** The name matches the pattern, where "*" matches any sequence of characters and "?" any character. */
+        GLOB
+    }
+
+    private final boolean include;
+    private final Kind kind;
+    private final String pattern;
+    private final LongAdder matches = new LongAdder();
+
+    public FilterRule(boolean include, Kind kind, String pattern) {
+        this.include = include;
+        this.kind = kind;
+        this.pattern = pattern;
+    }
+
+    public boolean isInclude() {
+        return this.include;
+    }
+
+    public Kind getKind() {
+        return this.kind;
+    }
+
+    public String getPattern() {
+        return this.pattern;
+    }
+
+    /**
+     * Get the number of names decided by this rule since the filter was created.
+     *
+     * @return the number of matches
+     */
+    public long getMatches() {
+        return this.matches.sum();
+    }
+
+    boolean match() {
+        this.matches.increment();
+        return this.include;
+    }
+
+    @Override
+    public String toString() {
+        return (this.include ? "include " : "exclude ") + this.kind.name().toLowerCase() + " " + this.pattern;
+    }
+}
@@ -0,0 +1,187 @@
+package lib.git;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The Java files of a folder of a local git repository, at a given revision, read from the object store of the
+ * repository with the {@code git} command: the working tree and the index are never touched.
+ * The files are listed once, with the id of their blob, so that files whose blob did not change between two
+ * revisions can be recognised without reading them. Blobs are read on demand through a single
+ * {@code git cat-file --batch} process, started at the first read and stopped when the revision is closed.
+ */
+public final class GitRevision implements Closeable {
+    private final Path repository;
+    private final String commitId;
+    private final List<GitFile> files;
+    private Process catFile;
+    private OutputStream requests;
+    private InputStream blobs;
+
+    private GitRevision(Path repository, String commitId, List<GitFile> files) {
+        this.repository = repository;
+        this.commitId = commitId;
+        this.files = files;
+    }
+
+    /**
+     * List the Java files of a folder of a git repository at a revision.
+     *
+     * @param folder the folder, the root of the repository or any folder inside it
+     * @param revision the revision, e.g. a commit id, a branch or {@code HEAD~1}
+     * @return the revision, to be closed once its files are read
+     * @throws IOException if the folder is not in a git repository, or the revision does not exist
+     */
+    public static GitRevision open(Path folder, String revision) throws IOException {
+        final Path repository = Path.of(git(folder, "rev-parse", "--show-toplevel").trim());
+        final String commitId = git(repository, "rev-parse", "--verify", "--end-of-options", revision + "^{commit}").trim();
+        final String prefix = repository.toRealPath().relativize(folder.toRealPath()).toString().replace('\\', '/');
+
+        // Records are "<mode> <type> <blob id>\t<path>", separated by NUL
+        final String tree = prefix.isEmpty()
+                ? git(repository, "ls-tree", "-r", "-z", "--full-tree", commitId)
+                : git(repository, "ls-tree", "-r", "-z", "--full-tree", commitId, "--", prefix);
+        final List<GitFile> files = new ArrayList<>();
+        for (String record : tree.split("\0")) {
+            final int tab = record.indexOf('\t');
+            if (tab < 0)
+                continue;
+            final String[] fields = record.substring(0, tab).split(" ");
+            final String path = record.substring(tab + 1);
+            if (fields.length == 3 && fields[1].equals("blob") && isTypeSource(path))
+                files.add(new GitFile(path, fields[2]));
+        }
+        return new GitRevision(repository, commitId, Collections.unmodifiableList(files));
+    }
+
+    public Path getRepository() {
+        return this.repository;
+    }
+
+    public String getCommitId() {
+        return this.commitId;
+    }
+
+    /**
+     * Get the Java files of the folder at the revision.
+     *
+     * @return the files, with their path relative to the root of the repository and the id of their blob
+     */
+    public List<GitFile> getFiles() {
+        return this.files;
+    }
+
+    /**
+     * Read the content of a blob. Safe to call from several threads: the reads are serialised.
+     *
+     * @param blobId the id of the blob
+     * @return the content of the blob, decoded as UTF-8
+     * @throws IOException if the blob does not exist or could not be read
+     */
+    public synchronized String readBlob(String blobId) throws IOException {
+        if (this.catFile == null) {
+            this.catFile = new ProcessBuilder("git", "-C", this.repository.toString(), "cat-file", "--batch")
+                    .redirectError(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            this.requests = this.catFile.getOutputStream();
+            this.blobs = new BufferedInputStream(this.catFile.getInputStream(), 1 << 16);
+        }
+
+        this.requests.write((blobId + "\n").getBytes(StandardCharsets.US_ASCII));
+        this.requests.flush();
+
+        // Header "<id> <type> <size>", or "<id> missing"
+        final String[] header = this.readLine().split(" ");
+        if (header.length != 3 || !header[1].equals("blob"))
+            throw new IOException("No blob " + blobId + " in " + this.repository);
+        final int size = Integer.parseInt(header[2]);
+        final byte[] content = this.blobs.readNBytes(size);
+        if (content.length < size || this.blobs.read() != '\n')
+            throw new EOFException("Truncated blob " + blobId + " in " + this.repository);
+        return new String(content, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (this.catFile != null)
+            this.catFile.destroy();
+        this.catFile = null;
+    }
+
+    private String readLine() throws IOException {
+        final ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+        int b;
+        while ((b = this.blobs.read()) != '\n') {
+            if (b < 0)
+                throw new EOFException("git cat-file stopped in " + this.repository);
+            line.write(b);
+        }
+        return line.toString(StandardCharsets.US_ASCII);
+    }
+
+    // package-info.java and module-info.java declare no type
+    private static boolean isTypeSource(String path) {
+        final String fileName = path.substring(path.lastIndexOf('/') + 1);
+        return fileName.endsWith(".java") && !fileName.equals("package-info.java") && !fileName.equals("module-info.java");
+    }
+
+    // Runs a git command in a folder, and gets its output, or fails with its error. The error goes to a file: read
+    // from a pipe after the output, a git writing more errors than the pipe holds would never finish its output
+    private static String git(Path folder, String... arguments) throws IOException {
+        final List<String> command = new ArrayList<>(List.of("git", "-C", folder.toString()));
+        command.addAll(List.of(arguments));
+        final Path errorFile = Files.createTempFile("git-", ".err");
+        try {
+            final Process process = new ProcessBuilder(command)
+                    .redirectError(errorFile.toFile())
+                    .start();
+            process.getOutputStream().close();
+            final String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            if (process.waitFor() != 0)
+                throw new IOException("git " + arguments[0] + " failed in " + folder + ": " + Files.readString(errorFile).trim());
+            return output;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while running git " + arguments[0], e);
+        } finally {
+            Files.deleteIfExists(errorFile);
+        }
+    }
+
+    /**
+     * A Java file of a revision.
+     */
+    public static final class GitFile {
+        private final String path;
+        private final String blobId;
+
+        GitFile(String path, String blobId) {
+            this.path = path;
+            this.blobId = blobId;
+        }
+
+        /**
+         * Get the path of the file, relative to the root of the repository, with '/' separators.
+         *
+         * @return the path of the file
+         */
+        public String getPath() {
+            return this.path;
+        }
+
+        public String getBlobId() {
+            return this.blobId;
+        }
+    }
+}
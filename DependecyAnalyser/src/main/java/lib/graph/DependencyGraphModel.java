@@ -0,0 +1,208 @@
+package lib.graph;
+
+import lib.reports.ClassDepsReport;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Compact, immutable dependency graph in compressed sparse row form. Nodes are dense indexes in
+ * [0, {@link #nodeCount()}) mapped to the ids of the qualified names of a {@link SymbolTable}, and the dependencies of node n are
+ * {@code target(edgeStart(n))} ... {@code target(edgeEnd(n) - 1)}, stored contiguously in a single int array, each
+ * once and in increasing order, even for a class reported several times, e.g. by several modules.
+ * Nodes that are only dependencies (not analysed classes) have no package and no outgoing edges.
+ * The reverse index is stored the same way: the classes that depend on node n are
+ * {@code source(inEdgeStart(n))} ... {@code source(inEdgeEnd(n) - 1)}, each once, in increasing order.
+ */
+public final class DependencyGraphModel {
+    private final SymbolTable symbols;
+    private final int[] nodeSymbols;
+    private final int[] symbolNodes;
+    private final int[] nodePackages;
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[] inOffsets;
+    private final int[] sources;
+
+    private DependencyGraphModel(SymbolTable symbols, int[] nodeSymbols, int[] symbolNodes, int[] nodePackages,
+                                 int[] offsets, int[] targets, int[] inOffsets, int[] sources) {
+        this.symbols = symbols;
+        this.nodeSymbols = nodeSymbols;
+        this.symbolNodes = symbolNodes;
+        this.nodePackages = nodePackages;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.inOffsets = inOffsets;
+        this.sources = sources;
+    }
+
+    /**
+     * Build the graph of the given class reports, whose names must be interned in the given table. Classes are
+     * nodes by qualified name, so that classes of different packages with the same name stay apart.
+     *
+     * @param symbols the table of the names of the reports
+     * @param classes the reports of the analysed classes
+     * @return the dependency graph
+     */
+    public static DependencyGraphModel of(SymbolTable symbols, Collection<ClassDepsReport> classes) {
+        final int[] symbolNodes = new int[symbols.size()];
+        Arrays.fill(symbolNodes, -1);
+        int nodeCount = 0;
+        int edgeCount = 0;
+
+        // Analysed classes come first, so that they own the first node indexes
+        for (ClassDepsReport report : classes) {
+            if (symbolNodes[report.getQualifiedNameId()] < 0)
+                symbolNodes[report.getQualifiedNameId()] = nodeCount++;
+            edgeCount += report.getQualifiedDependencies().size();
+        }
+        for (ClassDepsReport report : classes) {
+            final SymbolSet dependencies = report.getQualifiedDependencies();
+            for (int i = 0; i < dependencies.size(); i++) {
+                if (symbolNodes[dependencies.idAt(i)] < 0)
+                    symbolNodes[dependencies.idAt(i)] = nodeCount++;
+            }
+        }
+
+        final int[] nodeSymbols = new int[nodeCount];
+        for (int symbol = 0; symbol < symbolNodes.length; symbol++) {
+            if (symbolNodes[symbol] >= 0)
+                nodeSymbols[symbolNodes[symbol]] = symbol;
+        }
+
+        final int[] nodePackages = new int[nodeCount];
+        Arrays.fill(nodePackages, SymbolTable.NO_SYMBOL);
+        final int[] degrees = new int[nodeCount];
+        for (ClassDepsReport report : classes) {
+            final int node = symbolNodes[report.getQualifiedNameId()];
+            nodePackages[node] = report.getPackageId();
+            degrees[node] += report.getQualifiedDependencies().size();
+        }
+
+        final int[] offsets = new int[nodeCount + 1];
+        for (int node = 0; node < nodeCount; node++)
+            offsets[node + 1] = offsets[node] + degrees[node];
+
+        int[] targets = new int[edgeCount];
+        final int[] next = Arrays.copyOf(offsets, nodeCount);
+        for (ClassDepsReport report : classes) {
+            final int node = symbolNodes[report.getQualifiedNameId()];
+            final SymbolSet dependencies = report.getQualifiedDependencies();
+            for (int i = 0; i < dependencies.size(); i++)
+                targets[next[node]++] = symbolNodes[dependencies.idAt(i)];
+        }
+
+        // Classes reported twice share their node and concatenated rows: the rows are sorted and compacted in place
+        int distinct = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            final int rowStart = offsets[node];
+            final int rowEnd = offsets[node + 1];
+            Arrays.sort(targets, rowStart, rowEnd);
+            offsets[node] = distinct;
+            for (int edge = rowStart; edge < rowEnd; edge++) {
+                if (edge == rowStart || targets[edge] != targets[edge - 1])
+                    targets[distinct++] = targets[edge];
+            }
+        }
+        offsets[nodeCount] = distinct;
+        if (distinct < targets.length)
+            targets = Arrays.copyOf(targets, distinct);
+
+        final int[] inOffsets = new int[nodeCount + 1];
+        for (int target : targets)
+            inOffsets[target + 1]++;
+        for (int node = 0; node < nodeCount; node++)
+            inOffsets[node + 1] += inOffsets[node];
+
+        final int[] sources = new int[targets.length];
+        final int[] nextIn = Arrays.copyOf(inOffsets, nodeCount);
+        for (int node = 0; node < nodeCount; node++) {
+            for (int edge = offsets[node]; edge < offsets[node + 1]; edge++)
+                sources[nextIn[targets[edge]]++] = node;
+        }
+
+        return new DependencyGraphModel(symbols, nodeSymbols, symbolNodes, nodePackages, offsets, targets, inOffsets, sources);
+    }
+
+    public SymbolTable getSymbols() {
+        return this.symbols;
+    }
+
+    public int nodeCount() {
+        return this.nodeSymbols.length;
+    }
+
+    public int edgeCount() {
+        return this.targets.length;
+    }
+
+    /**
+     * Get the node of a name.
+     *
+     * @param name the qualified name of a class or of a dependency
+     * @return the node index, or -1 if the name is not in the graph
+     */
+    public int nodeOf(String name) {
+        return this.nodeOfSymbol(this.symbols.lookup(name));
+    }
+
+    /**
+     * Get the node of a symbol.
+     *
+     * @param symbol the id of the name of a class or of a dependency
+     * @return the node index, or -1 if the name is not in the graph
+     */
+    public int nodeOfSymbol(int symbol) {
+        return symbol >= 0 && symbol < this.symbolNodes.length ? this.symbolNodes[symbol] : -1;
+    }
+
+    public int symbolOf(int node) {
+        return this.nodeSymbols[node];
+    }
+
+    public String nameOf(int node) {
+        return this.symbols.nameOf(this.nodeSymbols[node]);
+    }
+
+    /**
+     * Get the package of a node.
+     *
+     * @param node the node index
+     * @return the symbol id of the package name, or {@link SymbolTable#NO_SYMBOL} if the node was not analysed
+     */
+    public int packageOf(int node) {
+        return this.nodePackages[node];
+    }
+
+    public int edgeStart(int node) {
+        return this.offsets[node];
+    }
+
+    public int edgeEnd(int node) {
+        return this.offsets[node + 1];
+    }
+
+    public int outDegree(int node) {
+        return this.offsets[node + 1] - this.offsets[node];
+    }
+
+    public int target(int edge) {
+        return this.targets[edge];
+    }
+
+    public int inEdgeStart(int node) {
+        return this.inOffsets[node];
+    }
+
+    public int inEdgeEnd(int node) {
+        return this.inOffsets[node + 1];
+    }
+
+    public int inDegree(int node) {
+        return this.inOffsets[node + 1] - this.inOffsets[node];
+    }
+
+    public int source(int inEdge) {
+        return this.sources[inEdge];
+    }
+}
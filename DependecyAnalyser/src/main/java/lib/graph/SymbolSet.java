@@ -0,0 +1,137 @@
+package lib.graph;
+
+import java.util.*;
+
+/**
+ * Immutable set of names, stored as the sorted ids of a {@link SymbolTable}.
+ * The set is a view over the ids: reading it never copies the names.
+ */
+public final class SymbolSet extends AbstractSet<String> {
+    private static final int[] NO_IDS = new int[0];
+
+    private final SymbolTable symbols;
+    private final int[] ids;
+
+    private SymbolSet(SymbolTable symbols, int[] ids) {
+        this.symbols = symbols;
+        this.ids = ids;
+    }
+
+    /**
+     * Intern the given names and create the set of their ids.
+     *
+     * @param symbols the table where the names are interned
+     * @param names the names of the set
+     * @return the set of names
+     */
+    public static SymbolSet of(SymbolTable symbols, Collection<String> names) {
+        if (names instanceof SymbolSet && ((SymbolSet) names).symbols == symbols)
+            return (SymbolSet) names;
+        if (names.isEmpty())
+            return new SymbolSet(symbols, NO_IDS);
+
+        final int[] ids = new int[names.size()];
+        int i = 0;
+        for (String name : names)
+            ids[i++] = symbols.intern(name);
+        return ofIds(symbols, ids);
+    }
+
+    /**
+     * Create the set of the given ids, taking the ownership of the array.
+     *
+     * @param symbols the table the ids belong to
+     * @param ids the ids of the names, in any order and possibly repeated
+     * @return the set of names
+     */
+    public static SymbolSet ofIds(SymbolTable symbols, int[] ids) {
+        Arrays.sort(ids);
+        int unique = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (i == 0 || ids[i] != ids[i - 1])
+                ids[unique++] = ids[i];
+        }
+        return new SymbolSet(symbols, unique == ids.length ? ids : Arrays.copyOf(ids, unique));
+    }
+
+    /**
+     * Create the union of sets of names. The ids of the sets of the given table are merged as they are, the names of
+     * the sets of other tables are interned.
+     *
+     * @param symbols the table of the union
+     * @param sets the sets to merge
+     * @return the set of the names of all the sets
+     */
+    public static SymbolSet unionOf(SymbolTable symbols, Collection<SymbolSet> sets) {
+        int size = 0;
+        for (SymbolSet set : sets)
+            size += set.ids.length;
+        if (size == 0)
+            return new SymbolSet(symbols, NO_IDS);
+
+        final int[] ids = new int[size];
+        int i = 0;
+        for (SymbolSet set : sets) {
+            if (set.symbols == symbols) {
+                System.arraycopy(set.ids, 0, ids, i, set.ids.length);
+                i += set.ids.length;
+            } else {
+                for (String name : set)
+                    ids[i++] = symbols.intern(name);
+            }
+        }
+        return ofIds(symbols, ids);
+    }
+
+    public SymbolTable getSymbols() {
+        return this.symbols;
+    }
+
+    public int idAt(int index) {
+        return this.ids[index];
+    }
+
+    public String get(int index) {
+        return this.symbols.nameOf(this.ids[index]);
+    }
+
+    public boolean containsId(int id) {
+        return Arrays.binarySearch(this.ids, id) >= 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof String && this.containsId(this.symbols.lookup((String) o));
+    }
+
+    @Override
+    public int size() {
+        return this.ids.length;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return this.asList().iterator();
+    }
+
+    /**
+     * Get a list view of the names, in the order of their ids.
+     *
+     * @return the unmodifiable list of the names
+     */
+    public List<String> asList() {
+        return new NamesList();
+    }
+
+    private final class NamesList extends AbstractList<String> implements RandomAccess {
+        @Override
+        public String get(int index) {
+            return SymbolSet.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return SymbolSet.this.ids.length;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package lib.graph;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Table interning the names of types and packages to dense int ids, so that every name is stored once
+ * no matter how many reports refer to it. The table is thread-safe and ids are never reused, so a table is scoped
+ * to what uses it: an analysis, a library instance, a scanner, and goes away with it. The reports built together
+ * share its table, and are combined without interning their names again.
+ */
+public final class SymbolTable {
+    public static final int NO_SYMBOL = -1;
+
+    private final Map<String, Integer> ids;
+    private volatile String[] names;
+    private int size = 0;
+
+    public SymbolTable() {
+        this(16);
+    }
+
+    /**
+     * Create a table sized for a number of names, e.g. those of a snapshot.
+     *
+     * @param expectedSize the expected number of names
+     */
+    public SymbolTable(int expectedSize) {
+        this.ids = new ConcurrentHashMap<>(Math.max(expectedSize, 1));
+        this.names = new String[Math.max(expectedSize, 1)];
+    }
+
+    /**
+     * Get the table all the given tables are, e.g. to combine reports without interning their names again.
+     *
+     * @param tables the symbol tables
+     * @return the table, if they are all the same one, else a new table
+     */
+    public static SymbolTable commonOf(Collection<SymbolTable> tables) {
+        SymbolTable common = null;
+        for (SymbolTable table : tables) {
+            if (common != null && table != common)
+                return new SymbolTable();
+            common = table;
+        }
+        return common != null ? common : new SymbolTable();
+    }
+
+    /**
+     * Get the id of a name, adding it to the table if it is not present.
+     *
+     * @param name the name to intern
+     * @return the id of the name
+     */
+    public int intern(String name) {
+        final Integer id = this.ids.get(name);
+        return id != null ? id : this.add(name);
+    }
+
+    /**
+     * Get the id of a name without adding it to the table.
+     *
+     * @param name the name to look up
+     * @return the id of the name, or {@link #NO_SYMBOL} if the name was never interned
+     */
+    public int lookup(String name) {
+        return this.ids.getOrDefault(name, NO_SYMBOL);
+    }
+
+    public String nameOf(int id) {
+        return this.names[id];
+    }
+
+    public int size() {
+        return this.ids.size();
+    }
+
+    private synchronized int add(String name) {
+        final Integer present = this.ids.get(name);
+        if (present != null)
+            return present;
+
+        final int id = this.size++;
+        String[] current = this.names;
+        if (id == current.length)
+            current = Arrays.copyOf(current, current.length * 2);
+        current[id] = name;
+        // Publish the names before the id, so every thread that sees the id also sees its name
+        this.names = current;
+        this.ids.put(name, id);
+        return id;
+    }
+}
@@ -0,0 +1,220 @@
+package lib.metrics;
+
+import io.vertx.core.json.JsonObject;
+import jdk.jfr.FlightRecorder;
+
+import java.util.EnumMap;
+import java.util.concurrent.Callable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of the analyses: a latency histogram and a failure counter per {@link Stage}, and the depth of the queues
+ * of the pools running them. Recording a stage costs two counter updates and a histogram update; the stages are
+ * also committed as {@link StageEvent}s, and the queues of the {@link #shared()} metrics as periodic
+ * {@link QueueDepthEvent}s, when a JFR recording enables them, e.g. with {@code -XX:StartFlightRecording}.
+ * <p>
+ * Throughputs are computed since the metrics were created or last reset.
+ */
+public final class AnalysisMetrics {
+    public static final String VERTX_WORKER_QUEUE = "vertx-worker";
+    public static final String VIRTUAL_THREADS_QUEUE = "virtual-threads";
+    public static final String RX_IO_QUEUE = "rx-io";
+    public static final String GUI_PENDING_QUEUE = "gui-pending";
+
+    private static final AnalysisMetrics SHARED = new AnalysisMetrics();
+
+    private final Map<Stage, LatencyHistogram> latencies = new EnumMap<>(Stage.class);
+    private final Map<Stage, LongAdder> failures = new EnumMap<>(Stage.class);
+    private final Map<String, QueueDepth> queues = new ConcurrentSkipListMap<>();
+    private volatile long resetNanos = System.nanoTime();
+
+    public AnalysisMetrics() {
+        for (Stage stage : Stage.values()) {
+            this.latencies.put(stage, new LatencyHistogram());
+            this.failures.put(stage, new LongAdder());
+        }
+    }
+
+    static {
+        FlightRecorder.addPeriodicEvent(QueueDepthEvent.class, SHARED::emitQueueDepthEvents);
+    }
+
+    /**
+     * Get the metrics shared by the analyses of the JVM, served by the {@link MetricsVerticle}.
+     *
+     * @return the shared metrics
+     */
+    public static AnalysisMetrics shared() {
+        return SHARED;
+    }
+
+    /**
+     * Get the start time of a stage, to be given to {@link #record(Stage, long, boolean)} when it ends.
+     *
+     * @return the current time in nanoseconds
+     */
+    public long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Record the end of a stage.
+     *
+     * @param stage the stage
+     * @param startNanos the start time of the stage, from {@link #start()}
+     * @param failed true if the stage failed
+     */
+    public void record(Stage stage, long startNanos, boolean failed) {
+        final long duration = System.nanoTime() - startNanos;
+        this.latencies.get(stage).record(duration);
+        if (failed)
+            this.failures.get(stage).increment();
+
+        final StageEvent event = new StageEvent();
+        if (event.shouldCommit()) {
+            event.stage = stage.getMetricName();
+            event.stageDuration = duration;
+            event.failed = failed;
+            event.commit();
+        }
+    }
+
+    /**
+     * Wrap a task to record it as a stage, failed if it throws.
+     *
+     * @param stage the stage
+     * @param task the task running the stage
+     * @return the timed task
+     */
+    public <T> Callable<T> timed(Stage stage, Callable<T> task) {
+        return () -> {
+            final long start = this.start();
+            boolean failed = true;
+            try {
+                final T result = task.call();
+                failed = false;
+                return result;
+            } finally {
+                this.record(stage, start, failed);
+            }
+        };
+    }
+
+    /**
+     * Count a failure of a stage, without a latency: e.g. a type that could not be resolved and fell back on its name.
+     *
+     * @param stage the stage
+     */
+    public void recordFailure(Stage stage) {
+        this.failures.get(stage).increment();
+    }
+
+    public LatencyHistogram getLatencies(Stage stage) {
+        return this.latencies.get(stage);
+    }
+
+    public long getFailures(Stage stage) {
+        return this.failures.get(stage).sum();
+    }
+
+    /**
+     * Get the depth of a queue, created when first used.
+     *
+     * @param name the name of the queue, e.g. {@link #VERTX_WORKER_QUEUE}
+     * @return the depth of the queue
+     */
+    public QueueDepth queue(String name) {
+        return this.queues.computeIfAbsent(name, n -> new QueueDepth());
+    }
+
+    /**
+     * Get the number of stages done per second.
+     *
+     * @param stage the stage
+     * @return the throughput of the stage since the metrics were created or last reset
+     */
+    public double getThroughput(Stage stage) {
+        final double elapsedSeconds = (System.nanoTime() - this.resetNanos) / 1e9;
+        return elapsedSeconds <= 0 ? 0 : this.latencies.get(stage).getCount() / elapsedSeconds;
+    }
+
+    /**
+     * Forget the latencies and the failures, e.g. before a new analysis. Queue depths are kept, they are current values.
+     */
+    public void reset() {
+        for (Stage stage : Stage.values()) {
+            this.latencies.get(stage).reset();
+            this.failures.get(stage).reset();
+        }
+        this.resetNanos = System.nanoTime();
+    }
+
+    /**
+     * Get a snapshot of the metrics. Durations are in milliseconds, throughputs in stages per second.
+     *
+     * @return the metrics as JSON
+     */
+    public JsonObject toJson() {
+        final JsonObject stages = new JsonObject();
+        for (Stage stage : Stage.values()) {
+            final LatencyHistogram histogram = this.latencies.get(stage);
+            stages.put(stage.getMetricName(), new JsonObject()
+                    .put("count", histogram.getCount())
+                    .put("failures", this.getFailures(stage))
+                    .put("throughput", this.getThroughput(stage))
+                    .put("totalMs", millis(histogram.getTotalNanos()))
+                    .put("meanMs", histogram.getMeanNanos() / 1e6)
+                    .put("p50Ms", millis(histogram.getPercentileNanos(50)))
+                    .put("p90Ms", millis(histogram.getPercentileNanos(90)))
+                    .put("p99Ms", millis(histogram.getPercentileNanos(99)))
+                    .put("maxMs", millis(histogram.getMaxNanos())));
+        }
+
+        final JsonObject queues = new JsonObject();
+        this.queues.forEach((name, depth) -> queues.put(name, new JsonObject()
+                .put("queued", depth.getQueued())
+                .put("active", depth.getActive())));
+
+        return new JsonObject()
+                .put("uptimeMs", millis(System.nanoTime() - this.resetNanos))
+                .put("stages", stages)
+                .put("queues", queues);
+    }
+
+    /**
+     * Get a summary of the metrics, one line per stage that ran and per queue.
+     *
+     * @return the summary of the metrics
+     */
+    public String getSummary() {
+        final StringBuilder summary = new StringBuilder();
+        for (Stage stage : Stage.values()) {
+            final LatencyHistogram histogram = this.latencies.get(stage);
+            if (histogram.getCount() == 0 && this.getFailures(stage) == 0)
+                continue;
+            summary.append(String.format("%-10s %6d ops %8.1f/s  p50 %7.2f ms  p99 %7.2f ms  max %7.2f ms  %d failed%n",
+                    stage.getMetricName(), histogram.getCount(), this.getThroughput(stage),
+                    millis(histogram.getPercentileNanos(50)), millis(histogram.getPercentileNanos(99)),
+                    millis(histogram.getMaxNanos()), this.getFailures(stage)));
+        }
+        this.queues.forEach((name, depth) -> summary.append(String.format("%-12s %4d queued %4d active%n",
+                name, depth.getQueued(), depth.getActive())));
+        return summary.toString();
+    }
+
+    private void emitQueueDepthEvents() {
+        this.queues.forEach((name, depth) -> {
+            final QueueDepthEvent event = new QueueDepthEvent();
+            event.queue = name;
+            event.queued = depth.getQueued();
+            event.active = depth.getActive();
+            event.commit();
+        });
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
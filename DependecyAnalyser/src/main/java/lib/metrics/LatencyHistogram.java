@@ -0,0 +1,104 @@
+package lib.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of latencies in nanoseconds. Every power of two is split into 4 buckets, so percentiles are
+ * reported with an error of at most 25%, with a fixed footprint of 256 counters whatever the range of the values.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKETS_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKETS_BITS;
+    private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record a latency.
+     *
+     * @param nanos the latency in nanoseconds, negative values count as 0
+     */
+    public void record(long nanos) {
+        final long value = Math.max(0, nanos);
+        this.counts.incrementAndGet(bucketOf(value));
+        this.count.increment();
+        this.sum.add(value);
+        this.max.accumulateAndGet(value, Math::max);
+    }
+
+    public long getCount() {
+        return this.count.sum();
+    }
+
+    public long getTotalNanos() {
+        return this.sum.sum();
+    }
+
+    public long getMaxNanos() {
+        return this.max.get();
+    }
+
+    /**
+     * Get the mean of the latencies.
+     *
+     * @return the mean latency in nanoseconds, 0 if nothing was recorded
+     */
+    public double getMeanNanos() {
+        final long count = this.getCount();
+        return count == 0 ? 0 : (double) this.getTotalNanos() / count;
+    }
+
+    /**
+     * Get a percentile of the latencies, as the upper bound of the bucket that contains it.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the latency in nanoseconds, 0 if nothing was recorded
+     */
+    public long getPercentileNanos(double percentile) {
+        final long total = this.getCount();
+        if (total == 0)
+            return 0;
+
+        final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long cumulated = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            cumulated += this.counts.get(bucket);
+            if (cumulated >= rank)
+                return Math.min(upperBoundOf(bucket), this.getMaxNanos());
+        }
+        return this.getMaxNanos();
+    }
+
+    /**
+     * Forget all the recorded latencies. Latencies recorded concurrently may be partially kept.
+     */
+    public void reset() {
+        for (int bucket = 0; bucket < BUCKETS; bucket++)
+            this.counts.set(bucket, 0);
+        this.count.reset();
+        this.sum.reset();
+        this.max.set(0);
+    }
+
+    // Values below 4 have their own bucket, then every power of two 2^e has 4 buckets of 2^(e-2) values
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int subBucket = (int) (value >>> (exponent - SUB_BUCKETS_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKETS_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+        final int shift = bucket / SUB_BUCKETS - 1;
+        final long lowerBound = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowerBound + (1L << shift) - 1;
+    }
+}
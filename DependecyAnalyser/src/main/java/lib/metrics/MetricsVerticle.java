@@ -0,0 +1,69 @@
+package lib.metrics;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Promise;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerRequest;
+
+/**
+ * Verticle serving the {@link AnalysisMetrics#shared()} metrics over HTTP, on the loopback interface only:
+ * {@code GET /metrics} returns them as JSON, {@code GET /metrics/summary} as text,
+ * and {@code POST /metrics/reset} resets them.
+ * <p>
+ * Configuration: {@code port} (int, {@link #DEFAULT_PORT} by default, 0 for a random port), {@code host}.
+ */
+public class MetricsVerticle extends AbstractVerticle {
+    public static final int DEFAULT_PORT = 9464;
+
+    private final AnalysisMetrics metrics;
+    private HttpServer server;
+
+    public MetricsVerticle() {
+        this(AnalysisMetrics.shared());
+    }
+
+    public MetricsVerticle(AnalysisMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void start(Promise<Void> startPromise) {
+        this.vertx.createHttpServer()
+                .requestHandler(this::handle)
+                .listen(this.config().getInteger("port", DEFAULT_PORT), this.config().getString("host", "localhost"))
+                .onSuccess(server -> {
+                    this.server = server;
+                    System.out.println("Analysis metrics served on http://localhost:" + server.actualPort() + "/metrics");
+                    startPromise.complete();
+                })
+                .onFailure(startPromise::fail);
+    }
+
+    /**
+     * Get the port of the HTTP server, once started.
+     *
+     * @return the port the metrics are served on
+     */
+    public int getPort() {
+        return this.server.actualPort();
+    }
+
+    private void handle(HttpServerRequest request) {
+        final String path = request.path();
+        if (request.method() == HttpMethod.GET && path.equals("/metrics")) {
+            request.response()
+                    .putHeader("Content-Type", "application/json")
+                    .end(this.metrics.toJson().encodePrettily());
+        } else if (request.method() == HttpMethod.GET && path.equals("/metrics/summary")) {
+            request.response()
+                    .putHeader("Content-Type", "text/plain; charset=utf-8")
+                    .end(this.metrics.getSummary());
+        } else if (request.method() == HttpMethod.POST && path.equals("/metrics/reset")) {
+            this.metrics.reset();
+            request.response().setStatusCode(204).end();
+        } else {
+            request.response().setStatusCode(404).end();
+        }
+    }
+}
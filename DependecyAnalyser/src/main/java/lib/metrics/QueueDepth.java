@@ -0,0 +1,71 @@
+package lib.metrics;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Depth of a queue of tasks: the tasks submitted and not started yet, and the tasks running.
+ */
+public final class QueueDepth {
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong active = new AtomicLong();
+
+    public long getQueued() {
+        return this.queued.get();
+    }
+
+    public long getActive() {
+        return this.active.get();
+    }
+
+    /**
+     * Count tasks as submitted.
+     *
+     * @param tasks the number of submitted tasks
+     */
+    public void enqueued(long tasks) {
+        this.queued.addAndGet(tasks);
+    }
+
+    /**
+     * Count submitted tasks as taken off the queue without running them, e.g. consumed in a batch or dropped.
+     *
+     * @param tasks the number of tasks taken off the queue
+     */
+    public void dequeued(long tasks) {
+        this.queued.addAndGet(-tasks);
+    }
+
+    /**
+     * Count a submitted task as running.
+     */
+    public void started() {
+        this.queued.decrementAndGet();
+        this.active.incrementAndGet();
+    }
+
+    /**
+     * Count a running task as done.
+     */
+    public void finished() {
+        this.active.decrementAndGet();
+    }
+
+    /**
+     * Count a task as submitted, and wrap it to count it as running then done.
+     *
+     * @param task the task to submit
+     * @return the wrapped task
+     */
+    public <T> Callable<T> submit(Callable<T> task) {
+        this.enqueued(1);
+        return () -> {
+            this.started();
+            try {
+                return task.call();
+            } finally {
+                this.finished();
+            }
+        };
+    }
+}
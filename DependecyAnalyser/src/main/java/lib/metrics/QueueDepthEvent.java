@@ -0,0 +1,29 @@
+package lib.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+
+/**
+ * Periodic JFR event with the depth of an instrumented queue, emitted every second while a recording enables it.
+ */
+@Name("dependencyanalyser.QueueDepth")
+@Label("Analysis Queue Depth")
+@Category("Dependency Analyser")
+@Description("Tasks submitted and not started yet, and tasks running, in a pool of the analysis")
+@Period("1 s")
+@StackTrace(false)
+class QueueDepthEvent extends Event {
+    @Label("Queue")
+    String queue;
+
+    @Label("Queued")
+    long queued;
+
+    @Label("Active")
+    long active;
+}
@@ -0,0 +1,27 @@
+package lib.metrics;
+
+/**
+ * Instrumented stages of an analysis.
+ */
+public enum Stage {
+    READ_FILE("readFile"),
+    PARSE("parse"),
+    VISIT("visit"),
+    RESOLVE("resolve"),
+    GRAPH_APPLY("graphApply");
+
+    private final String metricName;
+
+    Stage(String metricName) {
+        this.metricName = metricName;
+    }
+
+    /**
+     * Get the name of the stage in the metrics and in the JFR events.
+     *
+     * @return the name of the stage
+     */
+    public String getMetricName() {
+        return this.metricName;
+    }
+}
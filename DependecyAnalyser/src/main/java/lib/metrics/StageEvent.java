@@ -0,0 +1,29 @@
+package lib.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event of an instrumented stage, committed only when a recording enables it.
+ */
+@Name("dependencyanalyser.Stage")
+@Label("Analysis Stage")
+@Category("Dependency Analyser")
+@Description("A stage of the analysis of a file, or the application of results to the graph")
+@StackTrace(false)
+class StageEvent extends Event {
+    @Label("Stage")
+    String stage;
+
+    @Label("Stage Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    long stageDuration;
+
+    @Label("Failed")
+    boolean failed;
+}
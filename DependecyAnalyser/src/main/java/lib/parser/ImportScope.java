@@ -0,0 +1,139 @@
+package lib.parser;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.ImportDeclaration;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.nodeTypes.NodeWithName;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The package, the imports and the declared types of a source file, that qualify the type names used in the file
+ * without a type solver. Both the lexer and the full analysis qualify their names with it, so their reports use the
+ * same names: the qualified name of a type, with its nested types after it, e.g. {@code java.util.Map.Entry}.
+ */
+public final class ImportScope {
+    private static final Map<String, Boolean> PLATFORM_TYPES = new ConcurrentHashMap<>();
+
+    private final String packageName;
+    private final Map<String, String> singleImports;
+    private final List<String> onDemandImports;
+    // Simple name of every declared type -> its name in the file, with its enclosing types
+    private final Map<String, String> declaredTypes;
+
+    ImportScope(String packageName, Map<String, String> singleImports, List<String> onDemandImports,
+                Map<String, String> declaredTypes) {
+        this.packageName = packageName;
+        this.singleImports = singleImports;
+        this.onDemandImports = onDemandImports;
+        this.declaredTypes = declaredTypes;
+    }
+
+    /**
+     * Get the scope of a parsed compilation unit.
+     *
+     * @param compilationUnit the compilation unit
+     * @return the package, the imports and the declared types of the compilation unit
+     */
+    public static ImportScope of(CompilationUnit compilationUnit) {
+        final String packageName = compilationUnit.getPackageDeclaration()
+                .map(NodeWithName::getNameAsString)
+                .orElse("");
+
+        final Map<String, String> singleImports = new HashMap<>();
+        final List<String> onDemandImports = new ArrayList<>();
+        for (ImportDeclaration importDeclaration : compilationUnit.getImports()) {
+            if (importDeclaration.isStatic())
+                continue;
+            if (importDeclaration.isAsterisk())
+                onDemandImports.add(importDeclaration.getNameAsString());
+            else
+                singleImports.put(importDeclaration.getName().getIdentifier(), importDeclaration.getNameAsString());
+        }
+
+        final Map<String, String> declaredTypes = new LinkedHashMap<>();
+        for (TypeDeclaration<?> type : compilationUnit.findAll(TypeDeclaration.class))
+            declaredTypes.putIfAbsent(type.getNameAsString(), nestedName(type));
+        return new ImportScope(packageName, singleImports, onDemandImports, declaredTypes);
+    }
+
+    // The name of a type prefixed by its enclosing types, e.g. Outer.Inner
+    private static String nestedName(TypeDeclaration<?> type) {
+        final StringBuilder name = new StringBuilder(type.getNameAsString());
+        for (Optional<Node> parent = type.getParentNode(); parent.isPresent(); parent = parent.get().getParentNode()) {
+            if (parent.get() instanceof TypeDeclaration)
+                name.insert(0, ((TypeDeclaration<?>) parent.get()).getNameAsString() + ".");
+        }
+        return name.toString();
+    }
+
+    public String getPackageName() {
+        return this.packageName;
+    }
+
+    /**
+     * Get the qualified names of the types declared in the file, nested ones included, in order of declaration.
+     *
+     * @return the qualified names of the declared types
+     */
+    public List<String> getDeclaredTypes() {
+        final List<String> qualifiedNames = new ArrayList<>(this.declaredTypes.size());
+        for (String nestedName : this.declaredTypes.values())
+            qualifiedNames.add(this.inPackage(nestedName));
+        return qualifiedNames;
+    }
+
+    /**
+     * Get the qualified name of a type name used in the file. Names starting with a lowercase letter are already
+     * qualified. The declared and imported types come first, then {@code java.lang} and the JDK on-demand imports,
+     * then the same package, unless other on-demand imports make it ambiguous: the name is then kept as written.
+     *
+     * @param reference the simple or scoped name of a type, as written in the file
+     * @return the qualified name of the type
+     */
+    public String qualify(String reference) {
+        if (reference.isEmpty() || Character.isLowerCase(reference.charAt(0)))
+            return reference;
+
+        final int firstDot = reference.indexOf('.');
+        final String first = firstDot < 0 ? reference : reference.substring(0, firstDot);
+        final String rest = firstDot < 0 ? "" : reference.substring(firstDot);
+
+        final String imported = this.singleImports.get(first);
+        if (imported != null)
+            return imported + rest;
+
+        final String declared = this.declaredTypes.get(first);
+        if (declared != null)
+            return this.inPackage(declared + rest);
+
+        if (isPlatformType("java.lang", first))
+            return "java.lang." + reference;
+        boolean ambiguous = false;
+        for (String onDemandImport : this.onDemandImports) {
+            if (isPlatformType(onDemandImport, first))
+                return onDemandImport + "." + reference;
+            ambiguous |= !onDemandImport.startsWith("java.") && !onDemandImport.startsWith("javax.");
+        }
+        return ambiguous ? reference : this.inPackage(reference);
+    }
+
+    private String inPackage(String name) {
+        return this.packageName.isEmpty() ? name : this.packageName + "." + name;
+    }
+
+    private static boolean isPlatformType(String packageName, String simpleName) {
+        if (!packageName.startsWith("java.") && !packageName.startsWith("javax."))
+            return false;
+        return PLATFORM_TYPES.computeIfAbsent(packageName + "." + simpleName, name -> {
+            try {
+                Class.forName(name, false, ClassLoader.getPlatformClassLoader());
+                return true;
+            } catch (ClassNotFoundException | LinkageError e) {
+                return false;
+            }
+        });
+    }
+}
@@ -0,0 +1,90 @@
+package lib.parser;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseProblemException;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ast.CompilationUnit;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+/**
+ * Pool of thread-confined Java parsers. Every platform thread using the pool gets its own {@link JavaParser},
+ * created with its own {@link ParserConfiguration} (and so its own symbol resolver, if any), so parsers
+ * are never shared between threads nor between different pools.
+ * <p>
+ * Virtual threads are created per task, so a parser per thread would be created per file: they borrow an idle
+ * parser of the pool for the time of a parse instead, still used by one thread at a time.
+ */
+public class ParserPool {
+    private final Supplier<ParserConfiguration> configurationFactory;
+    private final ThreadLocal<JavaParser> parsers;
+    private final Queue<JavaParser> idleParsers = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Create a pool whose parsers are configured by the given factory. The factory is called once per thread,
+     * and must return a new configuration at every call.
+     *
+     * @param configurationFactory the factory of the parsers configurations
+     */
+    public ParserPool(Supplier<ParserConfiguration> configurationFactory) {
+        this.configurationFactory = configurationFactory;
+        this.parsers = ThreadLocal.withInitial(() -> new JavaParser(configurationFactory.get()));
+    }
+
+    /**
+     * Create a pool whose parsers use the default configuration, without symbol resolution.
+     *
+     * @return the parser pool
+     */
+    public static ParserPool withDefaultConfiguration() {
+        return new ParserPool(ParserPool::defaultConfiguration);
+    }
+
+    /**
+     * Get the configuration the parsers start from: Java 17 sources, so that records and sealed types parse.
+     *
+     * @return a new default parser configuration
+     */
+    public static ParserConfiguration defaultConfiguration() {
+        return new ParserConfiguration().setLanguageLevel(ParserConfiguration.LanguageLevel.JAVA_17);
+    }
+
+    /**
+     * Get the parser confined to the current thread.
+     *
+     * @return the parser of the current thread
+     */
+    public JavaParser get() {
+        return this.parsers.get();
+    }
+
+    /**
+     * Parse a compilation unit with the parser of the current thread, or on a virtual thread, with an idle parser.
+     *
+     * @param sourceCode the source code of the compilation unit
+     * @return the parsed compilation unit
+     * @throws ParseProblemException if the source code contains errors
+     */
+    public CompilationUnit parse(String sourceCode) {
+        if (!Thread.currentThread().isVirtual())
+            return parse(this.get(), sourceCode);
+
+        final JavaParser idleParser = this.idleParsers.poll();
+        final JavaParser parser = idleParser != null ? idleParser : new JavaParser(this.configurationFactory.get());
+        try {
+            return parse(parser, sourceCode);
+        } finally {
+            this.idleParsers.offer(parser);
+        }
+    }
+
+    private static CompilationUnit parse(JavaParser parser, String sourceCode) {
+        final ParseResult<CompilationUnit> result = parser.parse(sourceCode);
+        if (result.isSuccessful() && result.getResult().isPresent())
+            return result.getResult().get();
+        throw new ParseProblemException(result.getProblems());
+    }
+}
@@ -0,0 +1,84 @@
+package lib.parser;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * What a {@link TypeTokenLexer} found in a source file: the package, the declared types and the referenced types,
+ * as written and qualified through the imports when possible, of the whole file and of each declared type.
+ */
+public final class ShallowSource {
+    private final String packageName;
+    private final List<String> declaredTypes;
+    private final Set<String> referencedNames;
+    private final Set<String> referencedTypes;
+    private final Map<String, Set<String>> typeReferences;
+
+    ShallowSource(String packageName, List<String> declaredTypes, Set<String> referencedNames, Set<String> referencedTypes,
+                  Map<String, Set<String>> typeReferences) {
+        this.packageName = packageName;
+        this.declaredTypes = declaredTypes;
+        this.referencedNames = referencedNames;
+        this.referencedTypes = referencedTypes;
+        this.typeReferences = typeReferences;
+    }
+
+    /**
+     * Get the package of the file.
+     *
+     * @return the package name, or an empty string for the default package
+     */
+    public String getPackageName() {
+        return this.packageName;
+    }
+
+    /**
+     * Get the names of the types declared in the file, nested ones included and prefixed by their enclosing types,
+     * e.g. {@code Outer.Inner}, in order of declaration.
+     *
+     * @return the unmodifiable list of the declared types
+     */
+    public List<String> getDeclaredTypes() {
+        return this.declaredTypes;
+    }
+
+    /**
+     * Get the names of the referenced types as written, e.g. {@code Map.Entry} or {@code java.util.List}.
+     *
+     * @return the unmodifiable set of the referenced names
+     */
+    public Set<String> getReferencedNames() {
+        return this.referencedNames;
+    }
+
+    /**
+     * Get the referenced types. Names that could not be qualified (e.g. when the file has on-demand imports)
+     * are kept as written.
+     *
+     * @return the unmodifiable set of the referenced types
+     */
+    public Set<String> getReferencedTypes() {
+        return this.referencedTypes;
+    }
+
+    /**
+     * Get the types referenced by the declaration of a type of the file, its nested types included.
+     *
+     * @param declaredType the name of the type, as returned by {@link #getDeclaredTypes()}
+     * @return the unmodifiable set of the referenced types, empty if the file declares no such type
+     */
+    public Set<String> getReferencedTypes(String declaredType) {
+        return this.typeReferences.getOrDefault(declaredType, Set.of());
+    }
+
+    /**
+     * Get the qualified name of a type declared in the file.
+     *
+     * @param declaredType the name of the type, as returned by {@link #getDeclaredTypes()}
+     * @return the name of the type prefixed by the package, if any
+     */
+    public String qualify(String declaredType) {
+        return this.packageName.isEmpty() ? declaredType : this.packageName + "." + declaredType;
+    }
+}
@@ -0,0 +1,273 @@
+package lib.parser;
+
+import java.util.*;
+
+/**
+ * Single pass lexer that extracts the package, the imports, the declared types and the referenced types of a Java
+ * source file without building an AST. Comments, string, text block and char literals are skipped, and every other
+ * dotted name is read in place: only the names that look like types are turned into strings.
+ * <p>
+ * A type reference is the first capitalized segment of a dotted name that also contains a lowercase letter,
+ * with the package segments before it and the nested types after it: {@code java.util.List}, {@code Map.Entry},
+ * {@code Collections} in {@code Collections.emptyList()}. All-uppercase names (constants, single letter type
+ * parameters, acronyms) and annotations are ignored. The result is an approximation of what a full analysis finds,
+ * meant for quick overviews.
+ * <p>
+ * The braces are counted to nest the declared types in the types whose body declares them, e.g. {@code Outer.Inner},
+ * and to attribute every reference to the types whose declaration contains it.
+ */
+public final class TypeTokenLexer {
+    private static final int NONE = 0;
+    private static final int PACKAGE = 1;
+    private static final int IMPORT = 2;
+    private static final int DECLARATION = 3;
+
+    private final String source;
+    private final int length;
+    private final StringBuilder name = new StringBuilder(64);
+    private int position = 0;
+
+    private String packageName = "";
+    private final Map<String, String> singleImports = new HashMap<>();
+    private final List<String> onDemandImports = new ArrayList<>();
+    private final List<String> declaredTypes = new ArrayList<>();
+    private final Set<String> references = new HashSet<>();
+    // The references of every declared type, by index of declaration
+    private final List<Set<String>> typeReferences = new ArrayList<>();
+    // The declared types whose body is open, innermost last, with the brace depth of their body
+    private final Deque<int[]> openTypes = new ArrayDeque<>();
+    // The declared type whose body is not open yet, -1 if none
+    private int declaringType = -1;
+    private int depth = 0;
+
+    private TypeTokenLexer(String source) {
+        this.source = source;
+        this.length = source.length();
+    }
+
+    /**
+     * Scan a source file.
+     *
+     * @param source the source code of a compilation unit, even if it does not compile
+     * @return the package, declared types and referenced types of the source
+     */
+    public static ShallowSource scan(String source) {
+        return new TypeTokenLexer(source).scan();
+    }
+
+    private ShallowSource scan() {
+        int state = NONE;
+        boolean annotation = false;
+
+        while (this.position < this.length) {
+            final char c = this.source.charAt(this.position);
+            if (Character.isJavaIdentifierStart(c)) {
+                this.readName();
+                if (state == NONE && this.isName("package")) {
+                    state = PACKAGE;
+                } else if (state == NONE && this.isName("import")) {
+                    state = IMPORT;
+                } else if (state == IMPORT && this.isName("static")) {
+                    // Static imports are read as single imports of their member, never looked up
+                } else if (this.isName("class") || this.isName("interface") || this.isName("enum") || this.isName("record")) {
+                    state = DECLARATION;
+                } else {
+                    if (state == PACKAGE)
+                        this.packageName = this.name.toString();
+                    else if (state == IMPORT)
+                        this.addImport();
+                    else if (state == DECLARATION)
+                        this.addDeclaredType();
+                    else if (!annotation)
+                        this.addReference();
+                    state = NONE;
+                }
+                annotation = false;
+            } else if (c == '/' && this.peek(1) == '/') {
+                this.skipUntil("\n", 2);
+            } else if (c == '/' && this.peek(1) == '*') {
+                this.skipUntil("*/", 2);
+            } else if (c == '"') {
+                if (this.peek(1) == '"' && this.peek(2) == '"')
+                    this.skipUntil("\"\"\"", 3);
+                else
+                    this.skipLiteral('"');
+            } else if (c == '\'') {
+                this.skipLiteral('\'');
+            } else if (Character.isDigit(c)) {
+                this.skipNumber();
+            } else {
+                if (!Character.isWhitespace(c)) {
+                    annotation = c == '@';
+                    state = NONE;
+                }
+                if (c == '{')
+                    this.openBlock();
+                else if (c == '}')
+                    this.closeBlock();
+                else if (c == ';')
+                    this.declaringType = -1;
+                this.position++;
+            }
+        }
+
+        final Map<String, String> declaredTypes = new LinkedHashMap<>();
+        for (String declaredType : this.declaredTypes)
+            declaredTypes.putIfAbsent(declaredType.substring(declaredType.lastIndexOf('.') + 1), declaredType);
+        final ImportScope scope = new ImportScope(this.packageName, this.singleImports, this.onDemandImports, declaredTypes);
+
+        final Map<String, String> qualifiedNames = new HashMap<>();
+        for (String reference : this.references)
+            qualifiedNames.put(reference, scope.qualify(reference));
+        final Map<String, Set<String>> typeReferences = new HashMap<>();
+        for (int i = 0; i < this.declaredTypes.size(); i++) {
+            final Set<String> referencedTypes = new HashSet<>();
+            for (String reference : this.typeReferences.get(i))
+                referencedTypes.add(qualifiedNames.get(reference));
+            typeReferences.putIfAbsent(this.declaredTypes.get(i), Collections.unmodifiableSet(referencedTypes));
+        }
+        return new ShallowSource(this.packageName, Collections.unmodifiableList(this.declaredTypes),
+                Collections.unmodifiableSet(this.references), Set.copyOf(qualifiedNames.values()), typeReferences);
+    }
+
+    // A type declared in the body of another one is named after it
+    private void addDeclaredType() {
+        final String simpleName = this.name.toString();
+        this.declaringType = this.declaredTypes.size();
+        this.declaredTypes.add(this.openTypes.isEmpty()
+                ? simpleName
+                : this.declaredTypes.get(this.openTypes.peekLast()[0]) + "." + simpleName);
+        this.typeReferences.add(new HashSet<>());
+    }
+
+    private void openBlock() {
+        this.depth++;
+        if (this.declaringType >= 0) {
+            this.openTypes.addLast(new int[]{this.declaringType, this.depth});
+            this.declaringType = -1;
+        }
+    }
+
+    private void closeBlock() {
+        if (!this.openTypes.isEmpty() && this.openTypes.peekLast()[1] == this.depth)
+            this.openTypes.removeLast();
+        this.depth--;
+    }
+
+    // Read a dotted name, possibly ending with ".*", into the name buffer
+    private void readName() {
+        this.name.setLength(0);
+        while (true) {
+            while (this.position < this.length && Character.isJavaIdentifierPart(this.source.charAt(this.position)))
+                this.name.append(this.source.charAt(this.position++));
+
+            final int dot = this.skipWhitespace(this.position);
+            if (dot >= this.length || this.source.charAt(dot) != '.')
+                return;
+            final int next = this.skipWhitespace(dot + 1);
+            if (next < this.length && this.source.charAt(next) == '*') {
+                this.name.append(".*");
+                this.position = next + 1;
+                return;
+            }
+            if (next >= this.length || !Character.isJavaIdentifierStart(this.source.charAt(next)))
+                return;
+            this.name.append('.');
+            this.position = next;
+        }
+    }
+
+    private boolean isName(String keyword) {
+        return this.name.length() == keyword.length() && this.startsWith(keyword);
+    }
+
+    private boolean startsWith(String prefix) {
+        if (this.name.length() < prefix.length())
+            return false;
+        for (int i = 0; i < prefix.length(); i++) {
+            if (this.name.charAt(i) != prefix.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    private void addImport() {
+        final String imported = this.name.toString();
+        if (imported.endsWith(".*"))
+            this.onDemandImports.add(imported.substring(0, imported.length() - 2));
+        else
+            this.singleImports.put(imported.substring(imported.lastIndexOf('.') + 1), imported);
+    }
+
+    // Keep the package segments, the first type segment and the nested type segments of the name
+    private void addReference() {
+        int start = 0;
+        int end = -1;
+        while (start < this.name.length()) {
+            int segmentEnd = start;
+            while (segmentEnd < this.name.length() && this.name.charAt(segmentEnd) != '.')
+                segmentEnd++;
+
+            if (this.isTypeSegment(start, segmentEnd))
+                end = segmentEnd;
+            else if (end >= 0 || Character.isUpperCase(this.name.charAt(start)))
+                break;
+            start = segmentEnd + 1;
+        }
+
+        if (end <= 0 || this.startsWith("this.") || this.startsWith("super."))
+            return;
+        final String reference = this.name.substring(0, end);
+        this.references.add(reference);
+        for (int[] openType : this.openTypes)
+            this.typeReferences.get(openType[0]).add(reference);
+        if (this.declaringType >= 0)
+            this.typeReferences.get(this.declaringType).add(reference);
+    }
+
+    private boolean isTypeSegment(int start, int end) {
+        if (!Character.isUpperCase(this.name.charAt(start)))
+            return false;
+        for (int i = start + 1; i < end; i++) {
+            if (Character.isLowerCase(this.name.charAt(i)))
+                return true;
+        }
+        return false;
+    }
+
+    private char peek(int offset) {
+        return this.position + offset < this.length ? this.source.charAt(this.position + offset) : 0;
+    }
+
+    private int skipWhitespace(int from) {
+        while (from < this.length && Character.isWhitespace(this.source.charAt(from)))
+            from++;
+        return from;
+    }
+
+    private void skipUntil(String terminator, int openingLength) {
+        final int end = this.source.indexOf(terminator, this.position + openingLength);
+        this.position = end < 0 ? this.length : end + terminator.length();
+    }
+
+    private void skipLiteral(char quote) {
+        this.position++;
+        while (this.position < this.length) {
+            final char c = this.source.charAt(this.position++);
+            if (c == '\\')
+                this.position++;
+            else if (c == quote || c == '\n')
+                return;
+        }
+    }
+
+    // Digits, letters, underscores and dots of numeric literals such as 0x1F, 1_000L or 1.5e3f
+    private void skipNumber() {
+        while (this.position < this.length) {
+            final char c = this.source.charAt(this.position);
+            if (!Character.isLetterOrDigit(c) && c != '_' && c != '.')
+                return;
+            this.position++;
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package lib.project;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * The modules and source roots of a project, discovered once before an analysis:
+ * <ul>
+ *     <li>with a {@code pom.xml}, the project and its {@code <module>}s, recursively, with their
+ *     {@code src/<set>/java} folders (main, test, and those added by plugins) and their declared source folders;</li>
+ *     <li>otherwise, every folder with a {@code src/<set>/java} layout, e.g. the modules of a Gradle build;</li>
+ *     <li>otherwise, the outermost folders named {@code java}, or the project folder itself.</li>
+ * </ul>
+ * Build outputs and hidden folders are never searched. The source roots of the tests, those of the source sets named
+ * like {@code test}, {@code integrationTest} or {@code it} and the declared test source folder, are told apart, so
+ * that an analysis can leave them out or report them apart.
+ */
+public final class ProjectLayout {
+    private static final String POM = "pom.xml";
+    private static final Set<String> OUTPUT_FOLDERS = Set.of("target", "build", "out", "bin", "node_modules");
+
+    private final Path root;
+    private final List<ProjectModule> modules;
+
+    private ProjectLayout(Path root, List<ProjectModule> modules) {
+        this.root = root;
+        this.modules = List.copyOf(modules);
+    }
+
+    /**
+     * Discover the modules and the source roots of a project.
+     *
+     * @param projectFolder the folder of the project
+     * @return the layout of the project, with at least one module
+     * @throws IOException if the folder can't be read, or a {@code pom.xml} is not valid
+     */
+    public static ProjectLayout discover(Path projectFolder) throws IOException {
+        final Path root = projectFolder.toAbsolutePath().normalize();
+        if (!Files.isDirectory(root))
+            throw new NotDirectoryException(root.toString());
+
+        final List<ProjectModule> modules = new ArrayList<>();
+        if (Files.isRegularFile(root.resolve(POM)))
+            addMavenModules(root, modules, new HashSet<>());
+        if (modules.isEmpty())
+            addLayoutModules(root, modules);
+        if (modules.isEmpty())
+            modules.add(new ProjectModule(nameOf(root), root, List.of(root), List.of()));
+        return new ProjectLayout(root, modules);
+    }
+
+    /**
+     * Find the root of the project of a folder: the nearest folder, from the given one up, with a {@code pom.xml} or
+     * a {@code src} folder, then up to the outermost {@code pom.xml} of a multi-module build.
+     *
+     * @param folderOrFile a file or a folder of the project
+     * @return the root of the project, or the folder itself if it is not in a project
+     */
+    public static Path findProjectRoot(Path folderOrFile) {
+        final Path start = folderOrFile.toAbsolutePath().normalize();
+        final Path folder = Files.isDirectory(start) || start.getParent() == null ? start : start.getParent();
+
+        Path root = folder;
+        while (root != null && !Files.exists(root.resolve(POM)) && !Files.isDirectory(root.resolve("src")))
+            root = root.getParent();
+        if (root == null)
+            return folder;
+
+        while (root.getParent() != null && Files.isRegularFile(root.getParent().resolve(POM)))
+            root = root.getParent();
+        return root;
+    }
+
+    public Path getRoot() {
+        return this.root;
+    }
+
+    public List<ProjectModule> getModules() {
+        return this.modules;
+    }
+
+    /**
+     * Get the layout without the source roots of the tests. The modules left without source roots are dropped.
+     *
+     * @return the layout of the main sources of the modules
+     */
+    public ProjectLayout withoutTests() {
+        final List<ProjectModule> modules = new ArrayList<>();
+        for (ProjectModule module : this.modules) {
+            for (ProjectModule split : module.splitTests()) {
+                if (split.getTestSourceRoots().isEmpty())
+                    modules.add(split);
+            }
+        }
+        if (modules.isEmpty())
+            modules.add(new ProjectModule(nameOf(this.root), this.root, List.of(), List.of()));
+        return new ProjectLayout(this.root, modules);
+    }
+
+    /**
+     * Get the layout with the tests of every module as a module of their own, named {@code <module>:test}, so that
+     * the test classes are not reported in the packages of the main classes.
+     *
+     * @return the layout of the main sources and of the tests of the modules
+     */
+    public ProjectLayout withSeparateTests() {
+        final List<ProjectModule> modules = new ArrayList<>();
+        for (ProjectModule module : this.modules)
+            modules.addAll(module.splitTests());
+        return new ProjectLayout(this.root, modules);
+    }
+
+    /**
+     * Get the source roots of all the modules.
+     *
+     * @return the absolute paths of the source roots, module after module
+     */
+    public List<Path> getSourceRoots() {
+        final List<Path> sourceRoots = new ArrayList<>();
+        for (ProjectModule module : this.modules)
+            sourceRoots.addAll(module.getSourceRoots());
+        return sourceRoots;
+    }
+
+    private static void addMavenModules(Path folder, List<ProjectModule> modules, Set<Path> visited) throws IOException {
+        if (!visited.add(folder))
+            return;
+
+        final Element project = readPom(folder.resolve(POM));
+        final List<Path> sourceRoots = conventionalSourceRoots(folder);
+        final List<Path> testSourceRoots = testSourceRoots(sourceRoots);
+        final Element build = child(project, "build");
+        if (build != null) {
+            final Path sourceRoot = resolveDeclared(folder, text(child(build, "sourceDirectory")));
+            if (sourceRoot != null && Files.isDirectory(sourceRoot) && !sourceRoots.contains(sourceRoot))
+                sourceRoots.add(sourceRoot);
+            final Path testSourceRoot = resolveDeclared(folder, text(child(build, "testSourceDirectory")));
+            if (testSourceRoot != null && Files.isDirectory(testSourceRoot) && !sourceRoots.contains(testSourceRoot)) {
+                sourceRoots.add(testSourceRoot);
+                testSourceRoots.add(testSourceRoot);
+            }
+        }
+
+        if (!sourceRoots.isEmpty()) {
+            final String artifactId = text(child(project, "artifactId"));
+            modules.add(new ProjectModule(artifactId == null ? nameOf(folder) : artifactId, folder, sourceRoots, testSourceRoots));
+        }
+
+        // Modules of the profiles too: a module left out of the default build is still part of the project. Other
+        // elements named module, e.g. in the configuration of a plugin, are not modules of the build
+        final List<Element> moduleElements = children(child(project, "modules"), "module");
+        for (Element profile : children(child(project, "profiles"), "profile"))
+            moduleElements.addAll(children(child(profile, "modules"), "module"));
+        for (Element moduleElement : moduleElements) {
+            Path moduleFolder = folder.resolve(text(moduleElement)).normalize();
+            if (Files.isRegularFile(moduleFolder))
+                moduleFolder = moduleFolder.getParent();
+            if (Files.isRegularFile(moduleFolder.resolve(POM)))
+                addMavenModules(moduleFolder, modules, visited);
+        }
+    }
+
+    // Folders with a src/<set>/java layout are modules, the others are searched until one is found
+    private static void addLayoutModules(Path root, List<ProjectModule> modules) throws IOException {
+        final Map<Path, List<Path>> layoutRoots = new TreeMap<>();
+        final List<Path> javaFolders = new ArrayList<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path folder, BasicFileAttributes attributes) throws IOException {
+                if (!folder.equals(root) && isSkipped(folder))
+                    return FileVisitResult.SKIP_SUBTREE;
+                if (folder.getFileName() != null && folder.getFileName().toString().equals("src")) {
+                    final List<Path> sourceRoots = conventionalSourceRoots(folder.getParent());
+                    if (!sourceRoots.isEmpty()) {
+                        layoutRoots.put(folder.getParent(), sourceRoots);
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                }
+                if (!folder.equals(root) && folder.getFileName().toString().equals("java")) {
+                    javaFolders.add(folder);
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        layoutRoots.forEach((folder, sourceRoots) ->
+                modules.add(new ProjectModule(nameOf(folder), folder, sourceRoots, testSourceRoots(sourceRoots))));
+        if (modules.isEmpty() && !javaFolders.isEmpty())
+            modules.add(new ProjectModule(nameOf(root), root, javaFolders, testSourceRoots(javaFolders)));
+    }
+
+    // src/main/java first, then the other sets in order, e.g. src/jmh/java and src/test/java
+    private static List<Path> conventionalSourceRoots(Path folder) throws IOException {
+        final Path src = folder.resolve("src");
+        final List<Path> sourceRoots = new ArrayList<>();
+        if (!Files.isDirectory(src))
+            return sourceRoots;
+
+        try (final DirectoryStream<Path> sets = Files.newDirectoryStream(src, Files::isDirectory)) {
+            for (Path set : sets) {
+                if (Files.isDirectory(set.resolve("java")))
+                    sourceRoots.add(set.resolve("java"));
+            }
+        }
+        sourceRoots.sort((a, b) -> {
+            final boolean aMain = a.getParent().getFileName().toString().equals("main");
+            final boolean bMain = b.getParent().getFileName().toString().equals("main");
+            return aMain != bMain ? (aMain ? -1 : 1) : a.compareTo(b);
+        });
+        return sourceRoots;
+    }
+
+    // The source roots of the sets of tests, e.g. src/test/java, src/integrationTest/java or src/it/java
+    private static List<Path> testSourceRoots(List<Path> sourceRoots) {
+        final List<Path> testSourceRoots = new ArrayList<>();
+        for (Path sourceRoot : sourceRoots) {
+            final Path set = sourceRoot.getParent() == null ? null : sourceRoot.getParent().getFileName();
+            final String setName = set == null ? "" : set.toString().toLowerCase(Locale.ROOT);
+            if (setName.equals("it") || setName.contains("test"))
+                testSourceRoots.add(sourceRoot);
+        }
+        return testSourceRoots;
+    }
+
+    private static boolean isSkipped(Path folder) {
+        final String name = folder.getFileName().toString();
+        return name.startsWith(".") || OUTPUT_FOLDERS.contains(name);
+    }
+
+    // Only the base directory is interpolated, folders declared with other properties are left out
+    private static Path resolveDeclared(Path folder, String declared) {
+        if (declared == null)
+            return null;
+        final String path = declared.replace("${project.basedir}", ".").replace("${basedir}", ".");
+        return path.contains("${") ? null : folder.resolve(path).normalize();
+    }
+
+    private static Element readPom(Path pom) throws IOException {
+        try {
+            final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            final Document document = factory.newDocumentBuilder().parse(pom.toFile());
+            return document.getDocumentElement();
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException("Invalid " + pom + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static Element child(Element parent, String name) {
+        if (parent == null)
+            return null;
+        for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node instanceof Element && ((Element) node).getTagName().equals(name))
+                return (Element) node;
+        }
+        return null;
+    }
+
+    private static List<Element> children(Element parent, String name) {
+        final List<Element> children = new ArrayList<>();
+        if (parent == null)
+            return children;
+        for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node instanceof Element && ((Element) node).getTagName().equals(name))
+                children.add((Element) node);
+        }
+        return children;
+    }
+
+    private static String text(Element element) {
+        return element == null ? null : element.getTextContent().trim();
+    }
+
+    private static String nameOf(Path folder) {
+        return folder.getFileName() == null ? folder.toString() : folder.getFileName().toString();
+    }
+}
@@ -0,0 +1,72 @@
+package lib.project;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A module of a project: a Maven module, or a folder with a {@code src/<set>/java} layout, and its source roots.
+ */
+public final class ProjectModule {
+    private final String name;
+    private final Path folder;
+    private final List<Path> sourceRoots;
+    private final List<Path> testSourceRoots;
+
+    ProjectModule(String name, Path folder, List<Path> sourceRoots, List<Path> testSourceRoots) {
+        this.name = name;
+        this.folder = folder;
+        this.sourceRoots = List.copyOf(sourceRoots);
+        this.testSourceRoots = List.copyOf(testSourceRoots);
+    }
+
+    /**
+     * Get the name of the module: the artifact id of a Maven module, the name of its folder otherwise.
+     *
+     * @return the name of the module
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    public Path getFolder() {
+        return this.folder;
+    }
+
+    /**
+     * Get the source roots of the module, e.g. {@code src/main/java} and {@code src/test/java}: the folders the
+     * packages of the module start from.
+     *
+     * @return the absolute paths of the source roots
+     */
+    public List<Path> getSourceRoots() {
+        return this.sourceRoots;
+    }
+
+    /**
+     * Get the source roots of the tests of the module, e.g. {@code src/test/java}: a part of its source roots.
+     *
+     * @return the absolute paths of the test source roots
+     */
+    public List<Path> getTestSourceRoots() {
+        return this.testSourceRoots;
+    }
+
+    // The module without its tests, and its tests as a module of their own, without the modules left empty
+    List<ProjectModule> splitTests() {
+        final List<Path> mainSourceRoots = new ArrayList<>(this.sourceRoots);
+        mainSourceRoots.removeAll(this.testSourceRoots);
+
+        final List<ProjectModule> modules = new ArrayList<>(2);
+        if (!mainSourceRoots.isEmpty())
+            modules.add(new ProjectModule(this.name, this.folder, mainSourceRoots, List.of()));
+        if (!this.testSourceRoots.isEmpty())
+            modules.add(new ProjectModule(this.name + ":test", this.folder, this.testSourceRoots, this.testSourceRoots));
+        return modules;
+    }
+
+    @Override
+    public String toString() {
+        return this.name + " " + this.sourceRoots;
+    }
+}
@@ -1,28 +1,177 @@
 package lib.reports;
 
-import java.util.HashSet;
+import lib.graph.SymbolSet;
+import lib.graph.SymbolTable;
+
 import java.util.Set;
 
 public class ClassDepsReport {
-    private final String classOrInterfaceName;
-    private final String packageName;
-    private final Set<String> dependencies;
+    /**
+     * The package name of the classes of the default package.
+     */
+    public static final String DEFAULT_PACKAGE_NAME = "java";
+
+    private final SymbolTable symbols;
+    private final int classOrInterfaceId;
+    private final int packageId;
+    private final int qualifiedNameId;
+    private final SymbolSet dependencies;
+    private final SymbolSet qualifiedDependencies;
+    private final boolean approximate;
 
+    /**
+     * Create the report of a class whose dependencies are named the same way in the source and qualified, with a
+     * symbol table of its own. The reports of an analysis share the table of the analysis instead.
+     *
+     * @param classOrInterfaceName the name of the class or interface
+     * @param packageName the name of its package
+     * @param dependencies the dependencies, as written and qualified alike
+     */
     public ClassDepsReport(String classOrInterfaceName, String packageName, Set<String> dependencies) {
-        this.classOrInterfaceName = classOrInterfaceName;
-        this.packageName = packageName;
-        this.dependencies = dependencies;
+        this(new SymbolTable(dependencies.size() + 3), classOrInterfaceName, packageName, dependencies);
+    }
+
+    public ClassDepsReport(SymbolTable symbols, String classOrInterfaceName, String packageName, Set<String> dependencies) {
+        this(symbols, classOrInterfaceName, packageName, dependencies, dependencies, false);
+    }
+
+    /**
+     * Create the report of a class analysed from its source.
+     *
+     * @param symbols the symbol table of the names
+     * @param classOrInterfaceName the name of the class or interface
+     * @param packageName the name of its package
+     * @param dependencies the dependencies, as written in the source
+     * @param qualifiedDependencies the qualified names of the dependencies
+     * @param approximate whether the dependencies come from a shallow analysis
+     */
+    public ClassDepsReport(SymbolTable symbols, String classOrInterfaceName, String packageName, Set<String> dependencies,
+                           Set<String> qualifiedDependencies, boolean approximate) {
+        this.symbols = symbols;
+        this.approximate = approximate;
+        this.classOrInterfaceId = symbols.intern(classOrInterfaceName);
+        this.packageId = symbols.intern(packageName);
+        this.qualifiedNameId = symbols.intern(qualifiedName(classOrInterfaceName, packageName));
+        this.dependencies = SymbolSet.of(symbols, dependencies);
+        this.qualifiedDependencies = qualifiedDependencies == dependencies
+                ? this.dependencies
+                : SymbolSet.of(symbols, qualifiedDependencies);
+    }
+
+    /**
+     * Create the report of names already interned in the symbol table, e.g. when loading a snapshot.
+     *
+     * @param symbols the symbol table of the names
+     * @param classOrInterfaceId the id of the name of the class or interface
+     * @param packageId the id of the package name
+     * @param dependencies the dependencies as written in the source, interned in the same table
+     * @param qualifiedDependencies the qualified names of the dependencies, interned in the same table
+     * @param approximate whether the dependencies come from a shallow analysis
+     */
+    public ClassDepsReport(SymbolTable symbols, int classOrInterfaceId, int packageId, SymbolSet dependencies,
+                           SymbolSet qualifiedDependencies, boolean approximate) {
+        this.symbols = symbols;
+        this.approximate = approximate;
+        this.classOrInterfaceId = classOrInterfaceId;
+        this.packageId = packageId;
+        this.qualifiedNameId = symbols.intern(qualifiedName(symbols.nameOf(classOrInterfaceId), symbols.nameOf(packageId)));
+        this.dependencies = SymbolSet.of(symbols, dependencies);
+        this.qualifiedDependencies = qualifiedDependencies == dependencies
+                ? this.dependencies
+                : SymbolSet.of(symbols, qualifiedDependencies);
+    }
+
+    /**
+     * Get the qualified name of a class: its name if it is in the default package or already qualified, else its
+     * package name and its name. The qualified dependencies of the reports are named the same way.
+     *
+     * @param classOrInterfaceName the name of the class or interface
+     * @param packageName the name of its package
+     * @return the qualified name of the class
+     */
+    public static String qualifiedName(String classOrInterfaceName, String packageName) {
+        return packageName.isEmpty() || packageName.equals(DEFAULT_PACKAGE_NAME) || classOrInterfaceName.startsWith(packageName + ".")
+                ? classOrInterfaceName
+                : packageName + "." + classOrInterfaceName;
+    }
+
+    /**
+     * Get the same report with its names interned in another symbol table, e.g. the table of a project report.
+     *
+     * @param symbols the symbol table
+     * @return this report if its names are already in that table, else a copy whose names are
+     */
+    public ClassDepsReport in(SymbolTable symbols) {
+        if (symbols == this.symbols)
+            return this;
+        final SymbolSet dependencies = SymbolSet.of(symbols, this.dependencies);
+        return new ClassDepsReport(symbols, symbols.intern(this.getClassOrInterfaceName()), symbols.intern(this.getPackageName()),
+                dependencies, this.qualifiedDependencies == this.dependencies
+                        ? dependencies
+                        : SymbolSet.of(symbols, this.qualifiedDependencies), this.approximate);
     }
 
     public String getClassOrInterfaceName() {
-        return this.classOrInterfaceName;
+        return this.symbols.nameOf(this.classOrInterfaceId);
     }
 
     public String getPackageName() {
-        return this.packageName;
+        return this.symbols.nameOf(this.packageId);
+    }
+
+    /**
+     * Get the qualified name of the class or interface, that identifies it in the qualified dependencies of the
+     * other reports.
+     *
+     * @return the qualified name
+     */
+    public String getQualifiedName() {
+        return this.symbols.nameOf(this.qualifiedNameId);
+    }
+
+    /**
+     * Get the dependencies of the class or interface, named as the source writes them: every simple name of a type,
+     * and of its scope, e.g. {@code Map} and {@code Entry} for {@code Map.Entry}.
+     *
+     * @return an unmodifiable view of the dependencies
+     */
+    public SymbolSet getDependencies() {
+        return this.dependencies;
+    }
+
+    /**
+     * Get the dependencies of the class or interface resolved to their qualified names, without the type parameters
+     * and the types declared by the class itself: the edges of the dependency graph of a project.
+     *
+     * @return an unmodifiable view of the qualified dependencies
+     */
+    public SymbolSet getQualifiedDependencies() {
+        return this.qualifiedDependencies;
+    }
+
+    /**
+     * Get whether the report comes from a shallow analysis of the source, without symbol resolution nor AST:
+     * it may contain types that are not dependencies, or miss some, and a full analysis can refine it.
+     *
+     * @return true if the dependencies are approximate
+     */
+    public boolean isApproximate() {
+        return this.approximate;
+    }
+
+    public SymbolTable getSymbols() {
+        return this.symbols;
+    }
+
+    public int getClassOrInterfaceId() {
+        return this.classOrInterfaceId;
+    }
+
+    public int getPackageId() {
+        return this.packageId;
     }
 
-    public Set<String> getDependencies() {
-        return new HashSet<>(this.dependencies);
+    public int getQualifiedNameId() {
+        return this.qualifiedNameId;
     }
-}
\ No newline at end of file
+}
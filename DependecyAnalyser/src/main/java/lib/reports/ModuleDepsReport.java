@@ -0,0 +1,107 @@
+package lib.reports;
+
+import lib.graph.SymbolSet;
+import lib.graph.SymbolTable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Immutable report of a module of a project: its packages and the union of their dependencies, computed once when
+ * the report is built. The getters return unmodifiable views, without copying.
+ */
+public class ModuleDepsReport {
+    private final String moduleName;
+    private final SymbolTable symbols;
+    private final Set<PackageDepsReport> packages;
+    private final SymbolSet dependencies;
+
+    /**
+     * Create the report of a module. The names of the packages are interned in a single table, theirs if they share
+     * one, else a new one.
+     *
+     * @param moduleName the name of the module
+     * @param packages the reports of its packages
+     */
+    public ModuleDepsReport(String moduleName, Set<PackageDepsReport> packages) {
+        this.moduleName = moduleName;
+
+        final List<SymbolTable> tables = new ArrayList<>(packages.size());
+        for (PackageDepsReport packageReport : packages)
+            tables.add(packageReport.getSymbols());
+        this.symbols = SymbolTable.commonOf(tables);
+
+        final List<PackageDepsReport> packagesReports = new ArrayList<>(packages.size());
+        final List<SymbolSet> packagesDependencies = new ArrayList<>(packages.size());
+        for (PackageDepsReport packageReport : packages) {
+            final PackageDepsReport report = packageReport.in(this.symbols);
+            packagesReports.add(report);
+            packagesDependencies.add(report.getDependencies());
+        }
+        this.packages = Set.copyOf(packagesReports);
+        this.dependencies = SymbolSet.unionOf(this.symbols, packagesDependencies);
+    }
+
+    /**
+     * Create the report of a module from the reports of its classes, grouped by their declared package.
+     *
+     * @param moduleName the name of the module
+     * @param classes the reports of its classes
+     * @return the report of the module
+     */
+    public static ModuleDepsReport ofClasses(String moduleName, Collection<ClassDepsReport> classes) {
+        final Map<String, Set<ClassDepsReport>> packagesClasses = new TreeMap<>();
+        for (ClassDepsReport report : classes)
+            packagesClasses.computeIfAbsent(report.getPackageName(), name -> new HashSet<>()).add(report);
+
+        final Set<PackageDepsReport> packagesReports = new HashSet<>();
+        packagesClasses.forEach((packageName, packageClasses) -> packagesReports.add(new PackageDepsReport(packageName, packageClasses)));
+        return new ModuleDepsReport(moduleName, packagesReports);
+    }
+
+    /**
+     * Get the same report with its names interned in another symbol table.
+     *
+     * @param symbols the symbol table
+     * @return this report if its names are already in that table, else a copy whose names are
+     */
+    public ModuleDepsReport in(SymbolTable symbols) {
+        if (symbols == this.symbols)
+            return this;
+        final Set<PackageDepsReport> packagesReports = new HashSet<>();
+        for (PackageDepsReport packageReport : this.packages)
+            packagesReports.add(packageReport.in(symbols));
+        return new ModuleDepsReport(this.moduleName, packagesReports);
+    }
+
+    public String getModuleName() {
+        return this.moduleName;
+    }
+
+    /**
+     * Get the reports of the packages of the module.
+     *
+     * @return an unmodifiable view of the reports
+     */
+    public Set<PackageDepsReport> getPackages() {
+        return this.packages;
+    }
+
+    /**
+     * Get the dependencies of the module: the union of the dependencies of its packages.
+     *
+     * @return an unmodifiable view of the dependencies
+     */
+    public SymbolSet getDependencies() {
+        return this.dependencies;
+    }
+
+    public SymbolTable getSymbols() {
+        return this.symbols;
+    }
+}
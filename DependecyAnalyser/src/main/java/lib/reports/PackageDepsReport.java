@@ -1,22 +1,87 @@
 package lib.reports;
 
+import lib.graph.SymbolSet;
+import lib.graph.SymbolTable;
+
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
+/**
+ * Immutable report of a package: its classes and the union of their dependencies, computed once when the report
+ * is built. The getters return unmodifiable views, without copying.
+ */
 public class PackageDepsReport {
     private final String packageName;
+    private final SymbolTable symbols;
     private final Set<ClassDepsReport> classesAndInterfaces;
+    private final SymbolSet dependencies;
 
+    /**
+     * Create the report of a package. The names of the classes are interned in a single table, theirs if they share
+     * one, else a new one.
+     *
+     * @param packageName the name of the package
+     * @param classesAndInterfaces the reports of its classes and interfaces
+     */
     public PackageDepsReport(String packageName, Set<ClassDepsReport> classesAndInterfaces) {
         this.packageName = packageName;
-        this.classesAndInterfaces = classesAndInterfaces;
+
+        final List<SymbolTable> tables = new ArrayList<>(classesAndInterfaces.size());
+        for (ClassDepsReport report : classesAndInterfaces)
+            tables.add(report.getSymbols());
+        this.symbols = SymbolTable.commonOf(tables);
+
+        final List<ClassDepsReport> classes = new ArrayList<>(classesAndInterfaces.size());
+        final List<SymbolSet> classesDependencies = new ArrayList<>(classesAndInterfaces.size());
+        for (ClassDepsReport report : classesAndInterfaces) {
+            final ClassDepsReport classReport = report.in(this.symbols);
+            classes.add(classReport);
+            classesDependencies.add(classReport.getDependencies());
+        }
+        this.classesAndInterfaces = Set.copyOf(classes);
+        this.dependencies = SymbolSet.unionOf(this.symbols, classesDependencies);
+    }
+
+    /**
+     * Get the same report with its names interned in another symbol table.
+     *
+     * @param symbols the symbol table
+     * @return this report if its names are already in that table, else a copy whose names are
+     */
+    public PackageDepsReport in(SymbolTable symbols) {
+        if (symbols == this.symbols)
+            return this;
+        final Set<ClassDepsReport> classes = new HashSet<>();
+        for (ClassDepsReport report : this.classesAndInterfaces)
+            classes.add(report.in(symbols));
+        return new PackageDepsReport(this.packageName, classes);
     }
 
     public String getPackageName() {
         return this.packageName;
     }
 
+    /**
+     * Get the reports of the classes and interfaces of the package.
+     *
+     * @return an unmodifiable view of the reports
+     */
     public Set<ClassDepsReport> getClassesAndInterfaces() {
-        return new HashSet<>(this.classesAndInterfaces);
+        return this.classesAndInterfaces;
+    }
+
+    /**
+     * Get the dependencies of the package: the union of the dependencies of its classes and interfaces.
+     *
+     * @return an unmodifiable view of the dependencies
+     */
+    public SymbolSet getDependencies() {
+        return this.dependencies;
+    }
+
+    public SymbolTable getSymbols() {
+        return this.symbols;
     }
 }
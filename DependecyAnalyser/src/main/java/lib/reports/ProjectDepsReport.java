@@ -1,22 +1,287 @@
 package lib.reports;
 
+import lib.graph.DependencyGraphModel;
+import lib.graph.SymbolSet;
+import lib.graph.SymbolTable;
+import lib.watch.Edge;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 
+/**
+ * Immutable report of a project, built once at the end of an analysis: its modules and packages, the union of
+ * their dependencies, the dependencies between its modules, and the dependency graph of its classes with its
+ * reverse index, so that the classes using a type are found in a time proportional to their number. The graph is
+ * only built at the first query that needs it. The getters return unmodifiable views, without copying.
+ */
 public class ProjectDepsReport {
     private final String projectName;
+    private final List<ModuleDepsReport> modules;
     private final Set<PackageDepsReport> packages;
+    private final Map<String, PackageDepsReport> packagesByName;
+    private final SymbolSet dependencies;
+    private final SymbolTable symbols;
+    private final List<ClassDepsReport> classes;
+    private final int[] classesModules;
+    // Built at the first query of the class graph
+    private ClassIndex classIndex;
 
+    /**
+     * Create the report of a project of a single module, named after the project.
+     *
+     * @param projectName the name of the project
+     * @param packages the reports of the packages of the project
+     */
     public ProjectDepsReport(String projectName, Set<PackageDepsReport> packages) {
+        this(projectName, List.of(new ModuleDepsReport(projectName, packages)));
+    }
+
+    /**
+     * Create the report of a project of several modules, e.g. the modules of a multi-module Maven build.
+     *
+     * @param projectName the name of the project
+     * @param modules the reports of the modules of the project
+     */
+    public ProjectDepsReport(String projectName, List<ModuleDepsReport> modules) {
         this.projectName = projectName;
-        this.packages = packages;
+
+        // The graph needs the ids of a single table
+        final List<SymbolTable> tables = new ArrayList<>(modules.size());
+        for (ModuleDepsReport moduleReport : modules)
+            tables.add(moduleReport.getSymbols());
+        final SymbolTable symbols = SymbolTable.commonOf(tables);
+        final List<ModuleDepsReport> modulesReports = new ArrayList<>(modules.size());
+        for (ModuleDepsReport moduleReport : modules)
+            modulesReports.add(moduleReport.in(symbols));
+        this.modules = List.copyOf(modulesReports);
+
+        final Map<String, PackageDepsReport> packagesByName = new HashMap<>();
+        final List<PackageDepsReport> packages = new ArrayList<>();
+        final List<SymbolSet> modulesDependencies = new ArrayList<>(this.modules.size());
+        final List<ClassDepsReport> classes = new ArrayList<>();
+        final List<Integer> classesModules = new ArrayList<>();
+        for (int module = 0; module < this.modules.size(); module++) {
+            final ModuleDepsReport moduleReport = this.modules.get(module);
+            modulesDependencies.add(moduleReport.getDependencies());
+            for (PackageDepsReport packageReport : moduleReport.getPackages()) {
+                packages.add(packageReport);
+                packagesByName.putIfAbsent(packageReport.getPackageName(), packageReport);
+                for (ClassDepsReport classReport : packageReport.getClassesAndInterfaces()) {
+                    classes.add(classReport);
+                    classesModules.add(module);
+                }
+            }
+        }
+        this.packages = Set.copyOf(packages);
+        this.packagesByName = Collections.unmodifiableMap(packagesByName);
+
+        this.dependencies = SymbolSet.unionOf(symbols, modulesDependencies);
+        this.symbols = symbols;
+        this.classes = classes;
+        this.classesModules = classesModules.stream().mapToInt(Integer::intValue).toArray();
     }
 
     public String getProjectName() {
         return this.projectName;
     }
 
+    /**
+     * Get the reports of the modules of the project, a single one named after the project unless it was built
+     * from several modules.
+     *
+     * @return an unmodifiable view of the reports
+     */
+    public List<ModuleDepsReport> getModules() {
+        return this.modules;
+    }
+
+    /**
+     * Get the dependencies between the modules of the project: an edge from a module to every other module that
+     * declares a class one of its classes depends on. A class declared by several other modules, but not by the
+     * module using it, could come from any of them: it gives no edge.
+     *
+     * @return the cross-module dependencies, sorted by name
+     */
+    public List<Edge> getModuleDependencies() {
+        return this.classIndex().moduleDependencies;
+    }
+
+    /**
+     * Get the reports of the packages of the project, of all its modules.
+     *
+     * @return an unmodifiable view of the reports
+     */
     public Set<PackageDepsReport> getPackages() {
-        return new HashSet<>(this.packages);
+        return this.packages;
+    }
+
+    /**
+     * Get the report of a package of the project, of the first module declaring it if it is split between modules.
+     *
+     * @param packageName the name of the package
+     * @return the report of the package, or empty if the project has no such package
+     */
+    public Optional<PackageDepsReport> getPackage(String packageName) {
+        return Optional.ofNullable(this.packagesByName.get(packageName));
+    }
+
+    /**
+     * Get the dependencies of the project: the union of the dependencies of its packages.
+     *
+     * @return an unmodifiable view of the dependencies
+     */
+    public SymbolSet getDependencies() {
+        return this.dependencies;
+    }
+
+    /**
+     * Get the compact graph of the dependencies of all the classes of the project.
+     *
+     * @return the dependency graph of the project
+     */
+    public DependencyGraphModel getDependencyGraph() {
+        return this.classIndex().graph;
+    }
+
+    /**
+     * Get the classes and interfaces of the project that directly depend on a type, read from the reverse index.
+     * A class reported several times, e.g. by several modules, comes with those of its reports that use the type.
+     *
+     * @param typeName the qualified name of the type, a class of the project or a dependency
+     * @return the reports of the classes using the type, empty if none does
+     */
+    public List<ClassDepsReport> getUsers(String typeName) {
+        final ClassIndex index = this.classIndex();
+        final int node = index.graph.nodeOf(typeName);
+        if (node < 0)
+            return List.of();
+
+        final List<ClassDepsReport> users = new ArrayList<>(index.graph.inDegree(node));
+        for (int edge = index.graph.inEdgeStart(node); edge < index.graph.inEdgeEnd(node); edge++)
+            index.addUsers(index.graph.source(edge), node, users, new BitSet());
+        return Collections.unmodifiableList(users);
+    }
+
+    /**
+     * Get the classes and interfaces of the project impacted by a change of a type: those that depend on it,
+     * directly or through other classes of the project. The reverse index is walked once, breadth first.
+     *
+     * @param typeName the qualified name of the type, a class of the project or a dependency
+     * @return the reports of the impacted classes, the direct users first, without the type itself
+     */
+    public List<ClassDepsReport> getImpact(String typeName) {
+        final ClassIndex index = this.classIndex();
+        final int start = index.graph.nodeOf(typeName);
+        if (start < 0)
+            return List.of();
+
+        final List<ClassDepsReport> impacted = new ArrayList<>();
+        // The reports of a class reached again through another type may use that type only
+        final BitSet added = new BitSet();
+        // Sized by the result, not by the graph
+        int[] queue = new int[16];
+        int tail = 0;
+        final BitSet visited = new BitSet();
+        visited.set(start);
+        queue[tail++] = start;
+        for (int head = 0; head < tail; head++) {
+            final int node = queue[head];
+            for (int edge = index.graph.inEdgeStart(node); edge < index.graph.inEdgeEnd(node); edge++) {
+                final int user = index.graph.source(edge);
+                if (user == start)
+                    continue;
+                index.addUsers(user, node, impacted, added);
+                if (!visited.get(user)) {
+                    visited.set(user);
+                    if (tail == queue.length)
+                        queue = Arrays.copyOf(queue, tail * 2);
+                    queue[tail++] = user;
+                }
+            }
+        }
+        return Collections.unmodifiableList(impacted);
+    }
+
+    private synchronized ClassIndex classIndex() {
+        if (this.classIndex == null)
+            this.classIndex = new ClassIndex(this.symbols, this.classes, this.classesModules, this.modules);
+        return this.classIndex;
+    }
+
+    // The class graph, the reports of its nodes and the dependencies between modules it gives
+    private static final class ClassIndex {
+        private final DependencyGraphModel graph;
+        // The reports of node n are reportsByNode[reportOffsets[n] .. reportOffsets[n + 1]], none for the nodes
+        // that are only dependencies
+        private final int[] reportOffsets;
+        private final ClassDepsReport[] reportsByNode;
+        private final List<Edge> moduleDependencies;
+
+        private ClassIndex(SymbolTable symbols, List<ClassDepsReport> classes, int[] classesModules, List<ModuleDepsReport> modules) {
+            this.graph = DependencyGraphModel.of(symbols, classes);
+            final int[] classesNodes = new int[classes.size()];
+            this.reportOffsets = new int[this.graph.nodeCount() + 1];
+            for (int i = 0; i < classes.size(); i++) {
+                classesNodes[i] = this.graph.nodeOfSymbol(classes.get(i).getQualifiedNameId());
+                this.reportOffsets[classesNodes[i] + 1]++;
+            }
+            for (int node = 0; node < this.graph.nodeCount(); node++)
+                this.reportOffsets[node + 1] += this.reportOffsets[node];
+
+            this.reportsByNode = new ClassDepsReport[classes.size()];
+            final int[] next = Arrays.copyOf(this.reportOffsets, this.graph.nodeCount());
+            for (int i = 0; i < classes.size(); i++)
+                this.reportsByNode[next[classesNodes[i]]++] = classes.get(i);
+            this.moduleDependencies = crossModuleEdges(this.graph, classes, classesModules, modules);
+        }
+
+        // The reports of a node that depend on another one, unless already added
+        private void addUsers(int node, int used, List<ClassDepsReport> users, BitSet added) {
+            final int usedSymbol = this.graph.symbolOf(used);
+            for (int i = this.reportOffsets[node]; i < this.reportOffsets[node + 1]; i++) {
+                if (!added.get(i) && this.reportsByNode[i].getQualifiedDependencies().containsId(usedSymbol)) {
+                    added.set(i);
+                    users.add(this.reportsByNode[i]);
+                }
+            }
+        }
+
+        // The edges go from the module of every report to the module declaring each of its dependencies
+        private static List<Edge> crossModuleEdges(DependencyGraphModel graph, List<ClassDepsReport> classes,
+                                                   int[] classesModules, List<ModuleDepsReport> modules) {
+            // The modules declaring every node, a bit per module
+            final BitSet[] nodeModules = new BitSet[graph.nodeCount()];
+            for (int i = 0; i < classes.size(); i++) {
+                final int node = graph.nodeOfSymbol(classes.get(i).getQualifiedNameId());
+                if (nodeModules[node] == null)
+                    nodeModules[node] = new BitSet(modules.size());
+                nodeModules[node].set(classesModules[i]);
+            }
+
+            final Set<Edge> edges = new HashSet<>();
+            for (int i = 0; i < classes.size(); i++) {
+                final int from = classesModules[i];
+                final SymbolSet dependencies = classes.get(i).getQualifiedDependencies();
+                for (int d = 0; d < dependencies.size(); d++) {
+                    final BitSet declaring = nodeModules[graph.nodeOfSymbol(dependencies.idAt(d))];
+                    if (declaring != null && !declaring.get(from) && declaring.cardinality() == 1) {
+                        final int to = declaring.nextSetBit(0);
+                        edges.add(new Edge(modules.get(from).getModuleName(), modules.get(to).getModuleName()));
+                    }
+                }
+            }
+            final List<Edge> sorted = new ArrayList<>(edges);
+            sorted.sort(Comparator.comparing(Edge::getFrom).thenComparing(Edge::getTo));
+            return List.copyOf(sorted);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,343 @@
+package lib.service;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.net.HostAndPort;
+import lib.AnalyserOptions;
+import lib.DependencyAnalyserLib;
+import lib.ProjectDepsStream;
+import lib.distributed.ReportCodec;
+import lib.reports.ClassDepsReport;
+import lib.reports.ModuleDepsReport;
+import lib.reports.PackageDepsReport;
+import lib.reports.ProjectDepsReport;
+
+import java.net.InetAddress;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Verticle serving the analyses of a {@link DependencyAnalyserLib} over HTTP, on the loopback interface only, so
+ * that tools can share a warm analyser. Paths are absolute, or relative to the working directory of the service, and
+ * only the files and folders under the configured roots are analysed, once their links are resolved. Requests naming
+ * another host than the loopback one in their {@code Host} header are refused, so that a web page cannot reach the
+ * service by rebinding its own domain name to the loopback address.
+ * <ul>
+ *     <li>{@code GET /dependencies/class?path=<file>}: the report of a class, as JSON</li>
+ *     <li>{@code GET /dependencies/package?path=<folder>}: the reports of the classes of a package, as JSON</li>
+ *     <li>{@code GET /dependencies/project?path=<folder>}: the reports of the classes of a project, streamed as
+ *     chunked NDJSON while the project is analysed: a first line with the project name, a line per class, then a
+ *     last line with the numbers of packages and classes, or with the error that stopped the analysis</li>
+ *     <li>{@code POST /invalidate?path=<file or folder>}: drop the cached reports of a changed path, of the folders
+ *     containing it and of the paths it contains; without path, drop every cached report</li>
+ *     <li>{@code GET /cache}: the statistics of the report cache</li>
+ * </ul>
+ * Concurrent requests for the same report share one analysis, and completed reports are cached, see
+ * {@link ReportCache}.
+ * <p>
+ * Configuration: {@code port} (int, {@link #DEFAULT_PORT} by default, 0 for a random port), {@code host} (a loopback
+ * address, {@code localhost} by default), {@code allowRemote} (boolean, false by default: true to serve on another
+ * address and to any {@code Host}), {@code roots} (array of the folders that can be analysed, the working directory
+ * by default), {@code cacheMaxClasses} (int, the maximum number of classes of the cached reports),
+ * {@code maxConcurrency} (int), {@code shallow} (boolean), {@code testSources} (boolean), {@code virtualThreads}
+ * (boolean), {@code virtualThreadsConcurrency} (int), see {@link AnalyserOptions}.
+ */
+public class AnalysisServiceVerticle extends AbstractVerticle {
+    public static final int DEFAULT_PORT = 9465;
+    public static final int DEFAULT_CACHE_MAX_CLASSES = 200_000;
+
+    private static final String NDJSON = "application/x-ndjson";
+    // Lines of a streamed project written at once
+    private static final int LINES_PER_CHUNK = 256;
+    private static final Set<String> LOOPBACK_HOSTS = Set.of("localhost", "127.0.0.1", "::1", "[::1]");
+
+    private DependencyAnalyserLib dependencyAnalyser;
+    private ReportCache cache;
+    private HttpServer server;
+    private boolean allowRemote;
+    // The real paths of the folders that can be analysed
+    private List<Path> roots;
+
+    @Override
+    public void start(Promise<Void> startPromise) {
+        this.dependencyAnalyser = new DependencyAnalyserLib(this.vertx, new AnalyserOptions()
+                .setMaxConcurrency(this.config().getInteger("maxConcurrency", AnalyserOptions.DEFAULT_MAX_CONCURRENCY))
+                .setShallow(this.config().getBoolean("shallow", false))
+                .setTestSources(this.config().getBoolean("testSources", false))
+                .setVirtualThreads(this.config().getBoolean("virtualThreads", false))
+                .setVirtualThreadsConcurrency(this.config().getInteger("virtualThreadsConcurrency",
+                        AnalyserOptions.DEFAULT_VIRTUAL_THREADS_CONCURRENCY)));
+        this.cache = new ReportCache(this.config().getInteger("cacheMaxClasses", DEFAULT_CACHE_MAX_CLASSES));
+        this.allowRemote = this.config().getBoolean("allowRemote", false);
+
+        final String host = this.config().getString("host", "localhost");
+        final JsonArray roots = this.config().getJsonArray("roots", new JsonArray().add(System.getProperty("user.dir")));
+        this.vertx.executeBlocking(() -> {
+                    if (!this.allowRemote && !InetAddress.getByName(host).isLoopbackAddress())
+                        throw new IllegalArgumentException(host + " is not a loopback address, set allowRemote to serve on it");
+                    final List<Path> realRoots = new ArrayList<>();
+                    for (Object root : roots)
+                        realRoots.add(Path.of((String) root).toRealPath());
+                    return realRoots;
+                }, false)
+                .compose(realRoots -> {
+                    this.roots = realRoots;
+                    return this.vertx.createHttpServer()
+                            .requestHandler(this::handle)
+                            .listen(this.config().getInteger("port", DEFAULT_PORT), host);
+                })
+                .onSuccess(server -> {
+                    this.server = server;
+                    System.out.println("Dependency analysis served on http://" + host + ":" + server.actualPort() + "/dependencies");
+                    startPromise.complete();
+                })
+                .onFailure(startPromise::fail);
+    }
+
+    /**
+     * Get the port of the HTTP server, once started.
+     *
+     * @return the port the analyses are served on
+     */
+    public int getPort() {
+        return this.server.actualPort();
+    }
+
+    private void handle(HttpServerRequest request) {
+        if (!this.allowRemote && !isLoopbackHost(request.authority())) {
+            sendError(request.response(), 403, "Only requests to the loopback host are served");
+            return;
+        }
+
+        final String route = request.path();
+        final boolean get = request.method() == HttpMethod.GET;
+        if (get && route.equals("/cache")) {
+            sendJson(request.response(), this.cache.toJson());
+            return;
+        }
+        if (request.method() == HttpMethod.POST && route.equals("/invalidate")) {
+            this.invalidate(request);
+            return;
+        }
+        if (!get || !route.startsWith("/dependencies/")) {
+            request.response().setStatusCode(404).end();
+            return;
+        }
+
+        final Path path;
+        try {
+            path = pathParam(request);
+        } catch (IllegalArgumentException e) {
+            sendError(request.response(), 400, e.getMessage());
+            return;
+        }
+        this.isUnderRoots(path)
+                .onSuccess(underRoots -> {
+                    if (underRoots.isEmpty())
+                        sendError(request.response(), 404, "No such file or folder " + path);
+                    else if (underRoots.get())
+                        this.analyse(request, route, path);
+                    else
+                        sendError(request.response(), 403, "Not under the served roots " + path);
+                })
+                .onFailure(cause -> sendFailure(request.response(), cause));
+    }
+
+    private static boolean isLoopbackHost(HostAndPort authority) {
+        return authority != null && LOOPBACK_HOSTS.contains(authority.host());
+    }
+
+    // Whether the real path of an existing file or folder is under one of the roots, empty if there is no such path
+    private Future<Optional<Boolean>> isUnderRoots(Path path) {
+        return this.vertx.executeBlocking(() -> {
+            final Path realPath;
+            try {
+                realPath = path.toRealPath();
+            } catch (NoSuchFileException e) {
+                return Optional.empty();
+            }
+            return Optional.of(this.roots.stream().anyMatch(realPath::startsWith));
+        }, false);
+    }
+
+    private void analyse(HttpServerRequest request, String route, Path path) {
+        switch (route) {
+            case "/dependencies/class":
+                this.cache.get("class", path, () -> this.dependencyAnalyser.getClassDependencies(path), report -> 1)
+                        .onSuccess(report -> sendJson(request.response(), ReportCodec.toJson(report)))
+                        .onFailure(cause -> sendFailure(request.response(), cause));
+                break;
+            case "/dependencies/package":
+                this.cache.get("package", path, () -> this.dependencyAnalyser.getPackageDependencies(path),
+                                report -> report.getClassesAndInterfaces().size())
+                        .onSuccess(report -> sendJson(request.response(), toJson(report)))
+                        .onFailure(cause -> sendFailure(request.response(), cause));
+                break;
+            case "/dependencies/project":
+                // The first request streams the analysis, the others the report once complete
+                final boolean analysed = this.cache.contains("project", path);
+                final Future<ProjectDepsReport> project = this.cache.get("project", path,
+                        () -> this.streamAnalysis(request.response(), path), AnalysisServiceVerticle::classesCount);
+                if (analysed)
+                    project.onSuccess(report -> streamProject(request.response(), report))
+                            .onFailure(cause -> sendFailure(request.response(), cause));
+                break;
+            default:
+                request.response().setStatusCode(404).end();
+        }
+    }
+
+    private void invalidate(HttpServerRequest request) {
+        if (request.getParam("path") == null) {
+            final int dropped = this.cache.size();
+            this.cache.invalidateAll();
+            sendJson(request.response(), new JsonObject().put("invalidated", dropped));
+            return;
+        }
+        try {
+            sendJson(request.response(), new JsonObject().put("invalidated", this.cache.invalidate(pathParam(request))));
+        } catch (IllegalArgumentException e) {
+            sendError(request.response(), 400, e.getMessage());
+        }
+    }
+
+    private static Path pathParam(HttpServerRequest request) {
+        final String path = request.getParam("path");
+        if (path == null || path.isEmpty())
+            throw new IllegalArgumentException("Missing path parameter");
+        try {
+            return Path.of(path).toAbsolutePath().normalize();
+        } catch (InvalidPathException e) {
+            throw new IllegalArgumentException("Invalid path " + path);
+        }
+    }
+
+    // The classes are written as soon as they are analysed, and the analysis is paused while the client does not
+    // keep up with them. The report of the project is assembled on the way, module by module, for the cache
+    private Future<ProjectDepsReport> streamAnalysis(HttpServerResponse response, Path path) {
+        final Promise<ProjectDepsReport> project = Promise.promise();
+        final String projectName = String.valueOf(path.getFileName());
+        final List<ClassDepsReport> moduleClasses = new ArrayList<>();
+        final List<ModuleDepsReport> modules = new ArrayList<>();
+        final ProjectDepsStream stream = this.dependencyAnalyser.streamProjectDependencies(path);
+
+        response.setChunked(true).putHeader("Content-Type", NDJSON);
+        // A client leaving does not stop the analysis, other requests may be waiting for its report
+        response.closeHandler(v -> stream.resume());
+        stream.exceptionHandler(cause -> {
+            if (!response.headWritten())
+                sendFailure(response, cause);
+            else if (!response.closed())
+                response.end(new JsonObject().put("error", errorMessage(cause)).encode() + "\n");
+            project.fail(cause);
+        });
+        stream.moduleEndHandler(moduleName -> {
+            modules.add(ModuleDepsReport.ofClasses(moduleName, moduleClasses));
+            moduleClasses.clear();
+        });
+        stream.endHandler(v -> {
+            final ProjectDepsReport report = new ProjectDepsReport(projectName, modules);
+            if (!response.closed()) {
+                if (!response.headWritten())
+                    response.write(header(projectName));
+                response.end(trailer(report));
+            }
+            project.complete(report);
+        });
+        stream.handler(classReport -> {
+            moduleClasses.add(classReport);
+            if (response.closed())
+                return;
+            if (!response.headWritten())
+                response.write(header(projectName));
+            response.write(ReportCodec.toJson(classReport).encode() + "\n");
+            if (response.writeQueueFull()) {
+                stream.pause();
+                response.drainHandler(drained -> stream.resume());
+            }
+        });
+        return project.future();
+    }
+
+    // The classes of a cached report are written a chunk at a time, and only while the client keeps up with them
+    private static void streamProject(HttpServerResponse response, ProjectDepsReport report) {
+        final List<ClassDepsReport> classes = new ArrayList<>();
+        report.getPackages().forEach(p -> classes.addAll(p.getClassesAndInterfaces()));
+
+        response.setChunked(true).putHeader("Content-Type", NDJSON);
+        response.write(header(report.getProjectName()));
+        writeClasses(response, classes.iterator(), report);
+    }
+
+    private static void writeClasses(HttpServerResponse response, Iterator<ClassDepsReport> classes, ProjectDepsReport report) {
+        while (classes.hasNext() && !response.closed()) {
+            final Buffer chunk = Buffer.buffer();
+            for (int i = 0; i < LINES_PER_CHUNK && classes.hasNext(); i++)
+                chunk.appendString(ReportCodec.toJson(classes.next()).encode()).appendByte((byte) '\n');
+            response.write(chunk);
+            if (response.writeQueueFull()) {
+                response.drainHandler(v -> writeClasses(response, classes, report));
+                return;
+            }
+        }
+        if (!response.closed())
+            response.end(trailer(report));
+    }
+
+    private static String header(String projectName) {
+        return new JsonObject().put("project", projectName).encode() + "\n";
+    }
+
+    private static String trailer(ProjectDepsReport report) {
+        return new JsonObject()
+                .put("packages", report.getPackages().size())
+                .put("classes", classesCount(report))
+                .encode() + "\n";
+    }
+
+    private static JsonObject toJson(PackageDepsReport report) {
+        final JsonArray classes = new JsonArray();
+        report.getClassesAndInterfaces().forEach(classReport -> classes.add(ReportCodec.toJson(classReport)));
+        return new JsonObject()
+                .put("packageName", report.getPackageName())
+                .put("classes", classes);
+    }
+
+    private static int classesCount(ProjectDepsReport report) {
+        return report.getPackages().stream().mapToInt(p -> p.getClassesAndInterfaces().size()).sum();
+    }
+
+    private static void sendJson(HttpServerResponse response, JsonObject json) {
+        response.putHeader("Content-Type", "application/json").end(json.encode());
+    }
+
+    private static void sendFailure(HttpServerResponse response, Throwable cause) {
+        sendError(response, 500, errorMessage(cause));
+    }
+
+    private static String errorMessage(Throwable cause) {
+        return cause.getMessage() != null ? cause.getMessage() : cause.toString();
+    }
+
+    private static void sendError(HttpServerResponse response, int status, String message) {
+        if (response.closed())
+            return;
+        response.setStatusCode(status)
+                .putHeader("Content-Type", "application/json")
+                .end(new JsonObject().put("error", message).encode());
+    }
+}
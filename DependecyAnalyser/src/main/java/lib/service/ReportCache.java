@@ -0,0 +1,216 @@
+package lib.service;
+
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonObject;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Cache of the reports served by the {@link AnalysisServiceVerticle}, keyed by kind of report and path.
+ * <ul>
+ *     <li>Requests for a report already being computed share its in-flight {@link Future}, so concurrent requests
+ *     for the same path start a single analysis.</li>
+ *     <li>Completed reports are kept in least recently used order, within a maximum total weight: the weight of
+ *     a report is the number of classes it contains, so a project counts as much as all its classes.
+ *     Failures are not cached.</li>
+ *     <li>Invalidating a path drops the reports of that path, of the folders containing it and of the paths it
+ *     contains: changing a file invalidates its class, its package and its project. A report still in flight when
+ *     its path is invalidated is delivered to its requests, but not cached.</li>
+ * </ul>
+ * Confined to the event loop of its verticle: not thread-safe.
+ */
+public final class ReportCache {
+    private final long maxWeight;
+    private final Map<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Key, InFlight> inFlight = new HashMap<>();
+    private long weight = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long coalesced = 0;
+    private long evictions = 0;
+
+    /**
+     * Create an empty cache.
+     *
+     * @param maxWeight the maximum total weight of the cached reports, 0 to cache nothing
+     */
+    public ReportCache(long maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Get a report from the cache, or join its computation in flight, or start it.
+     *
+     * @param kind the kind of report, e.g. "class" or "project"
+     * @param path the normalized absolute path of the report
+     * @param loader the computation of the report, called only if the report is neither cached nor in flight
+     * @param weigher the weight of a computed report
+     * @return a Future result that contains the report
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Future<T> get(String kind, Path path, Supplier<Future<T>> loader, ToIntFunction<T> weigher) {
+        final Key key = new Key(kind, path);
+        final Entry cached = this.entries.get(key);
+        if (cached != null) {
+            this.hits++;
+            return Future.succeededFuture((T) cached.report);
+        }
+        final InFlight pending = this.inFlight.get(key);
+        if (pending != null) {
+            this.coalesced++;
+            return (Future<T>) pending.future;
+        }
+
+        this.misses++;
+        final Future<T> future = loader.get();
+        final InFlight computation = new InFlight(future);
+        this.inFlight.put(key, computation);
+        future.onComplete(result -> {
+            this.inFlight.remove(key, computation);
+            if (result.succeeded() && !computation.invalidated)
+                this.put(key, result.result(), weigher.applyAsInt(result.result()));
+        });
+        return future;
+    }
+
+    /**
+     * Check whether a report is cached or in flight, without counting a request.
+     *
+     * @param kind the kind of report, e.g. "class" or "project"
+     * @param path the normalized absolute path of the report
+     * @return true if {@link #get} would not call its loader
+     */
+    public boolean contains(String kind, Path path) {
+        final Key key = new Key(kind, path);
+        return this.entries.containsKey(key) || this.inFlight.containsKey(key);
+    }
+
+    /**
+     * Invalidate the reports of a path, of the folders containing it and of the paths it contains.
+     *
+     * @param path the normalized absolute path of a changed file or folder
+     * @return the number of cached reports dropped
+     */
+    public int invalidate(Path path) {
+        int dropped = 0;
+        for (Iterator<Map.Entry<Key, Entry>> it = this.entries.entrySet().iterator(); it.hasNext(); ) {
+            final Map.Entry<Key, Entry> entry = it.next();
+            if (isRelated(entry.getKey().path, path)) {
+                this.weight -= entry.getValue().weight;
+                it.remove();
+                dropped++;
+            }
+        }
+        for (Iterator<Map.Entry<Key, InFlight>> it = this.inFlight.entrySet().iterator(); it.hasNext(); ) {
+            final Map.Entry<Key, InFlight> entry = it.next();
+            if (isRelated(entry.getKey().path, path)) {
+                entry.getValue().invalidated = true;
+                it.remove();
+            }
+        }
+        return dropped;
+    }
+
+    /**
+     * Invalidate every report, cached or in flight.
+     */
+    public void invalidateAll() {
+        this.entries.clear();
+        this.inFlight.values().forEach(computation -> computation.invalidated = true);
+        this.inFlight.clear();
+        this.weight = 0;
+    }
+
+    public int size() {
+        return this.entries.size();
+    }
+
+    public long getWeight() {
+        return this.weight;
+    }
+
+    /**
+     * Get the statistics of the cache: hits, misses, coalesced requests, evictions, cached and in-flight reports.
+     *
+     * @return the statistics, as JSON
+     */
+    public JsonObject toJson() {
+        return new JsonObject()
+                .put("hits", this.hits)
+                .put("misses", this.misses)
+                .put("coalesced", this.coalesced)
+                .put("evictions", this.evictions)
+                .put("entries", this.entries.size())
+                .put("weight", this.weight)
+                .put("maxWeight", this.maxWeight)
+                .put("inFlight", this.inFlight.size());
+    }
+
+    private void put(Key key, Object report, int reportWeight) {
+        // A report heavier than the whole cache would evict everything, for nothing
+        if (reportWeight > this.maxWeight)
+            return;
+
+        final Entry previous = this.entries.put(key, new Entry(report, reportWeight));
+        if (previous != null)
+            this.weight -= previous.weight;
+        this.weight += reportWeight;
+
+        final Iterator<Entry> eldest = this.entries.values().iterator();
+        while (this.weight > this.maxWeight) {
+            this.weight -= eldest.next().weight;
+            eldest.remove();
+            this.evictions++;
+        }
+    }
+
+    private static boolean isRelated(Path cached, Path changed) {
+        return cached.startsWith(changed) || changed.startsWith(cached);
+    }
+
+    private static final class Key {
+        private final String kind;
+        private final Path path;
+
+        private Key(String kind, Path path) {
+            this.kind = kind;
+            this.path = path;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).kind.equals(this.kind) && ((Key) o).path.equals(this.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.kind, this.path);
+        }
+    }
+
+    private static final class Entry {
+        private final Object report;
+        private final int weight;
+
+        private Entry(Object report, int weight) {
+            this.report = report;
+            this.weight = weight;
+        }
+    }
+
+    private static final class InFlight {
+        private final Future<?> future;
+        private boolean invalidated = false;
+
+        private InFlight(Future<?> future) {
+            this.future = future;
+        }
+    }
+}
@@ -0,0 +1,553 @@
+package lib.snapshot;
+
+import lib.graph.SymbolSet;
+import lib.graph.SymbolTable;
+import lib.reports.ClassDepsReport;
+import lib.reports.PackageDepsReport;
+import lib.reports.ProjectDepsReport;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32C;
+
+/**
+ * Immutable snapshot of the dependencies of a project, that can be saved to a compact binary file and loaded back
+ * without analysing the sources again.
+ * <p>
+ * Every name is stored once, in a string table, and the classes refer to it by index. The file is, in order:
+ * <ul>
+ *     <li>the magic number {@code DEPS} and the format version, as two ints</li>
+ *     <li>the project name</li>
+ *     <li>the string table: its size, then every name</li>
+ *     <li>the classes: their count, then for every class the indexes of its name and of its package name, a byte of
+ *     flags, then its dependencies as written and its qualified dependencies: for each, their count and their sorted
+ *     indexes, each one as the difference with the previous</li>
+ *     <li>the CRC32C of all the previous bytes, as an int</li>
+ * </ul>
+ * Counts and indexes are unsigned varints (7 bits per byte, least significant group first), names are a varint
+ * byte length followed by their UTF-8 bytes. Ints are big-endian.
+ */
+public final class DependencySnapshot {
+    public static final int FORMAT_VERSION = 2;
+
+    private static final int MAGIC = 0x44455053;
+    private static final int APPROXIMATE = 1;
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    private final String projectName;
+    private final String[] names;
+    private final int[] classNames;
+    private final int[] packageNames;
+    private final byte[] flags;
+    // Dependencies of list l: dependencies[dependencyOffsets[l]] ... dependencies[dependencyOffsets[l + 1] - 1],
+    // list 2c for the dependencies as written of class c, list 2c + 1 for its qualified dependencies
+    private final int[] dependencyOffsets;
+    private final int[] dependencies;
+
+    private DependencySnapshot(String projectName, String[] names, int[] classNames, int[] packageNames, byte[] flags,
+                               int[] dependencyOffsets, int[] dependencies) {
+        this.projectName = projectName;
+        this.names = names;
+        this.classNames = classNames;
+        this.packageNames = packageNames;
+        this.flags = flags;
+        this.dependencyOffsets = dependencyOffsets;
+        this.dependencies = dependencies;
+    }
+
+    /**
+     * Take a snapshot of the report of a project.
+     *
+     * @param report the report of the project
+     * @return the snapshot of the classes of the report and of their dependencies
+     */
+    public static DependencySnapshot of(ProjectDepsReport report) {
+        final Builder builder = new Builder(report.getProjectName());
+        for (PackageDepsReport packageReport : report.getPackages()) {
+            for (ClassDepsReport classReport : packageReport.getClassesAndInterfaces())
+                builder.addClass(classReport.getClassOrInterfaceName(), classReport.getPackageName(),
+                        classReport.getDependencies(), classReport.getQualifiedDependencies(), classReport.isApproximate());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Load a snapshot from a file. The file is read at once into the heap and decoded in a single pass: it is not
+     * memory mapped, since a mapping keeps the file locked on Windows until the buffer is garbage collected, and the
+     * snapshot could not be saved again meanwhile.
+     *
+     * @param file the snapshot file
+     * @return the snapshot
+     * @throws IOException if the file could not be read, is not a snapshot, is corrupted or has another format version
+     */
+    public static DependencySnapshot read(Path file) throws IOException {
+        if (Files.size(file) > Integer.MAX_VALUE)
+            throw new IOException("Snapshot " + file + " is too large");
+        return decode(ByteBuffer.wrap(Files.readAllBytes(file)), file);
+    }
+
+    /**
+     * Save the snapshot to a file, replacing the previous content atomically.
+     *
+     * @param file the snapshot file
+     * @throws IOException if the file could not be written
+     */
+    public void write(Path file) throws IOException {
+        final Path parent = file.toAbsolutePath().getParent();
+        if (parent != null)
+            Files.createDirectories(parent);
+
+        final Path tmpFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (final Writer writer = new Writer(FileChannel.open(tmpFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))) {
+            writer.putInt(MAGIC);
+            writer.putInt(FORMAT_VERSION);
+            writer.putString(this.projectName);
+
+            writer.putVarint(this.names.length);
+            for (String name : this.names)
+                writer.putString(name);
+
+            writer.putVarint(this.classNames.length);
+            for (int c = 0; c < this.classNames.length; c++) {
+                writer.putVarint(this.classNames[c]);
+                writer.putVarint(this.packageNames[c]);
+                writer.putByte(this.flags[c]);
+                for (int list = 2 * c; list <= 2 * c + 1; list++) {
+                    writer.putVarint(this.dependencyOffsets[list + 1] - this.dependencyOffsets[list]);
+                    int previous = 0;
+                    for (int d = this.dependencyOffsets[list]; d < this.dependencyOffsets[list + 1]; d++) {
+                        writer.putVarint(this.dependencies[d] - previous);
+                        previous = this.dependencies[d];
+                    }
+                }
+            }
+            writer.putChecksum();
+        }
+        Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public String getProjectName() {
+        return this.projectName;
+    }
+
+    public int classCount() {
+        return this.classNames.length;
+    }
+
+    /**
+     * Get the number of dependencies stored, as written and qualified, of all the classes.
+     *
+     * @return the number of dependencies
+     */
+    public int dependencyCount() {
+        return this.dependencies.length;
+    }
+
+    public String getClassName(int classIndex) {
+        return this.names[this.classNames[classIndex]];
+    }
+
+    public String getPackageName(int classIndex) {
+        return this.names[this.packageNames[classIndex]];
+    }
+
+    /**
+     * Get the qualified name of a class: its name if it is already qualified, else its package name and its name.
+     *
+     * @param classIndex the index of the class, in [0, {@link #classCount()})
+     * @return the qualified name of the class
+     */
+    public String getQualifiedName(int classIndex) {
+        return ClassDepsReport.qualifiedName(this.getClassName(classIndex), this.getPackageName(classIndex));
+    }
+
+    public boolean isApproximate(int classIndex) {
+        return (this.flags[classIndex] & APPROXIMATE) != 0;
+    }
+
+    /**
+     * Get the dependencies of a class, as written in its source.
+     *
+     * @param classIndex the index of the class, in [0, {@link #classCount()})
+     * @return the names of the dependencies
+     */
+    public List<String> getDependencies(int classIndex) {
+        return this.namesOf(2 * classIndex);
+    }
+
+    /**
+     * Get the qualified dependencies of a class.
+     *
+     * @param classIndex the index of the class, in [0, {@link #classCount()})
+     * @return the qualified names of the dependencies
+     */
+    public List<String> getQualifiedDependencies(int classIndex) {
+        return this.namesOf(2 * classIndex + 1);
+    }
+
+    /**
+     * Intern every name of the snapshot in a symbol table, once.
+     *
+     * @param symbols the symbol table
+     * @return the id in the symbol table of every name of the snapshot, by index in the string table
+     */
+    public int[] intern(SymbolTable symbols) {
+        final int[] ids = new int[this.names.length];
+        for (int i = 0; i < this.names.length; i++)
+            ids[i] = symbols.intern(this.names[i]);
+        return ids;
+    }
+
+    /**
+     * Get the dependencies of a class, as written in its source, as a symbol set.
+     *
+     * @param classIndex the index of the class, in [0, {@link #classCount()})
+     * @param symbols the symbol table the names were interned in
+     * @param ids the ids of the names, as returned by {@link #intern(SymbolTable)}
+     * @return the set of the dependencies
+     */
+    public SymbolSet getDependencies(int classIndex, SymbolTable symbols, int[] ids) {
+        return this.symbolsOf(2 * classIndex, symbols, ids);
+    }
+
+    /**
+     * Get the qualified dependencies of a class as a symbol set.
+     *
+     * @param classIndex the index of the class, in [0, {@link #classCount()})
+     * @param symbols the symbol table the names were interned in
+     * @param ids the ids of the names, as returned by {@link #intern(SymbolTable)}
+     * @return the set of the qualified dependencies
+     */
+    public SymbolSet getQualifiedDependencies(int classIndex, SymbolTable symbols, int[] ids) {
+        return this.symbolsOf(2 * classIndex + 1, symbols, ids);
+    }
+
+    /**
+     * Rebuild the report of the project, with its names interned in a symbol table.
+     *
+     * @param symbols the symbol table of the reports
+     * @return the report of the project
+     */
+    public ProjectDepsReport toProjectReport(SymbolTable symbols) {
+        final int[] ids = this.intern(symbols);
+        final Map<Integer, Set<ClassDepsReport>> packagesClasses = new LinkedHashMap<>();
+        for (int c = 0; c < this.classNames.length; c++) {
+            final SymbolSet dependencies = this.getDependencies(c, symbols, ids);
+            // Shared by the report when both lists are the same, e.g. for the classes of a compiled project
+            final SymbolSet qualifiedDependencies = this.sameLists(2 * c, 2 * c + 1)
+                    ? dependencies
+                    : this.getQualifiedDependencies(c, symbols, ids);
+            final ClassDepsReport report = new ClassDepsReport(symbols, ids[this.classNames[c]], ids[this.packageNames[c]],
+                    dependencies, qualifiedDependencies, this.isApproximate(c));
+            packagesClasses.computeIfAbsent(this.packageNames[c], id -> new HashSet<>()).add(report);
+        }
+
+        final Set<PackageDepsReport> packagesReports = new HashSet<>();
+        packagesClasses.forEach((packageName, reports) -> packagesReports.add(new PackageDepsReport(this.names[packageName], reports)));
+        return new ProjectDepsReport(this.projectName, packagesReports);
+    }
+
+    private List<String> namesOf(int list) {
+        final int from = this.dependencyOffsets[list];
+        final int to = this.dependencyOffsets[list + 1];
+        final List<String> listNames = new ArrayList<>(to - from);
+        for (int d = from; d < to; d++)
+            listNames.add(this.names[this.dependencies[d]]);
+        return listNames;
+    }
+
+    private SymbolSet symbolsOf(int list, SymbolTable symbols, int[] ids) {
+        final int from = this.dependencyOffsets[list];
+        final int[] dependencyIds = new int[this.dependencyOffsets[list + 1] - from];
+        for (int d = 0; d < dependencyIds.length; d++)
+            dependencyIds[d] = ids[this.dependencies[from + d]];
+        return SymbolSet.ofIds(symbols, dependencyIds);
+    }
+
+    private boolean sameLists(int list, int otherList) {
+        return Arrays.equals(this.dependencies, this.dependencyOffsets[list], this.dependencyOffsets[list + 1],
+                this.dependencies, this.dependencyOffsets[otherList], this.dependencyOffsets[otherList + 1]);
+    }
+
+    private static DependencySnapshot decode(ByteBuffer buffer, Path file) throws IOException {
+        try {
+            if (buffer.remaining() < 12 || buffer.getInt(0) != MAGIC)
+                throw new IOException(file + " is not a dependency snapshot");
+            if (buffer.getInt(4) != FORMAT_VERSION)
+                throw new IOException("Snapshot " + file + " has format version " + buffer.getInt(4) + ", expected " + FORMAT_VERSION);
+
+            final int checksumPosition = buffer.limit() - 4;
+            final CRC32C crc = new CRC32C();
+            crc.update(buffer.slice(0, checksumPosition));
+            if ((int) crc.getValue() != buffer.getInt(checksumPosition))
+                throw new IOException("Snapshot " + file + " is corrupted");
+
+            final Reader reader = new Reader(buffer.slice(8, checksumPosition - 8));
+            final String projectName = reader.getString();
+            final String[] names = new String[reader.getCount()];
+            for (int i = 0; i < names.length; i++)
+                names[i] = reader.getString();
+
+            final int classCount = reader.getCount();
+            final int[] classNames = new int[classCount];
+            final int[] packageNames = new int[classCount];
+            final byte[] flags = new byte[classCount];
+            final int[] dependencyOffsets = new int[2 * classCount + 1];
+            int[] dependencies = new int[Math.max(16, classCount * 8)];
+            for (int c = 0; c < classCount; c++) {
+                classNames[c] = reader.getIndex(names.length);
+                packageNames[c] = reader.getIndex(names.length);
+                flags[c] = reader.getByte();
+                for (int list = 2 * c; list <= 2 * c + 1; list++) {
+                    final int count = reader.getCount();
+                    final int from = dependencyOffsets[list];
+                    if (from + count > dependencies.length)
+                        dependencies = Arrays.copyOf(dependencies, Math.max(from + count, 2 * dependencies.length));
+                    int previous = 0;
+                    for (int d = 0; d < count; d++) {
+                        previous += reader.getVarint();
+                        if (previous < 0 || previous >= names.length)
+                            throw new IOException("Snapshot " + file + " refers to name " + previous + " of " + names.length);
+                        dependencies[from + d] = previous;
+                    }
+                    dependencyOffsets[list + 1] = from + count;
+                }
+            }
+            if (reader.hasRemaining())
+                throw new IOException("Snapshot " + file + " has trailing bytes");
+
+            final int dependencyCount = dependencyOffsets[2 * classCount];
+            return new DependencySnapshot(projectName, names, classNames, packageNames, flags, dependencyOffsets,
+                    dependencyCount == dependencies.length ? dependencies : Arrays.copyOf(dependencies, dependencyCount));
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Snapshot " + file + " is truncated", e);
+        }
+    }
+
+    /**
+     * Builder of a snapshot, class by class. Names are added to the string table as they come.
+     */
+    public static final class Builder {
+        private final String projectName;
+        private final Map<String, Integer> nameIndexes = new HashMap<>();
+        private final List<String> names = new ArrayList<>();
+        // Name, package and flags of every class
+        private final List<int[]> classes = new ArrayList<>();
+        // The sorted dependencies as written then the qualified ones of every class
+        private final List<int[]> lists = new ArrayList<>();
+        private int dependencyCount = 0;
+
+        public Builder(String projectName) {
+            this.projectName = projectName;
+        }
+
+        /**
+         * Add a class whose dependencies are named the same way in the source and qualified.
+         *
+         * @param className the name of the class
+         * @param packageName the name of its package
+         * @param dependencies the names of its dependencies
+         * @param approximate whether the dependencies come from a shallow analysis
+         * @return this builder
+         */
+        public Builder addClass(String className, String packageName, Collection<String> dependencies, boolean approximate) {
+            return this.addClass(className, packageName, dependencies, dependencies, approximate);
+        }
+
+        /**
+         * Add a class and its dependencies.
+         *
+         * @param className the name of the class
+         * @param packageName the name of its package
+         * @param dependencies the names of its dependencies, as written in its source
+         * @param qualifiedDependencies the qualified names of its dependencies
+         * @param approximate whether the dependencies come from a shallow analysis
+         * @return this builder
+         */
+        public Builder addClass(String className, String packageName, Collection<String> dependencies,
+                                Collection<String> qualifiedDependencies, boolean approximate) {
+            this.classes.add(new int[]{this.indexOf(className), this.indexOf(packageName), approximate ? APPROXIMATE : 0});
+            this.addList(dependencies);
+            this.addList(qualifiedDependencies);
+            return this;
+        }
+
+        public DependencySnapshot build() {
+            final int classCount = this.classes.size();
+            final int[] classNames = new int[classCount];
+            final int[] packageNames = new int[classCount];
+            final byte[] flags = new byte[classCount];
+            final int[] dependencyOffsets = new int[2 * classCount + 1];
+            final int[] dependencies = new int[this.dependencyCount];
+            int count = 0;
+            for (int c = 0; c < classCount; c++) {
+                final int[] entry = this.classes.get(c);
+                classNames[c] = entry[0];
+                packageNames[c] = entry[1];
+                flags[c] = (byte) entry[2];
+            }
+            for (int list = 0; list < 2 * classCount; list++) {
+                final int[] listDependencies = this.lists.get(list);
+                // Repeated dependencies are stored once
+                for (int i = 0; i < listDependencies.length; i++) {
+                    if (i == 0 || listDependencies[i] != listDependencies[i - 1])
+                        dependencies[count++] = listDependencies[i];
+                }
+                dependencyOffsets[list + 1] = count;
+            }
+            return new DependencySnapshot(this.projectName, this.names.toArray(new String[0]), classNames, packageNames,
+                    flags, dependencyOffsets, count == dependencies.length ? dependencies : Arrays.copyOf(dependencies, count));
+        }
+
+        private void addList(Collection<String> names) {
+            final int[] list = new int[names.size()];
+            int i = 0;
+            for (String name : names)
+                list[i++] = this.indexOf(name);
+            Arrays.sort(list);
+            this.lists.add(list);
+            this.dependencyCount += list.length;
+        }
+
+        private int indexOf(String name) {
+            final Integer present = this.nameIndexes.get(name);
+            if (present != null)
+                return present;
+            this.nameIndexes.put(name, this.names.size());
+            this.names.add(name);
+            return this.names.size() - 1;
+        }
+    }
+
+    // Buffered writer of a channel, computing the checksum of what it writes
+    private static final class Writer implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+        private final CRC32C crc = new CRC32C();
+
+        private Writer(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private void putByte(int value) throws IOException {
+            this.ensureRemaining(1);
+            this.buffer.put((byte) value);
+        }
+
+        private void putInt(int value) throws IOException {
+            this.ensureRemaining(4);
+            this.buffer.putInt(value);
+        }
+
+        private void putVarint(int value) throws IOException {
+            this.ensureRemaining(5);
+            while ((value & ~0x7F) != 0) {
+                this.buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            this.buffer.put((byte) value);
+        }
+
+        private void putString(String value) throws IOException {
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            this.putVarint(bytes.length);
+            for (int offset = 0; offset < bytes.length; ) {
+                this.ensureRemaining(1);
+                final int length = Math.min(bytes.length - offset, this.buffer.remaining());
+                this.buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        // The checksum covers every byte written before it
+        private void putChecksum() throws IOException {
+            this.flush();
+            this.buffer.putInt((int) this.crc.getValue());
+        }
+
+        private void ensureRemaining(int bytes) throws IOException {
+            if (this.buffer.remaining() < bytes)
+                this.flush();
+        }
+
+        private void flush() throws IOException {
+            this.buffer.flip();
+            this.crc.update(this.buffer.duplicate());
+            while (this.buffer.hasRemaining())
+                this.channel.write(this.buffer);
+            this.buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                this.buffer.flip();
+                while (this.buffer.hasRemaining())
+                    this.channel.write(this.buffer);
+            } finally {
+                this.channel.close();
+            }
+        }
+    }
+
+    // Reader of the varints and of the names of a buffer
+    private static final class Reader {
+        private final ByteBuffer buffer;
+        private byte[] bytes = new byte[256];
+
+        private Reader(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        private byte getByte() {
+            return this.buffer.get();
+        }
+
+        private int getVarint() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                final byte b = this.buffer.get();
+                value |= (b & 0x7F) << shift;
+                if (b >= 0)
+                    return value;
+            }
+            throw new IOException("Malformed varint at " + (this.buffer.position() - 5));
+        }
+
+        private int getCount() throws IOException {
+            final int count = this.getVarint();
+            // Every element takes at least a byte: a larger count can only come from a corrupted file
+            if (count < 0 || count > this.buffer.remaining())
+                throw new IOException("Malformed count " + count + " at " + this.buffer.position());
+            return count;
+        }
+
+        private int getIndex(int size) throws IOException {
+            final int index = this.getVarint();
+            if (index < 0 || index >= size)
+                throw new IOException("Malformed name index " + index + " at " + this.buffer.position());
+            return index;
+        }
+
+        private String getString() throws IOException {
+            final int length = this.getCount();
+            if (length > this.bytes.length)
+                this.bytes = new byte[Math.max(length, 2 * this.bytes.length)];
+            this.buffer.get(this.bytes, 0, length);
+            return new String(this.bytes, 0, length, StandardCharsets.UTF_8);
+        }
+
+        private boolean hasRemaining() {
+            return this.buffer.hasRemaining();
+        }
+    }
+}
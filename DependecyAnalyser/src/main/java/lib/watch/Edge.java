@@ -0,0 +1,42 @@
+package lib.watch;
+
+import java.util.Objects;
+
+/**
+ * Dependency of a class or interface on a type.
+ */
+public final class Edge {
+    private final String from;
+    private final String to;
+
+    public Edge(String from, String to) {
+        this.from = from;
+        this.to = to;
+    }
+
+    public String getFrom() {
+        return this.from;
+    }
+
+    public String getTo() {
+        return this.to;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Edge)) return false;
+        final Edge edge = (Edge) o;
+        return this.from.equals(edge.from) && this.to.equals(edge.to);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.from, this.to);
+    }
+
+    @Override
+    public String toString() {
+        return this.from + " -> " + this.to;
+    }
+}
@@ -0,0 +1,31 @@
+package lib.watch;
+
+/**
+ * Change of the dependency graph: an edge that appeared or disappeared.
+ */
+public final class EdgeDelta {
+    private final Edge edge;
+    private final boolean added;
+
+    public EdgeDelta(Edge edge, boolean added) {
+        this.edge = edge;
+        this.added = added;
+    }
+
+    public Edge getEdge() {
+        return this.edge;
+    }
+
+    public boolean isAdded() {
+        return this.added;
+    }
+
+    public boolean isRemoved() {
+        return !this.added;
+    }
+
+    @Override
+    public String toString() {
+        return (this.added ? "+ " : "- ") + this.edge;
+    }
+}
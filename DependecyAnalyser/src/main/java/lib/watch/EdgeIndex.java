@@ -0,0 +1,58 @@
+package lib.watch;
+
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Index of the dependency edges found in every source file, used to turn the re-analysis of a file into
+ * the edges added to and removed from the whole graph. An edge found in several files is removed only
+ * when no file contains it anymore.
+ */
+public class EdgeIndex {
+    private final Map<Path, Set<Edge>> fileEdges = new HashMap<>();
+    private final Map<Edge, Integer> edgeCounts = new HashMap<>();
+
+    /**
+     * Replace the edges of a file.
+     *
+     * @param file the analysed file
+     * @param edges the edges currently found in the file
+     * @return the changes of the graph
+     */
+    public synchronized List<EdgeDelta> update(Path file, Set<Edge> edges) {
+        final Set<Edge> previous = this.fileEdges.getOrDefault(file, Set.of());
+        final List<EdgeDelta> deltas = new ArrayList<>();
+
+        for (Edge edge : previous) {
+            if (!edges.contains(edge) && this.edgeCounts.merge(edge, -1, Integer::sum) == 0) {
+                this.edgeCounts.remove(edge);
+                deltas.add(new EdgeDelta(edge, false));
+            }
+        }
+        for (Edge edge : edges) {
+            if (!previous.contains(edge) && this.edgeCounts.merge(edge, 1, Integer::sum) == 1)
+                deltas.add(new EdgeDelta(edge, true));
+        }
+
+        if (edges.isEmpty())
+            this.fileEdges.remove(file);
+        else
+            this.fileEdges.put(file, new HashSet<>(edges));
+        return deltas;
+    }
+
+    /**
+     * Remove the edges of a deleted file.
+     *
+     * @param file the deleted file
+     * @return the changes of the graph
+     */
+    public List<EdgeDelta> remove(Path file) {
+        return this.update(file, Set.of());
+    }
+
+    public synchronized void clear() {
+        this.fileEdges.clear();
+        this.edgeCounts.clear();
+    }
+}
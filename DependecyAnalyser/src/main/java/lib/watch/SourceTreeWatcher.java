@@ -0,0 +1,140 @@
+package lib.watch;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Watches a source tree for changes of Java files, including the folders created after the start.
+ * Events are debounced: the changed files are delivered, coalesced, once no event arrived for the debounce
+ * time, so a burst of saves results in a single re-analysis of every file involved. Events that never stop, e.g. a
+ * build writing into the tree, don't hold the changes back forever: they are delivered at the latest after the
+ * maximum delay since the first of them.
+ * Deleted files are delivered too: whoever receives the changes should check if they still exist.
+ */
+public class SourceTreeWatcher implements Closeable {
+    private final Path root;
+    private final Duration debounce;
+    private final Duration maxDelay;
+    private final Consumer<Set<Path>> changesHandler;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> folders = new HashMap<>();
+    private final Thread thread;
+    private volatile boolean closed = false;
+
+    /**
+     * Create a watcher and register all the folders of the tree. Changes are delivered once started.
+     *
+     * @param root the root of the source tree
+     * @param debounce the quiet time after which the pending changes are delivered
+     * @param maxDelay the time after the first pending change at which the pending changes are delivered anyway
+     * @param changesHandler the handler of the changed files, called on the watcher thread
+     * @throws IOException if the tree could not be registered
+     */
+    public SourceTreeWatcher(Path root, Duration debounce, Duration maxDelay, Consumer<Set<Path>> changesHandler)
+            throws IOException {
+        this.root = root;
+        this.debounce = debounce;
+        this.maxDelay = maxDelay;
+        this.changesHandler = changesHandler;
+        this.watchService = root.getFileSystem().newWatchService();
+        this.registerTree(root, null);
+        this.thread = new Thread(this::watch, "source-tree-watcher-" + root.getFileName());
+        this.thread.setDaemon(true);
+    }
+
+    public SourceTreeWatcher start() {
+        this.thread.start();
+        return this;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.closed = true;
+        this.watchService.close();
+    }
+
+    private void watch() {
+        final Set<Path> pending = new LinkedHashSet<>();
+        long firstEventNanos = 0;
+        long lastEventNanos = 0;
+
+        try {
+            while (!this.closed) {
+                final WatchKey key;
+                if (pending.isEmpty()) {
+                    key = this.watchService.take();
+                } else {
+                    final long now = System.nanoTime();
+                    final long remainingNanos = Math.min(this.debounce.toNanos() - (now - lastEventNanos),
+                            this.maxDelay.toNanos() - (now - firstEventNanos));
+                    key = remainingNanos > 0 ? this.watchService.poll(remainingNanos, TimeUnit.NANOSECONDS) : null;
+                }
+
+                if (key != null) {
+                    if (pending.isEmpty())
+                        firstEventNanos = System.nanoTime();
+                    this.collectChanges(key, pending);
+                    lastEventNanos = System.nanoTime();
+                } else if (!pending.isEmpty()) {
+                    this.changesHandler.accept(Set.copyOf(pending));
+                    pending.clear();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closed: stop watching
+        }
+    }
+
+    private void collectChanges(WatchKey key, Set<Path> pending) {
+        final Path folder = this.folders.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                // Some events were lost: consider every file of the tree as changed
+                this.registerTree(this.root, pending);
+                continue;
+            }
+
+            final Path child = folder.resolve((Path) event.context());
+            if (event.kind() == ENTRY_CREATE && Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS))
+                this.registerTree(child, pending);
+            else if (child.toString().endsWith(".java"))
+                pending.add(child);
+        }
+
+        if (!key.reset())
+            this.folders.remove(key);
+    }
+
+    // Register every folder of the tree, and add its Java files to the changed ones if given
+    private void registerTree(Path start, Set<Path> changedFiles) {
+        try (final Stream<Path> paths = Files.walk(start)) {
+            paths.forEach(path -> {
+                try {
+                    final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    // Registering a folder again returns its existing key
+                    if (attributes.isDirectory())
+                        this.folders.put(path.register(this.watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), path);
+                    else if (changedFiles != null && attributes.isRegularFile() && path.toString().endsWith(".java"))
+                        changedFiles.add(path);
+                } catch (IOException e) {
+                    System.err.println("Could not watch " + path + ": " + e.getMessage());
+                }
+            });
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Could not watch " + start + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package gui;
+
+import lib.filter.DependencyFilter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The cached results of a file are keyed by its content and by the types the project declares: when only the file a
+ * class depends on changes, the class must be analysed again, and a file deleted must no longer count in the key.
+ */
+class AnalysisCacheKeyTest {
+    @TempDir
+    Path project;
+
+    // The cache lives under the user home, kept in the temporary folder
+    @TempDir
+    Path home;
+
+    private String userHome;
+    private Path sources;
+
+    @BeforeEach
+    void writeProject() throws IOException {
+        this.userHome = System.getProperty("user.home");
+        System.setProperty("user.home", this.home.toString());
+        this.sources = this.project.resolve("src/main/java/p");
+        write("Base.java", "package p; public class Base { }");
+        write("Other.java", "package p; public class Other { }");
+        write("A.java", "package p; public class A extends Base { Inner inner; Other other; }");
+    }
+
+    @AfterEach
+    void restoreUserHome() {
+        System.setProperty("user.home", this.userHome);
+    }
+
+    @Test
+    void analysesAgainTheDependentsOfAChangedFile() throws IOException {
+        final DependencyScanner scanner = new DependencyScanner(this.project.toString(), true, DependencyFilter.defaults());
+        assertEquals(Set.of("p.Base", "p.Other", "Inner"), this.analyze(scanner).get("p.A"));
+        assertEquals(3, scanner.getCache().getMisses());
+
+        assertEquals(Set.of("p.Base", "p.Other", "Inner"), this.analyze(scanner).get("p.A"));
+        assertEquals(3, scanner.getCache().getHits());
+
+        // Only the superclass changes, and declares the member type A uses
+        write("Base.java", "package p; public class Base { public static class Inner { } }");
+        assertEquals(Set.of("p.Base", "p.Other", "p.Base.Inner"), this.analyze(scanner).get("p.A"));
+        assertEquals(3 + 3, scanner.getCache().getMisses());
+    }
+
+    @Test
+    void forgetsTheTypesOfTheDeletedFiles() throws IOException {
+        final DependencyScanner scanner = new DependencyScanner(this.project.toString(), true, DependencyFilter.defaults());
+        this.analyze(scanner);
+
+        Files.delete(this.sources.resolve("Other.java"));
+        assertEquals(Set.of("p.Base", "Inner", "Other"), this.analyze(scanner).get("p.A"));
+        assertEquals(3 + 2, scanner.getCache().getMisses());
+
+        // Nothing changed since: every file is found in the cache
+        this.analyze(scanner);
+        assertEquals(3 + 2, scanner.getCache().getMisses());
+        assertEquals(2, scanner.getCache().getHits());
+    }
+
+    private Map<String, Set<String>> analyze(DependencyScanner scanner) {
+        final Map<String, Set<String>> results = new HashMap<>();
+        scanner.analyze(this.project.toString(), 2, false)
+                .blockingForEach(result -> results.put(result.className, new TreeSet<>(result.dependencies)));
+        return results;
+    }
+
+    private void write(String file, String source) throws IOException {
+        Files.createDirectories(this.sources);
+        Files.writeString(this.sources.resolve(file), source);
+    }
+}
@@ -0,0 +1,72 @@
+package gui;
+
+import io.reactivex.rxjava3.core.Observable;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import lib.filter.DependencyFilter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Two projects where the same class has different members, analysed at the same time by two scanners: every file
+ * must be resolved against the sources of its own project, whichever thread parses it.
+ */
+class ConcurrentScannersTest {
+    private static final int USERS = 40;
+    private static final int ROUNDS = 3;
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void resolvesEveryProjectAgainstItsOwnSources() throws IOException {
+        final Path first = this.writeProject("first", "One");
+        final Path second = this.writeProject("second", "Two");
+
+        for (int round = 0; round < ROUNDS; round++) {
+            final DependencyScanner firstScanner = new DependencyScanner(first.toString(), false, DependencyFilter.defaults());
+            final DependencyScanner secondScanner = new DependencyScanner(second.toString(), false, DependencyFilter.defaults());
+            final Map<String, Set<String>> firstResults = new ConcurrentHashMap<>();
+            final Map<String, Set<String>> secondResults = new ConcurrentHashMap<>();
+
+            Observable.merge(
+                            collect(firstScanner, first, firstResults).subscribeOn(Schedulers.io()),
+                            collect(secondScanner, second, secondResults).subscribeOn(Schedulers.io()))
+                    .blockingSubscribe();
+
+            assertResults("One", firstResults);
+            assertResults("Two", secondResults);
+        }
+    }
+
+    private static Observable<DependencyResult> collect(DependencyScanner scanner, Path project, Map<String, Set<String>> results) {
+        return scanner.analyze(project.toString(), 4, false)
+                .doOnNext(result -> results.put(result.className, new TreeSet<>(result.dependencies)));
+    }
+
+    private static void assertResults(String member, Map<String, Set<String>> results) {
+        assertEquals(USERS + 2, results.size());
+        for (int i = 0; i < USERS; i++)
+            assertEquals(Set.of("p.Shared", "p.Shared." + member), results.get("p.User" + i), "Resolution of User" + i);
+    }
+
+    // The same class p.Shared in both projects, with a nested class of a different name
+    private Path writeProject(String name, String member) throws IOException {
+        final Path sources = Files.createDirectories(this.folder.resolve(name).resolve("src/main/java/p"));
+        Files.writeString(sources.resolve("Shared.java"), "package p; public class Shared { public static class " + member + " { } }");
+        for (int i = 0; i < USERS; i++)
+            Files.writeString(sources.resolve("User" + i + ".java"),
+                    "package p; public class User" + i + " extends Shared { " + member + " value; }");
+        return this.folder.resolve(name);
+    }
+}
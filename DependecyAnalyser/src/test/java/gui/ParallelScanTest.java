@@ -0,0 +1,72 @@
+package gui;
+
+import lib.filter.DependencyFilter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Analyses files of very different sizes with several files in flight: ordered, the results come in the order of the
+ * sequential analysis, and in any order they are the same results.
+ */
+class ParallelScanTest {
+    private static final int FILES = 60;
+    private static final int PARALLELISM = 4;
+
+    @TempDir
+    Path project;
+
+    @BeforeEach
+    void writeProject() throws IOException {
+        final Path sources = Files.createDirectories(this.project.resolve("src/main/java/p"));
+        for (int i = 0; i < FILES; i++) {
+            // Every third file is much longer to analyse than the next ones
+            final StringBuilder fields = new StringBuilder();
+            for (int field = 0; field < (i % 3 == 0 ? 100 : 1); field++)
+                fields.append("    java.util.List<C").append((i + field + 1) % FILES).append("> f").append(field).append(";\n");
+            Files.writeString(sources.resolve("C" + i + ".java"),
+                    "package p;\npublic class C" + i + " {\n" + fields + "    static class Nested" + i + " { }\n}\n");
+        }
+    }
+
+    @Test
+    void emitsTheResultsInTheOrderOfTheFiles() {
+        final List<String> sequential = new ArrayList<>();
+        final Map<String, Set<String>> expected = new HashMap<>();
+        scanner().analyze(this.project.toString()).blockingForEach(result -> {
+            sequential.add(result.className);
+            expected.put(result.className, new TreeSet<>(result.dependencies));
+        });
+        assertEquals(2 * FILES, sequential.size());
+
+        final List<String> ordered = new ArrayList<>();
+        final Map<String, Set<String>> orderedResults = new HashMap<>();
+        scanner().analyze(this.project.toString(), PARALLELISM, true).blockingForEach(result -> {
+            ordered.add(result.className);
+            orderedResults.put(result.className, new TreeSet<>(result.dependencies));
+        });
+        assertEquals(sequential, ordered);
+        assertEquals(expected, orderedResults);
+
+        final Map<String, Set<String>> unorderedResults = new HashMap<>();
+        scanner().analyze(this.project.toString(), PARALLELISM, false)
+                .blockingForEach(result -> unorderedResults.put(result.className, new TreeSet<>(result.dependencies)));
+        assertEquals(expected, unorderedResults);
+    }
+
+    private DependencyScanner scanner() {
+        return new DependencyScanner(this.project.toString(), false, DependencyFilter.defaults());
+    }
+}
@@ -0,0 +1,62 @@
+package gui;
+
+import lib.filter.DependencyFilter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Two files of the same package where the same names mean different types: a type parameter of one is a class of the
+ * package for the other, and the member type both inherit comes from different supertypes. The resolution of a file
+ * must not be reused for the other, whichever is analysed first.
+ */
+class TypeResolutionCacheTest {
+    @TempDir
+    Path project;
+
+    private Path sources;
+
+    @BeforeEach
+    void writeProject() throws IOException {
+        this.sources = this.project.resolve("src/main/java/p");
+        write("Base1.java", "package p; public class Base1 { public static class Inner { } }");
+        write("Base2.java", "package p; public class Base2 { public static class Inner { } }");
+        write("T.java", "package p; public class T { }");
+        write("A.java", "package p; public class A extends Base1 { Inner inner; <T> T first(java.util.List<T> list) { return list.get(0); } }");
+        write("B.java", "package p; public class B extends Base2 { Inner inner; T t; }");
+    }
+
+    @Test
+    void resolvesSameNamesPerFile() {
+        for (List<String> order : List.of(List.of("A.java", "B.java"), List.of("B.java", "A.java"))) {
+            final DependencyScanner scanner = new DependencyScanner(this.project.toString(), false, DependencyFilter.defaults());
+            for (String file : order)
+                scanner.analyze(this.sources.resolve(file).toString()).blockingSubscribe();
+
+            final DependencyResult a = analyse(scanner, "A.java");
+            assertTrue(a.dependencies.contains("p.Base1.Inner"), a.dependencies + " analysed in order " + order);
+            assertFalse(a.dependencies.contains("p.T"), a.dependencies + " analysed in order " + order);
+
+            final DependencyResult b = analyse(scanner, "B.java");
+            assertTrue(b.dependencies.contains("p.Base2.Inner"), b.dependencies + " analysed in order " + order);
+            assertTrue(b.dependencies.contains("p.T"), b.dependencies + " analysed in order " + order);
+            assertTrue(scanner.getResolutionCache().getHits() > 0);
+        }
+    }
+
+    private DependencyResult analyse(DependencyScanner scanner, String file) {
+        return scanner.analyze(this.sources.resolve(file).toString()).blockingFirst();
+    }
+
+    private void write(String file, String source) throws IOException {
+        Files.createDirectories(this.sources);
+        Files.writeString(this.sources.resolve(file), source);
+    }
+}
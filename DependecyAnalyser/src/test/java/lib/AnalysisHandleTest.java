@@ -0,0 +1,96 @@
+package lib;
+
+import io.vertx.core.Vertx;
+import io.vertx.junit5.VertxExtension;
+import lib.metrics.AnalysisMetrics;
+import lib.metrics.Stage;
+import lib.reports.ProjectDepsReport;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cancels the analysis of a project, before and while its files are read: the result fails with a
+ * {@link CancellationException} and no file is read once the files in flight are done.
+ */
+@ExtendWith(VertxExtension.class)
+class AnalysisHandleTest {
+    private static final int FILES = 300;
+    private static final int MAX_CONCURRENCY = 2;
+
+    @TempDir
+    Path project;
+
+    private final AnalysisMetrics metrics = new AnalysisMetrics();
+
+    @BeforeEach
+    void writeProject() throws IOException {
+        final Path sources = Files.createDirectories(this.project.resolve("src/main/java/p"));
+        for (int i = 0; i < FILES; i++)
+            Files.writeString(sources.resolve("C" + i + ".java"),
+                    "package p; import java.util.List; public class C" + i + " { List<C" + (i + 1) % FILES + "> next; }");
+    }
+
+    @Test
+    void readsNoFileWhenCancelledBeforeTheListing(Vertx vertx) throws Exception {
+        final AnalysisHandle<ProjectDepsReport> handle = this.analyser(vertx).startProjectAnalysis(this.project);
+
+        assertTrue(handle.cancel());
+        assertCancelled(handle);
+        assertFalse(handle.cancel());
+
+        Thread.sleep(500);
+        assertEquals(0, this.reads());
+    }
+
+    @Test
+    void readsNoMoreFileOnceCancelled(Vertx vertx) throws Exception {
+        final AnalysisHandle<ProjectDepsReport> handle = this.analyser(vertx).startProjectAnalysis(this.project);
+        final long deadline = System.currentTimeMillis() + 30_000;
+        while (this.reads() < 10 && System.currentTimeMillis() < deadline)
+            Thread.sleep(1);
+
+        assertTrue(handle.cancel());
+        final long readsWhenCancelled = this.reads();
+        assertCancelled(handle);
+
+        // Only the files in flight when cancelled may still finish their read
+        Thread.sleep(500);
+        final long reads = this.reads();
+        assertTrue(reads <= readsWhenCancelled + MAX_CONCURRENCY, reads + " files read, " + readsWhenCancelled + " when cancelled");
+        Thread.sleep(500);
+        assertEquals(reads, this.reads());
+        assertTrue(reads < FILES);
+    }
+
+    private DependencyAnalyserLib analyser(Vertx vertx) {
+        return new DependencyAnalyserLib(vertx, new AnalyserOptions()
+                .setMaxConcurrency(MAX_CONCURRENCY)
+                .setMetrics(this.metrics));
+    }
+
+    private long reads() {
+        return this.metrics.getLatencies(Stage.READ_FILE).getCount();
+    }
+
+    private static void assertCancelled(AnalysisHandle<?> handle) {
+        // The completion stage rethrows the cancellation as it is
+        assertThrows(CancellationException.class,
+                () -> handle.future().toCompletionStage().toCompletableFuture().get(30, TimeUnit.SECONDS));
+        assertInstanceOf(CancellationException.class, handle.future().cause());
+        assertTrue(handle.isCancelled());
+    }
+}
@@ -0,0 +1,71 @@
+package lib;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Maps lists of items with tasks completed at once, later, or failing.
+ */
+class BoundedMapperTest {
+
+    @Test
+    void mapsManyTasksAlreadyCompletedWithoutRecursing() throws Exception {
+        final List<Integer> items = IntStream.range(0, 60_000).boxed().collect(Collectors.toList());
+
+        final List<Integer> results = await(BoundedMapper.map(items, item -> Future.succeededFuture(item * 2), 4));
+
+        assertEquals(items.size(), results.size());
+        for (int i = 0; i < items.size(); i++)
+            assertEquals(2 * i, results.get(i));
+    }
+
+    @Test
+    void keepsAtMostTheLimitOfTasksInFlight() {
+        final List<Promise<Integer>> pending = new ArrayList<>();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final Future<List<Integer>> result = BoundedMapper.map(IntStream.range(0, 10).boxed().collect(Collectors.toList()), item -> {
+            final Promise<Integer> promise = Promise.promise();
+            pending.add(promise);
+            maxInFlight.accumulateAndGet(pending.size(), Math::max);
+            return promise.future();
+        }, 3);
+
+        while (!pending.isEmpty()) {
+            final Promise<Integer> first = pending.remove(0);
+            first.complete(pending.size());
+        }
+
+        assertTrue(result.succeeded());
+        assertEquals(3, maxInFlight.get());
+    }
+
+    @Test
+    void failsWithTheExceptionOfTheTaskFunction() {
+        final IllegalStateException failure = new IllegalStateException("Unreadable item");
+
+        final Future<List<Integer>> result = BoundedMapper.map(List.of(1, 2, 3), item -> {
+            if (item == 2)
+                throw failure;
+            return Future.succeededFuture(item);
+        }, 1);
+
+        assertTrue(result.failed());
+        assertSame(failure, result.cause());
+    }
+
+    private static <T> T await(Future<T> future) throws Exception {
+        return future.toCompletionStage().toCompletableFuture().get(30, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,87 @@
+package lib;
+
+import io.vertx.core.Vertx;
+import io.vertx.junit5.VertxExtension;
+import lib.watch.EdgeDelta;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Edits the sources of a watched project and checks that the stream emits the edges each edit added and removed.
+ */
+@ExtendWith(VertxExtension.class)
+class DependencyWatchStreamTest {
+    private static final long TIMEOUT_MILLIS = 30_000;
+
+    @TempDir
+    Path project;
+
+    @Test
+    void emitsTheEdgesOfEveryEdit(Vertx vertx) throws Exception {
+        final Path sources = this.project.resolve("src/main/java/p");
+        write(sources.resolve("A.java"), "package p; public class A { B b; }");
+        write(sources.resolve("B.java"), "package p; public class B { }");
+        write(sources.resolve("C.java"), "package p; public class C { A a; }");
+
+        final List<String> deltas = new ArrayList<>();
+        final DependencyWatchStream stream = new DependencyAnalyserLib(vertx).watchProjectDependencies(this.project);
+        stream.exceptionHandler(Throwable::printStackTrace)
+                .handler(delta -> {
+                    synchronized (deltas) {
+                        deltas.add(format(delta));
+                    }
+                });
+        try {
+            assertEquals(Set.of("+ p.A -> p.B", "+ p.C -> p.A"), awaitDeltas(deltas, 2));
+
+            write(sources.resolve("A.java"), "package p; public class A { C c; }");
+            assertEquals(Set.of("+ p.A -> p.C", "- p.A -> p.B"), awaitDeltas(deltas, 2));
+
+            Files.delete(sources.resolve("C.java"));
+            assertEquals(Set.of("- p.C -> p.A"), awaitDeltas(deltas, 1));
+
+            write(sources.resolve("D.java"), "package p; public class D { B b; A a; }");
+            assertEquals(Set.of("+ p.D -> p.A", "+ p.D -> p.B"), awaitDeltas(deltas, 2));
+        } finally {
+            stream.close();
+        }
+    }
+
+    // Wait for the next deltas, and take them out of the list
+    private static Set<String> awaitDeltas(List<String> deltas, int count) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        synchronized (deltas) {
+            while (deltas.size() < count) {
+                if (System.currentTimeMillis() > deadline)
+                    fail("Expected " + count + " deltas but got " + deltas);
+                deltas.wait(50);
+            }
+            // Nothing more is emitted for the same edit
+            deltas.wait(300);
+            final Set<String> next = new TreeSet<>(deltas);
+            deltas.clear();
+            return next;
+        }
+    }
+
+    private static String format(EdgeDelta delta) {
+        return (delta.isAdded() ? "+ " : "- ") + delta.getEdge().getFrom() + " -> " + delta.getEdge().getTo();
+    }
+
+    private static void write(Path file, String source) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, source);
+    }
+}
@@ -0,0 +1,173 @@
+package lib;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.junit5.VertxExtension;
+import lib.filter.DependencyFilter;
+import lib.reports.ClassDepsReport;
+import lib.reports.PackageDepsReport;
+import lib.reports.ProjectDepsReport;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Pins the output of {@link DependencyAnalyserLib#getProjectDependencies(Path)} against the output of the original
+ * pipeline, which analysed every folder of the source tree recursively as a package.
+ * <p>
+ * The packages whose folder has no sub-package are reported exactly as before: the expected reports of
+ * {@link #keepsTheReportsOfTheOriginalPipeline(Vertx)} were recorded by running the original pipeline on the same
+ * sources. The accepted differences are those of assigning every file to exactly one package: a package no longer
+ * contains the classes of its sub-packages, folders without Java files of their own are no longer reported, and the
+ * files at the root of the source folder are reported in the default package instead of being skipped.
+ */
+@ExtendWith(VertxExtension.class)
+class ProjectDependenciesRegressionTest {
+    @TempDir
+    Path project;
+
+    private Path sources;
+
+    @BeforeEach
+    void writeProject() throws IOException {
+        this.sources = this.project.resolve("src/main/java");
+        write("Main.java", "public class Main { com.acme.App app; }");
+        write("com/acme/App.java", "package com.acme;\n"
+                + "import com.acme.model.Item;\n"
+                + "import java.util.List;\n"
+                + "public class App { List<Item> items; Settings settings; }");
+        write("com/acme/Settings.java", "package com.acme;\n"
+                + "public interface Settings { String name(); }");
+        write("com/acme/model/Item.java", "package com.acme.model;\n"
+                + "import com.acme.util.Strings;\n"
+                + "public class Item { Strings strings = new Strings(); }");
+        write("com/acme/util/Strings.java", "package com.acme.util;\n"
+                + "public final class Strings { }");
+    }
+
+    @Test
+    void reportsEveryFileInItsOwnPackage(Vertx vertx) throws Exception {
+        final ProjectDepsReport report = await(analyser(vertx).getProjectDependencies(this.project));
+
+        assertEquals(this.project.getFileName().toString(), report.getProjectName());
+        assertEquals(Map.of(
+                "java", Map.of("Main", Set.of("com", "acme", "App")),
+                "com.acme", Map.of("App", Set.of("List", "Item", "Settings"), "Settings", Set.of()),
+                "com.acme.model", Map.of("Item", Set.of("Strings")),
+                "com.acme.util", Map.of("Strings", Set.of())), packagesOf(report.getPackages()));
+    }
+
+    @Test
+    void keepsTheReportsOfTheOriginalPipeline(Vertx vertx) throws Exception {
+        final Path fixture = this.project.resolve("fixture");
+        final Path fixtureSources = fixture.resolve("src/main/java");
+        write(fixtureSources, "app/App.java", "package app;\n"
+                + "import model.Item;\n"
+                + "import java.util.List;\n"
+                + "import java.util.Map;\n"
+                + "public class App {\n"
+                + "    private List<Item<String>> items;\n"
+                + "    private Map.Entry<String, Item<String>> last;\n"
+                + "    private Settings settings;\n"
+                + "    private Runnable task = new Worker();\n"
+                + "    private String name;\n"
+                + "}");
+        write(fixtureSources, "app/Settings.java", "package app;\n"
+                + "public interface Settings {\n"
+                + "    String name();\n"
+                + "    model.Item<Integer> first();\n"
+                + "}");
+        write(fixtureSources, "app/Worker.java", "package app;\n"
+                + "class Worker implements Runnable {\n"
+                + "    @Override\n"
+                + "    public void run() {\n"
+                + "        throw new IllegalStateException(\"Not started\");\n"
+                + "    }\n"
+                + "}");
+        write(fixtureSources, "model/Item.java", "package model;\n"
+                + "public class Item<T extends Comparable<T>> {\n"
+                + "    private T value;\n"
+                + "    private Item<T> next;\n"
+                + "}");
+        write(fixtureSources, "model/Store.java", "package model;\n"
+                + "public class Store {\n"
+                + "    private java.util.List<Item<String>> items = new java.util.ArrayList<>();\n"
+                + "    private Item.Kind kind;\n"
+                + "}");
+
+        final ProjectDepsReport report = await(new DependencyAnalyserLib(vertx).getProjectDependencies(fixture));
+
+        assertEquals("fixture", report.getProjectName());
+        assertEquals(Map.of(
+                "app", Map.of(
+                        "App", Set.of("Entry", "Item", "List", "Map", "Runnable", "Settings", "Worker"),
+                        "Settings", Set.of("Integer", "Item", "model"),
+                        "Worker", Set.of("IllegalStateException", "Runnable")),
+                "model", Map.of(
+                        "Item", Set.of("Comparable", "Item", "T"),
+                        "Store", Set.of("ArrayList", "Item", "Kind", "List", "java", "util"))), packagesOf(report.getPackages()));
+        for (PackageDepsReport packageReport : report.getPackages()) {
+            for (ClassDepsReport classReport : packageReport.getClassesAndInterfaces())
+                assertEquals(packageReport.getPackageName(), classReport.getPackageName());
+        }
+    }
+
+    @Test
+    void namesFilesDeclaringNoClassAfterTheirFirstType(Vertx vertx) throws Exception {
+        write("com/acme/Color.java", "package com.acme;\n"
+                + "public enum Color { RED; Settings settings; }");
+        write("com/acme/Point.java", "package com.acme;\n"
+                + "public record Point(int x, Color color) { }");
+        final DependencyAnalyserLib analyser = analyser(vertx);
+
+        final ClassDepsReport color = await(analyser.getClassDependencies(this.sources.resolve("com/acme/Color.java")));
+        final ClassDepsReport point = await(analyser.getClassDependencies(this.sources.resolve("com/acme/Point.java")));
+        assertEquals("com.acme.Color", color.getQualifiedName());
+        assertEquals(Set.of("com.acme.Settings"), new HashSet<>(color.getQualifiedDependencies()));
+        assertEquals("com.acme.Point", point.getQualifiedName());
+        assertEquals(Set.of("com.acme.Color"), new HashSet<>(point.getQualifiedDependencies()));
+    }
+
+    private static DependencyAnalyserLib analyser(Vertx vertx) {
+        return new DependencyAnalyserLib(vertx, new AnalyserOptions()
+                .setFilter(DependencyFilter.defaults())
+                .setMaxConcurrency(2));
+    }
+
+    private static Map<String, Map<String, Set<String>>> packagesOf(Set<PackageDepsReport> reports) {
+        final Map<String, Map<String, Set<String>>> packages = new HashMap<>();
+        for (PackageDepsReport report : reports)
+            packages.put(report.getPackageName(), classesOf(report));
+        return packages;
+    }
+
+    private static Map<String, Set<String>> classesOf(PackageDepsReport report) {
+        final Map<String, Set<String>> classes = new HashMap<>();
+        for (ClassDepsReport classReport : report.getClassesAndInterfaces())
+            classes.put(classReport.getClassOrInterfaceName(), new HashSet<>(classReport.getDependencies()));
+        return classes;
+    }
+
+    private void write(String file, String source) throws IOException {
+        write(this.sources, file, source);
+    }
+
+    private static void write(Path sources, String file, String source) throws IOException {
+        final Path path = sources.resolve(file);
+        Files.createDirectories(path.getParent());
+        Files.writeString(path, source);
+    }
+
+    private static <T> T await(Future<T> future) throws Exception {
+        return future.toCompletionStage().toCompletableFuture().get(30, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,98 @@
+package lib;
+
+import io.vertx.core.Vertx;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import lib.filter.DependencyFilter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@ExtendWith(VertxExtension.class)
+class ProjectDepsStreamTest {
+    @TempDir
+    Path project;
+
+    @Test
+    void doesNotFollowLinksToFolders(Vertx vertx, VertxTestContext testContext) throws IOException {
+        final Path sources = this.project.resolve("src/main/java");
+        write(sources.resolve("a/A.java"), "package a; public class A { }");
+        write(sources.resolve("a/b/B.java"), "package a.b; public class B { }");
+        // A cycle: the tree would be listed forever if the link was followed
+        Files.createSymbolicLink(sources.resolve("a/b/loop"), sources.resolve("a"));
+
+        final List<String> classes = new ArrayList<>();
+        analyser(vertx).streamProjectDependencies(this.project)
+                .exceptionHandler(testContext::failNow)
+                .endHandler(v -> testContext.verify(() -> {
+                    assertEquals(List.of("A", "B"), classes);
+                    testContext.completeNow();
+                }))
+                .handler(report -> classes.add(report.getClassOrInterfaceName()));
+    }
+
+    @Test
+    void pausesWhenTheHandlerIsRemoved(Vertx vertx, VertxTestContext testContext) throws IOException {
+        final Path sources = this.project.resolve("src/main/java/p");
+        for (int i = 0; i < 6; i++)
+            write(sources.resolve("C" + i + ".java"), "package p; public class C" + i + " { }");
+
+        final List<String> classes = new ArrayList<>();
+        final ProjectDepsStream stream = analyser(vertx).streamProjectDependencies(this.project);
+        stream.exceptionHandler(testContext::failNow)
+                .endHandler(v -> testContext.verify(() -> {
+                    assertEquals(6, classes.size());
+                    testContext.completeNow();
+                }))
+                .handler(report -> {
+                    classes.add(report.getClassOrInterfaceName());
+                    if (classes.size() == 2) {
+                        stream.handler(null);
+                        // Nothing is emitted while the stream has no handler
+                        vertx.setTimer(300, id -> testContext.verify(() -> {
+                            assertEquals(2, classes.size());
+                            stream.handler(next -> classes.add(next.getClassOrInterfaceName()));
+                            stream.resume();
+                        }));
+                    }
+                });
+    }
+
+    @Test
+    void emitsTheModulesOneAfterTheOther(Vertx vertx, VertxTestContext testContext) throws IOException {
+        for (int i = 0; i < 4; i++) {
+            write(this.project.resolve("api/src/main/java/p/A" + i + ".java"), "package p; public class A" + i + " { }");
+            write(this.project.resolve("core/src/main/java/p/C" + i + ".java"), "package p; public class C" + i + " { A0 a; }");
+        }
+        write(this.project.resolve("core/src/test/java/p/CTest.java"), "package p; class CTest { C0 c; }");
+
+        final List<String> events = new ArrayList<>();
+        analyser(vertx).streamProjectDependencies(this.project)
+                .exceptionHandler(testContext::failNow)
+                .moduleEndHandler(module -> events.add("end " + module))
+                .endHandler(v -> testContext.verify(() -> {
+                    assertEquals(List.of("A", "A", "A", "A", "end api", "C", "C", "C", "C", "end core"), events);
+                    testContext.completeNow();
+                }))
+                .handler(report -> events.add(report.getClassOrInterfaceName().substring(0, 1)));
+    }
+
+    private static DependencyAnalyserLib analyser(Vertx vertx) {
+        return new DependencyAnalyserLib(vertx, new AnalyserOptions()
+                .setFilter(DependencyFilter.defaults())
+                .setMaxConcurrency(2));
+    }
+
+    private static void write(Path file, String source) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, source);
+    }
+}
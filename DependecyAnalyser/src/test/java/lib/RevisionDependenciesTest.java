@@ -0,0 +1,104 @@
+package lib;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.junit5.VertxExtension;
+import lib.analytics.DependencyDiff;
+import lib.reports.ModuleDepsReport;
+import lib.reports.ProjectDepsReport;
+import lib.watch.Edge;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Analyses the revisions of a git repository written in a temporary folder, with a dirty working tree.
+ */
+@ExtendWith(VertxExtension.class)
+class RevisionDependenciesTest {
+    @TempDir
+    Path project;
+
+    @BeforeEach
+    void commitRevisions() throws Exception {
+        git("init", "-q");
+        write("src/main/java/p/A.java", "package p; public class A { B b; }");
+        write("src/main/java/p/B.java", "package p; public class B { }");
+        write("src/test/java/p/ATest.java", "package p; class ATest { A a; B b; }");
+        commit("First");
+
+        write("src/main/java/p/A.java", "package p; public class A { C c; }");
+        write("src/main/java/p/C.java", "package p; public class C { B b; }");
+        commit("Second");
+
+        // The working tree is never read
+        write("src/main/java/p/A.java", "package p; public class A { D d; }");
+    }
+
+    @Test
+    void diffsTwoRevisionsWithoutTheTests(Vertx vertx) throws Exception {
+        final DependencyAnalyserLib analyser = new DependencyAnalyserLib(vertx);
+
+        final DependencyDiff diff = await(analyser.diffRevisions(this.project, "HEAD~1", "HEAD"));
+
+        assertEquals(List.of(new Edge("p.A", "p.C"), new Edge("p.C", "p.B")), diff.getAddedClassEdges());
+        assertEquals(List.of(new Edge("p.A", "p.B")), diff.getRemovedClassEdges());
+
+        final ProjectDepsReport report = await(analyser.getRevisionDependencies(this.project, "HEAD"));
+        assertEquals(List.of(this.project.getFileName().toString()), namesOf(report.getModules()));
+        assertEquals(3, report.getModules().get(0).getPackages().iterator().next().getClassesAndInterfaces().size());
+    }
+
+    @Test
+    void reportsTheTestsAsAModuleOfTheirOwn(Vertx vertx) throws Exception {
+        final DependencyAnalyserLib analyser = new DependencyAnalyserLib(vertx, new AnalyserOptions().setTestSources(true));
+
+        final ProjectDepsReport report = await(analyser.getRevisionDependencies(this.project, "HEAD~1"));
+
+        final String name = this.project.getFileName().toString();
+        assertEquals(List.of(name, name + ":test"), namesOf(report.getModules()));
+        assertEquals(2, report.getModules().get(0).getPackages().iterator().next().getClassesAndInterfaces().size());
+        assertEquals(1, report.getModules().get(1).getPackages().iterator().next().getClassesAndInterfaces().size());
+    }
+
+    private void write(String file, String source) throws IOException {
+        final Path path = this.project.resolve(file);
+        Files.createDirectories(path.getParent());
+        Files.writeString(path, source);
+    }
+
+    private void commit(String message) throws Exception {
+        git("add", "-A");
+        git("-c", "user.name=Test", "-c", "user.email=test@example.com", "-c", "commit.gpgsign=false",
+                "commit", "-q", "-m", message);
+    }
+
+    private void git(String... arguments) throws Exception {
+        final List<String> command = new ArrayList<>(List.of("git", "-C", this.project.toString()));
+        command.addAll(List.of(arguments));
+        final Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        final String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        if (process.waitFor() != 0)
+            throw new IOException("git " + arguments[0] + " failed: " + output);
+    }
+
+    private static List<String> namesOf(List<ModuleDepsReport> modules) {
+        return modules.stream().map(ModuleDepsReport::getModuleName).collect(Collectors.toList());
+    }
+
+    private static <T> T await(Future<T> future) throws Exception {
+        return future.toCompletionStage().toCompletableFuture().get(30, TimeUnit.SECONDS);
+    }
+}
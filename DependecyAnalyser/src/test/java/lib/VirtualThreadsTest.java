@@ -0,0 +1,77 @@
+package lib;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.junit5.VertxExtension;
+import lib.reports.ClassDepsReport;
+import lib.reports.PackageDepsReport;
+import lib.reports.ProjectDepsReport;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Analyses the same project on virtual threads and on the worker pool: both must give the same reports.
+ */
+@ExtendWith(VertxExtension.class)
+class VirtualThreadsTest {
+    private static final int CLASSES = 40;
+
+    @TempDir
+    Path project;
+
+    @BeforeEach
+    void writeProject() throws IOException {
+        final Path sources = Files.createDirectories(this.project.resolve("src/main/java/p"));
+        final Path other = Files.createDirectories(this.project.resolve("src/main/java/q"));
+        Files.writeString(other.resolve("Base.java"), "package q; public class Base { public static class Inner { } }");
+        for (int i = 0; i < CLASSES; i++)
+            Files.writeString(sources.resolve("C" + i + ".java"), "package p;\n"
+                    + "import java.util.*;\n"
+                    + "import q.Base;\n"
+                    + "public class C" + i + " extends Base {\n"
+                    + "    Map<String, List<C" + (i + 1) % CLASSES + ">> next;\n"
+                    + "    Inner inner;\n"
+                    + "    Optional<Base> base() { return Optional.empty(); }\n"
+                    + "}\n");
+    }
+
+    @Test
+    void reportsTheDependenciesOfTheWorkerPool(Vertx vertx) throws Exception {
+        final ProjectDepsReport workerPool = await(new DependencyAnalyserLib(vertx,
+                new AnalyserOptions().setMaxConcurrency(4)).getProjectDependencies(this.project));
+        final ProjectDepsReport virtualThreads = await(new DependencyAnalyserLib(vertx,
+                new AnalyserOptions().setVirtualThreads(true).setVirtualThreadsConcurrency(4)).getProjectDependencies(this.project));
+
+        final Map<String, List<Object>> expected = classesOf(workerPool);
+        assertEquals(CLASSES + 1, expected.size());
+        assertEquals(expected, classesOf(virtualThreads));
+    }
+
+    // [qualified name -> [dependencies, qualified dependencies, approximate]]
+    private static Map<String, List<Object>> classesOf(ProjectDepsReport report) {
+        final Map<String, List<Object>> classes = new TreeMap<>();
+        for (PackageDepsReport packageReport : report.getPackages()) {
+            for (ClassDepsReport classReport : packageReport.getClassesAndInterfaces())
+                classes.put(classReport.getQualifiedName(), List.of(new TreeSet<>(classReport.getDependencies()),
+                        new TreeSet<>(classReport.getQualifiedDependencies()), classReport.isApproximate()));
+        }
+        return classes;
+    }
+
+    private static <T> T await(Future<T> future) throws Exception {
+        return future.toCompletionStage().toCompletableFuture().get(30, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,187 @@
+package lib.analytics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the analytics of small random graphs, with self-loops and duplicate edges, against brute force: the
+ * components and the transitive dependencies from the reachability of every node, and the incremental components,
+ * after every insertion and removal, against Tarjan's algorithm run on the whole graph.
+ */
+class GraphAnalyticsRandomTest {
+    private static final int GRAPHS = 300;
+    private static final int MAX_NODES = 9;
+
+    @Test
+    void findsTheComponentsOfTheReachability() {
+        for (int seed = 0; seed < GRAPHS; seed++) {
+            final Digraph graph = randomGraph(new Random(seed));
+            final boolean[][] reaches = reachability(graph);
+            final StronglyConnectedComponents components = StronglyConnectedComponents.of(graph);
+
+            for (int from = 0; from < graph.nodeCount(); from++) {
+                for (int to = 0; to < graph.nodeCount(); to++) {
+                    final boolean together = from == to || reaches[from][to] && reaches[to][from];
+                    assertEquals(together, components.componentOf(from) == components.componentOf(to),
+                            "Components of " + from + " and " + to + " in graph " + seed);
+                }
+                final int component = components.componentOf(from);
+                assertEquals(components.size(component) > 1 || reaches[from][from], components.isCyclic(component),
+                        "Cycle of " + from + " in graph " + seed);
+                // Components are in reverse topological order
+                for (int edge = graph.edgeStart(from); edge < graph.edgeEnd(from); edge++)
+                    assertTrue(components.componentOf(graph.target(edge)) <= component, "Order of " + from + " in graph " + seed);
+            }
+        }
+    }
+
+    @Test
+    void countsTheTransitiveDependenciesOfABreadthFirstSearch() {
+        for (int seed = 0; seed < GRAPHS; seed++) {
+            final Digraph graph = randomGraph(new Random(seed));
+            final boolean[][] reaches = reachability(graph);
+            final int[] counts = GraphAnalytics.of(graph).getTransitiveDependencyCounts();
+
+            for (int node = 0; node < graph.nodeCount(); node++) {
+                int expected = 0;
+                for (int other = 0; other < graph.nodeCount(); other++) {
+                    if (other != node && reaches[node][other])
+                        expected++;
+                }
+                assertEquals(expected, counts[node], "Transitive dependencies of " + node + " in graph " + seed);
+            }
+        }
+    }
+
+    @Test
+    void keepsTheComponentsOfTarjanOnEveryChange() {
+        int removalsInCycles = 0;
+        for (int seed = 0; seed < GRAPHS; seed++) {
+            final Random random = new Random(seed);
+            final int nodeCount = 2 + random.nextInt(MAX_NODES - 1);
+            final IncrementalAnalytics analytics = new IncrementalAnalytics();
+            // The edges added and not removed yet, once per time they were added
+            final List<String[]> added = new ArrayList<>();
+            Map<String, Set<String>> cyclicComponents = Map.of();
+
+            for (int step = 0; step < 60; step++) {
+                if (added.isEmpty() || random.nextInt(5) < 3) {
+                    final String[] edge = added.isEmpty() || random.nextInt(4) > 0
+                            ? new String[]{"n" + random.nextInt(nodeCount), "n" + random.nextInt(nodeCount)}
+                            : added.get(random.nextInt(added.size()));
+                    analytics.addEdge(edge[0], edge[1]);
+                    added.add(edge);
+                } else {
+                    final String[] edge = added.remove(random.nextInt(added.size()));
+                    if (!edge[0].equals(edge[1]) && analytics.isInCycle(edge[0], edge[1]))
+                        removalsInCycles++;
+                    analytics.removeEdge(edge[0], edge[1]);
+                }
+                final Map<String, Set<String>> previousComponents = cyclicComponents;
+                cyclicComponents = assertSameComponents(analytics, added, "step " + step + " of graph " + seed);
+
+                // Every node whose cyclic component changed is reported, to be restyled
+                final Set<String> changed = new HashSet<>(analytics.drainChangedNodes());
+                final Set<String> names = new HashSet<>(previousComponents.keySet());
+                names.addAll(cyclicComponents.keySet());
+                for (String name : names) {
+                    if (!Objects.equals(previousComponents.get(name), cyclicComponents.get(name)))
+                        assertTrue(changed.contains(name), "Change of " + name + " at step " + step + " of graph " + seed);
+                }
+            }
+        }
+        assertTrue(removalsInCycles > 0);
+    }
+
+    // The incremental analytics agree with Tarjan's algorithm on the edges left in the graph, whose cyclic
+    // components are returned by node
+    private static Map<String, Set<String>> assertSameComponents(IncrementalAnalytics analytics, List<String[]> added, String message) {
+        final Set<List<String>> edges = new HashSet<>();
+        for (String[] edge : added)
+            edges.add(List.of(edge[0], edge[1]));
+        final Digraph snapshot = analytics.snapshot();
+        assertEquals(edges.size(), analytics.edgeCount(), message);
+        assertEquals(edges.size(), snapshot.edgeCount(), message);
+
+        final StronglyConnectedComponents components = StronglyConnectedComponents.of(snapshot);
+        final Map<String, Set<String>> expected = new HashMap<>();
+        for (int node = 0; node < snapshot.nodeCount(); node++) {
+            final int component = components.componentOf(node);
+            final Set<String> members = new HashSet<>();
+            for (int member : components.members(component))
+                members.add(snapshot.nameOf(member));
+            if (components.isCyclic(component))
+                expected.put(snapshot.nameOf(node), members);
+            assertEquals(components.isCyclic(component), analytics.isInCycle(snapshot.nameOf(node)),
+                    "Cycle of " + snapshot.nameOf(node) + " at " + message);
+        }
+        for (List<String> edge : edges) {
+            // A self-loop is a cycle of its own
+            final boolean inCycle = edge.get(0).equals(edge.get(1))
+                    || expected.containsKey(edge.get(0)) && expected.get(edge.get(0)).contains(edge.get(1));
+            assertEquals(inCycle, analytics.isInCycle(edge.get(0), edge.get(1)), "Cycle of " + edge + " at " + message);
+        }
+
+        final Map<String, Set<String>> actual = new HashMap<>();
+        for (List<String> component : analytics.getCyclicComponents()) {
+            for (String name : component)
+                actual.put(name, new HashSet<>(component));
+        }
+        assertEquals(expected, actual, "Cyclic components at " + message);
+        assertEquals(expected.size(), analytics.getCyclicNodeCount(), message);
+        return expected;
+    }
+
+    // A random graph of up to MAX_NODES nodes, from a sorted list of edges with self-loops and duplicates
+    private static Digraph randomGraph(Random random) {
+        final int nodeCount = 1 + random.nextInt(MAX_NODES);
+        final String[] names = new String[nodeCount];
+        for (int node = 0; node < nodeCount; node++)
+            names[node] = "n" + node;
+
+        final int edgeCount = random.nextInt(nodeCount * nodeCount + 1);
+        final long[] edges = new long[edgeCount];
+        for (int i = 0; i < edgeCount; i++)
+            edges[i] = (long) random.nextInt(nodeCount) << 32 | random.nextInt(nodeCount);
+        Arrays.sort(edges);
+        return Digraph.fromSortedEdges(names, edges, edgeCount);
+    }
+
+    // reaches[from][to] if there is a path of at least one edge from a node to another, found by a breadth-first search
+    private static boolean[][] reachability(Digraph graph) {
+        final boolean[][] reaches = new boolean[graph.nodeCount()][graph.nodeCount()];
+        for (int start = 0; start < graph.nodeCount(); start++) {
+            final int[] queue = new int[graph.nodeCount()];
+            int head = 0;
+            int tail = 0;
+            for (int edge = graph.edgeStart(start); edge < graph.edgeEnd(start); edge++) {
+                if (!reaches[start][graph.target(edge)]) {
+                    reaches[start][graph.target(edge)] = true;
+                    queue[tail++] = graph.target(edge);
+                }
+            }
+            while (head < tail) {
+                final int node = queue[head++];
+                for (int edge = graph.edgeStart(node); edge < graph.edgeEnd(node); edge++) {
+                    if (!reaches[start][graph.target(edge)]) {
+                        reaches[start][graph.target(edge)] = true;
+                        queue[tail++] = graph.target(edge);
+                    }
+                }
+            }
+        }
+        return reaches;
+    }
+}
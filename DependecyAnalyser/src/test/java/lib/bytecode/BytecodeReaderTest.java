@@ -0,0 +1,142 @@
+package lib.bytecode;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compiles fixture classes with the compiler of the running JDK and reads their class files: the names of the nested,
+ * inner, anonymous and local classes, and the types each class file references, without the types the compiler
+ * generates for lambdas and string concatenations.
+ */
+class BytecodeReaderTest {
+    private static final String OUTER = "package fixture;\n"
+            + "import java.util.List;\n"
+            + "import java.util.Map;\n"
+            + "public class Outer<T extends Comparable<T>> {\n"
+            + "    private final Map<String, List<T>> values = new java.util.HashMap<>();\n"
+            + "    public static class Nested { java.time.Duration duration; }\n"
+            + "    public class Inner { java.util.concurrent.atomic.AtomicLong counter; }\n"
+            + "    Runnable task() { return () -> System.out.println(values.size() + \" values\"); }\n"
+            + "    Object anonymous() {\n"
+            + "        return new java.util.concurrent.Callable<java.math.BigInteger>() {\n"
+            + "            public java.math.BigInteger call() { return java.math.BigInteger.ONE; }\n"
+            + "        };\n"
+            + "    }\n"
+            + "    Object local() { class Local { java.util.UUID id; } return new Local(); }\n"
+            + "    String greeting(java.util.Optional<java.net.URI> uri) throws java.io.IOException { return \"Hello \" + uri; }\n"
+            + "}\n";
+
+    @TempDir
+    Path folder;
+
+    private Path classes;
+
+    @BeforeEach
+    void compileFixtures() throws IOException {
+        final Path sources = Files.createDirectories(this.folder.resolve("src/fixture"));
+        Files.writeString(sources.resolve("Outer.java"), OUTER);
+        Files.writeString(sources.resolve("package-info.java"), "package fixture;");
+        this.classes = Files.createDirectories(this.folder.resolve("classes"));
+
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertEquals(0, compiler.run(null, null, null, "-d", this.classes.toString(),
+                sources.resolve("Outer.java").toString(), sources.resolve("package-info.java").toString()));
+    }
+
+    @Test
+    void readsTheNamesAndTheReferencesOfEveryClassFile() throws IOException {
+        final Map<String, CompiledClass> read = new TreeMap<>();
+        for (Path classFile : BytecodeReader.classFiles(this.classes))
+            read.put(this.classes.relativize(classFile).toString(), BytecodeReader.readClassFile(classFile));
+
+        // The package descriptor is not a class
+        assertEquals(List.of("fixture/Outer$1.class", "fixture/Outer$1Local.class", "fixture/Outer$Inner.class",
+                "fixture/Outer$Nested.class", "fixture/Outer.class"), new ArrayList<>(read.keySet()));
+
+        final CompiledClass outer = read.get("fixture/Outer.class");
+        assertEquals("fixture.Outer", outer.getName());
+        assertEquals("fixture", outer.getPackageName());
+        assertEquals(Set.of("java.io.IOException", "java.io.PrintStream", "java.lang.Comparable", "java.lang.Object",
+                "java.lang.Runnable", "java.lang.String", "java.lang.System", "java.net.URI", "java.util.HashMap",
+                "java.util.List", "java.util.Map", "java.util.Optional"), outer.getReferencedTypes());
+
+        final CompiledClass nested = read.get("fixture/Outer$Nested.class");
+        assertEquals("fixture.Outer.Nested", nested.getName());
+        assertEquals("Outer.Nested", nested.getSimpleName());
+        assertEquals("fixture.Outer", nested.getTopLevelName());
+        assertEquals(Set.of("fixture.Outer", "java.lang.Object", "java.time.Duration"), nested.getReferencedTypes());
+
+        final CompiledClass inner = read.get("fixture/Outer$Inner.class");
+        assertEquals("fixture.Outer.Inner", inner.getName());
+        assertEquals(Set.of("fixture.Outer", "java.lang.Object", "java.util.concurrent.atomic.AtomicLong"), inner.getReferencedTypes());
+
+        // Anonymous and local classes are part of the class whose source contains them
+        final CompiledClass anonymous = read.get("fixture/Outer$1.class");
+        assertEquals("fixture.Outer", anonymous.getName());
+        assertEquals(Set.of("java.lang.Exception", "java.lang.Object", "java.math.BigInteger", "java.util.concurrent.Callable"),
+                anonymous.getReferencedTypes());
+        final CompiledClass local = read.get("fixture/Outer$1Local.class");
+        assertEquals("fixture.Outer", local.getName());
+        assertEquals(Set.of("java.lang.Object", "java.util.UUID"), local.getReferencedTypes());
+    }
+
+    @Test
+    void readsTheBaseVersionOfTheClassesOfAJar() throws IOException {
+        final Path jar = this.folder.resolve("fixture.jar");
+        try (final JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+            add(out, "fixture/Outer.class", this.classes.resolve("fixture/Outer.class"));
+            add(out, "fixture/Outer$Nested.class", this.classes.resolve("fixture/Outer$Nested.class"));
+            add(out, "META-INF/versions/21/fixture/Outer.class", this.classes.resolve("fixture/Outer.class"));
+        }
+
+        final List<String> names = new ArrayList<>();
+        for (CompiledClass compiledClass : BytecodeReader.readJar(jar))
+            names.add(compiledClass.getName());
+        assertEquals(List.of("fixture.Outer.Nested", "fixture.Outer"), names);
+    }
+
+    @Test
+    void rejectsTheInvalidClassFiles() throws IOException {
+        final byte[] bytes = Files.readAllBytes(this.classes.resolve("fixture/Outer.class"));
+
+        final IllegalArgumentException truncated = assertThrows(IllegalArgumentException.class,
+                () -> ClassFileParser.parse(ByteBuffer.wrap(bytes, 0, bytes.length / 2).slice()));
+        assertEquals("Truncated class file", truncated.getMessage());
+
+        final Path notAClass = Files.writeString(this.folder.resolve("Text.class"), "Not a class file at all");
+        final IllegalArgumentException invalid = assertThrows(IllegalArgumentException.class,
+                () -> BytecodeReader.readClassFile(notAClass));
+        assertTrue(invalid.getMessage().endsWith("Text.class: Not a class file"), invalid.getMessage());
+
+        assertTrue(BytecodeReader.isClassFile(notAClass));
+        assertFalse(BytecodeReader.isClassFile(this.classes.resolve("fixture/package-info.class")));
+        assertFalse(BytecodeReader.isClassFile(this.folder.resolve("module-info.class")));
+    }
+
+    private static void add(JarOutputStream out, String name, Path classFile) throws IOException {
+        out.putNextEntry(new JarEntry(name));
+        Files.copy(classFile, (OutputStream) out);
+        out.closeEntry();
+    }
+}
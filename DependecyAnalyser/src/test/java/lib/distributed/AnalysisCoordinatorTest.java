@@ -0,0 +1,166 @@
+package lib.distributed;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import lib.DependencyAnalyserLib;
+import lib.reports.ClassDepsReport;
+import lib.reports.ModuleDepsReport;
+import lib.reports.PackageDepsReport;
+import lib.reports.ProjectDepsReport;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Analyses a project of two modules with workers deployed in this JVM, and compares the report with the one of a
+ * single {@link DependencyAnalyserLib}.
+ */
+@ExtendWith(VertxExtension.class)
+class AnalysisCoordinatorTest {
+    private static final int BATCH_SIZE = 3;
+
+    @TempDir
+    Path project;
+
+    @BeforeEach
+    void writeProject() throws IOException {
+        for (int i = 0; i < 5; i++) {
+            write("api/src/main/java/acme/api/Api" + i + ".java", "package acme.api;\n"
+                    + "import java.util.List;\n"
+                    + "public interface Api" + i + " { List<Api" + (i + 1) % 5 + "> next(); }");
+            write("core/src/main/java/acme/core/Core" + i + ".java", "package acme.core;\n"
+                    + "import acme.api.Api" + i + ";\n"
+                    + "public class Core" + i + " implements Api" + i + " { Core" + (i + 1) % 5 + " core; }");
+        }
+        write("core/src/test/java/acme/core/CoreTest.java", "package acme.core; class CoreTest { Core0 core; }");
+    }
+
+    @Test
+    void reportsTheModulesOfASingleAnalyser(Vertx vertx) throws Exception {
+        final ProjectDepsReport expected = await(new DependencyAnalyserLib(vertx).getProjectDependencies(this.project));
+
+        final ProjectDepsReport report = await(DistributedAnalysis.deployWorkers(vertx, 2)
+                .compose(id -> new AnalysisCoordinator(vertx, BATCH_SIZE).getProjectDependencies(this.project)));
+
+        assertEquals(List.of("api", "core"), namesOf(report.getModules()));
+        assertEquals(modulesOf(expected), modulesOf(report));
+    }
+
+    @Test
+    void handsOutAgainTheBatchesNotAnalysedInTime(Vertx vertx) throws Exception {
+        final ProjectDepsReport expected = await(new DependencyAnalyserLib(vertx).getProjectDependencies(this.project));
+        final DependencyAnalyserLib analyser = new DependencyAnalyserLib(vertx);
+        final AtomicInteger stalled = new AtomicInteger();
+
+        // A worker that answers its first batch once it was handed out again, with no report, then analyses the others
+        vertx.eventBus().<JsonObject>consumer(AnalysisWorkerVerticle.ADDRESS, announcement -> {
+            final String batches = announcement.body().getString("batches");
+            vertx.eventBus().<JsonObject>request(batches, new JsonObject()).onSuccess(first -> {
+                stalled.incrementAndGet();
+                vertx.setTimer(600, id -> pull(vertx, analyser, batches, new JsonObject()
+                        .put("batch", first.body().getInteger("batch"))
+                        .put("reports", new JsonArray())));
+            });
+        });
+
+        final ProjectDepsReport report = await(new AnalysisCoordinator(vertx, BATCH_SIZE, 200).getProjectDependencies(this.project));
+
+        assertEquals(1, stalled.get());
+        assertEquals(modulesOf(expected), modulesOf(report));
+    }
+
+    @Test
+    void failsOnAReplyWithoutAReportPerFile(Vertx vertx) {
+        vertx.eventBus().<JsonObject>consumer(AnalysisWorkerVerticle.ADDRESS, announcement -> {
+            final String batches = announcement.body().getString("batches");
+            vertx.eventBus().<JsonObject>request(batches, new JsonObject()).onSuccess(first ->
+                    vertx.eventBus().request(batches, new JsonObject()
+                            .put("batch", first.body().getInteger("batch"))
+                            .put("reports", new JsonArray().add(new JsonObject()))));
+        });
+
+        final ExecutionException failure = assertThrows(ExecutionException.class,
+                () -> await(new AnalysisCoordinator(vertx, BATCH_SIZE).getProjectDependencies(this.project)));
+
+        assertInstanceOf(IllegalStateException.class, failure.getCause());
+        assertTrue(failure.getCause().getMessage().contains("of 3 files was answered with 1 reports"), failure.getCause().getMessage());
+    }
+
+    // The protocol of AnalysisWorkerVerticle, one batch at a time
+    private static void pull(Vertx vertx, DependencyAnalyserLib analyser, String batches, JsonObject previousBatch) {
+        vertx.eventBus().<JsonObject>request(batches, previousBatch).onSuccess(reply -> {
+            final JsonArray files = reply.body().getJsonArray("files");
+            if (reply.body().getBoolean("wait", false)) {
+                pull(vertx, analyser, batches, new JsonObject());
+                return;
+            }
+            if (files == null)
+                return;
+
+            final List<Future<ClassDepsReport>> reports = new ArrayList<>();
+            for (int i = 0; i < files.size(); i++)
+                reports.add(analyser.getClassDependencies(Path.of(files.getString(i))));
+            Future.all(reports).onSuccess(done -> {
+                final JsonArray reportsJson = new JsonArray();
+                reports.forEach(report -> reportsJson.add(ReportCodec.toJson(report.result())));
+                pull(vertx, analyser, batches, new JsonObject()
+                        .put("batch", reply.body().getInteger("batch"))
+                        .put("reports", reportsJson));
+            });
+        });
+    }
+
+    // [module -> [class -> its dependencies, as written then qualified]]
+    private static Map<String, Map<String, List<Set<String>>>> modulesOf(ProjectDepsReport report) {
+        final Map<String, Map<String, List<Set<String>>>> modules = new LinkedHashMap<>();
+        for (ModuleDepsReport module : report.getModules()) {
+            final Map<String, List<Set<String>>> classes = new TreeMap<>();
+            for (PackageDepsReport packageReport : module.getPackages()) {
+                for (ClassDepsReport classReport : packageReport.getClassesAndInterfaces())
+                    classes.put(classReport.getQualifiedName(), List.of(new HashSet<>(classReport.getDependencies()),
+                            new HashSet<>(classReport.getQualifiedDependencies())));
+            }
+            modules.put(module.getModuleName(), classes);
+        }
+        return modules;
+    }
+
+    private static List<String> namesOf(List<ModuleDepsReport> modules) {
+        final List<String> names = new ArrayList<>();
+        modules.forEach(module -> names.add(module.getModuleName()));
+        return names;
+    }
+
+    private void write(String file, String source) throws IOException {
+        final Path path = this.project.resolve(file);
+        Files.createDirectories(path.getParent());
+        Files.writeString(path, source);
+    }
+
+    private static <T> T await(Future<T> future) throws Exception {
+        return future.toCompletionStage().toCompletableFuture().get(30, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,81 @@
+package lib.filter;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The precedence of the rules of a filter, type over package over glob, and the number of names each rule decided.
+ */
+class DependencyFilterTest {
+    private static final String CONFIGURATION = "# Rules of the test\n"
+            + "exclude glob *Test*\n"
+            + "include glob com.acme.*Test\n"
+            + "\n"
+            + "exclude package com.acme.\n"
+            + "include package com.acme.api.   # the longest prefix wins\n"
+            + "include type com.acme.Main\n"
+            + "exclude type com.acme.api.Internal\n";
+
+    @Test
+    void appliesTheTypesThenThePackagesThenTheGlobs() {
+        final DependencyFilter filter = DependencyFilter.parse(CONFIGURATION);
+
+        // Types win over packages
+        assertTrue(filter.test("com.acme.Main"));
+        assertFalse(filter.test("com.acme.api.Internal"));
+        // The longest package wins over shorter ones and over globs
+        assertFalse(filter.test("com.acme.Other"));
+        assertTrue(filter.test("com.acme.api.Client"));
+        assertTrue(filter.test("com.acme.api.ClientTest"));
+        // The first matching glob wins over the following ones
+        assertFalse(filter.test("org.acme.FilterTest"));
+        assertFalse(filter.test("com.acmeTest"));
+        // No rule includes
+        assertTrue(filter.test("org.acme.Filter"));
+        assertTrue(filter.test("com.acme"));
+    }
+
+    @Test
+    void countsTheNamesEveryRuleDecided() {
+        final DependencyFilter filter = DependencyFilter.parse(CONFIGURATION);
+        for (String name : new String[]{"com.acme.Main", "com.acme.Main", "com.acme.api.Client", "com.acme.Other",
+                "org.acme.FilterTest", "org.acme.Filter", "String"})
+            filter.test(name);
+
+        assertEquals(1, ruleOf(filter, "*Test*").getMatches());
+        assertEquals(0, ruleOf(filter, "com.acme.*Test").getMatches());
+        assertEquals(1, ruleOf(filter, "com.acme.").getMatches());
+        assertEquals(1, ruleOf(filter, "com.acme.api.").getMatches());
+        assertEquals(2, ruleOf(filter, "com.acme.Main").getMatches());
+        assertEquals(0, ruleOf(filter, "com.acme.api.Internal").getMatches());
+        assertEquals(2, filter.getUnmatched());
+        assertEquals("exclude glob *Test*: 1\n"
+                + "exclude package com.acme.: 1\n"
+                + "include package com.acme.api.: 1\n"
+                + "include type com.acme.Main: 2\n"
+                + "no rule: 2", filter.getStatistics());
+    }
+
+    @Test
+    void rejectsTheInvalidRules() {
+        final IllegalArgumentException action = assertThrows(IllegalArgumentException.class,
+                () -> DependencyFilter.parse("include type A\nignore type B"));
+        assertEquals("Invalid filter rule at line 2: ignore type B", action.getMessage());
+
+        final IllegalArgumentException kind = assertThrows(IllegalArgumentException.class,
+                () -> DependencyFilter.parse("exclude class B"));
+        assertEquals("Invalid filter rule kind at line 1: class", kind.getMessage());
+    }
+
+    private static FilterRule ruleOf(DependencyFilter filter, String pattern) {
+        for (FilterRule rule : filter.getRules()) {
+            if (rule.getPattern().equals(pattern))
+                return rule;
+        }
+        throw new AssertionError("No rule " + pattern);
+    }
+}
@@ -0,0 +1,112 @@
+package lib.parser;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.type.ClassOrInterfaceType;
+import com.github.javaparser.symbolsolver.JavaSymbolSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Parses and resolves the sources of the project from many threads at the same time, and compares every result with
+ * the one of a single thread: a parser or a symbol solver shared between threads corrupts the results or fails.
+ */
+class ParserPoolTest {
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 3;
+
+    private static List<String> sources;
+
+    @BeforeAll
+    static void readSources() throws IOException {
+        try (final Stream<Path> paths = Files.walk(Path.of("src/main/java"))) {
+            sources = paths.filter(path -> path.toString().endsWith(".java"))
+                    .sorted()
+                    .map(path -> {
+                        try {
+                            return Files.readString(path);
+                        } catch (IOException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    })
+                    .collect(Collectors.toList());
+        }
+        assertFalse(sources.isEmpty());
+    }
+
+    @Test
+    void parsesOnPlatformThreadsAsOnASingleThread() throws Exception {
+        final List<String> expected = analyse(newPool(), Executors.newSingleThreadExecutor(), 1);
+        final List<String> actual = analyse(newPool(), Executors.newFixedThreadPool(THREADS), ROUNDS);
+        assertResults(expected, actual);
+    }
+
+    @Test
+    void parsesOnVirtualThreadsAsOnASingleThread() throws Exception {
+        final List<String> expected = analyse(newPool(), Executors.newSingleThreadExecutor(), 1);
+        final List<String> actual = analyse(newPool(), Executors.newVirtualThreadPerTaskExecutor(), ROUNDS);
+        assertResults(expected, actual);
+    }
+
+    private static ParserPool newPool() {
+        return new ParserPool(() -> ParserPool.defaultConfiguration()
+                .setSymbolResolver(new JavaSymbolSolver(new ReflectionTypeSolver())));
+    }
+
+    // Every source analysed rounds times, in a different order every round, the results in the order of the sources
+    private static List<String> analyse(ParserPool parsers, ExecutorService executor, int rounds) throws Exception {
+        try {
+            final List<Integer> indexes = new ArrayList<>();
+            for (int round = 0; round < rounds; round++) {
+                final List<Integer> roundIndexes = new ArrayList<>();
+                for (int i = 0; i < sources.size(); i++)
+                    roundIndexes.add(i);
+                Collections.shuffle(roundIndexes, new Random(round));
+                indexes.addAll(roundIndexes);
+            }
+
+            final List<Future<String>> futures = new ArrayList<>();
+            for (int index : indexes)
+                futures.add(executor.submit(() -> analyse(parsers, sources.get(index))));
+
+            final String[] results = new String[sources.size() * rounds];
+            for (int i = 0; i < indexes.size(); i++)
+                results[(i / sources.size()) * sources.size() + indexes.get(i)] = futures.get(i).get(1, TimeUnit.MINUTES);
+            return Arrays.asList(results);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // The printed AST and the resolution of every type, so that a shared solver shows up as well as a shared parser
+    private static String analyse(ParserPool parsers, String source) {
+        final CompilationUnit cu = parsers.parse(source);
+        final StringBuilder result = new StringBuilder(cu.toString());
+        for (ClassOrInterfaceType type : cu.findAll(ClassOrInterfaceType.class)) {
+            String resolved;
+            try {
+                resolved = type.resolve().describe();
+            } catch (Exception e) {
+                resolved = "unresolved";
+            }
+            result.append('\n').append(type.getNameWithScope()).append(" -> ").append(resolved);
+        }
+        return result.toString();
+    }
+
+    private static void assertResults(List<String> expected, List<String> actual) {
+        for (int i = 0; i < actual.size(); i++)
+            assertEquals(expected.get(i % expected.size()), actual.get(i), "Different result for source " + i % expected.size());
+    }
+}
@@ -0,0 +1,100 @@
+package lib.parser;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.type.ClassOrInterfaceType;
+import com.github.javaparser.ast.type.TypeParameter;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares what the lexer finds with the types of the AST of a full parse: generics, nested types, comments, string,
+ * text block and char literals must neither hide nor add a type.
+ */
+class TypeTokenLexerTest {
+    private static final String GENERICS = "package p;\n"
+            + "import java.util.List;\n"
+            + "import java.util.Map;\n"
+            + "import java.util.function.Function;\n"
+            + "public class Generic<T extends Comparable<T>> {\n"
+            + "    private Map<String, List<Map.Entry<Integer, T>>> entries;\n"
+            + "    <R> Function<? super T, ? extends R> mapper(List<? extends Number> numbers) { return null; }\n"
+            + "    Object[] array(List<int[]> arrays) throws java.io.IOException { return new java.util.ArrayList<Long>().toArray(); }\n"
+            + "    static class Nested<K> implements Iterable<K> {\n"
+            + "        public java.util.Iterator<K> iterator() { return null; }\n"
+            + "        interface Deeper { Map<K, Generic<Double>> map(); }\n"
+            + "    }\n"
+            + "}\n";
+
+    private static final String COMMENTS_AND_STRINGS = "package p;\n"
+            + "/** A {@link Generic} in a javadoc, Set<Foo> in a comment */\n"
+            + "@SuppressWarnings(\"Unused<Annotated>\")\n"
+            + "public class Commented {\n"
+            + "    // Ignored ignored = new Ignored();\n"
+            + "    String text = \"Hidden<Type> and \\\"Escaped\\\" Quotes\"; /* Commented { Out } */ Thread thread;\n"
+            + "    char quote = '\"'; char brace = '{';\n"
+            + "    String block = \"\"\"\n"
+            + "        Inside \"\"Block\"\" { }\n"
+            + "        \"\"\";\n"
+            + "    /* Another Comment */ StringBuilder builder;\n"
+            + "    class Later { Runnable runnable; }\n"
+            + "}\n";
+
+    @Test
+    void findsTheTypesOfTheFullParseInGenerics() {
+        assertSameTypes(GENERICS);
+
+        final ShallowSource source = TypeTokenLexer.scan(GENERICS);
+        assertEquals(List.of("Generic", "Generic.Nested", "Generic.Nested.Deeper"), source.getDeclaredTypes());
+        assertEquals(Set.of("java.util.Map", "p.Generic", "java.lang.Double"), source.getReferencedTypes("Generic.Nested.Deeper"));
+    }
+
+    @Test
+    void skipsTheCommentsAndTheLiterals() {
+        assertSameTypes(COMMENTS_AND_STRINGS);
+
+        final ShallowSource source = TypeTokenLexer.scan(COMMENTS_AND_STRINGS);
+        assertEquals(List.of("Commented", "Commented.Later"), source.getDeclaredTypes());
+        assertEquals(Set.of("java.lang.Runnable"), source.getReferencedTypes("Commented.Later"));
+    }
+
+    // The names written in the source and the declared types agree with those of the AST
+    private static void assertSameTypes(String code) {
+        final CompilationUnit unit = new JavaParser(ParserPool.defaultConfiguration()).parse(code).getResult().orElseThrow();
+        final ShallowSource source = TypeTokenLexer.scan(code);
+
+        assertEquals(writtenTypes(unit), source.getReferencedNames());
+        assertEquals(unit.getPackageDeclaration().map(declaration -> declaration.getNameAsString()).orElse(""),
+                source.getPackageName());
+        final List<String> declaredTypes = new ArrayList<>();
+        for (TypeDeclaration<?> type : unit.findAll(TypeDeclaration.class))
+            declaredTypes.add(type.getFullyQualifiedName().orElseThrow().substring(source.getPackageName().length() + 1));
+        assertEquals(declaredTypes, source.getDeclaredTypes());
+    }
+
+    // The outermost class types, as written, that do not name a type parameter
+    private static Set<String> writtenTypes(CompilationUnit unit) {
+        final Set<String> typeParameters = new HashSet<>();
+        for (TypeParameter parameter : unit.findAll(TypeParameter.class))
+            typeParameters.add(parameter.getNameAsString());
+
+        final Set<String> types = new HashSet<>();
+        for (ClassOrInterfaceType type : unit.findAll(ClassOrInterfaceType.class)) {
+            final Optional<Node> parent = type.getParentNode();
+            final boolean isScope = parent.isPresent() && parent.get() instanceof ClassOrInterfaceType
+                    && ((ClassOrInterfaceType) parent.get()).getScope().filter(scope -> scope == type).isPresent();
+            if (!isScope && !typeParameters.contains(type.getNameWithScope()))
+                types.add(type.getNameWithScope());
+        }
+        return types;
+    }
+}
@@ -0,0 +1,68 @@
+package lib.project;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Discovers the modules and the source roots of projects written in a temporary folder.
+ */
+class ProjectLayoutTest {
+    @TempDir
+    Path project;
+
+    @Test
+    void findsTheModulesOfTheBuildAndOfItsProfiles() throws IOException {
+        writePom("", "<modules><module>core</module></modules>"
+                + "<profiles><profile><id>extra</id><modules><module>extra</module></modules></profile></profiles>"
+                + "<build><plugins><plugin><configuration><module>tools</module></configuration></plugin></plugins></build>");
+        writePom("core", "");
+        writePom("extra", "");
+        writePom("tools", "");
+        for (String sourceRoot : List.of("core/src/main/java", "core/src/test/java", "extra/src/main/java",
+                "extra/src/it/java", "tools/src/main/java"))
+            Files.createDirectories(this.project.resolve(sourceRoot));
+
+        final ProjectLayout layout = ProjectLayout.discover(this.project);
+
+        assertEquals(List.of("core", "extra"), names(layout));
+        assertEquals(List.of(this.project.resolve("core/src/main/java"), this.project.resolve("core/src/test/java")),
+                layout.getModules().get(0).getSourceRoots());
+        assertEquals(List.of(this.project.resolve("core/src/test/java")), layout.getModules().get(0).getTestSourceRoots());
+        assertEquals(List.of(this.project.resolve("extra/src/it/java")), layout.getModules().get(1).getTestSourceRoots());
+    }
+
+    @Test
+    void leavesTheTestsOutOrApart() throws IOException {
+        for (String sourceRoot : List.of("app/src/main/java", "app/src/test/java", "app/src/integrationTest/java",
+                "fixtures/src/test/java"))
+            Files.createDirectories(this.project.resolve(sourceRoot));
+
+        final ProjectLayout layout = ProjectLayout.discover(this.project);
+
+        assertEquals(List.of("app", "fixtures"), names(layout));
+        assertEquals(List.of("app"), names(layout.withoutTests()));
+        assertEquals(List.of(this.project.resolve("app/src/main/java")), layout.withoutTests().getSourceRoots());
+        assertEquals(List.of("app", "app:test", "fixtures:test"), names(layout.withSeparateTests()));
+        assertEquals(List.of(this.project.resolve("app/src/integrationTest/java"), this.project.resolve("app/src/test/java")),
+                layout.withSeparateTests().getModules().get(1).getSourceRoots());
+    }
+
+    private void writePom(String folder, String content) throws IOException {
+        final Path pom = this.project.resolve(folder).resolve("pom.xml");
+        Files.createDirectories(pom.getParent());
+        Files.writeString(pom, "<project><artifactId>" + (folder.isEmpty() ? "parent" : folder) + "</artifactId>"
+                + content + "</project>");
+    }
+
+    private static List<String> names(ProjectLayout layout) {
+        return layout.getModules().stream().map(ProjectModule::getName).collect(Collectors.toList());
+    }
+}
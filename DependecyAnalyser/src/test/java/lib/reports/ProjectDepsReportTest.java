@@ -0,0 +1,119 @@
+package lib.reports;
+
+import lib.analytics.Digraph;
+import lib.graph.DependencyGraphModel;
+import lib.graph.SymbolTable;
+import lib.watch.Edge;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Queries the class graph of project reports built from reports of classes of different packages.
+ */
+class ProjectDepsReportTest {
+
+    @Test
+    void keepsClassesOfTheSameNameApart() {
+        final ClassDepsReport modelItem = new ClassDepsReport("Item", "com.acme.model", Set.of("com.acme.util.Strings"));
+        final ClassDepsReport uiItem = new ClassDepsReport("Item", "com.acme.ui", Set.of());
+        final ClassDepsReport cart = new ClassDepsReport("Cart", "com.acme", Set.of("com.acme.model.Item"));
+        final ClassDepsReport view = new ClassDepsReport("View", "com.acme", Set.of("com.acme.ui.Item"));
+        final ProjectDepsReport report = new ProjectDepsReport("acme", Set.of(
+                new PackageDepsReport("com.acme.model", Set.of(modelItem)),
+                new PackageDepsReport("com.acme.ui", Set.of(uiItem)),
+                new PackageDepsReport("com.acme", Set.of(cart, view))));
+
+        assertEquals(List.of("com.acme.Cart"), qualifiedNames(report.getUsers("com.acme.model.Item")));
+        assertEquals(List.of("com.acme.View"), qualifiedNames(report.getUsers("com.acme.ui.Item")));
+        assertEquals(List.of("com.acme.model.Item", "com.acme.Cart"),
+                qualifiedNames(report.getImpact("com.acme.util.Strings")));
+        assertEquals(List.of(), report.getUsers("Item"));
+    }
+
+    @Test
+    void keepsEveryReportOfAClass() {
+        final ClassDepsReport mainItem = new ClassDepsReport("Item", "com.acme", Set.of("com.acme.util.Strings"));
+        final ClassDepsReport testItem = new ClassDepsReport("Item", "com.acme", Set.of("com.acme.util.Strings", "org.junit.Test"));
+        final ClassDepsReport cart = new ClassDepsReport("Cart", "com.acme", Set.of("com.acme.Item"));
+        final ProjectDepsReport report = new ProjectDepsReport("acme", List.of(
+                new ModuleDepsReport("main", Set.of(new PackageDepsReport("com.acme", Set.of(mainItem, cart)))),
+                new ModuleDepsReport("test", Set.of(new PackageDepsReport("com.acme", Set.of(testItem))))));
+
+        // The reports are told apart by their dependencies: the project keeps copies of them
+        assertEquals(List.of(Set.of("com.acme.util.Strings"), Set.of("com.acme.util.Strings", "org.junit.Test")),
+                dependencies(report.getUsers("com.acme.util.Strings")));
+        assertEquals(List.of(Set.of("com.acme.util.Strings", "org.junit.Test")), dependencies(report.getUsers("org.junit.Test")));
+        assertEquals(List.of("com.acme.Cart"), qualifiedNames(report.getUsers("com.acme.Item")));
+        assertEquals(List.of(Set.of("com.acme.util.Strings", "org.junit.Test"), Set.of("com.acme.Item")),
+                dependencies(report.getImpact("org.junit.Test")));
+        assertEquals(List.of("com.acme.Item", "com.acme.Item", "com.acme.Cart"),
+                qualifiedNames(report.getImpact("com.acme.util.Strings")));
+    }
+
+    @Test
+    void keepsEveryEdgeOfAClassReportedTwiceOnce() {
+        final ProjectDepsReport report = new ProjectDepsReport("acme", List.of(
+                new ModuleDepsReport("main", Set.of(new PackageDepsReport("com.acme", Set.of(
+                        new ClassDepsReport("Item", "com.acme", Set.of("com.acme.util.Strings")))))),
+                new ModuleDepsReport("test", Set.of(new PackageDepsReport("com.acme", Set.of(
+                        new ClassDepsReport("Item", "com.acme", Set.of("com.acme.util.Strings", "org.junit.Test"))))))));
+
+        final DependencyGraphModel graph = report.getDependencyGraph();
+        final int item = graph.nodeOf("com.acme.Item");
+        final List<String> targets = new ArrayList<>();
+        for (int edge = graph.edgeStart(item); edge < graph.edgeEnd(item); edge++)
+            targets.add(graph.nameOf(graph.target(edge)));
+        assertEquals(Set.of("com.acme.util.Strings", "org.junit.Test"), Set.copyOf(targets));
+        assertEquals(2, targets.size());
+        assertEquals(2, graph.edgeCount());
+        assertEquals(1, graph.inDegree(graph.nodeOf("com.acme.util.Strings")));
+        assertEquals(2, Digraph.ofClasses(graph).edgeCount());
+    }
+
+    @Test
+    void leavesAmbiguousClassesOutOfTheModuleDependencies() {
+        final ProjectDepsReport report = new ProjectDepsReport("acme", List.of(
+                new ModuleDepsReport("a", Set.of(new PackageDepsReport("com.acme", Set.of(
+                        new ClassDepsReport("Shared", "com.acme", Set.of()),
+                        new ClassDepsReport("A", "com.acme", Set.of("com.acme.Shared")))))),
+                new ModuleDepsReport("b", Set.of(new PackageDepsReport("com.acme", Set.of(
+                        new ClassDepsReport("Shared", "com.acme", Set.of()),
+                        new ClassDepsReport("B", "com.acme", Set.of()))))),
+                new ModuleDepsReport("c", Set.of(new PackageDepsReport("com.acme.c", Set.of(
+                        new ClassDepsReport("C", "com.acme.c", Set.of("com.acme.Shared", "com.acme.B"))))))));
+
+        assertEquals(List.of(new Edge("c", "b")), report.getModuleDependencies());
+    }
+
+    @Test
+    void sharesTheSymbolTableOfItsReports() {
+        final SymbolTable symbols = new SymbolTable();
+        final ClassDepsReport item = new ClassDepsReport(symbols, "Item", "com.acme", Set.of("com.acme.util.Strings"));
+        final ClassDepsReport cart = new ClassDepsReport(symbols, "Cart", "com.acme", Set.of("com.acme.Item"));
+        final int symbolsCount = symbols.size();
+
+        final ProjectDepsReport report = new ProjectDepsReport("acme", Set.of(
+                new PackageDepsReport("com.acme", Set.of(item, cart))));
+
+        // Neither the reports nor their names are copied
+        assertSame(symbols, report.getModules().get(0).getSymbols());
+        assertEquals(Set.of(item, cart), report.getPackage("com.acme").orElseThrow().getClassesAndInterfaces());
+        assertSame(item, item.in(symbols));
+        assertEquals(symbolsCount, symbols.size());
+    }
+
+    private static List<Set<String>> dependencies(List<ClassDepsReport> reports) {
+        return reports.stream().map(r -> Set.copyOf(r.getDependencies())).collect(Collectors.toList());
+    }
+
+    private static List<String> qualifiedNames(List<ClassDepsReport> reports) {
+        return reports.stream().map(ClassDepsReport::getQualifiedName).collect(Collectors.toList());
+    }
+}
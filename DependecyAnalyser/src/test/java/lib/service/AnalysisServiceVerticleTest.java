@@ -0,0 +1,135 @@
+package lib.service;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.RequestOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Serves a project of a temporary folder on a random port of the loopback interface.
+ */
+@ExtendWith(VertxExtension.class)
+class AnalysisServiceVerticleTest {
+    @TempDir
+    Path folder;
+
+    @Test
+    void streamsTheClassesOfAProject(Vertx vertx, VertxTestContext testContext) throws IOException {
+        final Path project = this.writeProject();
+
+        this.deploy(vertx)
+                .compose(port -> get(vertx, port, "/dependencies/project?path=" + encode(project), "localhost")
+                        .compose(first -> get(vertx, port, "/dependencies/project?path=" + encode(project), "localhost")
+                                .map(second -> List.of(first, second))))
+                .onComplete(testContext.succeeding(responses -> testContext.verify(() -> {
+                    // The first response is streamed from the analysis, the second from the cached report
+                    for (Response response : responses) {
+                        assertEquals(200, response.status);
+                        final List<JsonObject> lines = new ArrayList<>();
+                        for (String line : response.body.split("\n"))
+                            lines.add(new JsonObject(line));
+                        assertEquals(4, lines.size());
+                        assertEquals("project", lines.get(0).getString("project"));
+                        assertEquals(new JsonObject().put("packages", 1).put("classes", 2), lines.get(3));
+                    }
+                    testContext.completeNow();
+                })));
+    }
+
+    @Test
+    void refusesPathsOutsideTheRoots(Vertx vertx, VertxTestContext testContext) throws IOException {
+        final Path outside = Files.createDirectories(this.folder.resolve("outside"));
+        Files.writeString(outside.resolve("Secret.java"), "public class Secret { }");
+        final Path link = Files.createSymbolicLink(
+                Files.createDirectories(this.folder.resolve("root")).resolve("link"), outside);
+
+        this.deploy(vertx)
+                .compose(port -> get(vertx, port, "/dependencies/class?path=" + encode(outside.resolve("Secret.java")), "localhost")
+                        .compose(direct -> get(vertx, port, "/dependencies/class?path=" + encode(link.resolve("Secret.java")), "localhost")
+                                .map(linked -> List.of(direct.status, linked.status))))
+                .onComplete(testContext.succeeding(statuses -> testContext.verify(() -> {
+                    assertEquals(List.of(403, 403), statuses);
+                    testContext.completeNow();
+                })));
+    }
+
+    @Test
+    void refusesOtherHosts(Vertx vertx, VertxTestContext testContext) throws IOException {
+        final Path project = this.writeProject();
+
+        this.deploy(vertx)
+                .compose(port -> get(vertx, port, "/dependencies/project?path=" + encode(project), "attacker.example"))
+                .onComplete(testContext.succeeding(response -> testContext.verify(() -> {
+                    assertEquals(403, response.status);
+                    testContext.completeNow();
+                })));
+    }
+
+    @Test
+    void refusesToServeOnOtherAddresses(Vertx vertx, VertxTestContext testContext) {
+        vertx.deployVerticle(new AnalysisServiceVerticle(), new DeploymentOptions().setConfig(new JsonObject()
+                        .put("port", 0)
+                        .put("host", "0.0.0.0")))
+                .onComplete(testContext.failing(cause -> testContext.completeNow()));
+    }
+
+    private Path writeProject() throws IOException {
+        final Path sources = Files.createDirectories(this.folder.resolve("root/project/src/main/java/p"));
+        Files.writeString(sources.resolve("A.java"), "package p; public class A { B b; }");
+        Files.writeString(sources.resolve("B.java"), "package p; public class B { }");
+        return this.folder.resolve("root/project");
+    }
+
+    private Future<Integer> deploy(Vertx vertx) {
+        final AnalysisServiceVerticle service = new AnalysisServiceVerticle();
+        return vertx.deployVerticle(service, new DeploymentOptions().setConfig(new JsonObject()
+                        .put("port", 0)
+                        .put("roots", new JsonArray().add(this.folder.resolve("root").toString()))))
+                .map(id -> service.getPort());
+    }
+
+    private static Future<Response> get(Vertx vertx, int port, String uri, String host) {
+        return vertx.createHttpClient()
+                .request(new RequestOptions()
+                        .setMethod(HttpMethod.GET)
+                        .setHost("localhost")
+                        .setPort(port)
+                        .setURI(uri)
+                        .putHeader("Host", host + ":" + port))
+                .compose(request -> request.send())
+                .compose(response -> response.body().map(body -> new Response(response, body.toString())));
+    }
+
+    private static String encode(Path path) {
+        return URLEncoder.encode(path.toString(), StandardCharsets.UTF_8);
+    }
+
+    private static class Response {
+        private final int status;
+        private final String body;
+
+        private Response(HttpClientResponse response, String body) {
+            this.status = response.statusCode();
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package lib.snapshot;
+
+import lib.graph.SymbolTable;
+import lib.reports.ClassDepsReport;
+import lib.reports.PackageDepsReport;
+import lib.reports.ProjectDepsReport;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Writes snapshots and reads them back: every class, name and flag survives the round trip, names over the ASCII
+ * range and indexes of several varint bytes included, and a damaged file is rejected.
+ */
+class DependencySnapshotTest {
+    // Enough names for the indexes and their differences to take more than one varint byte
+    private static final int NAMES = 1000;
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void readsBackWhatWasWritten() throws IOException {
+        final Set<String> many = new HashSet<>();
+        for (int i = 0; i < NAMES; i++)
+            many.add("lib.generated.Type" + i);
+        final DependencySnapshot snapshot = new DependencySnapshot.Builder("projét")
+                .addClass("Émile", "été.ünïcode", List.of("Map", "Ωmega"), List.of("java.util.Map", "été.Ωmega"), false)
+                .addClass("Big", "lib.generated", many, true)
+                .addClass("Empty", "", List.of(), false)
+                .build();
+        final Path file = this.folder.resolve("nested/folder/snapshot.deps");
+        snapshot.write(file);
+
+        final DependencySnapshot read = DependencySnapshot.read(file);
+
+        assertEquals("projét", read.getProjectName());
+        assertEquals(snapshot.classCount(), read.classCount());
+        assertEquals(snapshot.dependencyCount(), read.dependencyCount());
+        for (int c = 0; c < read.classCount(); c++) {
+            assertEquals(snapshot.getClassName(c), read.getClassName(c));
+            assertEquals(snapshot.getPackageName(c), read.getPackageName(c));
+            assertEquals(snapshot.isApproximate(c), read.isApproximate(c));
+            assertEquals(snapshot.getDependencies(c), read.getDependencies(c));
+            assertEquals(snapshot.getQualifiedDependencies(c), read.getQualifiedDependencies(c));
+        }
+        assertEquals("été.ünïcode.Émile", read.getQualifiedName(0));
+        assertEquals(Set.of("java.util.Map", "été.Ωmega"), new HashSet<>(read.getQualifiedDependencies(0)));
+        assertEquals(many, new HashSet<>(read.getDependencies(1)));
+        assertTrue(read.isApproximate(1));
+        assertEquals(List.of(), read.getDependencies(2));
+        assertFalse(Files.exists(file.resolveSibling("snapshot.deps.tmp")));
+    }
+
+    @Test
+    void rebuildsTheReportOfAProject() throws IOException {
+        final SymbolTable symbols = new SymbolTable();
+        final ProjectDepsReport report = new ProjectDepsReport("project", Set.of(
+                new PackageDepsReport("a", Set.of(
+                        new ClassDepsReport(symbols, "A", "a", Set.of("B", "List"), Set.of("b.B", "java.util.List"), false),
+                        new ClassDepsReport(symbols, "A2", "a", Set.of("A"), Set.of("a.A"), true))),
+                new PackageDepsReport("b", Set.of(
+                        new ClassDepsReport(symbols, "B", "b", Set.of(), Set.of(), false)))));
+        final Path file = this.folder.resolve("report.deps");
+        DependencySnapshot.of(report).write(file);
+
+        final ProjectDepsReport read = DependencySnapshot.read(file).toProjectReport(new SymbolTable());
+
+        assertEquals("project", read.getProjectName());
+        assertEquals(classesOf(report), classesOf(read));
+    }
+
+    @Test
+    void rejectsADamagedFile() throws IOException {
+        final Path file = this.folder.resolve("damaged.deps");
+        new DependencySnapshot.Builder("project")
+                .addClass("A", "a", List.of("b.B"), false)
+                .build()
+                .write(file);
+        final byte[] bytes = Files.readAllBytes(file);
+
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(file, bytes);
+        assertEquals("Snapshot " + file + " is corrupted", assertThrows(IOException.class, () -> DependencySnapshot.read(file)).getMessage());
+
+        bytes[bytes.length / 2] ^= 1;
+        ByteBuffer.wrap(bytes).putInt(4, DependencySnapshot.FORMAT_VERSION + 1);
+        Files.write(file, bytes);
+        assertEquals("Snapshot " + file + " has format version " + (DependencySnapshot.FORMAT_VERSION + 1) + ", expected "
+                + DependencySnapshot.FORMAT_VERSION, assertThrows(IOException.class, () -> DependencySnapshot.read(file)).getMessage());
+
+        Files.writeString(file, "Not a snapshot");
+        assertEquals(file + " is not a dependency snapshot", assertThrows(IOException.class, () -> DependencySnapshot.read(file)).getMessage());
+    }
+
+    // [qualified name -> [dependencies, qualified dependencies, approximate]]
+    private static Map<String, List<Object>> classesOf(ProjectDepsReport report) {
+        final Map<String, List<Object>> classes = new HashMap<>();
+        for (PackageDepsReport packageReport : report.getPackages()) {
+            for (ClassDepsReport classReport : packageReport.getClassesAndInterfaces())
+                classes.put(classReport.getQualifiedName(), List.of(new TreeSet<>(classReport.getDependencies()),
+                        new TreeSet<>(classReport.getQualifiedDependencies()), classReport.isApproximate()));
+        }
+        return classes;
+    }
+}